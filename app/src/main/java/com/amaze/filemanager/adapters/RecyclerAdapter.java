@@ -31,7 +31,12 @@ import static com.amaze.filemanager.ui.fragments.preference_fragments.Preference
 import static com.amaze.filemanager.ui.fragments.preference_fragments.PreferencesConstants.PREFERENCE_USE_CIRCULAR_IMAGES;
 
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Set;
 
 import com.amaze.filemanager.GlideApp;
 import com.amaze.filemanager.R;
@@ -82,6 +87,7 @@ import android.widget.PopupMenu;
 
 import androidx.annotation.IntDef;
 import androidx.annotation.Nullable;
+import androidx.recyclerview.widget.DiffUtil;
 import androidx.recyclerview.widget.RecyclerView;
 
 /**
@@ -95,7 +101,8 @@ import androidx.recyclerview.widget.RecyclerView;
  * by Jens Klingenberg <mail@jensklingenberg.de>
  */
 public class RecyclerAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder>
-    implements RecyclerPreloadSizeProvider.RecyclerPreloadSizeProviderCallback {
+    implements RecyclerPreloadSizeProvider.RecyclerPreloadSizeProviderCallback,
+        SelectionModel.Callback {
 
   public static final int TYPE_ITEM = 0,
       TYPE_HEADER_FOLDERS = 1,
@@ -118,6 +125,8 @@ public class RecyclerAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolde
   private RecyclerPreloadSizeProvider sizeProvider;
   private RecyclerPreloadModelProvider modelProvider;
   private ArrayList<ListItem> itemsDigested = new ArrayList<>();
+  private final SelectionModel selection = new SelectionModel(this);
+  private ArrayList<LayoutElementParcelable> uris = new ArrayList<>();
   private Context context;
   private LayoutInflater mInflater;
   private float minRowHeight;
@@ -176,14 +185,14 @@ public class RecyclerAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolde
    * @param imageView the check {@link CircleGradientDrawable} that is to be animated
    */
   public void toggleChecked(int position, ImageView imageView) {
-    if (itemsDigested.get(position).getChecked() == ListItem.UNCHECKABLE) {
+    if (!isSelectable(position)) {
       throw new IllegalArgumentException("You have checked a header");
     }
 
     if (!stoppedAnimation) mainFrag.stopAnimation();
-    if (itemsDigested.get(position).getChecked() == ListItem.CHECKED) {
+    if (selection.isSelected(position)) {
       // if the view at position is checked, un-check it
-      itemsDigested.get(position).setChecked(false);
+      selection.setSelected(position, false);
 
       Animation iconAnimation = AnimationUtils.loadAnimation(context, R.anim.check_out);
       if (imageView != null) {
@@ -193,7 +202,7 @@ public class RecyclerAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolde
       }
     } else {
       // if view is un-checked, check it
-      itemsDigested.get(position).setChecked(true);
+      selection.setSelected(position, true);
 
       Animation iconAnimation = AnimationUtils.loadAnimation(context, R.anim.check_in);
       if (imageView != null) {
@@ -210,12 +219,11 @@ public class RecyclerAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolde
       }
     }
 
-    notifyItemChanged(position);
     if (mainFrag.mActionMode != null && mainFrag.selection) {
       // we have the actionmode visible, invalidate it's views
       mainFrag.mActionMode.invalidate();
     }
-    if (getCheckedItems().size() == 0) {
+    if (selection.isEmpty()) {
       mainFrag.selection = false;
       mainFrag.mActionMode.finish();
       mainFrag.mActionMode = null;
@@ -223,30 +231,8 @@ public class RecyclerAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolde
   }
 
   public void toggleChecked(boolean b, String path) {
-    int i = path.equals("/") || !getBoolean(PREFERENCE_SHOW_GOBACK_BUTTON) ? 0 : 1;
-
-    for (; i < itemsDigested.size(); i++) {
-      ListItem item = itemsDigested.get(i);
-      if (b && item.getChecked() != ListItem.CHECKED) {
-        item.setChecked(true);
-        notifyItemChanged(i);
-      } else if (!b && item.getChecked() == ListItem.CHECKED) {
-        item.setChecked(false);
-        notifyItemChanged(i);
-      }
-    }
-
-    if (mainFrag.mActionMode != null) {
-      mainFrag.mActionMode.invalidate();
-    }
-
-    if (getCheckedItems().size() == 0) {
-      mainFrag.selection = false;
-      if (mainFrag.mActionMode != null) {
-        mainFrag.mActionMode.finish();
-      }
-      mainFrag.mActionMode = null;
-    }
+    selection.setRangeSelected(getFirstCheckablePosition(path), itemsDigested.size(), b);
+    onCheckedItemsChanged();
   }
 
   /**
@@ -255,63 +241,104 @@ public class RecyclerAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolde
    * @param b if to toggle true or false
    */
   public void toggleChecked(boolean b) {
-    for (int i = 0; i < itemsDigested.size(); i++) {
-      ListItem item = itemsDigested.get(i);
-      if (b && item.getChecked() != ListItem.CHECKED) {
-        item.setChecked(true);
-        notifyItemChanged(i);
-      } else if (!b && item.getChecked() == ListItem.CHECKED) {
-        item.setChecked(false);
-        notifyItemChanged(i);
-      }
-    }
+    selection.setRangeSelected(0, itemsDigested.size(), b);
+    onCheckedItemsChanged();
+  }
+
+  /** Checks the unchecked items and unchecks the checked ones */
+  public void invertChecked(String path) {
+    selection.invertRange(getFirstCheckablePosition(path), itemsDigested.size());
+    onCheckedItemsChanged();
+  }
+
+  /** Checks all items between the first and the last checked ones */
+  public void checkRange() {
+    int[] positions = selection.getSelectedPositions();
+    if (positions.length < 2) return;
 
+    selection.setRangeSelected(positions[0], positions[positions.length - 1], true);
+    onCheckedItemsChanged();
+  }
+
+  private void onCheckedItemsChanged() {
     if (mainFrag.mActionMode != null) {
       mainFrag.mActionMode.invalidate();
     }
 
-    if (getCheckedItems().size() == 0) {
+    if (selection.isEmpty()) {
       mainFrag.selection = false;
-      if (mainFrag.mActionMode != null) mainFrag.mActionMode.finish();
+      if (mainFrag.mActionMode != null) {
+        mainFrag.mActionMode.finish();
+      }
       mainFrag.mActionMode = null;
     }
   }
 
+  private int getFirstCheckablePosition(String path) {
+    return path.equals("/") || !getBoolean(PREFERENCE_SHOW_GOBACK_BUTTON) ? 0 : 1;
+  }
+
   public ArrayList<LayoutElementParcelable> getCheckedItems() {
-    ArrayList<LayoutElementParcelable> selected = new ArrayList<>();
+    ArrayList<LayoutElementParcelable> selected = new ArrayList<>(selection.getCount());
 
-    for (int i = 0; i < itemsDigested.size(); i++) {
-      if (itemsDigested.get(i).getChecked() == ListItem.CHECKED) {
-        selected.add(itemsDigested.get(i).elem);
-      }
+    for (int i = selection.nextSelected(0); i >= 0; i = selection.nextSelected(i + 1)) {
+      selected.add(itemsDigested.get(i).elem);
     }
 
     return selected;
   }
 
-  public boolean areAllChecked(String path) {
-    boolean allChecked = true;
-    int i = (path.equals("/") || !getBoolean(PREFERENCE_SHOW_GOBACK_BUTTON)) ? 0 : 1;
+  /** @return the number of checked items, without going through the items */
+  public int getCheckedItemCount() {
+    return selection.getCount();
+  }
+
+  /** @return whether a directory is checked, only goes through the checked items */
+  public boolean isDirectoryChecked() {
+    for (int i = selection.nextSelected(0); i >= 0; i = selection.nextSelected(i + 1)) {
+      if (itemsDigested.get(i).elem.isDirectory) return true;
+    }
+    return false;
+  }
 
-    for (; i < itemsDigested.size(); i++) {
-      if (itemsDigested.get(i).getChecked() == ListItem.NOT_CHECKED) {
-        allChecked = false;
+  public boolean areAllChecked(String path) {
+    for (int i = getFirstCheckablePosition(path); i < itemsDigested.size(); i++) {
+      if (isSelectable(i) && !selection.isSelected(i)) {
+        return false;
       }
     }
 
-    return allChecked;
+    return true;
   }
 
-  public ArrayList<Integer> getCheckedItemsIndex() {
-    ArrayList<Integer> checked = new ArrayList<>();
+  public int[] getCheckedItemsIndex() {
+    return selection.getSelectedPositions();
+  }
 
-    for (int i = 0; i < itemsDigested.size(); i++) {
-      if (itemsDigested.get(i).getChecked() == ListItem.CHECKED) {
-        checked.add(i);
-      }
+  @Override
+  public boolean isSelectable(int position) {
+    return itemsDigested.get(position).specialType == TYPE_ITEM;
+  }
+
+  @Override
+  public void onSelectionChanged(int positionStart, int itemCount) {
+    notifyItemRangeChanged(positionStart, itemCount);
+  }
+
+  /** Moves the checked positions along with their items after {@code old} was replaced */
+  private void moveChecked(List<ListItem> old) {
+    if (selection.isEmpty()) return;
+
+    Set<ListItem> checked = Collections.newSetFromMap(new IdentityHashMap<>());
+    for (int i = selection.nextSelected(0); i >= 0; i = selection.nextSelected(i + 1)) {
+      checked.add(old.get(i));
     }
 
-    return checked;
+    BitSet positions = new BitSet(itemsDigested.size());
+    for (int i = 0; i < itemsDigested.size(); i++) {
+      if (checked.contains(itemsDigested.get(i))) positions.set(i);
+    }
+    selection.reset(positions);
   }
 
   @Override
@@ -366,6 +393,34 @@ public class RecyclerAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolde
     notifyItemInserted(getItemCount());
   }
 
+  /**
+   * Adds items to the end of the list, notifying them as a single range, same constraints as
+   * {@link #addItem(LayoutElementParcelable)}
+   */
+  public void addItems(List<LayoutElementParcelable> elements) {
+    if (elements.isEmpty()) return;
+
+    int position;
+    ArrayList<ListItem> items = new ArrayList<>(elements.size());
+    for (LayoutElementParcelable e : elements) {
+      items.add(new ListItem(e));
+    }
+
+    if (mainFrag.IS_LIST && itemsDigested.size() > 0) {
+      position = itemsDigested.size() - 1;
+      itemsDigested.addAll(position, items);
+    } else if (mainFrag.IS_LIST) {
+      position = 0;
+      itemsDigested.addAll(items);
+      itemsDigested.add(new ListItem(EMPTY_LAST_ITEM));
+    } else {
+      position = itemsDigested.size();
+      itemsDigested.addAll(items);
+    }
+
+    notifyItemRangeInserted(position, elements.size());
+  }
+
   public void setItems(RecyclerView recyclerView, ArrayList<LayoutElementParcelable> arrayList) {
     setItems(recyclerView, arrayList, true);
   }
@@ -378,14 +433,15 @@ public class RecyclerAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolde
     }
 
     itemsDigested.clear();
+    selection.clear();
     offset = 0;
     stoppedAnimation = false;
 
-    ArrayList<IconDataParcelable> uris = new ArrayList<>(itemsDigested.size());
+    uris = new ArrayList<>(arrayList.size());
 
     for (LayoutElementParcelable e : arrayList) {
       itemsDigested.add(new ListItem(e.isBack, e));
-      uris.add(e != null ? e.iconData : null);
+      uris.add(e);
     }
 
     if (mainFrag.IS_LIST && itemsDigested.size() > 0) {
@@ -411,7 +467,182 @@ public class RecyclerAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolde
     recyclerView.addOnScrollListener(preloader);
   }
 
-  public void createHeaders(boolean invalidate, List<IconDataParcelable> uris) {
+  /**
+   * Replaces the elements like {@link #setItems(RecyclerView, ArrayList)}, but only the rows that
+   * changed are notified. Meant for a directory that is listed again while it is shown, e.g. after
+   * its cached listing or the pages of the same listing.
+   */
+  public void setItemsWithDiff(
+      RecyclerView recyclerView, ArrayList<LayoutElementParcelable> arrayList) {
+    ArrayList<ListItem> old = new ArrayList<>(itemsDigested);
+    setItems(recyclerView, arrayList, false);
+    // both lists are sorted the same way, nothing moves
+    DiffUtil.calculateDiff(new ListItemDiffCallback(old, itemsDigested), false)
+        .dispatchUpdatesTo(this);
+  }
+
+  /**
+   * Merges a page of elements, sorted by {@code comparator}, into the elements already in the
+   * adapter (which must be sorted the same way). Only the inserted rows are notified, so a listing
+   * can be shown while it is still being loaded, see {@link
+   * com.amaze.filemanager.asynchronous.asynctasks.LoadFilesListTask.OnListPageLoaded}.
+   */
+  public void addItemsSorted(
+      List<LayoutElementParcelable> page, Comparator<LayoutElementParcelable> comparator) {
+    if (page.isEmpty()) return;
+
+    ListItem backItem = null, emptyLastItem = null, foldersHeader = null, filesHeader = null;
+    ArrayList<ListItem> elements = new ArrayList<>(itemsDigested.size() + page.size());
+
+    int pageIndex = 0;
+    for (ListItem item : itemsDigested) {
+      switch (item.specialType) {
+        case TYPE_BACK:
+          backItem = item;
+          break;
+        case EMPTY_LAST_ITEM:
+          emptyLastItem = item;
+          break;
+        case TYPE_HEADER_FOLDERS:
+          foldersHeader = item;
+          break;
+        case TYPE_HEADER_FILES:
+          filesHeader = item;
+          break;
+        default:
+          while (pageIndex < page.size()
+              && comparator.compare(page.get(pageIndex), item.elem) < 0) {
+            elements.add(new ListItem(page.get(pageIndex++)));
+          }
+          elements.add(item);
+      }
+    }
+    while (pageIndex < page.size()) {
+      elements.add(new ListItem(page.get(pageIndex++)));
+    }
+
+    ArrayList<ListItem> merged = new ArrayList<>(elements.size() + 4);
+    if (backItem != null) merged.add(backItem);
+
+    // same placement as createHeaders()
+    boolean[] headers = new boolean[] {false, false};
+    boolean showHeaders = getBoolean(PREFERENCE_SHOW_HEADERS);
+    for (ListItem item : elements) {
+      if (showHeaders && !headers[0] && item.elem.isDirectory) {
+        headers[0] = true;
+        merged.add(foldersHeader != null ? foldersHeader : new ListItem(TYPE_HEADER_FOLDERS));
+      } else if (showHeaders
+          && !headers[1]
+          && !item.elem.isDirectory
+          && !item.elem.title.equals(".")
+          && !item.elem.title.equals("..")) {
+        headers[1] = true;
+        merged.add(filesHeader != null ? filesHeader : new ListItem(TYPE_HEADER_FILES));
+      }
+      merged.add(item);
+    }
+
+    if (mainFrag.IS_LIST) {
+      merged.add(emptyLastItem != null ? emptyLastItem : new ListItem(EMPTY_LAST_ITEM));
+    }
+
+    // every old row is still in merged and in the same order, so the new ones are the insertions
+    ArrayList<ListItem> old = itemsDigested;
+    itemsDigested = merged;
+    moveChecked(old);
+    uris.clear();
+    for (ListItem item : merged) {
+      uris.add(item.elem);
+    }
+
+    ArrayList<int[]> insertedRanges = new ArrayList<>();
+    int oldIndex = 0, insertStart = -1;
+    for (int i = 0; i < merged.size(); i++) {
+      if (oldIndex < old.size() && merged.get(i) == old.get(oldIndex)) {
+        if (insertStart != -1) {
+          insertedRanges.add(new int[] {insertStart, i - insertStart});
+          insertStart = -1;
+        }
+        oldIndex++;
+      } else if (insertStart == -1) {
+        insertStart = i;
+      }
+    }
+    if (insertStart != -1) {
+      insertedRanges.add(new int[] {insertStart, merged.size() - insertStart});
+    }
+
+    if (oldIndex != old.size()) {
+      // a header moved (folders and files are mixed), this can't be expressed as insertions
+      notifyDataSetChanged();
+      return;
+    }
+
+    for (int[] range : insertedRanges) {
+      notifyItemRangeInserted(range[0], range[1]);
+    }
+  }
+
+  /**
+   * Removes the rows of the elements whose {@link LayoutElementParcelable#desc} is in {@code
+   * paths}, and the headers left without rows. Only the removed rows are notified.
+   */
+  public void removeItems(Set<String> paths) {
+    if (paths.isEmpty()) return;
+
+    ArrayList<ListItem> old = itemsDigested;
+    ArrayList<ListItem> remaining = new ArrayList<>(old.size());
+    for (ListItem item : old) {
+      if (item.specialType != TYPE_ITEM || !paths.contains(item.elem.desc)) {
+        remaining.add(item);
+      }
+    }
+    if (remaining.size() == old.size()) return;
+
+    ArrayList<ListItem> kept = new ArrayList<>(remaining.size());
+    for (int i = 0; i < remaining.size(); i++) {
+      ListItem item = remaining.get(i);
+      boolean isHeader =
+          item.specialType == TYPE_HEADER_FOLDERS || item.specialType == TYPE_HEADER_FILES;
+      if (isHeader
+          && (i + 1 == remaining.size() || remaining.get(i + 1).specialType != TYPE_ITEM)) {
+        continue;
+      }
+      kept.add(item);
+    }
+
+    itemsDigested = kept;
+    moveChecked(old);
+    uris.clear();
+    for (ListItem item : kept) {
+      uris.add(item.elem);
+    }
+
+    // kept is old without some rows, in the same order
+    ArrayList<int[]> removedRanges = new ArrayList<>();
+    int keptIndex = 0, removeStart = -1;
+    for (int i = 0; i < old.size(); i++) {
+      if (keptIndex < kept.size() && old.get(i) == kept.get(keptIndex)) {
+        if (removeStart != -1) {
+          removedRanges.add(new int[] {removeStart, i - removeStart});
+          removeStart = -1;
+        }
+        keptIndex++;
+      } else if (removeStart == -1) {
+        removeStart = i;
+      }
+    }
+    if (removeStart != -1) {
+      removedRanges.add(new int[] {removeStart, old.size() - removeStart});
+    }
+
+    // from the last range, so that the positions of the others don't change
+    for (int i = removedRanges.size() - 1; i >= 0; i--) {
+      notifyItemRangeRemoved(removedRanges.get(i)[0], removedRanges.get(i)[1]);
+    }
+  }
+
+  public void createHeaders(boolean invalidate, List<LayoutElementParcelable> uris) {
     boolean[] headers = new boolean[] {false, false};
 
     for (int i = 0; i < itemsDigested.size(); i++) {
@@ -539,6 +770,7 @@ public class RecyclerAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolde
         itemsDigested.get(p).setAnimate(true);
       }
       final LayoutElementParcelable rowItem = itemsDigested.get(p).elem;
+      final IconDataParcelable iconData = rowItem.getIconData();
 
       if (mainFrag.IS_LIST) {
         // clear previously cached icon
@@ -618,20 +850,20 @@ public class RecyclerAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolde
         // setting icons for various cases
         // apkIcon holder refers to square/non-circular drawable
         // pictureIcon is circular drawable
-        switch (rowItem.filetype) {
+        switch (rowItem.getFiletype()) {
           case Icons.IMAGE:
           case Icons.VIDEO:
             if (getBoolean(PREFERENCE_SHOW_THUMB)) {
               if (getBoolean(PREFERENCE_USE_CIRCULAR_IMAGES)) {
                 showThumbnailWithBackground(
-                    holder, rowItem.iconData, holder.pictureIcon, rowItem.iconData::setImageBroken);
+                    holder, iconData, holder.pictureIcon, iconData::setImageBroken);
               } else {
                 showThumbnailWithBackground(
-                    holder, rowItem.iconData, holder.apkIcon, rowItem.iconData::setImageBroken);
+                    holder, iconData, holder.apkIcon, iconData::setImageBroken);
               }
             } else {
               holder.genericIcon.setImageResource(
-                  rowItem.filetype == Icons.IMAGE
+                  rowItem.getFiletype() == Icons.IMAGE
                       ? R.drawable.ic_doc_image
                       : R.drawable.ic_doc_video_am);
             }
@@ -639,7 +871,7 @@ public class RecyclerAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolde
           case Icons.APK:
             if (getBoolean(PREFERENCE_SHOW_THUMB)) {
               showThumbnailWithBackground(
-                  holder, rowItem.iconData, holder.apkIcon, rowItem.iconData::setImageBroken);
+                  holder, iconData, holder.apkIcon, iconData::setImageBroken);
             } else {
               holder.genericIcon.setImageResource(R.drawable.ic_doc_apk_white);
             }
@@ -654,13 +886,13 @@ public class RecyclerAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolde
               holder.genericIcon.setVisibility(View.INVISIBLE);
             } else {
               // we could not find the extension, set a generic file type icon probably a directory
-              modelProvider.getPreloadRequestBuilder(rowItem.iconData).into(holder.genericIcon);
+              modelProvider.getPreloadRequestBuilder(iconData).into(holder.genericIcon);
             }
             break;
           case Icons.ENCRYPTED:
           default:
             holder.genericIcon.setVisibility(View.VISIBLE);
-            modelProvider.getPreloadRequestBuilder(rowItem.iconData).into(holder.genericIcon);
+            modelProvider.getPreloadRequestBuilder(iconData).into(holder.genericIcon);
             break;
         }
 
@@ -670,16 +902,16 @@ public class RecyclerAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolde
           holder.rl.setBackgroundResource(R.drawable.safr_ripple_black);
         }
         holder.rl.setSelected(false);
-        if (itemsDigested.get(p).getChecked() == ListItem.CHECKED) {
+        if (selection.isSelected(p)) {
 
           if (holder.checkImageView.getVisibility() == View.INVISIBLE)
             holder.checkImageView.setVisibility(View.VISIBLE);
           // making sure the generic icon background color filter doesn't get changed
           // to grey on picture/video/apk/generic text icons when checked
           // so that user can still look at the thumbs even after selection
-          if ((rowItem.filetype != Icons.IMAGE
-                  && rowItem.filetype != Icons.APK
-                  && rowItem.filetype != Icons.VIDEO)
+          if ((rowItem.getFiletype() != Icons.IMAGE
+                  && rowItem.getFiletype() != Icons.APK
+                  && rowItem.getFiletype() != Icons.VIDEO)
               || !getBoolean(PREFERENCE_SHOW_THUMB)) {
             holder.apkIcon.setVisibility(View.GONE);
             holder.pictureIcon.setVisibility(View.GONE);
@@ -692,9 +924,9 @@ public class RecyclerAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolde
           // holder.genericText.setText("");
         } else {
           holder.checkImageView.setVisibility(View.INVISIBLE);
-          if (!((rowItem.filetype == Icons.APK
-                  || rowItem.filetype == Icons.IMAGE
-                  || rowItem.filetype == Icons.VIDEO)
+          if (!((rowItem.getFiletype() == Icons.APK
+                  || rowItem.getFiletype() == Icons.IMAGE
+                  || rowItem.getFiletype() == Icons.VIDEO)
               && getBoolean(PREFERENCE_SHOW_THUMB))) {
             holder.genericIcon.setVisibility(View.VISIBLE);
             GradientDrawable gradientDrawable =
@@ -705,7 +937,7 @@ public class RecyclerAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolde
                 gradientDrawable.setColor(iconSkinColor);
               } else {
                 ColorUtils.colorizeIcons(
-                    context, rowItem.filetype, gradientDrawable, iconSkinColor);
+                    context, rowItem.getFiletype(), gradientDrawable, iconSkinColor);
               }
             } else gradientDrawable.setColor(iconSkinColor);
 
@@ -716,15 +948,15 @@ public class RecyclerAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolde
         }
         if (getBoolean(PREFERENCE_SHOW_PERMISSIONS)) holder.perm.setText(rowItem.permissions);
         if (getBoolean(PREFERENCE_SHOW_LAST_MODIFIED)) {
-          holder.date.setText(rowItem.dateModification);
+          holder.date.setText(rowItem.getDateModification(context));
         } else {
           holder.date.setVisibility(View.GONE);
         }
         if (isBackButton) {
-          holder.date.setText(rowItem.size);
+          holder.date.setText(rowItem.getSize(context));
           holder.txtDesc.setText("");
         } else if (getBoolean(PREFERENCE_SHOW_FILE_SIZE)) {
-          holder.txtDesc.setText(rowItem.size);
+          holder.txtDesc.setText(rowItem.getSize(context));
         }
       } else {
         // view is a grid view
@@ -755,29 +987,27 @@ public class RecyclerAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolde
 
         ((RoundedImageView) holder.genericIcon).setRelativeSize(1.25f, 1.25f);
 
-        if (rowItem.filetype == Icons.IMAGE || rowItem.filetype == Icons.VIDEO) {
+        if (rowItem.getFiletype() == Icons.IMAGE || rowItem.getFiletype() == Icons.VIDEO) {
           if (getBoolean(PREFERENCE_SHOW_THUMB)) {
             holder.imageView1.setVisibility(View.VISIBLE);
             holder.imageView1.setImageDrawable(null);
             if (utilsProvider.getAppTheme().equals(AppTheme.DARK)
                 || utilsProvider.getAppTheme().equals(AppTheme.BLACK))
               holder.imageView1.setBackgroundColor(Color.BLACK);
-            showRoundedThumbnail(
-                holder, rowItem.iconData, holder.imageView1, rowItem.iconData::setImageBroken);
+            showRoundedThumbnail(holder, iconData, holder.imageView1, iconData::setImageBroken);
           } else {
-            if (rowItem.filetype == Icons.IMAGE)
+            if (rowItem.getFiletype() == Icons.IMAGE)
               holder.genericIcon.setImageResource(R.drawable.ic_doc_image);
             else holder.genericIcon.setImageResource(R.drawable.ic_doc_video_am);
           }
-        } else if (rowItem.filetype == Icons.APK) {
+        } else if (rowItem.getFiletype() == Icons.APK) {
           if (getBoolean(PREFERENCE_SHOW_THUMB))
-            showRoundedThumbnail(
-                holder, rowItem.iconData, holder.genericIcon, rowItem.iconData::setImageBroken);
+            showRoundedThumbnail(holder, iconData, holder.genericIcon, iconData::setImageBroken);
           else {
             holder.genericIcon.setImageResource(R.drawable.ic_doc_apk_white);
           }
         } else {
-          GlideApp.with(mainFrag).load(rowItem.iconData.image).into(holder.genericIcon);
+          GlideApp.with(mainFrag).load(iconData.image).into(holder.genericIcon);
         }
 
         if (holder.genericIcon.getVisibility() == View.VISIBLE) {
@@ -786,7 +1016,7 @@ public class RecyclerAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolde
           if (rowItem.isDirectory) {
             iconBackground.setBackgroundColor(iconSkinColor);
           } else {
-            switch (rowItem.filetype) {
+            switch (rowItem.getFiletype()) {
               case Icons.VIDEO:
                 if (!getBoolean(PREFERENCE_SHOW_THUMB))
                   iconBackground.setBackgroundColor(videoColor);
@@ -827,12 +1057,12 @@ public class RecyclerAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolde
           }
         }
 
-        if (itemsDigested.get(p).getChecked() == ListItem.CHECKED) {
+        if (selection.isSelected(p)) {
           if (holder.genericIcon.getVisibility() == View.VISIBLE) {
 
-            if ((rowItem.filetype != Icons.IMAGE
-                    && rowItem.filetype != Icons.APK
-                    && rowItem.filetype != Icons.VIDEO)
+            if ((rowItem.getFiletype() != Icons.IMAGE
+                    && rowItem.getFiletype() != Icons.APK
+                    && rowItem.getFiletype() != Icons.VIDEO)
                 || !getBoolean(PREFERENCE_SHOW_THUMB)) {
               View iconBackground =
                   getBoolean(PREFERENCE_USE_CIRCULAR_IMAGES)
@@ -864,10 +1094,10 @@ public class RecyclerAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolde
         }
 
         if (getBoolean(PREFERENCE_SHOW_LAST_MODIFIED)) {
-          holder.date.setText(rowItem.dateModification);
+          holder.date.setText(rowItem.getDateModification(context));
         }
         if (isBackButton) {
-          holder.date.setText(rowItem.size);
+          holder.date.setText(rowItem.getSize(context));
           holder.txtDesc.setText("");
         }
         if (getBoolean(PREFERENCE_SHOW_PERMISSIONS)) holder.perm.setText(rowItem.permissions);
@@ -879,7 +1109,7 @@ public class RecyclerAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolde
   public int getCorrectView(IconDataParcelable item, int adapterPosition) {
     if (mainFrag.IS_LIST) {
       if (getBoolean(PREFERENCE_SHOW_THUMB)) {
-        int filetype = itemsDigested.get(adapterPosition).elem.filetype;
+        int filetype = itemsDigested.get(adapterPosition).elem.getFiletype();
 
         if (filetype == Icons.VIDEO || filetype == Icons.IMAGE) {
           if (getBoolean(PREFERENCE_USE_CIRCULAR_IMAGES)) {
@@ -1087,11 +1317,8 @@ public class RecyclerAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolde
   }
 
   private static class ListItem {
-    public static final int CHECKED = 0, NOT_CHECKED = 1, UNCHECKABLE = 2;
-
     private LayoutElementParcelable elem;
     private @ListElemType int specialType;
-    private boolean checked;
     private boolean animate;
 
     ListItem(LayoutElementParcelable elem) {
@@ -1107,16 +1334,6 @@ public class RecyclerAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolde
       this.specialType = specialType;
     }
 
-    public void setChecked(boolean checked) {
-      if (specialType == TYPE_ITEM) this.checked = checked;
-    }
-
-    public int getChecked() {
-      if (checked) return CHECKED;
-      else if (specialType == TYPE_ITEM) return NOT_CHECKED;
-      else return UNCHECKABLE;
-    }
-
     public void setAnimate(boolean animating) {
       if (specialType == -1) this.animate = animating;
     }
@@ -1126,6 +1343,49 @@ public class RecyclerAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolde
     }
   }
 
+  private static class ListItemDiffCallback extends DiffUtil.Callback {
+    private final List<ListItem> oldItems, newItems;
+
+    ListItemDiffCallback(List<ListItem> oldItems, List<ListItem> newItems) {
+      this.oldItems = oldItems;
+      this.newItems = newItems;
+    }
+
+    @Override
+    public int getOldListSize() {
+      return oldItems.size();
+    }
+
+    @Override
+    public int getNewListSize() {
+      return newItems.size();
+    }
+
+    @Override
+    public boolean areItemsTheSame(int oldItemPosition, int newItemPosition) {
+      ListItem oldItem = oldItems.get(oldItemPosition), newItem = newItems.get(newItemPosition);
+      if (oldItem.specialType != newItem.specialType) return false;
+      if (oldItem.elem == newItem.elem) return true;
+      if (oldItem.elem == null || newItem.elem == null) return false;
+      return oldItem.elem.desc.equals(newItem.elem.desc);
+    }
+
+    @Override
+    public boolean areContentsTheSame(int oldItemPosition, int newItemPosition) {
+      LayoutElementParcelable oldElem = oldItems.get(oldItemPosition).elem,
+          newElem = newItems.get(newItemPosition).elem;
+      if (oldElem == newElem) return true;
+      if (oldElem == null || newElem == null) return false;
+      return oldElem.date == newElem.date
+          && oldElem.longSize == newElem.longSize
+          && oldElem.isSizeUnknown() == newElem.isSizeUnknown()
+          && oldElem.isDirectory == newElem.isDirectory
+          && TextUtils.equals(oldElem.title, newElem.title)
+          && TextUtils.equals(oldElem.permissions, newElem.permissions)
+          && TextUtils.equals(oldElem.symlink, newElem.symlink);
+    }
+  }
+
   public interface OnImageProcessed {
     void onImageProcessed(boolean isImageBroken);
   }
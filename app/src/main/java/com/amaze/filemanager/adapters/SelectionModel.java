@@ -0,0 +1,149 @@
+/*
+ * Copyright (C) 2014-2020 Arpit Khurana <arpitkh96@gmail.com>, Vishal Nehra <vishalmeham2@gmail.com>,
+ * Emmanuel Messulam<emmanuelbendavid@gmail.com>, Raymond Lai <airwave209gt at gmail.com> and Contributors.
+ *
+ * This file is part of Amaze File Manager.
+ *
+ * Amaze File Manager is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.amaze.filemanager.adapters;
+
+import java.util.BitSet;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Selected rows of an adapter, by position. The positions are kept in a bit set along with their
+ * count, and every change is reported to the {@link Callback} as ranges of consecutive rows, so
+ * that selecting or deselecting all rows notifies a few ranges instead of every row.
+ */
+public final class SelectionModel {
+
+  public interface Callback {
+    /** @return whether the row at {@code position} can be selected, e.g. it isn't a header */
+    boolean isSelectable(int position);
+
+    /** Called for each range of consecutive rows whose selection changed */
+    void onSelectionChanged(int positionStart, int itemCount);
+  }
+
+  private static final int SELECT = 0, DESELECT = 1, INVERT = 2;
+
+  private final Callback callback;
+  private final BitSet selected = new BitSet();
+  private int count = 0;
+
+  public SelectionModel(@NonNull Callback callback) {
+    this.callback = callback;
+  }
+
+  public boolean isSelected(int position) {
+    return selected.get(position);
+  }
+
+  /** @return the number of selected rows */
+  public int getCount() {
+    return count;
+  }
+
+  public boolean isEmpty() {
+    return count == 0;
+  }
+
+  /** @return the first selected position from {@code position} on, or -1 if there is none */
+  public int nextSelected(int position) {
+    return selected.nextSetBit(position);
+  }
+
+  /** @return the selected positions, in order */
+  @NonNull
+  public int[] getSelectedPositions() {
+    int[] positions = new int[count];
+    for (int i = 0, position = selected.nextSetBit(0);
+        position >= 0;
+        position = selected.nextSetBit(position + 1)) {
+      positions[i++] = position;
+    }
+    return positions;
+  }
+
+  public void setSelected(int position, boolean select) {
+    changeRange(position, position + 1, select ? SELECT : DESELECT);
+  }
+
+  /** Selects or deselects the selectable rows from {@code from} (inclusive) to {@code to} */
+  public void setRangeSelected(int from, int to, boolean select) {
+    changeRange(from, to, select ? SELECT : DESELECT);
+  }
+
+  /** Selects the unselected rows from {@code from} (inclusive) to {@code to} and vice versa */
+  public void invertRange(int from, int to) {
+    changeRange(from, to, INVERT);
+  }
+
+  /**
+   * Replaces the selection without notifying, for when the rows were replaced or moved.
+   *
+   * @param positions the new selected positions, this set is copied
+   */
+  public void reset(@NonNull BitSet positions) {
+    selected.clear();
+    selected.or(positions);
+    count = selected.cardinality();
+  }
+
+  /** Deselects everything without notifying, for when the rows were replaced */
+  public void clear() {
+    selected.clear();
+    count = 0;
+  }
+
+  private void changeRange(int from, int to, int mode) {
+    int runStart = -1;
+    int position = from;
+    while (position < to) {
+      boolean change;
+      if (mode == DESELECT) {
+        // only the selected rows can change, skip to them
+        int next = selected.nextSetBit(position);
+        if (next != position) {
+          if (runStart != -1) {
+            callback.onSelectionChanged(runStart, position - runStart);
+            runStart = -1;
+          }
+          if (next < 0 || next >= to) break;
+          position = next;
+        }
+        change = true;
+      } else {
+        change = callback.isSelectable(position) && (mode == INVERT || !selected.get(position));
+      }
+
+      if (change) {
+        selected.flip(position);
+        count += selected.get(position) ? 1 : -1;
+        if (runStart == -1) runStart = position;
+      } else if (runStart != -1) {
+        callback.onSelectionChanged(runStart, position - runStart);
+        runStart = -1;
+      }
+      position++;
+    }
+
+    if (runStart != -1) {
+      callback.onSelectionChanged(runStart, position - runStart);
+    }
+  }
+}
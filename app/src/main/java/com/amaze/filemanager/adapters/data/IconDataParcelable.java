@@ -38,6 +38,9 @@ public class IconDataParcelable implements Parcelable {
   public final String path;
   public final @DrawableRes int image;
   public final @DrawableRes int loadingImage;
+  /** Size and last modified date of the file, to tell cached thumbnails of {@link #path} apart */
+  public final long size, lastModified;
+
   private boolean isImageBroken = false;
 
   public IconDataParcelable(int type, @DrawableRes int img) {
@@ -46,14 +49,23 @@ public class IconDataParcelable implements Parcelable {
     this.image = img;
     this.loadingImage = -1;
     this.path = null;
+    this.size = 0;
+    this.lastModified = 0;
   }
 
   public IconDataParcelable(int type, String path, @DrawableRes int loadingImages) {
+    this(type, path, loadingImages, 0, 0);
+  }
+
+  public IconDataParcelable(
+      int type, String path, @DrawableRes int loadingImages, long size, long lastModified) {
     if (type == IMAGE_RES) throw new IllegalArgumentException();
     this.type = type;
     this.path = path;
     this.loadingImage = loadingImages;
     this.image = -1;
+    this.size = size;
+    this.lastModified = lastModified;
   }
 
   public boolean isImageBroken() {
@@ -75,6 +87,8 @@ public class IconDataParcelable implements Parcelable {
     parcel.writeString(path);
     parcel.writeInt(image);
     parcel.writeInt(loadingImage);
+    parcel.writeLong(size);
+    parcel.writeLong(lastModified);
     parcel.writeInt(isImageBroken ? 1 : 0);
   }
 
@@ -83,6 +97,8 @@ public class IconDataParcelable implements Parcelable {
     path = im.readString();
     image = im.readInt();
     loadingImage = im.readInt();
+    size = im.readLong();
+    lastModified = im.readLong();
     isImageBroken = im.readInt() == 1;
   }
 
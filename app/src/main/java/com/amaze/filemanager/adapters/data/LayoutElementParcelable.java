@@ -31,28 +31,45 @@ import com.amaze.filemanager.utils.Utils;
 import android.content.Context;
 import android.os.Parcel;
 import android.os.Parcelable;
+import android.text.format.Formatter;
 
 import androidx.annotation.DrawableRes;
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 
+/**
+ * An element of the file list. Only the raw values (name, path, size, last modified date) are
+ * kept when the element is created; the file type, icon and the formatted size and date are worked
+ * out when they are first needed, usually when the row is bound in {@link
+ * com.amaze.filemanager.adapters.RecyclerAdapter}, so that listing big directories doesn't pay for
+ * rows that are never shown.
+ */
 public class LayoutElementParcelable implements Parcelable {
 
   private static final String CURRENT_YEAR =
       String.valueOf(Calendar.getInstance().get(Calendar.YEAR));
 
+  /** Value of {@link #filetype} until {@link #getFiletype()} is called */
+  private static final int FILETYPE_UNRESOLVED = Integer.MIN_VALUE;
+
   public final boolean isBack;
-  public final int filetype;
-  public final IconDataParcelable iconData;
   public final String title;
   public final String desc;
   public final String permissions;
   public final String symlink;
-  public final String size;
   public final boolean isDirectory;
   public final long date, longSize;
-  public final String dateModification;
   public final boolean header;
 
+  private final boolean useThumbs;
+  /** Whether the size is unknown, in which case {@link #longSize} is 0 and no size is shown */
+  private final boolean isSizeUnknown;
+
+  private int filetype = FILETYPE_UNRESOLVED;
+  @Nullable private IconDataParcelable iconData;
+  @Nullable private String size;
+  @Nullable private String dateModification;
+
   // same as hfile.modes but different than openmode in Main.java
   private OpenMode mode = OpenMode.FILE;
 
@@ -144,9 +161,76 @@ public class LayoutElementParcelable implements Parcelable {
       boolean isDirectory,
       boolean useThumbs,
       OpenMode openMode) {
-    filetype = Icons.getTypeOfFile(path, isDirectory);
-    @DrawableRes int fallbackIcon = Icons.loadMimeIcon(path, isDirectory);
+    this(
+        isBack,
+        title,
+        path,
+        permissions,
+        symlink,
+        longSize,
+        header,
+        date.trim().equals("") ? 0 : Long.parseLong(date),
+        isDirectory,
+        useThumbs,
+        openMode);
+    this.size = size;
+    if (date.trim().equals("")) {
+      this.dateModification = "";
+    }
+  }
+
+  /**
+   * Creates an element from raw values, nothing is formatted until it is needed.
+   *
+   * @param longSize the size of the file in bytes, or -1 if unknown
+   * @param date the last modified date in milliseconds, or 0 if unknown
+   */
+  public LayoutElementParcelable(
+      boolean isBack,
+      String title,
+      String path,
+      String permissions,
+      String symlink,
+      long longSize,
+      boolean header,
+      long date,
+      boolean isDirectory,
+      boolean useThumbs,
+      OpenMode openMode) {
     this.mode = openMode;
+    this.useThumbs = useThumbs;
+    this.title = title;
+    this.desc = path;
+    this.permissions = permissions.trim();
+    this.symlink = symlink.trim();
+    this.header = header;
+    this.isSizeUnknown = longSize < 0;
+    this.longSize = Math.max(longSize, 0);
+    this.isDirectory = isDirectory;
+    this.date = date;
+    this.isBack = isBack;
+  }
+
+  /** @return one of the types in {@link Icons}, found from the path on first call */
+  public int getFiletype() {
+    if (filetype == FILETYPE_UNRESOLVED) {
+      filetype = Icons.getTypeOfFile(desc, isDirectory);
+    }
+    return filetype;
+  }
+
+  /** @return what to load as the icon of this element, created on first call */
+  @NonNull
+  public IconDataParcelable getIconData() {
+    if (iconData == null) {
+      iconData = createIconData();
+    }
+    return iconData;
+  }
+
+  private IconDataParcelable createIconData() {
+    final int type = getFiletype();
+    @DrawableRes int fallbackIcon = Icons.loadMimeIcon(desc, isDirectory);
     if (useThumbs) {
       switch (mode) {
         case SMB:
@@ -156,41 +240,45 @@ public class LayoutElementParcelable implements Parcelable {
         case ONEDRIVE:
         case BOX:
           if (!isDirectory
-              && (filetype == Icons.IMAGE || filetype == Icons.VIDEO || filetype == Icons.APK)) {
-            this.iconData =
-                new IconDataParcelable(IconDataParcelable.IMAGE_FROMCLOUD, path, fallbackIcon);
+              && (type == Icons.IMAGE || type == Icons.VIDEO || type == Icons.APK)) {
+            return new IconDataParcelable(
+                IconDataParcelable.IMAGE_FROMCLOUD, desc, fallbackIcon, longSize, date);
           } else {
-            this.iconData = new IconDataParcelable(IconDataParcelable.IMAGE_RES, fallbackIcon);
+            return new IconDataParcelable(IconDataParcelable.IMAGE_RES, fallbackIcon);
           }
-          break;
         default:
-          if (filetype == Icons.IMAGE || filetype == Icons.VIDEO || filetype == Icons.APK) {
-            this.iconData =
-                new IconDataParcelable(IconDataParcelable.IMAGE_FROMFILE, path, fallbackIcon);
+          if (type == Icons.IMAGE || type == Icons.VIDEO || type == Icons.APK) {
+            return new IconDataParcelable(IconDataParcelable.IMAGE_FROMFILE, desc, fallbackIcon);
           } else {
-            this.iconData = new IconDataParcelable(IconDataParcelable.IMAGE_RES, fallbackIcon);
+            return new IconDataParcelable(IconDataParcelable.IMAGE_RES, fallbackIcon);
           }
       }
     } else {
-      this.iconData = new IconDataParcelable(IconDataParcelable.IMAGE_RES, fallbackIcon);
+      return new IconDataParcelable(IconDataParcelable.IMAGE_RES, fallbackIcon);
     }
+  }
 
-    this.title = title;
-    this.desc = path;
-    this.permissions = permissions.trim();
-    this.symlink = symlink.trim();
-    this.size = size;
-    this.header = header;
-    this.longSize = longSize;
-    this.isDirectory = isDirectory;
-    if (!date.trim().equals("")) {
-      this.date = Long.parseLong(date);
-      this.dateModification = Utils.getDate(c, this.date);
-    } else {
-      this.date = 0;
-      this.dateModification = "";
+  /** @return the size to show, formatted on first call; empty for folders and unknown sizes */
+  @NonNull
+  public String getSize(@NonNull Context c) {
+    if (size == null) {
+      size = isDirectory || isSizeUnknown ? "" : Formatter.formatFileSize(c, longSize);
     }
-    this.isBack = isBack;
+    return size;
+  }
+
+  /** @return the last modified date to show, formatted on first call */
+  @NonNull
+  public String getDateModification(@NonNull Context c) {
+    if (dateModification == null) {
+      dateModification = Utils.getDate(c, date);
+    }
+    return dateModification;
+  }
+
+  /** @return whether the size of the file couldn't be found, {@link #longSize} is 0 then */
+  public boolean isSizeUnknown() {
+    return isSizeUnknown;
   }
 
   public OpenMode getMode() {
@@ -198,6 +286,10 @@ public class LayoutElementParcelable implements Parcelable {
   }
 
   public void setMode(OpenMode mode) {
+    if (this.mode != mode) {
+      // whether the icon is a remote thumbnail depends on the mode
+      iconData = null;
+    }
     this.mode = mode;
   }
 
@@ -235,6 +327,9 @@ public class LayoutElementParcelable implements Parcelable {
     size = im.readString();
     longSize = im.readLong();
     isBack = im.readInt() != 0;
+    useThumbs = im.readInt() != 0;
+    isSizeUnknown = im.readInt() != 0;
+    mode = OpenMode.getOpenMode(im.readInt());
   }
 
   @Override
@@ -258,6 +353,9 @@ public class LayoutElementParcelable implements Parcelable {
     p1.writeString(size);
     p1.writeLong(longSize);
     p1.writeInt(isBack ? 1 : 0);
+    p1.writeInt(useThumbs ? 1 : 0);
+    p1.writeInt(isSizeUnknown ? 1 : 0);
+    p1.writeInt(mode.ordinal());
   }
 
   public static final Parcelable.Creator<LayoutElementParcelable> CREATOR =
@@ -26,9 +26,11 @@ import java.util.List;
 import com.amaze.filemanager.GlideApp;
 import com.amaze.filemanager.GlideRequest;
 import com.amaze.filemanager.adapters.data.IconDataParcelable;
+import com.amaze.filemanager.adapters.data.LayoutElementParcelable;
 import com.bumptech.glide.ListPreloader;
 import com.bumptech.glide.RequestBuilder;
 import com.bumptech.glide.load.engine.DiskCacheStrategy;
+import com.bumptech.glide.signature.ObjectKey;
 
 import android.graphics.drawable.Drawable;
 
@@ -40,11 +42,15 @@ import androidx.fragment.app.Fragment;
 public class RecyclerPreloadModelProvider
     implements ListPreloader.PreloadModelProvider<IconDataParcelable> {
 
-  private List<IconDataParcelable> urisToLoad;
+  private List<LayoutElementParcelable> urisToLoad;
   private GlideRequest<Drawable> request;
 
+  /**
+   * @param uris the element at each adapter position, null for rows without an icon; the icon data
+   *     is only created for the positions that get preloaded
+   */
   public RecyclerPreloadModelProvider(
-      @NonNull Fragment fragment, @NonNull List<IconDataParcelable> uris) {
+      @NonNull Fragment fragment, @NonNull List<LayoutElementParcelable> uris) {
     urisToLoad = uris;
     request = GlideApp.with(fragment).asDrawable().centerCrop();
   }
@@ -52,9 +58,10 @@ public class RecyclerPreloadModelProvider
   @Override
   @NonNull
   public List<IconDataParcelable> getPreloadItems(int position) {
-    IconDataParcelable iconData = position < urisToLoad.size() ? urisToLoad.get(position) : null;
-    if (iconData == null) return Collections.emptyList();
-    return Collections.singletonList(iconData);
+    LayoutElementParcelable element =
+        position < urisToLoad.size() ? urisToLoad.get(position) : null;
+    if (element == null) return Collections.emptyList();
+    return Collections.singletonList(element.getIconData());
   }
 
   @Override
@@ -64,7 +71,12 @@ public class RecyclerPreloadModelProvider
     if (iconData.type == IconDataParcelable.IMAGE_FROMFILE) {
       requestBuilder = request.load(iconData.path);
     } else if (iconData.type == IconDataParcelable.IMAGE_FROMCLOUD) {
-      requestBuilder = request.load(iconData.path).diskCacheStrategy(DiskCacheStrategy.NONE);
+      // Only the decoded thumbnail is worth keeping, the remote original can be huge
+      requestBuilder =
+          request
+              .load(iconData.path)
+              .diskCacheStrategy(DiskCacheStrategy.RESOURCE)
+              .signature(new ObjectKey(iconData.size + "@" + iconData.lastModified));
     } else {
       requestBuilder = request.load(iconData.image);
     }
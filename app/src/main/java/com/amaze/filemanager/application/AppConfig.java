@@ -34,6 +34,7 @@ import com.amaze.filemanager.R;
 import com.amaze.filemanager.crashreport.AcraReportSenderFactory;
 import com.amaze.filemanager.crashreport.ErrorActivity;
 import com.amaze.filemanager.database.ExplorerDatabase;
+import com.amaze.filemanager.database.ListingCacheDatabase;
 import com.amaze.filemanager.database.UtilitiesDatabase;
 import com.amaze.filemanager.database.UtilsHandler;
 import com.amaze.filemanager.filesystem.ssh.CustomSshJConfig;
@@ -81,6 +82,8 @@ public class AppConfig extends GlideApplication {
 
   private ExplorerDatabase explorerDatabase;
 
+  private ListingCacheDatabase listingCacheDatabase;
+
   public UtilitiesProvider getUtilsProvider() {
     return utilsProvider;
   }
@@ -95,6 +98,7 @@ public class AppConfig extends GlideApplication {
     CustomSshJConfig.init();
     explorerDatabase = ExplorerDatabase.initialize(this);
     utilitiesDatabase = UtilitiesDatabase.initialize(this);
+    listingCacheDatabase = ListingCacheDatabase.initialize(this);
 
     utilsProvider = new UtilitiesProvider(this);
     utilsHandler = new UtilsHandler(this, utilitiesDatabase);
@@ -224,6 +228,10 @@ public class AppConfig extends GlideApplication {
     return utilitiesDatabase;
   }
 
+  public ListingCacheDatabase getListingCacheDatabase() {
+    return listingCacheDatabase;
+  }
+
   /**
    * Called in {@link #attachBaseContext(Context)} after calling the {@code super} method. Should be
    * overridden if MultiDex is enabled, since it has to be initialized before ACRA.
@@ -24,12 +24,14 @@ import java.io.File;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.Date;
 import java.util.LinkedList;
 
 import com.amaze.filemanager.R;
 import com.amaze.filemanager.adapters.data.LayoutElementParcelable;
 import com.amaze.filemanager.application.AppConfig;
+import com.amaze.filemanager.database.ListingCacheHandler;
 import com.amaze.filemanager.database.SortHandler;
 import com.amaze.filemanager.database.UtilsHandler;
 import com.amaze.filemanager.exceptions.CloudPluginException;
@@ -39,6 +41,7 @@ import com.amaze.filemanager.filesystem.RootHelper;
 import com.amaze.filemanager.filesystem.cloud.CloudUtil;
 import com.amaze.filemanager.filesystem.files.FileListSorter;
 import com.amaze.filemanager.filesystem.root.ListFilesCommand;
+import com.amaze.filemanager.filesystem.smb.SmbAttributeCache;
 import com.amaze.filemanager.ui.activities.superclasses.BaseAsyncTask;
 import com.amaze.filemanager.ui.fragments.CloudSheetFragment;
 import com.amaze.filemanager.ui.fragments.MainFragment;
@@ -53,8 +56,8 @@ import android.content.Context;
 import android.database.Cursor;
 import android.net.Uri;
 import android.os.AsyncTask;
+import android.os.SystemClock;
 import android.provider.MediaStore;
-import android.text.format.Formatter;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
@@ -65,16 +68,35 @@ import jcifs.smb.SmbException;
 import jcifs.smb.SmbFile;
 
 public class LoadFilesListTask
-    extends AsyncTask<Void, Void, Pair<OpenMode, ArrayList<LayoutElementParcelable>>>
+    extends AsyncTask<
+        Void,
+        Pair<OpenMode, ArrayList<LayoutElementParcelable>>,
+        Pair<OpenMode, ArrayList<LayoutElementParcelable>>>
     implements BaseAsyncTask {
 
+  /** Entries in the first page, kept small so that the first rows show up as soon as possible */
+  private static final int FIRST_PAGE_SIZE = 64;
+
+  /** Page sizes double after each page up to this limit, bounding the number of adapter merges */
+  private static final int MAX_PAGE_SIZE = 8192;
+
+  /** A page is published at least this often while entries keep coming in (slow SMB/SFTP/cloud) */
+  private static final long PAGE_INTERVAL_MILLIS = 250;
+
   private String path;
   private MainFragment mainFragment;
   private Context context;
   private OpenMode openmode;
   private boolean showHiddenFiles, showThumbs;
+  private boolean forceReload;
   private DataUtils dataUtils = DataUtils.getInstance();
   private OnAsyncTaskFinished<Pair<OpenMode, ArrayList<LayoutElementParcelable>>> listener;
+  @Nullable private OnListPageLoaded pageListener;
+  @Nullable private FileListSorter sorter;
+  private ArrayList<LayoutElementParcelable> pendingPage = new ArrayList<>();
+  private int nextPageSize = FIRST_PAGE_SIZE;
+  private long lastPageTime;
+  private boolean showsCachedListing;
 
   public LoadFilesListTask(
       Context context,
@@ -84,13 +106,35 @@ public class LoadFilesListTask
       boolean showThumbs,
       boolean showHiddenFiles,
       OnAsyncTaskFinished<Pair<OpenMode, ArrayList<LayoutElementParcelable>>> l) {
+    this(context, path, mainFragment, openmode, showThumbs, showHiddenFiles, false, l, null);
+  }
+
+  /**
+   * @param forceReload list the directory even if its cached listing is still valid, see {@link
+   *     ListingCacheHandler}
+   * @param pageListener if not null, entries are handed to it in sorted pages while the directory
+   *     is still being listed, or all at once if an outdated listing was cached; the complete
+   *     sorted list is still delivered to {@code l} at the end
+   */
+  public LoadFilesListTask(
+      Context context,
+      String path,
+      MainFragment mainFragment,
+      OpenMode openmode,
+      boolean showThumbs,
+      boolean showHiddenFiles,
+      boolean forceReload,
+      OnAsyncTaskFinished<Pair<OpenMode, ArrayList<LayoutElementParcelable>>> l,
+      @Nullable OnListPageLoaded pageListener) {
     this.path = path;
     this.mainFragment = mainFragment;
     this.openmode = openmode;
     this.context = context;
     this.showThumbs = showThumbs;
     this.showHiddenFiles = showHiddenFiles;
+    this.forceReload = forceReload;
     this.listener = l;
+    this.pageListener = pageListener;
   }
 
   @Override
@@ -113,6 +157,38 @@ public class LoadFilesListTask
     nullCheckOrInterrupt(mainFragment, this).file_count = 0;
     final ArrayList<LayoutElementParcelable> list;
 
+    if (!(openmode == OpenMode.CUSTOM && ((path).equals("5") || (path).equals("6")))) {
+      sorter = createSorter();
+    }
+    final OpenMode cacheOpenMode = openmode;
+    final boolean cacheable = ListingCacheHandler.isCacheable(cacheOpenMode);
+    // read before listing, so that changes made meanwhile invalidate the cached listing
+    final long lastModified = ListingCacheHandler.getLastModified(path, cacheOpenMode);
+
+    if (cacheable) {
+      ListingCacheHandler.Listing cached =
+          ListingCacheHandler.getInstance().find(path, cacheOpenMode, showHiddenFiles);
+      if (cached != null) {
+        ArrayList<LayoutElementParcelable> cachedList = cached.toElements(showThumbs);
+        if (sorter != null) {
+          sorter.sort(cachedList);
+        }
+
+        if (!forceReload && cached.isValid()) {
+          countElements(cachedList);
+          return new Pair<>(cached.directory.listedOpenMode, cachedList);
+        }
+
+        if (pageListener != null && sorter != null && !isCancelled()) {
+          // show the outdated listing right away, the complete list is diffed against it
+          showsCachedListing = true;
+          publishProgress(new Pair<>(cached.directory.listedOpenMode, cachedList));
+        }
+      }
+    }
+
+    lastPageTime = SystemClock.elapsedRealtime();
+
     switch (openmode) {
       case SMB:
         if (hFile == null) {
@@ -121,6 +197,7 @@ public class LoadFilesListTask
 
         try {
           SmbFile[] smbFile = hFile.getSmbFile(5000).listFiles();
+          SmbAttributeCache.putAll(smbFile);
           list = nullCheckOrInterrupt(mainFragment, this).addToSmb(smbFile, path, showHiddenFiles);
           openmode = OpenMode.SMB;
         } catch (SmbAuthException e) {
@@ -144,10 +221,7 @@ public class LoadFilesListTask
             file -> {
               if (!(dataUtils.isFileHidden(file.getPath())
                   || file.isHidden() && !showHiddenFiles)) {
-                LayoutElementParcelable elem = createListParcelables(file);
-                if (elem != null) {
-                  list.add(elem);
-                }
+                addElement(list, createListParcelables(file), OpenMode.SFTP);
               }
             });
         break;
@@ -181,12 +255,7 @@ public class LoadFilesListTask
         break;
       case OTG:
         list = new ArrayList<>();
-        listOtg(
-            path,
-            file -> {
-              LayoutElementParcelable elem = createListParcelables(file);
-              if (elem != null) list.add(elem);
-            });
+        listOtg(path, file -> addElement(list, createListParcelables(file), OpenMode.OTG));
         openmode = OpenMode.OTG;
         break;
       case DROPBOX:
@@ -201,10 +270,7 @@ public class LoadFilesListTask
               path,
               cloudStorage,
               openmode,
-              file -> {
-                LayoutElementParcelable elem = createListParcelables(file);
-                if (elem != null) list.add(elem);
-              });
+              file -> addElement(list, createListParcelables(file), cacheOpenMode));
         } catch (CloudPluginException e) {
           e.printStackTrace();
           AppConfig.toast(
@@ -228,8 +294,10 @@ public class LoadFilesListTask
               return null;
             },
             hybridFileParcelable -> {
-              LayoutElementParcelable elem = createListParcelables(hybridFileParcelable);
-              if (elem != null) list.add(elem);
+              addElement(
+                  list,
+                  createListParcelables(hybridFileParcelable),
+                  currentOpenMode[0] == null ? cacheOpenMode : currentOpenMode[0]);
               return null;
             });
         if (null != currentOpenMode[0]) {
@@ -238,23 +306,77 @@ public class LoadFilesListTask
         break;
     }
 
-    if (list != null
-        && !(openmode == OpenMode.CUSTOM && ((path).equals("5") || (path).equals("6")))) {
-      int t = SortHandler.getSortType(nullCheckOrInterrupt(context, this), path);
-      int sortby;
-      int asc;
-      if (t <= 3) {
-        sortby = t;
-        asc = 1;
+    if (list != null && sorter != null) {
+      sorter.sort(list);
+    }
+
+    if (list != null && cacheable && !isCancelled()) {
+      ListingCacheHandler.getInstance()
+          .put(path, cacheOpenMode, openmode, lastModified, showHiddenFiles, list);
+    }
+
+    return new Pair<>(openmode, list);
+  }
+
+  private void countElements(@NonNull ArrayList<LayoutElementParcelable> list) {
+    MainFragment fragment = nullCheckOrInterrupt(mainFragment, this);
+    for (LayoutElementParcelable element : list) {
+      if (element.isDirectory) {
+        fragment.folder_count++;
       } else {
-        asc = -1;
-        sortby = t - 4;
+        fragment.file_count++;
       }
-      Collections.sort(
-          list, new FileListSorter(nullCheckOrInterrupt(mainFragment, this).dsort, sortby, asc));
     }
+  }
 
-    return new Pair<>(openmode, list);
+  private FileListSorter createSorter() {
+    int t = SortHandler.getSortType(nullCheckOrInterrupt(context, this), path);
+    return new FileListSorter(
+        nullCheckOrInterrupt(mainFragment, this).dsort,
+        FileListSorter.getSortBy(t),
+        FileListSorter.getSortOrder(t));
+  }
+
+  /**
+   * Adds a listed element to the final list and, when streaming, to the page being filled. A page
+   * is published once it reaches {@link #nextPageSize} entries or {@link #PAGE_INTERVAL_MILLIS}
+   * have passed since the last one.
+   *
+   * @param listedOpenMode the mode the directory is listed in, published with the page because
+   *     {@link #openmode} can still change on this thread before the UI thread gets it
+   */
+  private void addElement(
+      @NonNull ArrayList<LayoutElementParcelable> list,
+      @Nullable LayoutElementParcelable elem,
+      @NonNull OpenMode listedOpenMode) {
+    if (elem == null) return;
+
+    list.add(elem);
+
+    if (pageListener == null || sorter == null || showsCachedListing || isCancelled()) return;
+
+    pendingPage.add(elem);
+    long now = SystemClock.elapsedRealtime();
+    if (pendingPage.size() >= nextPageSize || now - lastPageTime >= PAGE_INTERVAL_MILLIS) {
+      ArrayList<LayoutElementParcelable> page = pendingPage;
+      pendingPage = new ArrayList<>();
+      sorter.sort(page);
+      publishProgress(new Pair<>(listedOpenMode, page));
+      nextPageSize = Math.min(nextPageSize * 2, MAX_PAGE_SIZE);
+      lastPageTime = now;
+    }
+  }
+
+  @SafeVarargs
+  @Override
+  protected final void onProgressUpdate(
+      Pair<OpenMode, ArrayList<LayoutElementParcelable>>... pages) {
+    // pages already queued for the UI thread may still arrive after cancellation
+    if (isCancelled() || pageListener == null || sorter == null) return;
+
+    for (Pair<OpenMode, ArrayList<LayoutElementParcelable>> page : pages) {
+      pageListener.onListPageLoaded(page.first, page.second, sorter);
+    }
   }
 
   @Override
@@ -271,35 +393,26 @@ public class LoadFilesListTask
 
   private LayoutElementParcelable createListParcelables(HybridFileParcelable baseFile) {
     if (!dataUtils.isFileHidden(baseFile.getPath())) {
-      String size = "";
       long longSize = 0;
 
       if (baseFile.isDirectory()) {
         nullCheckOrInterrupt(mainFragment, this).folder_count++;
       } else {
-        if (baseFile.getSize() != -1) {
-          try {
-            longSize = baseFile.getSize();
-            size = Formatter.formatFileSize(nullCheckOrInterrupt(context, this), longSize);
-          } catch (NumberFormatException e) {
-            e.printStackTrace();
-          }
-        }
-
+        // -1 if unknown, the element won't show a size then
+        longSize = baseFile.getSize();
         nullCheckOrInterrupt(mainFragment, this).file_count++;
       }
 
       LayoutElementParcelable layoutElement =
           new LayoutElementParcelable(
-              nullCheckOrInterrupt(context, this),
+              false,
               baseFile.getName(nullCheckOrInterrupt(context, this)),
               baseFile.getPath(),
               baseFile.getPermission(),
               baseFile.getLink(),
-              size,
               longSize,
               false,
-              baseFile.getDate() + "",
+              baseFile.getDate(),
               baseFile.isDirectory(),
               showThumbs,
               baseFile.getMode());
@@ -499,4 +612,15 @@ public class LoadFilesListTask
 
     CloudUtil.getCloudFiles(path, cloudStorage, openMode, fileFoundCallback);
   }
+
+  /**
+   * Receives the entries of a listing in progress. Every page is sorted with {@code sorter}, which
+   * is also the order of the final list, so pages can be merged into what is already shown.
+   */
+  public interface OnListPageLoaded {
+    void onListPageLoaded(
+        OpenMode openMode,
+        ArrayList<LayoutElementParcelable> page,
+        Comparator<LayoutElementParcelable> sorter);
+  }
 }
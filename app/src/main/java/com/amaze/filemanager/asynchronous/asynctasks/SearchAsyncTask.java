@@ -21,14 +21,18 @@
 package com.amaze.filemanager.asynchronous.asynctasks;
 
 import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.List;
 import java.util.regex.Pattern;
 
 import com.amaze.filemanager.filesystem.HybridFile;
 import com.amaze.filemanager.filesystem.HybridFileParcelable;
+import com.amaze.filemanager.filesystem.files.FileSearchEngine;
 import com.amaze.filemanager.ui.fragments.SearchWorkerFragment;
 import com.amaze.filemanager.utils.OpenMode;
 
 import android.app.Activity;
+import android.content.Context;
 import android.os.AsyncTask;
 import android.util.Log;
 
@@ -37,6 +41,9 @@ public class SearchAsyncTask extends AsyncTask<String, HybridFileParcelable, Voi
 
   private static final String TAG = "SearchAsyncTask";
 
+  /** Matches found are handed to the UI at most this often */
+  private static final long BATCH_INTERVAL_MILLIS = 250;
+
   private WeakReference<Activity> activity;
   private SearchWorkerFragment.HelperCallbacks callbacks;
   private String input;
@@ -69,22 +76,27 @@ public class SearchAsyncTask extends AsyncTask<String, HybridFileParcelable, Voi
   // race conditions b/w worker thread main thread
   @Override
   protected Void doInBackground(String... params) {
+    Context context = activity.get();
+    if (context == null) return null;
+
     String path = params[0];
     HybridFile file = new HybridFile(openMode, path);
-    file.generateMode(activity.get());
-    if (file.isSmb()) return null;
+    file.generateMode(context);
 
     // level 1
     // if regex or not
+    SearchFilter filter;
     if (!isRegexEnabled) {
-      search(file, input);
+      filter = getContainsFilter(input);
     } else {
       // compile the regular expression in the input
       Pattern pattern = Pattern.compile(bashRegexToJava(input));
       // level 2
-      if (!isMatchesEnabled) searchRegExFind(file, pattern);
-      else searchRegExMatch(file, pattern);
+      if (!isMatchesEnabled) filter = getRegExFindFilter(pattern);
+      else filter = getRegExMatchFilter(pattern);
     }
+
+    search(context, file, filter);
     return null;
   }
 
@@ -103,7 +115,7 @@ public class SearchAsyncTask extends AsyncTask<String, HybridFileParcelable, Voi
   @Override
   public void onProgressUpdate(HybridFileParcelable... val) {
     if (!isCancelled() && callbacks != null) {
-      callbacks.onProgressUpdate(val[0], input);
+      callbacks.onProgressUpdate(Arrays.asList(val), input);
     }
   }
 
@@ -113,59 +125,59 @@ public class SearchAsyncTask extends AsyncTask<String, HybridFileParcelable, Voi
   }
 
   /**
-   * Recursively search for occurrences of a given text in file names and publish the result
+   * Search the tree of {@code directory} for file names accepted by {@code filter}, on a {@link
+   * FileSearchEngine}, and publish the results found every {@link #BATCH_INTERVAL_MILLIS}
    *
-   * @param directory the current path
+   * @param directory the searched path
    */
-  private void search(HybridFile directory, final SearchFilter filter) {
-    if (directory.isDirectory(activity.get())) { // do you have permission to read this directory?
-      directory.forEachChildrenFile(
-          activity.get(),
-          rootMode,
-          file -> {
-            if (!isCancelled()) {
-              if (filter.searchFilter(file.getName(activity.get()))) {
-                publishProgress(file);
-              }
-              if (file.isDirectory() && !isCancelled()) {
-                search(file, filter);
-              }
-            }
-          });
-    } else {
-      Log.d(TAG, "Cannot search " + directory.getPath() + ": Permission Denied");
+  private void search(Context context, HybridFile directory, final SearchFilter filter) {
+    FileSearchEngine engine =
+        new FileSearchEngine(
+            context, rootMode, filter, FileSearchEngine.getParallelism(directory, rootMode));
+    engine.start(directory);
+    try {
+      boolean finished;
+      do {
+        finished = engine.await(BATCH_INTERVAL_MILLIS);
+        List<HybridFileParcelable> batch = engine.drain();
+        if (!batch.isEmpty() && !isCancelled()) {
+          publishProgress(batch.toArray(new HybridFileParcelable[0]));
+        }
+      } while (!finished && !isCancelled());
+    } catch (InterruptedException e) {
+      // the task was cancelled
+      Log.d(TAG, "Search interrupted");
+    } finally {
+      engine.cancel();
     }
   }
 
   /**
-   * Recursively search for occurrences of a given text in file names and publish the result
+   * Search for occurrences of a given text in file names
    *
-   * @param file the current path
    * @param query the searched text
    */
-  private void search(HybridFile file, final String query) {
-    search(file, fileName -> fileName.toLowerCase().contains(query.toLowerCase()));
+  static SearchFilter getContainsFilter(final String query) {
+    final String lowerCaseQuery = query.toLowerCase();
+    return fileName -> fileName.toLowerCase().contains(lowerCaseQuery);
   }
 
   /**
-   * Recursively find a java regex pattern {@link Pattern} in the file names and publish the result
+   * Find a java regex pattern {@link Pattern} in the file names
    *
-   * @param file the current file
    * @param pattern the compiled java regex
    */
-  private void searchRegExFind(HybridFile file, final Pattern pattern) {
-    search(file, fileName -> pattern.matcher(fileName).find());
+  static SearchFilter getRegExFindFilter(final Pattern pattern) {
+    return fileName -> pattern.matcher(fileName).find();
   }
 
   /**
-   * Recursively match a java regex pattern {@link Pattern} with the file names and publish the
-   * result
+   * Match a java regex pattern {@link Pattern} with the file names
    *
-   * @param file the current file
    * @param pattern the compiled java regex
    */
-  private void searchRegExMatch(HybridFile file, final Pattern pattern) {
-    search(file, fileName -> pattern.matcher(fileName).matches());
+  static SearchFilter getRegExMatchFilter(final Pattern pattern) {
+    return fileName -> pattern.matcher(fileName).matches();
   }
 
   /**
@@ -28,6 +28,7 @@ import org.apache.commons.compress.archivers.ArchiveException;
 
 import com.amaze.filemanager.adapters.data.CompressedObjectParcelable;
 import com.amaze.filemanager.asynchronous.asynctasks.AsyncTaskResult;
+import com.amaze.filemanager.filesystem.compressed.showcontents.ArchiveIndex;
 import com.amaze.filemanager.utils.OnAsyncTaskFinished;
 
 import android.os.AsyncTask;
@@ -37,12 +38,17 @@ import androidx.annotation.NonNull;
 public abstract class CompressedHelperTask
     extends AsyncTask<Void, IOException, AsyncTaskResult<ArrayList<CompressedObjectParcelable>>> {
 
+  private String archivePath, relativePath;
   private boolean createBackItem;
   private OnAsyncTaskFinished<AsyncTaskResult<ArrayList<CompressedObjectParcelable>>> onFinish;
 
   CompressedHelperTask(
+      String archivePath,
+      String relativePath,
       boolean goBack,
       OnAsyncTaskFinished<AsyncTaskResult<ArrayList<CompressedObjectParcelable>>> l) {
+    this.archivePath = archivePath;
+    this.relativePath = relativePath;
     createBackItem = goBack;
     onFinish = l;
   }
@@ -55,7 +61,13 @@ public abstract class CompressedHelperTask
     if (createBackItem) elements.add(0, new CompressedObjectParcelable());
 
     try {
-      addElements(elements);
+      ArchiveIndex index = ArchiveIndex.get(archivePath);
+      if (index == null) {
+        index = new ArchiveIndex();
+        addElements(index);
+        ArchiveIndex.put(archivePath, index);
+      }
+      elements.addAll(index.list(relativePath));
       Collections.sort(elements, new CompressedObjectParcelable.Sorter());
 
       return new AsyncTaskResult<>(elements);
@@ -71,6 +83,9 @@ public abstract class CompressedHelperTask
     onFinish.onAsyncTaskFinished(zipEntries);
   }
 
-  abstract void addElements(@NonNull ArrayList<CompressedObjectParcelable> elements)
-      throws ArchiveException;
+  /**
+   * Add all entries of the archive to {@code index}, this is only called when the archive wasn't
+   * indexed already. Separator of the entry paths must be "/".
+   */
+  abstract void addElements(@NonNull ArchiveIndex index) throws ArchiveException;
 }
@@ -20,8 +20,6 @@
 
 package com.amaze.filemanager.asynchronous.asynctasks.compress;
 
-import static com.amaze.filemanager.filesystem.compressed.CompressedHelper.SEPARATOR;
-
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.lang.ref.WeakReference;
@@ -37,6 +35,7 @@ import com.amaze.filemanager.adapters.data.CompressedObjectParcelable;
 import com.amaze.filemanager.application.AppConfig;
 import com.amaze.filemanager.asynchronous.asynctasks.AsyncTaskResult;
 import com.amaze.filemanager.filesystem.compressed.CompressedHelper;
+import com.amaze.filemanager.filesystem.compressed.showcontents.ArchiveIndex;
 import com.amaze.filemanager.utils.OnAsyncTaskFinished;
 
 import android.content.Context;
@@ -46,7 +45,7 @@ import androidx.annotation.NonNull;
 public class GzipHelperTask extends CompressedHelperTask {
 
   private WeakReference<Context> context;
-  private String filePath, relativePath;
+  private String filePath;
 
   public GzipHelperTask(
       Context context,
@@ -54,15 +53,13 @@ public class GzipHelperTask extends CompressedHelperTask {
       String relativePath,
       boolean goBack,
       OnAsyncTaskFinished<AsyncTaskResult<ArrayList<CompressedObjectParcelable>>> l) {
-    super(goBack, l);
+    super(filePath, relativePath, goBack, l);
     this.context = new WeakReference<>(context);
     this.filePath = filePath;
-    this.relativePath = relativePath;
   }
 
   @Override
-  void addElements(@NonNull ArrayList<CompressedObjectParcelable> elements)
-      throws ArchiveException {
+  void addElements(@NonNull ArchiveIndex index) throws ArchiveException {
     TarArchiveInputStream tarInputStream = null;
     try {
       tarInputStream =
@@ -76,21 +73,12 @@ public class GzipHelperTask extends CompressedHelperTask {
               context.get(), context.get().getString(R.string.multiple_invalid_archive_entries));
           continue;
         }
-        if (name.endsWith(SEPARATOR)) name = name.substring(0, name.length() - 1);
-
-        boolean isInBaseDir = relativePath.equals("") && !name.contains(SEPARATOR);
-        boolean isInRelativeDir =
-            name.contains(SEPARATOR)
-                && name.substring(0, name.lastIndexOf(SEPARATOR)).equals(relativePath);
-
-        if (isInBaseDir || isInRelativeDir) {
-          elements.add(
-              new CompressedObjectParcelable(
-                  entry.getName(),
-                  entry.getLastModifiedDate().getTime(),
-                  entry.getSize(),
-                  entry.isDirectory()));
-        }
+        index.add(
+            new CompressedObjectParcelable(
+                entry.getName(),
+                entry.getLastModifiedDate().getTime(),
+                entry.getSize(),
+                entry.isDirectory()));
       }
     } catch (IOException e) {
       throw new ArchiveException(String.format("Tarball archive %s is corrupt", filePath), e);
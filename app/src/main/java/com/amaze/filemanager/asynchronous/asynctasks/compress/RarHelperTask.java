@@ -29,6 +29,7 @@ import org.apache.commons.compress.archivers.ArchiveException;
 import com.amaze.filemanager.adapters.data.CompressedObjectParcelable;
 import com.amaze.filemanager.asynchronous.asynctasks.AsyncTaskResult;
 import com.amaze.filemanager.filesystem.compressed.CompressedHelper;
+import com.amaze.filemanager.filesystem.compressed.showcontents.ArchiveIndex;
 import com.amaze.filemanager.filesystem.compressed.showcontents.helpers.RarDecompressor;
 import com.amaze.filemanager.utils.OnAsyncTaskFinished;
 import com.github.junrar.Archive;
@@ -40,7 +41,6 @@ import androidx.annotation.NonNull;
 public class RarHelperTask extends CompressedHelperTask {
 
   private String fileLocation;
-  private String relativeDirectory;
 
   /**
    * AsyncTask to load RAR file items.
@@ -53,39 +53,26 @@ public class RarHelperTask extends CompressedHelperTask {
       String dir,
       boolean goBack,
       OnAsyncTaskFinished<AsyncTaskResult<ArrayList<CompressedObjectParcelable>>> l) {
-    super(goBack, l);
+    super(realFileDirectory, dir, goBack, l);
     fileLocation = realFileDirectory;
-    relativeDirectory = dir;
   }
 
   @Override
-  void addElements(@NonNull ArrayList<CompressedObjectParcelable> elements)
-      throws ArchiveException {
+  void addElements(@NonNull ArchiveIndex index) throws ArchiveException {
     try {
       Archive zipfile = new Archive(new File(fileLocation));
-      String relativeDirDiffSeparator = relativeDirectory.replace(CompressedHelper.SEPARATOR, "\\");
 
       for (FileHeader rarArchive : zipfile.getFileHeaders()) {
         String name = rarArchive.getFileNameString(); // This uses \ as separator, not /
         if (!CompressedHelper.isEntryPathValid(name)) {
           continue;
         }
-        boolean isInBaseDir =
-            (relativeDirDiffSeparator == null || relativeDirDiffSeparator.equals(""))
-                && !name.contains("\\");
-        boolean isInRelativeDir =
-            relativeDirDiffSeparator != null
-                && name.contains("\\")
-                && name.substring(0, name.lastIndexOf("\\")).equals(relativeDirDiffSeparator);
-
-        if (isInBaseDir || isInRelativeDir) {
-          elements.add(
-              new CompressedObjectParcelable(
-                  RarDecompressor.convertName(rarArchive),
-                  0,
-                  rarArchive.getDataSize(),
-                  rarArchive.isDirectory()));
-        }
+        index.add(
+            new CompressedObjectParcelable(
+                RarDecompressor.convertName(rarArchive),
+                0,
+                rarArchive.getDataSize(),
+                rarArchive.isDirectory()));
       }
     } catch (RarException | IOException e) {
       throw new ArchiveException(String.format("RAR archive %s is corrupt", fileLocation));
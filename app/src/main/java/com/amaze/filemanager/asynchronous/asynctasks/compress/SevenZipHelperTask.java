@@ -20,8 +20,6 @@
 
 package com.amaze.filemanager.asynchronous.asynctasks.compress;
 
-import static com.amaze.filemanager.filesystem.compressed.CompressedHelper.SEPARATOR;
-
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
@@ -35,6 +33,7 @@ import com.amaze.filemanager.adapters.data.CompressedObjectParcelable;
 import com.amaze.filemanager.application.AppConfig;
 import com.amaze.filemanager.asynchronous.asynctasks.AsyncTaskResult;
 import com.amaze.filemanager.filesystem.compressed.ArchivePasswordCache;
+import com.amaze.filemanager.filesystem.compressed.showcontents.ArchiveIndex;
 import com.amaze.filemanager.filesystem.compressed.sevenz.SevenZArchiveEntry;
 import com.amaze.filemanager.filesystem.compressed.sevenz.SevenZFile;
 import com.amaze.filemanager.ui.activities.MainActivity;
@@ -47,7 +46,7 @@ import androidx.annotation.NonNull;
 
 public class SevenZipHelperTask extends CompressedHelperTask {
 
-  private String filePath, relativePath;
+  private String filePath;
 
   private boolean paused = false;
 
@@ -56,14 +55,12 @@ public class SevenZipHelperTask extends CompressedHelperTask {
       String relativePath,
       boolean goBack,
       OnAsyncTaskFinished<AsyncTaskResult<ArrayList<CompressedObjectParcelable>>> l) {
-    super(goBack, l);
+    super(filePath, relativePath, goBack, l);
     this.filePath = filePath;
-    this.relativePath = relativePath;
   }
 
   @Override
-  void addElements(@NonNull ArrayList<CompressedObjectParcelable> elements)
-      throws ArchiveException {
+  void addElements(@NonNull ArchiveIndex index) throws ArchiveException {
     while (true) {
       if (paused) continue;
 
@@ -76,20 +73,12 @@ public class SevenZipHelperTask extends CompressedHelperTask {
                 : new SevenZFile(new File(filePath));
 
         for (SevenZArchiveEntry entry : sevenzFile.getEntries()) {
-          String name = entry.getName();
-          boolean isInBaseDir = relativePath.equals("") && !name.contains(SEPARATOR);
-          boolean isInRelativeDir =
-              name.contains(SEPARATOR)
-                  && name.substring(0, name.lastIndexOf(SEPARATOR)).equals(relativePath);
-
-          if (isInBaseDir || isInRelativeDir) {
-            elements.add(
-                new CompressedObjectParcelable(
-                    entry.getName(),
-                    entry.getLastModifiedDate().getTime(),
-                    entry.getSize(),
-                    entry.isDirectory()));
-          }
+          index.add(
+              new CompressedObjectParcelable(
+                  entry.getName(),
+                  entry.getLastModifiedDate().getTime(),
+                  entry.getSize(),
+                  entry.isDirectory()));
         }
         paused = false;
         break;
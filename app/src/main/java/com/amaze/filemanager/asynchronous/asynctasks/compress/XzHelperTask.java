@@ -20,8 +20,6 @@
 
 package com.amaze.filemanager.asynchronous.asynctasks.compress;
 
-import static com.amaze.filemanager.filesystem.compressed.CompressedHelper.SEPARATOR;
-
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.util.ArrayList;
@@ -33,27 +31,26 @@ import org.apache.commons.compress.compressors.xz.XZCompressorInputStream;
 
 import com.amaze.filemanager.adapters.data.CompressedObjectParcelable;
 import com.amaze.filemanager.asynchronous.asynctasks.AsyncTaskResult;
+import com.amaze.filemanager.filesystem.compressed.showcontents.ArchiveIndex;
 import com.amaze.filemanager.utils.OnAsyncTaskFinished;
 
 import androidx.annotation.NonNull;
 
 public class XzHelperTask extends CompressedHelperTask {
 
-  private String filePath, relativePath;
+  private String filePath;
 
   public XzHelperTask(
       String filePath,
       String relativePath,
       boolean goBack,
       OnAsyncTaskFinished<AsyncTaskResult<ArrayList<CompressedObjectParcelable>>> l) {
-    super(goBack, l);
+    super(filePath, relativePath, goBack, l);
     this.filePath = filePath;
-    this.relativePath = relativePath;
   }
 
   @Override
-  void addElements(@NonNull ArrayList<CompressedObjectParcelable> elements)
-      throws ArchiveException {
+  void addElements(@NonNull ArchiveIndex index) throws ArchiveException {
     TarArchiveInputStream tarInputStream = null;
     try {
       tarInputStream =
@@ -61,22 +58,12 @@ public class XzHelperTask extends CompressedHelperTask {
 
       TarArchiveEntry entry;
       while ((entry = tarInputStream.getNextTarEntry()) != null) {
-        String name = entry.getName();
-        if (name.endsWith(SEPARATOR)) name = name.substring(0, name.length() - 1);
-
-        boolean isInBaseDir = relativePath.equals("") && !name.contains(SEPARATOR);
-        boolean isInRelativeDir =
-            name.contains(SEPARATOR)
-                && name.substring(0, name.lastIndexOf(SEPARATOR)).equals(relativePath);
-
-        if (isInBaseDir || isInRelativeDir) {
-          elements.add(
-              new CompressedObjectParcelable(
-                  entry.getName(),
-                  entry.getLastModifiedDate().getTime(),
-                  entry.getSize(),
-                  entry.isDirectory()));
-        }
+        index.add(
+            new CompressedObjectParcelable(
+                entry.getName(),
+                entry.getLastModifiedDate().getTime(),
+                entry.getSize(),
+                entry.isDirectory()));
       }
     } catch (IOException e) {
       throw new ArchiveException(String.format("XZ archive %s is corrupt", filePath));
@@ -20,7 +20,6 @@
 
 package com.amaze.filemanager.asynchronous.asynctasks.compress;
 
-import java.io.File;
 import java.lang.ref.WeakReference;
 import java.util.ArrayList;
 import java.util.Iterator;
@@ -32,6 +31,7 @@ import com.amaze.filemanager.adapters.data.CompressedObjectParcelable;
 import com.amaze.filemanager.application.AppConfig;
 import com.amaze.filemanager.asynchronous.asynctasks.AsyncTaskResult;
 import com.amaze.filemanager.filesystem.compressed.CompressedHelper;
+import com.amaze.filemanager.filesystem.compressed.showcontents.ArchiveIndex;
 import com.amaze.filemanager.utils.OnAsyncTaskFinished;
 
 import android.content.Context;
@@ -47,7 +47,6 @@ public class ZipHelperTask extends CompressedHelperTask {
 
   private WeakReference<Context> context;
   private Uri fileLocation;
-  private String relativeDirectory;
 
   /**
    * AsyncTask to load ZIP file items.
@@ -61,18 +60,14 @@ public class ZipHelperTask extends CompressedHelperTask {
       String dir,
       boolean goback,
       OnAsyncTaskFinished<AsyncTaskResult<ArrayList<CompressedObjectParcelable>>> l) {
-    super(goback, l);
+    super(Uri.parse(realFileDirectory).getPath(), dir, goback, l);
     context = new WeakReference<>(c);
     fileLocation = Uri.parse(realFileDirectory);
-    relativeDirectory = dir;
   }
 
   @Override
-  void addElements(@NonNull ArrayList<CompressedObjectParcelable> elements)
-      throws ArchiveException {
+  void addElements(@NonNull ArchiveIndex index) throws ArchiveException {
     try {
-      ArrayList<CompressedObjectParcelable> wholelist = new ArrayList<>();
-
       ZipFile zipfile = new ZipFile(fileLocation.getPath());
       for (Iterator<FileHeader> headers = zipfile.getFileHeaders().iterator();
           headers.hasNext(); ) {
@@ -82,68 +77,15 @@ public class ZipHelperTask extends CompressedHelperTask {
               context.get(), context.get().getString(R.string.multiple_invalid_archive_entries));
           continue;
         }
-        wholelist.add(
+        String path = entry.getFileName();
+        if (path.startsWith("/")) path = path.substring(1);
+        index.add(
             new CompressedObjectParcelable(
-                entry.getFileName(),
+                path,
                 entry.getLastModFileTime(),
                 entry.getUncompressedSize(),
                 entry.isDirectory()));
       }
-
-      ArrayList<String> strings = new ArrayList<>();
-
-      for (CompressedObjectParcelable entry : wholelist) {
-        File file = new File(entry.path);
-        if (relativeDirectory == null || relativeDirectory.trim().length() == 0) {
-          String y = entry.path;
-          if (y.startsWith("/")) y = y.substring(1, y.length());
-          if (file.getParent() == null
-              || file.getParent().length() == 0
-              || file.getParent().equals("/")) {
-            if (!strings.contains(y)) {
-              elements.add(
-                  new CompressedObjectParcelable(y, entry.date, entry.size, entry.directory));
-              strings.add(y);
-            }
-          } else {
-            String path = y.substring(0, y.indexOf("/") + 1);
-            if (!strings.contains(path)) {
-              CompressedObjectParcelable zipObj =
-                  new CompressedObjectParcelable(path, entry.date, entry.size, true);
-              strings.add(path);
-              elements.add(zipObj);
-            }
-          }
-        } else {
-          String y = entry.path;
-          if (entry.path.startsWith("/")) y = y.substring(1, y.length());
-
-          if (file.getParent() != null
-              && (file.getParent().equals(relativeDirectory)
-                  || file.getParent().equals("/" + relativeDirectory))) {
-            if (!strings.contains(y)) {
-              elements.add(
-                  new CompressedObjectParcelable(y, entry.date, entry.size, entry.directory));
-              strings.add(y);
-            }
-          } else {
-            if (y.startsWith(relativeDirectory + "/")
-                && y.length() > relativeDirectory.length() + 1) {
-              String path1 = y.substring(relativeDirectory.length() + 1, y.length());
-
-              int index = relativeDirectory.length() + 1 + path1.indexOf("/");
-              String path = y.substring(0, index + 1);
-              if (!strings.contains(path)) {
-                CompressedObjectParcelable zipObj =
-                    new CompressedObjectParcelable(
-                        y.substring(0, index + 1), entry.date, entry.size, true);
-                strings.add(path);
-                elements.add(zipObj);
-              }
-            }
-          }
-        }
-      }
     } catch (ZipException e) {
       throw new ArchiveException("Zip file is corrupt", e);
     }
@@ -20,12 +20,18 @@
 
 package com.amaze.filemanager.asynchronous.handlers;
 
-import java.io.File;
 import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
 
 import com.amaze.filemanager.adapters.RecyclerAdapter;
+import com.amaze.filemanager.adapters.data.LayoutElementParcelable;
+import com.amaze.filemanager.database.SortHandler;
 import com.amaze.filemanager.filesystem.CustomFileObserver;
 import com.amaze.filemanager.filesystem.HybridFile;
+import com.amaze.filemanager.filesystem.files.FileListSorter;
 import com.amaze.filemanager.ui.fragments.MainFragment;
 
 import android.os.Handler;
@@ -57,44 +63,88 @@ public class FileHandler extends Handler {
       return;
     }
 
-    String path = (String) msg.obj;
-
     switch (msg.what) {
       case CustomFileObserver.GOBACK:
         main.goBack();
         break;
-      case CustomFileObserver.NEW_ITEM:
-        HybridFile fileCreated = new HybridFile(main.openMode, main.getCurrentPath() + "/" + path);
-        main.getElementsList().add(fileCreated.generateLayoutElement(main.getContext(), useThumbs));
-        break;
-      case CustomFileObserver.DELETED_ITEM:
-        for (int i = 0; i < main.getElementsList().size(); i++) {
-          File currentFile = new File(main.getElementsList().get(i).desc);
-
-          if (currentFile.getName().equals(path)) {
-            main.getElementsList().remove(i);
-            break;
-          }
-        }
+      case CustomFileObserver.CHANGED:
+        applyChanges(main, (CustomFileObserver.Changes) msg.obj);
         break;
       default: // Pass along other messages from the UI
         super.handleMessage(msg);
         return;
     }
 
+    main.computeScroll();
+  }
+
+  /**
+   * Updates the listing with a batch of changes. Rows are matched by name through a set, so a batch
+   * takes a single pass over the listing, and only the changed rows of the adapter are notified.
+   */
+  private void applyChanges(MainFragment main, CustomFileObserver.Changes changes) {
+    ArrayList<LayoutElementParcelable> elements = main.getElementsList();
+
+    // a file that was added again replaces its row
+    Set<String> removedNames = new HashSet<>(changes.removed);
+    removedNames.addAll(changes.added);
+
+    Set<String> removedPaths = new HashSet<>();
+    ArrayList<LayoutElementParcelable> remaining = new ArrayList<>(elements.size());
+    for (LayoutElementParcelable element : elements) {
+      if (!element.isBack && removedNames.contains(getName(element.desc))) {
+        removedPaths.add(element.desc);
+      } else {
+        remaining.add(element);
+      }
+    }
+
+    ArrayList<LayoutElementParcelable> added = new ArrayList<>(changes.added.size());
+    for (String name : changes.added) {
+      HybridFile fileCreated = new HybridFile(main.openMode, main.getCurrentPath() + "/" + name);
+      if (fileCreated.getFile().exists()) {
+        added.add(fileCreated.generateLayoutElement(main.getContext(), useThumbs));
+      }
+    }
+
+    int sortType = SortHandler.getSortType(main.getContext(), main.getCurrentPath());
+    FileListSorter sorter =
+        new FileListSorter(
+            main.dsort, FileListSorter.getSortBy(sortType), FileListSorter.getSortOrder(sortType));
+    Collections.sort(added, sorter);
+
+    // same order as RecyclerAdapter.addItemsSorted()
+    elements.clear();
+    int addedIndex = 0;
+    for (LayoutElementParcelable element : remaining) {
+      while (!element.isBack
+          && addedIndex < added.size()
+          && sorter.compare(added.get(addedIndex), element) < 0) {
+        elements.add(added.get(addedIndex++));
+      }
+      elements.add(element);
+    }
+    while (addedIndex < added.size()) {
+      elements.add(added.get(addedIndex++));
+    }
+
     if (listView.getVisibility() == View.VISIBLE) {
-      if (main.getElementsList().size() == 0) {
+      if (elements.size() == 0) {
         // no item left in list, recreate views
         main.reloadListElements(true, main.results, !main.IS_LIST);
       } else {
-        // we already have some elements in list view, invalidate the adapter
-        ((RecyclerAdapter) listView.getAdapter()).setItems(listView, main.getElementsList());
+        // we already have some elements in list view, only notify the changed rows
+        RecyclerAdapter adapter = (RecyclerAdapter) listView.getAdapter();
+        adapter.removeItems(removedPaths);
+        adapter.addItemsSorted(added, sorter);
       }
     } else {
       // there was no list view, means the directory was empty
       main.loadlist(main.getCurrentPath(), true, main.openMode);
     }
+  }
 
-    main.computeScroll();
+  private static String getName(String path) {
+    return path.substring(path.lastIndexOf('/') + 1);
   }
 }
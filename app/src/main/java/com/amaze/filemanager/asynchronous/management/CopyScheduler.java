@@ -0,0 +1,208 @@
+/*
+ * Copyright (C) 2014-2020 Arpit Khurana <arpitkh96@gmail.com>, Vishal Nehra <vishalmeham2@gmail.com>,
+ * Emmanuel Messulam<emmanuelbendavid@gmail.com>, Raymond Lai <airwave209gt at gmail.com> and Contributors.
+ *
+ * This file is part of Amaze File Manager.
+ *
+ * Amaze File Manager is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.amaze.filemanager.asynchronous.management;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.amaze.filemanager.utils.OpenMode;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Runs independent file transfers of an operation on a pool of worker threads, so that copying
+ * many small files isn't bound by the latency of each one (SMB, SFTP).
+ *
+ * <p>Whatever has to happen in order, like creating a folder before copying into it, is done by
+ * the thread calling {@link #submit(OpenMode, Transfer)} before submitting the transfers that need
+ * it. Transfers to the same kind of target are bounded by {@link #getLimit(OpenMode, int)}, and the
+ * submitting thread blocks once enough transfers are queued, so that walking a big tree doesn't
+ * hold all of it in memory.
+ *
+ * <p>Transfers that threw or never ran are returned by {@link #shutdown()}, so that the caller
+ * doesn't take them for done.
+ *
+ * @param <T> the kind of transfers, to map the ones returned by {@link #shutdown()} back to files
+ */
+public class CopyScheduler<T extends CopyScheduler.Transfer> {
+
+  private static final String TAG = CopyScheduler.class.getSimpleName();
+
+  public static final int DEFAULT_WORKERS = 4;
+
+  /** Transfers queued per worker before {@link #submit(OpenMode, Transfer)} blocks */
+  private static final int QUEUED_PER_WORKER = 4;
+
+  private final int workers;
+  private final ExecutorService executor;
+  private final Semaphore queued;
+  private final EnumMap<OpenMode, Semaphore> targetLimits = new EnumMap<>(OpenMode.class);
+  private final Object pendingLock = new Object();
+  private int pending = 0;
+  private final List<T> failed = new ArrayList<>();
+
+  /** @param workers number of transfers run at the same time, 1 copies one file at a time */
+  public CopyScheduler(int workers) {
+    this.workers = Math.max(1, workers);
+    this.queued = new Semaphore(this.workers * QUEUED_PER_WORKER);
+
+    final AtomicInteger threadCount = new AtomicInteger();
+    final ThreadFactory threadFactory =
+        runnable -> {
+          Thread thread = new Thread(runnable, TAG + "-" + threadCount.incrementAndGet());
+          thread.setPriority(Thread.NORM_PRIORITY - 1);
+          return thread;
+        };
+    executor = Executors.newFixedThreadPool(this.workers, threadFactory);
+  }
+
+  /**
+   * Most transfers to targets of {@code openMode} that run at the same time. Local storage takes
+   * all workers, network shares a few, a USB drive only one because it is slower when accessed
+   * concurrently.
+   */
+  static int getLimit(@NonNull OpenMode openMode, int workers) {
+    switch (openMode) {
+      case OTG:
+        return 1;
+      case DROPBOX:
+      case BOX:
+      case GDRIVE:
+      case ONEDRIVE:
+        return Math.min(workers, 2);
+      case SMB:
+      case SFTP:
+        return Math.min(workers, 4);
+      default:
+        return workers;
+    }
+  }
+
+  /**
+   * Queues a transfer, blocking while too many are queued already.
+   *
+   * @param targetMode the mode of the file written by the transfer
+   */
+  public void submit(@NonNull OpenMode targetMode, @NonNull T transfer)
+      throws InterruptedException {
+    final Semaphore targetLimit = getTargetLimit(targetMode);
+    queued.acquire();
+    synchronized (pendingLock) {
+      pending++;
+    }
+
+    executor.execute(new ScheduledTransfer(targetLimit, transfer));
+  }
+
+  /** Waits until every submitted transfer has finished */
+  public void awaitCompletion() throws InterruptedException {
+    synchronized (pendingLock) {
+      while (pending > 0) {
+        pendingLock.wait();
+      }
+    }
+  }
+
+  /**
+   * Stops the workers, transfers still queued are dropped.
+   *
+   * @return the transfers that threw or didn't run, empty if every one finished
+   */
+  @NonNull
+  @SuppressWarnings("unchecked") // only ScheduledTransfers are queued
+  public List<T> shutdown() {
+    List<Runnable> dropped = executor.shutdownNow();
+    List<T> notDone;
+    synchronized (failed) {
+      notDone = new ArrayList<>(failed);
+    }
+    for (Runnable runnable : dropped) {
+      notDone.add(((ScheduledTransfer) runnable).transfer);
+    }
+    return notDone;
+  }
+
+  private synchronized Semaphore getTargetLimit(@NonNull OpenMode targetMode) {
+    Semaphore limit = targetLimits.get(targetMode);
+    if (limit == null) {
+      limit = new Semaphore(getLimit(targetMode, workers));
+      targetLimits.put(targetMode, limit);
+    }
+    return limit;
+  }
+
+  private class ScheduledTransfer implements Runnable {
+    private final Semaphore targetLimit;
+    private final T transfer;
+
+    ScheduledTransfer(@NonNull Semaphore targetLimit, @NonNull T transfer) {
+      this.targetLimit = targetLimit;
+      this.transfer = transfer;
+    }
+
+    @Override
+    public void run() {
+      try {
+        targetLimit.acquire();
+        try {
+          transfer.run();
+        } finally {
+          targetLimit.release();
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        addFailed(transfer);
+      } catch (RuntimeException e) {
+        Log.e(TAG, "Transfer failed", e);
+        addFailed(transfer);
+      } finally {
+        queued.release();
+        synchronized (pendingLock) {
+          if (--pending == 0) {
+            pendingLock.notifyAll();
+          }
+        }
+      }
+    }
+  }
+
+  private void addFailed(@NonNull T transfer) {
+    synchronized (failed) {
+      failed.add(transfer);
+    }
+  }
+
+  /**
+   * A transfer of one file, failures have to be handled by the transfer itself, those that throw
+   * are returned by {@link #shutdown()}
+   */
+  public interface Transfer {
+    void run();
+  }
+}
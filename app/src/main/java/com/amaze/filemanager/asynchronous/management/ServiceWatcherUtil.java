@@ -23,56 +23,49 @@ package com.amaze.filemanager.asynchronous.management;
 /**
  * Created by vishal on 4/1/17.
  *
- * <p>Helper class providing helper methods to manage Service startup and it's progress Be advised -
- * this class can only handle progress with one object at a time. Hence, class also provides
- * convenience methods to serialize the service startup.
+ * <p>Helper class providing helper methods to manage Service startup and it's progress. Each
+ * operation reports its progress through its own {@link ProgressHandler}, so different kinds of
+ * operations can run at the same time; operations of the same service are serialized by {@link
+ * #runService(Context, Intent)}.
  */
 import static com.amaze.filemanager.asynchronous.management.ServiceWatcherUtil.ServiceStatusCallbacks.*;
 
-import java.lang.ref.WeakReference;
+import java.util.HashMap;
+import java.util.LinkedList;
 import java.util.concurrent.*;
 
 import com.amaze.filemanager.R;
 import com.amaze.filemanager.asynchronous.AbstractRepeatingRunnable;
-import com.amaze.filemanager.asynchronous.services.AbstractProgressiveService;
 import com.amaze.filemanager.ui.notifications.NotificationConstants;
 import com.amaze.filemanager.utils.ProgressHandler;
 
 import android.app.NotificationManager;
+import android.app.Service;
 import android.content.Context;
 import android.content.Intent;
 import android.text.format.Formatter;
 
+import androidx.annotation.NonNull;
 import androidx.core.app.NotificationCompat;
 
 public class ServiceWatcherUtil {
 
-  public static int state = STATE_UNSET;
+  private ProgressHandler progressHandler;
+
+  private AbstractRepeatingRunnable watcherRepeatingRunnable;
 
   /**
-   * Position of byte in total byte size to be copied. This variable CANNOT be updated from more
-   * than one thread simultaneously. This variable should only be updated from an {@link
-   * AbstractProgressiveService}'s background thread.
-   *
-   * @see #postWaiting(Context)
+   * Intents of the operations started through {@link #runService(Context, Intent)}, by service.
+   * The head of each queue is running, the others wait for it to finish.
    */
-  public static volatile long position = 0L;
-
-  private ProgressHandler progressHandler;
+  private static final HashMap<String, LinkedList<Intent>> pendingIntents = new HashMap<>();
 
-  private static AbstractRepeatingRunnable watcherRepeatingRunnable;
   private static NotificationManager notificationManager;
   private static NotificationCompat.Builder builder;
 
-  private static ConcurrentLinkedQueue<Intent> pendingIntents = new ConcurrentLinkedQueue<>();
-
-  private static int haltCounter = -1;
-
   /** @param progressHandler to publish progress after certain delay */
   public ServiceWatcherUtil(ProgressHandler progressHandler) {
     this.progressHandler = progressHandler;
-    position = 0L;
-    haltCounter = -1;
   }
 
   /**
@@ -88,6 +81,9 @@ public class ServiceWatcherUtil {
     private final ServiceStatusCallbacks serviceStatusCallbacks;
     private final ProgressHandler progressHandler;
 
+    private int state = STATE_UNSET;
+    private int haltCounter = -1;
+
     public ServiceWatcherRepeatingRunnable(
         boolean startImmediately,
         ServiceStatusCallbacks serviceStatusCallbacks,
@@ -105,6 +101,8 @@ public class ServiceWatcherUtil {
         return;
       }
 
+      final long position = progressHandler.getPosition();
+
       if (position == progressHandler.getWrittenSize()
           && (state != STATE_HALTED && ++haltCounter > 5)) {
         // new position is same as the last second position, and halt counter is past threshold
@@ -122,13 +120,13 @@ public class ServiceWatcherUtil {
           // we passed at the beginning is never reached
           // we try to get a less precise size and make our decision based on that
           progressHandler.addWrittenLength(progressHandler.getTotalSize());
-          if (!pendingIntents.isEmpty()) pendingIntents.remove();
           cancel(false);
           return;
         }
 
         haltCounter = 0;
         state = STATE_HALTED;
+        progressHandler.setHalted(true);
         serviceStatusCallbacks.progressHalted();
       } else if (position != progressHandler.getWrittenSize()) {
 
@@ -136,6 +134,7 @@ public class ServiceWatcherUtil {
 
           state = STATE_RESUMED;
           haltCounter = 0;
+          progressHandler.setHalted(false);
           serviceStatusCallbacks.progressResumed();
         } else {
 
@@ -152,7 +151,6 @@ public class ServiceWatcherUtil {
       if (position == progressHandler.getTotalSize() || progressHandler.getCancelled()) {
         // process complete, free up resources
         // we've finished the work or process cancelled
-        if (!pendingIntents.isEmpty()) pendingIntents.remove();
         cancel(false);
       }
     }
@@ -170,83 +168,81 @@ public class ServiceWatcherUtil {
   }
 
   /**
-   * Convenience method to check whether another service is working in background If a service is
-   * found working (by checking {@link #watcherRepeatingRunnable} for it's state) then we wait for
-   * an interval of 5 secs, before checking on it again.
+   * Starts the service of {@code intent}, unless the same service is already working on another
+   * operation. The operation then waits for the ones before it to finish, see {@link
+   * #onServiceFinished(Context, Class)}. Other services are started right away, each one reports
+   * its progress separately.
    *
    * <p>Be advised - this method is not sure to start a new service, especially when app has been
    * closed as there are higher chances for android system to GC the thread when it is running low
    * on memory
    */
   public static synchronized void runService(final Context context, final Intent intent) {
-    switch (pendingIntents.size()) {
-      case 0:
-        context.startService(intent);
-        break;
-      case 1:
-        // initialize waiting handlers
-        pendingIntents.add(intent);
-        postWaiting(context);
-        break;
-      case 2:
-        // to avoid notifying repeatedly
-        pendingIntents.add(intent);
-        notificationManager.notify(NotificationConstants.WAIT_ID, builder.build());
-        break;
-      default:
-        pendingIntents.add(intent);
-        break;
+    final String service = getServiceName(intent);
+    LinkedList<Intent> intents = pendingIntents.get(service);
+    if (intents == null) {
+      intents = new LinkedList<>();
+      pendingIntents.put(service, intents);
+    }
+
+    intents.add(intent);
+    if (intents.size() == 1) {
+      context.startService(intent);
+    } else {
+      postWaiting(context);
     }
   }
 
   /**
-   * Helper method to {@link #runService(Context, Intent)} Starts the wait watcher thread if not
-   * already started. Halting condition depends on the state of {@link #watcherRepeatingRunnable}
+   * Called when a service stopped, starts the next operation waiting for the same service if any.
    */
-  private static synchronized void postWaiting(final Context context) {
-    notificationManager =
-        (NotificationManager) context.getSystemService(Context.NOTIFICATION_SERVICE);
-    builder =
-        new NotificationCompat.Builder(context, NotificationConstants.CHANNEL_NORMAL_ID)
-            .setContentTitle(context.getString(R.string.waiting_title))
-            .setContentText(context.getString(R.string.waiting_content))
-            .setAutoCancel(false)
-            .setSmallIcon(R.drawable.ic_all_inclusive_white_36dp)
-            .setProgress(0, 0, true);
-
-    NotificationConstants.setMetadata(context, builder, NotificationConstants.TYPE_NORMAL);
-
-    new WaitNotificationThread(context, true);
-  }
+  public static synchronized void onServiceFinished(
+      @NonNull Context context, @NonNull Class<? extends Service> serviceClass) {
+    final LinkedList<Intent> intents = pendingIntents.get(serviceClass.getName());
+    if (intents == null || intents.isEmpty()) {
+      return;
+    }
 
-  private static final class WaitNotificationThread extends AbstractRepeatingRunnable {
-    private final WeakReference<Context> context;
+    intents.remove();
+    if (!intents.isEmpty()) {
+      context.startService(intents.element());
+    }
 
-    private WaitNotificationThread(Context context, boolean startImmediately) {
-      super(0, 1, TimeUnit.SECONDS, startImmediately);
-      this.context = new WeakReference<>(context);
+    if (notificationManager != null && !isAnyWaiting()) {
+      notificationManager.cancel(NotificationConstants.WAIT_ID);
     }
+  }
 
-    @Override
-    public void run() {
-      if (watcherRepeatingRunnable == null || !watcherRepeatingRunnable.isAlive()) {
-        if (pendingIntents.size() == 0) {
-          cancel(false);
-          return;
-        } else {
-          if (pendingIntents.size() == 1) {
-            notificationManager.cancel(NotificationConstants.WAIT_ID);
-          }
-
-          final Context context = this.context.get();
-          if (context != null) {
-            context.startService(pendingIntents.element());
-            cancel(true);
-            return;
-          }
-        }
+  private static String getServiceName(@NonNull Intent intent) {
+    return intent.getComponent() != null ? intent.getComponent().getClassName() : "";
+  }
+
+  private static boolean isAnyWaiting() {
+    for (LinkedList<Intent> intents : pendingIntents.values()) {
+      if (intents.size() > 1) {
+        return true;
       }
     }
+    return false;
+  }
+
+  /** Helper method to {@link #runService(Context, Intent)}, shows that operations are waiting */
+  private static synchronized void postWaiting(final Context context) {
+    if (notificationManager == null) {
+      notificationManager =
+          (NotificationManager) context.getSystemService(Context.NOTIFICATION_SERVICE);
+      builder =
+          new NotificationCompat.Builder(context, NotificationConstants.CHANNEL_NORMAL_ID)
+              .setContentTitle(context.getString(R.string.waiting_title))
+              .setContentText(context.getString(R.string.waiting_content))
+              .setAutoCancel(false)
+              .setSmallIcon(R.drawable.ic_all_inclusive_white_36dp)
+              .setProgress(0, 0, true);
+
+      NotificationConstants.setMetadata(context, builder, NotificationConstants.TYPE_NORMAL);
+    }
+
+    notificationManager.notify(NotificationConstants.WAIT_ID, builder.build());
   }
 
   public interface ServiceStatusCallbacks {
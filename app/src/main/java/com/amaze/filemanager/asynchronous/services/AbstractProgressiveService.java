@@ -25,6 +25,7 @@ import java.util.ArrayList;
 import com.amaze.filemanager.R;
 import com.amaze.filemanager.asynchronous.management.ServiceWatcherUtil;
 import com.amaze.filemanager.filesystem.HybridFile;
+import com.amaze.filemanager.filesystem.files.FolderSizeCalculator;
 import com.amaze.filemanager.ui.activities.MainActivity;
 import com.amaze.filemanager.ui.fragments.ProcessViewerFragment;
 import com.amaze.filemanager.ui.notifications.NotificationConstants;
@@ -53,6 +54,15 @@ public abstract class AbstractProgressiveService extends Service
     return super.onStartCommand(intent, flags, startId);
   }
 
+  @Override
+  public void onDestroy() {
+    super.onDestroy();
+    // sizes of the trees this operation wrote to are outdated
+    FolderSizeCalculator.clearCache();
+    // let the next operation waiting for this service start
+    ServiceWatcherUtil.onServiceFinished(getApplicationContext(), getClass());
+  }
+
   protected abstract NotificationManager getNotificationManager();
 
   protected abstract NotificationCompat.Builder getNotificationBuilder();
@@ -129,7 +139,7 @@ public abstract class AbstractProgressiveService extends Service
         isNotificationTitleSet = true;
       }
 
-      if (ServiceWatcherUtil.state != ServiceWatcherUtil.ServiceStatusCallbacks.STATE_HALTED) {
+      if (!getProgressHandler().isHalted()) {
 
         String written =
             Formatter.formatFileSize(this, writtenSize)
@@ -26,6 +26,7 @@ import java.util.ArrayList;
 import com.amaze.filemanager.R;
 import com.amaze.filemanager.application.AppConfig;
 import com.amaze.filemanager.asynchronous.asynctasks.DeleteTask;
+import com.amaze.filemanager.asynchronous.management.CopyScheduler;
 import com.amaze.filemanager.asynchronous.management.ServiceWatcherUtil;
 import com.amaze.filemanager.database.CryptHandler;
 import com.amaze.filemanager.database.models.explorer.EncryptedEntry;
@@ -40,6 +41,7 @@ import com.amaze.filemanager.filesystem.files.GenericCopyUtil;
 import com.amaze.filemanager.filesystem.root.CopyFilesCommand;
 import com.amaze.filemanager.filesystem.root.MoveFileCommand;
 import com.amaze.filemanager.ui.activities.MainActivity;
+import com.amaze.filemanager.ui.fragments.preference_fragments.PreferencesConstants;
 import com.amaze.filemanager.ui.notifications.NotificationConstants;
 import com.amaze.filemanager.utils.DatapointParcelable;
 import com.amaze.filemanager.utils.ObtainableServiceBinder;
@@ -225,6 +227,7 @@ public class CopyService extends AbstractProgressiveService {
   }
 
   public void onDestroy() {
+    super.onDestroy();
     this.unregisterReceiver(receiver3);
   }
 
@@ -348,6 +351,9 @@ public class CopyService extends AbstractProgressiveService {
       ArrayList<HybridFile> failedFOps;
       ArrayList<HybridFileParcelable> toDelete;
 
+      /** Set once a transfer failed, no further source files are copied then */
+      private volatile boolean transferFailed = false;
+
       Copy() {
         failedFOps = new ArrayList<>();
         toDelete = new ArrayList<>();
@@ -367,11 +373,19 @@ public class CopyService extends AbstractProgressiveService {
         // initial start of copy, initiate the watcher
         watcherUtil.watch(CopyService.this);
 
+        boolean completed = true;
         if (FileUtil.checkFolder((targetPath), c) == 1) {
+          // folders are created on this thread, files are copied in parallel by the scheduler
+          CopyScheduler<FileTransfer> scheduler = new CopyScheduler<>(getCopyWorkers());
           for (int i = 0; i < sourceFiles.size(); i++) {
             sourceProgress = i;
             HybridFileParcelable f1 = (sourceFiles.get(i));
 
+            if (transferFailed) {
+              for (int j = i; j < sourceFiles.size(); j++) addFailed(sourceFiles.get(j));
+              break;
+            }
+
             try {
 
               HybridFile hFile;
@@ -399,7 +413,7 @@ public class CopyService extends AbstractProgressiveService {
                   continue;
                 }
                 progressHandler.setSourceFilesProcessed(++sourceProgress);
-                copyFiles((f1), hFile, progressHandler);
+                copyFiles(f1, (f1), hFile, scheduler);
               } else {
                 break;
               }
@@ -407,12 +421,21 @@ public class CopyService extends AbstractProgressiveService {
               e.printStackTrace();
               Log.e("CopyService", "Got exception checkout: " + f1.getPath());
 
-              failedFOps.add(sourceFiles.get(i));
-              for (int j = i + 1; j < sourceFiles.size(); j++) failedFOps.add(sourceFiles.get(j));
+              for (int j = i; j < sourceFiles.size(); j++) addFailed(sourceFiles.get(j));
               break;
             }
           }
 
+          try {
+            scheduler.awaitCompletion();
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            // some transfers may still be running, none of the sources is safe to delete
+            completed = false;
+          } finally {
+            for (FileTransfer transfer : scheduler.shutdown()) addFailed(transfer.rootSourceFile);
+          }
+
         } else if (isRootExplorer) {
           for (int i = 0; i < sourceFiles.size(); i++) {
             if (!progressHandler.getCancelled()) {
@@ -437,8 +460,8 @@ public class CopyService extends AbstractProgressiveService {
         }
 
         // making sure to delete files after copy operation is done
-        // and not if the copy was cancelled
-        if (move && !progressHandler.getCancelled()) {
+        // and not if the copy was cancelled or interrupted
+        if (move && completed && !progressHandler.getCancelled()) {
           ArrayList<HybridFileParcelable> toDelete = new ArrayList<>();
           for (HybridFileParcelable a : sourceFiles) {
             if (!failedFOps.contains(a)) toDelete.add(a);
@@ -447,6 +470,25 @@ public class CopyService extends AbstractProgressiveService {
         }
       }
 
+      /** Number of files copied at the same time, from the preferences */
+      private int getCopyWorkers() {
+        try {
+          return Integer.parseInt(
+              sharedPreferences.getString(
+                  PreferencesConstants.PREFERENCE_COPY_THREADS,
+                  String.valueOf(CopyScheduler.DEFAULT_WORKERS)));
+        } catch (NumberFormatException e) {
+          return CopyScheduler.DEFAULT_WORKERS;
+        }
+      }
+
+      /** Marks a file as failed, called from the transfer threads too */
+      private void addFailed(HybridFile file) {
+        synchronized (failedFOps) {
+          if (!failedFOps.contains(file)) failedFOps.add(file);
+        }
+      }
+
       void copyRoot(HybridFileParcelable sourceFile, HybridFile targetFile, boolean move) {
 
         try {
@@ -455,19 +497,27 @@ public class CopyService extends AbstractProgressiveService {
           } else if (move) {
             MoveFileCommand.INSTANCE.moveFile(sourceFile.getPath(), targetFile.getPath());
           }
-          ServiceWatcherUtil.position += sourceFile.getSize();
+          progressHandler.addToPosition(sourceFile.getSize());
         } catch (ShellNotRunningException e) {
           e.printStackTrace();
-          failedFOps.add(sourceFile);
+          addFailed(sourceFile);
         }
         FileUtils.scanFile(c, new HybridFile[] {targetFile});
       }
 
+      /**
+       * Creates the folders of {@code sourceFile} in order and queues its files in {@code
+       * scheduler}.
+       *
+       * @param rootSourceFile the selected file {@code sourceFile} is in, which is reported as
+       *     failed if one of its files can't be copied, so that it isn't deleted when moving
+       */
       private void copyFiles(
+          final HybridFileParcelable rootSourceFile,
           final HybridFileParcelable sourceFile,
           final HybridFile targetFile,
-          final ProgressHandler progressHandler)
-          throws IOException {
+          final CopyScheduler<FileTransfer> scheduler)
+          throws IOException, InterruptedException {
 
         if (progressHandler.getCancelled()) return;
         if (sourceFile.isDirectory()) {
@@ -479,7 +529,7 @@ public class CopyService extends AbstractProgressiveService {
           // 2. source file has a valid name or not
           if (!Operations.isFileNameValid(sourceFile.getName(c))
               || Operations.isCopyLoopPossible(sourceFile, targetFile)) {
-            failedFOps.add(sourceFile);
+            addFailed(sourceFile);
             return;
           }
           targetFile.setLastModified(sourceFile.lastModified());
@@ -496,21 +546,53 @@ public class CopyService extends AbstractProgressiveService {
                         file.getName(c),
                         file.isDirectory());
                 try {
-                  copyFiles(file, destFile, progressHandler);
-                } catch (IOException e) {
+                  copyFiles(rootSourceFile, file, destFile, scheduler);
+                } catch (IOException | InterruptedException e) {
                   throw new IllegalStateException(e); // throw unchecked exception, no throws needed
                 }
               });
         } else {
           if (!Operations.isFileNameValid(sourceFile.getName(c))) {
-            failedFOps.add(sourceFile);
+            addFailed(sourceFile);
             return;
           }
 
-          GenericCopyUtil copyUtil = new GenericCopyUtil(c, progressHandler);
+          scheduler.submit(
+              targetFile.getMode(), new FileTransfer(rootSourceFile, sourceFile, targetFile));
+        }
+      }
+
+      /** Copies one file, marks the selected file it is in as failed if it can't */
+      private class FileTransfer implements CopyScheduler.Transfer {
+        private final HybridFileParcelable rootSourceFile;
+        private final HybridFileParcelable sourceFile;
+        private final HybridFile targetFile;
+
+        FileTransfer(
+            HybridFileParcelable rootSourceFile,
+            HybridFileParcelable sourceFile,
+            HybridFile targetFile) {
+          this.rootSourceFile = rootSourceFile;
+          this.sourceFile = sourceFile;
+          this.targetFile = targetFile;
+        }
 
-          progressHandler.setFileName(sourceFile.getName(c));
-          copyUtil.copy(sourceFile, targetFile);
+        @Override
+        public void run() {
+          if (progressHandler.getCancelled()) return;
+
+          try {
+            GenericCopyUtil copyUtil = new GenericCopyUtil(c, progressHandler);
+
+            progressHandler.setFileName(sourceFile.getName(c));
+            copyUtil.copy(sourceFile, targetFile);
+          } catch (Exception e) {
+            e.printStackTrace();
+            Log.e("CopyService", "Got exception checkout: " + sourceFile.getPath());
+
+            addFailed(rootSourceFile);
+            transferFailed = true;
+          }
         }
       }
     }
@@ -211,6 +211,7 @@ public class ExtractService extends AbstractProgressiveService {
 
   @Override
   public void onDestroy() {
+    super.onDestroy();
     unregisterReceiver(receiver1);
   }
 
@@ -306,6 +307,11 @@ public class ExtractService extends AbstractProgressiveService {
                   public boolean isCancelled() {
                     return progressHandler.getCancelled();
                   }
+
+                  @Override
+                  public void onProgress(long length) {
+                    progressHandler.addToPosition(length);
+                  }
                 });
 
         try {
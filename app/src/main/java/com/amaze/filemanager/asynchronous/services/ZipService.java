@@ -20,24 +20,19 @@
 
 package com.amaze.filemanager.asynchronous.services;
 
-import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.util.ArrayList;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipException;
-import java.util.zip.ZipOutputStream;
 
 import com.amaze.filemanager.R;
 import com.amaze.filemanager.application.AppConfig;
 import com.amaze.filemanager.asynchronous.management.ServiceWatcherUtil;
 import com.amaze.filemanager.filesystem.FileUtil;
 import com.amaze.filemanager.filesystem.HybridFileParcelable;
+import com.amaze.filemanager.filesystem.compressed.ZipCreator;
 import com.amaze.filemanager.filesystem.files.FileUtils;
-import com.amaze.filemanager.filesystem.files.GenericCopyUtil;
 import com.amaze.filemanager.ui.activities.MainActivity;
 import com.amaze.filemanager.ui.notifications.NotificationConstants;
 import com.amaze.filemanager.utils.DatapointParcelable;
@@ -214,7 +209,6 @@ public class ZipService extends AbstractProgressiveService {
     @SuppressLint("StaticFieldLeak")
     private ZipService zipService;
 
-    private ZipOutputStream zos;
     private String zipPath;
     private ServiceWatcherUtil watcherUtil;
     private long totalBytes = 0L;
@@ -264,64 +258,20 @@ public class ZipService extends AbstractProgressiveService {
     }
 
     public void execute(final @NonNull Context context, ArrayList<File> baseFiles, String zipPath) {
-      OutputStream out;
       File zipDirectory = new File(zipPath);
       watcherUtil = new ServiceWatcherUtil(progressHandler);
       watcherUtil.watch(ZipService.this);
 
       try {
-        out = FileUtil.getOutputStream(zipDirectory, context);
-        zos = new ZipOutputStream(new BufferedOutputStream(out));
-
-        int fileProgress = 0;
-        for (File file : baseFiles) {
-          if (isCancelled()) return;
-
-          progressHandler.setFileName(file.getName());
-          progressHandler.setSourceFilesProcessed(++fileProgress);
-          compressFile(file, "");
-        }
+        OutputStream out = FileUtil.getOutputStream(zipDirectory, context);
+        new ZipCreator(
+                Runtime.getRuntime().availableProcessors(), context.getCacheDir(), progressHandler)
+            .compress(baseFiles, new BufferedOutputStream(out));
       } catch (IOException e) {
         e.printStackTrace();
       } finally {
-        try {
-          zos.flush();
-          zos.close();
-          context.sendBroadcast(
-              new Intent(Intent.ACTION_MEDIA_SCANNER_SCAN_FILE)
-                  .setData(Uri.fromFile(zipDirectory)));
-        } catch (IOException e) {
-          e.printStackTrace();
-        }
-      }
-    }
-
-    private void compressFile(File file, String path)
-        throws IOException, NullPointerException, ZipException {
-      if (progressHandler.getCancelled()) return;
-
-      if (!file.isDirectory()) {
-        byte[] buf = new byte[GenericCopyUtil.DEFAULT_BUFFER_SIZE];
-        int len;
-        BufferedInputStream in = new BufferedInputStream(new FileInputStream(file));
-        zos.putNextEntry(new ZipEntry(path + "/" + file.getName()));
-        try {
-          while ((len = in.read(buf)) > 0) {
-            if (!progressHandler.getCancelled()) {
-              zos.write(buf, 0, len);
-              ServiceWatcherUtil.position += len;
-            } else break;
-          }
-        } finally {
-          in.close();
-        }
-        return;
-      }
-
-      if (file.list() == null) return;
-
-      for (File currentFile : file.listFiles()) {
-        compressFile(currentFile, path + File.separator + file.getName());
+        context.sendBroadcast(
+            new Intent(Intent.ACTION_MEDIA_SCANNER_SCAN_FILE).setData(Uri.fromFile(zipDirectory)));
       }
     }
   }
@@ -345,6 +295,7 @@ public class ZipService extends AbstractProgressiveService {
 
   @Override
   public void onDestroy() {
+    super.onDestroy();
     this.unregisterReceiver(receiver1);
   }
 }
@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) 2014-2020 Arpit Khurana <arpitkh96@gmail.com>, Vishal Nehra <vishalmeham2@gmail.com>,
+ * Emmanuel Messulam<emmanuelbendavid@gmail.com>, Raymond Lai <airwave209gt at gmail.com> and Contributors.
+ *
+ * This file is part of Amaze File Manager.
+ *
+ * Amaze File Manager is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.amaze.filemanager.database;
+
+import com.amaze.filemanager.database.daos.ListingCacheDao;
+import com.amaze.filemanager.database.models.listingcache.CachedDirectory;
+import com.amaze.filemanager.database.models.listingcache.CachedEntry;
+import com.amaze.filemanager.database.typeconverters.OpenModeTypeConverter;
+
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+import androidx.room.Database;
+import androidx.room.Room;
+import androidx.room.RoomDatabase;
+import androidx.room.TypeConverters;
+
+/**
+ * Repository for {@link CachedDirectory} and {@link CachedEntry} objects in listing_cache.db in
+ * Amaze.
+ *
+ * <p>Only holds copies of directory listings that can be read again at any time, so it is kept
+ * apart from {@link ExplorerDatabase} and is simply recreated when its schema changes.
+ *
+ * @see RoomDatabase
+ * @see ListingCacheHandler
+ */
+@Database(
+    entities = {CachedDirectory.class, CachedEntry.class},
+    version = 1,
+    exportSchema = false)
+@TypeConverters(OpenModeTypeConverter.class)
+public abstract class ListingCacheDatabase extends RoomDatabase {
+
+  private static final String DATABASE_NAME = "listing_cache.db";
+
+  public static final String TABLE_DIRECTORY = "directory";
+  public static final String TABLE_ENTRY = "entry";
+
+  public static final String COLUMN_PATH = "path";
+  public static final String COLUMN_OPEN_MODE = "open_mode";
+  public static final String COLUMN_LISTED_OPEN_MODE = "listed_open_mode";
+  public static final String COLUMN_LAST_MODIFIED = "last_modified";
+  public static final String COLUMN_SHOW_HIDDEN = "show_hidden";
+  public static final String COLUMN_CACHED_AT = "cached_at";
+
+  public static final String COLUMN_DIRECTORY_PATH = "directory_path";
+  public static final String COLUMN_DIRECTORY_OPEN_MODE = "directory_open_mode";
+  public static final String COLUMN_TITLE = "title";
+  public static final String COLUMN_PERMISSIONS = "permissions";
+  public static final String COLUMN_SYMLINK = "symlink";
+  public static final String COLUMN_SIZE = "size";
+  public static final String COLUMN_DATE = "date";
+  public static final String COLUMN_IS_DIRECTORY = "is_directory";
+
+  protected abstract ListingCacheDao listingCacheDao();
+
+  public static synchronized ListingCacheDatabase initialize(@NonNull Context context) {
+    return Room.databaseBuilder(context, ListingCacheDatabase.class, DATABASE_NAME)
+        .fallbackToDestructiveMigration()
+        .allowMainThreadQueries()
+        .build();
+  }
+}
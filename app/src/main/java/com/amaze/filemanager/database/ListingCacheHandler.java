@@ -0,0 +1,319 @@
+/*
+ * Copyright (C) 2014-2020 Arpit Khurana <arpitkh96@gmail.com>, Vishal Nehra <vishalmeham2@gmail.com>,
+ * Emmanuel Messulam<emmanuelbendavid@gmail.com>, Raymond Lai <airwave209gt at gmail.com> and Contributors.
+ *
+ * This file is part of Amaze File Manager.
+ *
+ * Amaze File Manager is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.amaze.filemanager.database;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.amaze.filemanager.adapters.data.LayoutElementParcelable;
+import com.amaze.filemanager.application.AppConfig;
+import com.amaze.filemanager.database.daos.ListingCacheDao;
+import com.amaze.filemanager.database.models.listingcache.CachedDirectory;
+import com.amaze.filemanager.database.models.listingcache.CachedEntry;
+import com.amaze.filemanager.utils.DataUtils;
+import com.amaze.filemanager.utils.OpenMode;
+
+import android.util.Log;
+import android.util.LruCache;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import io.reactivex.Completable;
+import io.reactivex.schedulers.Schedulers;
+
+/**
+ * Keeps the last listings of directories, in memory and in {@link ListingCacheDatabase}, so that a
+ * directory can be shown as soon as it is entered.
+ *
+ * <p>A local listing stays valid while the modification time of its directory doesn't change;
+ * listings of other filesystems, whose modification time can't be read cheaply, stay valid for
+ * {@link #REMOTE_TTL_MILLIS}. Invalid listings can still be shown while the directory is listed
+ * again.
+ *
+ * <p>SMB and SFTP paths carry the login of the server, so their listings are only kept in memory,
+ * see {@link #isPersistable(OpenMode)}.
+ */
+public class ListingCacheHandler {
+
+  private static final String TAG = ListingCacheHandler.class.getSimpleName();
+
+  /** How long a listing of SMB, SFTP, OTG or cloud directories is trusted */
+  public static final long REMOTE_TTL_MILLIS = 30 * 1000;
+
+  /** Total number of entries kept in memory, over all directories */
+  private static final int MEMORY_CACHE_ENTRIES = 50000;
+
+  /** Number of directories kept on disk, the least recently listed ones are dropped first */
+  private static final int DISK_CACHE_DIRECTORIES = 256;
+
+  private final ListingCacheDatabase database;
+
+  private final LruCache<String, Listing> memoryCache =
+      new LruCache<String, Listing>(MEMORY_CACHE_ENTRIES) {
+        @Override
+        protected int sizeOf(String key, Listing value) {
+          return value.entries.size() + 1;
+        }
+      };
+
+  private ListingCacheHandler(@NonNull ListingCacheDatabase listingCacheDatabase) {
+    database = listingCacheDatabase;
+  }
+
+  private static class ListingCacheHandlerHolder {
+    private static final ListingCacheHandler INSTANCE =
+        new ListingCacheHandler(AppConfig.getInstance().getListingCacheDatabase());
+  }
+
+  public static ListingCacheHandler getInstance() {
+    return ListingCacheHandlerHolder.INSTANCE;
+  }
+
+  /** @return whether listings opened in {@code openMode} can be cached at all */
+  public static boolean isCacheable(@NonNull OpenMode openMode) {
+    return openMode != OpenMode.CUSTOM && openMode != OpenMode.UNKNOWN;
+  }
+
+  /**
+   * @return whether listings opened in {@code openMode} can be written to disk, false if their
+   *     paths can hold a user name and password
+   */
+  public static boolean isPersistable(@NonNull OpenMode openMode) {
+    return openMode != OpenMode.SMB && openMode != OpenMode.SFTP;
+  }
+
+  /**
+   * @return modification time of a local directory, 0 for other filesystems or if it can't be read
+   */
+  public static long getLastModified(@NonNull String path, @NonNull OpenMode openMode) {
+    if (openMode == OpenMode.FILE || openMode == OpenMode.ROOT) {
+      return new File(path).lastModified();
+    }
+    return 0;
+  }
+
+  /**
+   * Finds the last listing of a directory, valid or not.
+   *
+   * @return null if the directory wasn't listed before with the same hidden files setting
+   */
+  @Nullable
+  public Listing find(@NonNull String path, @NonNull OpenMode openMode, boolean showHidden) {
+    final String key = getKey(path, openMode);
+    Listing listing = memoryCache.get(key);
+
+    if (listing == null) {
+      if (!isPersistable(openMode)) {
+        return null;
+      }
+      listing = load(path, openMode);
+      if (listing == null) {
+        return null;
+      }
+      memoryCache.put(key, listing);
+    }
+
+    if (listing.directory.showHidden != showHidden) {
+      return null;
+    }
+    return listing;
+  }
+
+  /**
+   * Caches a complete listing of a directory. It is written to disk in the background, and only if
+   * it differs from what was cached before and {@link #isPersistable(OpenMode)}.
+   *
+   * @param lastModified modification time of the directory read before it was listed, see {@link
+   *     #getLastModified(String, OpenMode)}
+   */
+  public void put(
+      @NonNull String path,
+      @NonNull OpenMode openMode,
+      @NonNull OpenMode listedOpenMode,
+      long lastModified,
+      boolean showHidden,
+      @NonNull List<LayoutElementParcelable> elements) {
+    final CachedDirectory directory =
+        new CachedDirectory(
+            path, openMode, listedOpenMode, lastModified, showHidden, System.currentTimeMillis());
+    final ArrayList<CachedEntry> entries = new ArrayList<>(elements.size());
+    for (LayoutElementParcelable element : elements) {
+      if (element.isBack || element.header) continue;
+
+      entries.add(
+          new CachedEntry(
+              path,
+              openMode,
+              element.desc,
+              element.title,
+              element.permissions,
+              element.symlink,
+              element.isSizeUnknown() ? -1 : element.longSize,
+              element.date,
+              element.isDirectory,
+              element.getMode() == null ? listedOpenMode : element.getMode()));
+    }
+
+    final Listing listing = new Listing(directory, entries);
+    final Listing previous = memoryCache.put(getKey(path, openMode), listing);
+    final boolean entriesChanged = previous == null || !previous.hasSameEntries(listing);
+    if (!isPersistable(openMode) || !isPersistable(listedOpenMode)) {
+      return;
+    }
+
+    final ListingCacheDao dao = database.listingCacheDao();
+    Completable.fromAction(
+            () ->
+                database.runInTransaction(
+                    () -> {
+                      dao.insertDirectory(directory);
+                      if (entriesChanged) {
+                        dao.deleteEntries(path, openMode);
+                        dao.insertEntries(entries);
+                      }
+                      dao.trimDirectories(DISK_CACHE_DIRECTORIES);
+                      dao.deleteOrphanEntries();
+                    }))
+        .subscribeOn(Schedulers.io())
+        .subscribe(() -> {}, e -> Log.e(TAG, "Failed to cache listing of " + path, e));
+  }
+
+  /** Forgets the listing of a directory, so that it isn't shown before it is listed again */
+  public void invalidate(@NonNull String path, @NonNull OpenMode openMode) {
+    memoryCache.remove(getKey(path, openMode));
+    if (!isPersistable(openMode)) {
+      return;
+    }
+
+    final ListingCacheDao dao = database.listingCacheDao();
+    Completable.fromAction(
+            () ->
+                database.runInTransaction(
+                    () -> {
+                      dao.deleteDirectory(path, openMode);
+                      dao.deleteEntries(path, openMode);
+                    }))
+        .subscribeOn(Schedulers.io())
+        .subscribe(() -> {}, e -> Log.e(TAG, "Failed to invalidate listing of " + path, e));
+  }
+
+  @Nullable
+  private Listing load(@NonNull String path, @NonNull OpenMode openMode) {
+    try {
+      final ListingCacheDao dao = database.listingCacheDao();
+      CachedDirectory directory =
+          dao.findDirectory(path, openMode).subscribeOn(Schedulers.io()).blockingGet();
+      List<CachedEntry> entries =
+          dao.listEntries(path, openMode).subscribeOn(Schedulers.io()).blockingGet();
+      return new Listing(directory, entries);
+    } catch (Exception e) {
+      // catch error to handle Single#onError for blockingGet, the directory isn't cached then
+      return null;
+    }
+  }
+
+  private static String getKey(@NonNull String path, @NonNull OpenMode openMode) {
+    return openMode.ordinal() + ":" + path;
+  }
+
+  /** A cached listing of a directory */
+  public static class Listing {
+    @NonNull public final CachedDirectory directory;
+    @NonNull private final List<CachedEntry> entries;
+
+    Listing(@NonNull CachedDirectory directory, @NonNull List<CachedEntry> entries) {
+      this.directory = directory;
+      this.entries = entries;
+    }
+
+    /**
+     * @return whether the directory can't have changed since it was listed, as far as can be told
+     *     without listing it again
+     */
+    public boolean isValid() {
+      if (directory.listedOpenMode == OpenMode.FILE || directory.listedOpenMode == OpenMode.ROOT) {
+        long lastModified = getLastModified(directory.path, directory.listedOpenMode);
+        return lastModified != 0 && lastModified == directory.lastModified;
+      }
+
+      long age = System.currentTimeMillis() - directory.cachedAt;
+      return age >= 0 && age < REMOTE_TTL_MILLIS;
+    }
+
+    /** @return the listed elements, unsorted and without the files hidden since */
+    @NonNull
+    public ArrayList<LayoutElementParcelable> toElements(boolean showThumbs) {
+      final DataUtils dataUtils = DataUtils.getInstance();
+      final ArrayList<LayoutElementParcelable> elements = new ArrayList<>(entries.size());
+      for (CachedEntry entry : entries) {
+        if (dataUtils.isFileHidden(entry.path)) continue;
+
+        elements.add(
+            new LayoutElementParcelable(
+                false,
+                entry.title,
+                entry.path,
+                entry.permissions == null ? "" : entry.permissions,
+                entry.symlink == null ? "" : entry.symlink,
+                entry.size,
+                false,
+                entry.date,
+                entry.isDirectory,
+                showThumbs,
+                entry.openMode));
+      }
+      return elements;
+    }
+
+    private boolean hasSameEntries(@NonNull Listing other) {
+      if (entries.size() != other.entries.size()) {
+        return false;
+      }
+
+      final Map<String, CachedEntry> byPath = new HashMap<>(entries.size() * 2);
+      for (CachedEntry entry : entries) {
+        byPath.put(entry.path, entry);
+      }
+      for (CachedEntry entry : other.entries) {
+        CachedEntry same = byPath.get(entry.path);
+        if (same == null
+            || same.size != entry.size
+            || same.date != entry.date
+            || same.isDirectory != entry.isDirectory
+            || same.openMode != entry.openMode
+            || !equals(same.title, entry.title)
+            || !equals(same.permissions, entry.permissions)
+            || !equals(same.symlink, entry.symlink)) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    private static boolean equals(@Nullable String a, @Nullable String b) {
+      return a == null ? b == null : a.equals(b);
+    }
+  }
+}
@@ -27,6 +27,7 @@ import com.amaze.filemanager.database.daos.HistoryEntryDao;
 import com.amaze.filemanager.database.daos.ListEntryDao;
 import com.amaze.filemanager.database.daos.SftpEntryDao;
 import com.amaze.filemanager.database.daos.SmbEntryDao;
+import com.amaze.filemanager.database.daos.TransferCheckpointDao;
 import com.amaze.filemanager.database.models.utilities.Bookmark;
 import com.amaze.filemanager.database.models.utilities.Grid;
 import com.amaze.filemanager.database.models.utilities.Hidden;
@@ -34,6 +35,7 @@ import com.amaze.filemanager.database.models.utilities.History;
 import com.amaze.filemanager.database.models.utilities.List;
 import com.amaze.filemanager.database.models.utilities.SftpEntry;
 import com.amaze.filemanager.database.models.utilities.SmbEntry;
+import com.amaze.filemanager.database.models.utilities.TransferCheckpoint;
 
 import android.content.Context;
 
@@ -46,7 +48,8 @@ import androidx.sqlite.db.SupportSQLiteDatabase;
 
 /**
  * Repository for {@link Bookmark}, {@link Grid}, {@link Hidden}, {@link History}, {@link List},
- * {@link SmbEntry}, {@link SftpEntry} objects in utilities.db in Amaze.
+ * {@link SmbEntry}, {@link SftpEntry}, {@link TransferCheckpoint} objects in utilities.db in
+ * Amaze.
  *
  * @see RoomDatabase
  */
@@ -58,9 +61,10 @@ import androidx.sqlite.db.SupportSQLiteDatabase;
       History.class,
       List.class,
       SmbEntry.class,
-      SftpEntry.class
+      SftpEntry.class,
+      TransferCheckpoint.class
     },
-    version = 4,
+    version = 5,
     exportSchema = false)
 public abstract class UtilitiesDatabase extends RoomDatabase {
 
@@ -73,6 +77,7 @@ public abstract class UtilitiesDatabase extends RoomDatabase {
   public static final String TABLE_BOOKMARKS = "bookmarks";
   public static final String TABLE_SMB = "smb";
   public static final String TABLE_SFTP = "sftp";
+  public static final String TABLE_TRANSFER_CHECKPOINT = "transfer_checkpoint";
 
   public static final String COLUMN_ID = "_id";
   public static final String COLUMN_PATH = "path";
@@ -80,6 +85,13 @@ public abstract class UtilitiesDatabase extends RoomDatabase {
   public static final String COLUMN_HOST_PUBKEY = "pub_key";
   public static final String COLUMN_PRIVATE_KEY_NAME = "ssh_key_name";
   public static final String COLUMN_PRIVATE_KEY = "ssh_key";
+  public static final String COLUMN_SOURCE_PATH = "source_path";
+  public static final String COLUMN_SOURCE_SIZE = "source_size";
+  public static final String COLUMN_SOURCE_LAST_MODIFIED = "source_last_modified";
+  public static final String COLUMN_TRANSFER_OFFSET = "transfer_offset";
+  public static final String COLUMN_CHUNK_LENGTH = "chunk_length";
+  public static final String COLUMN_CHUNK_HASH = "chunk_hash";
+  public static final String COLUMN_UPDATED = "updated";
 
   private static final String TEMP_TABLE_PREFIX = "temp_";
 
@@ -328,6 +340,46 @@ public abstract class UtilitiesDatabase extends RoomDatabase {
         }
       };
 
+  private static final Migration MIGRATION_4_5 =
+      new Migration(4, 5) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+          database.execSQL(
+              "CREATE TABLE IF NOT EXISTS "
+                  + TABLE_TRANSFER_CHECKPOINT
+                  + " ("
+                  + COLUMN_ID
+                  + " INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL,"
+                  + COLUMN_PATH
+                  + " TEXT,"
+                  + COLUMN_SOURCE_PATH
+                  + " TEXT,"
+                  + COLUMN_SOURCE_SIZE
+                  + " INTEGER NOT NULL,"
+                  + COLUMN_SOURCE_LAST_MODIFIED
+                  + " INTEGER NOT NULL,"
+                  + COLUMN_TRANSFER_OFFSET
+                  + " INTEGER NOT NULL,"
+                  + COLUMN_CHUNK_LENGTH
+                  + " INTEGER NOT NULL,"
+                  + COLUMN_CHUNK_HASH
+                  + " INTEGER NOT NULL,"
+                  + COLUMN_UPDATED
+                  + " INTEGER NOT NULL"
+                  + ");");
+          database.execSQL(
+              "CREATE UNIQUE INDEX IF NOT EXISTS index_"
+                  + TABLE_TRANSFER_CHECKPOINT
+                  + "_"
+                  + COLUMN_PATH
+                  + " ON "
+                  + TABLE_TRANSFER_CHECKPOINT
+                  + " ("
+                  + COLUMN_PATH
+                  + ");");
+        }
+      };
+
   protected abstract HiddenEntryDao hiddenEntryDao();
 
   protected abstract GridEntryDao gridEntryDao();
@@ -342,10 +394,12 @@ public abstract class UtilitiesDatabase extends RoomDatabase {
 
   protected abstract SftpEntryDao sftpEntryDao();
 
+  protected abstract TransferCheckpointDao transferCheckpointDao();
+
   public static final UtilitiesDatabase initialize(@NonNull Context context) {
     return Room.databaseBuilder(context, UtilitiesDatabase.class, DATABASE_NAME)
         .allowMainThreadQueries()
-        .addMigrations(MIGRATION_1_2, MIGRATION_2_3, MIGRATION_3_4)
+        .addMigrations(MIGRATION_1_2, MIGRATION_2_3, MIGRATION_3_4, MIGRATION_4_5)
         .build();
   }
 }
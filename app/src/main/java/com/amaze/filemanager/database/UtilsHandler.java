@@ -20,6 +20,9 @@
 
 package com.amaze.filemanager.database;
 
+import static com.amaze.filemanager.filesystem.smb.CifsContextFactory.SMB_URI_PREFIX;
+import static com.amaze.filemanager.filesystem.ssh.SshConnectionPool.SSH_URI_PREFIX;
+
 import java.io.File;
 import java.io.IOException;
 import java.security.GeneralSecurityException;
@@ -36,6 +39,7 @@ import com.amaze.filemanager.database.models.utilities.Hidden;
 import com.amaze.filemanager.database.models.utilities.History;
 import com.amaze.filemanager.database.models.utilities.SftpEntry;
 import com.amaze.filemanager.database.models.utilities.SmbEntry;
+import com.amaze.filemanager.database.models.utilities.TransferCheckpoint;
 import com.amaze.filemanager.filesystem.ssh.SshClientUtils;
 import com.amaze.filemanager.utils.SmbUtil;
 import com.googlecode.concurrenttrees.radix.ConcurrentRadixTree;
@@ -362,6 +366,93 @@ public class UtilsHandler {
     }
   }
 
+  /**
+   * Finds where the copy of a file to {@code targetPath} was interrupted.
+   *
+   * @return the checkpoint, with paths as given to {@link
+   *     #saveTransferCheckpoint(TransferCheckpoint)}, or null if there is none
+   */
+  public TransferCheckpoint getTransferCheckpoint(@NonNull String targetPath) {
+    try {
+      TransferCheckpoint checkpoint =
+          utilitiesDatabase
+              .transferCheckpointDao()
+              .findByPath(encryptPathAsNecessary(targetPath))
+              .subscribeOn(Schedulers.io())
+              .blockingGet();
+      checkpoint.path = targetPath;
+      checkpoint.sourcePath = decryptPathAsNecessary(checkpoint.sourcePath);
+      return checkpoint;
+    } catch (Exception e) {
+      // catch error to handle Single#onError for blockingGet
+      Log.d(TAG, e.getMessage());
+      return null;
+    }
+  }
+
+  /**
+   * Saves how far a copy got, replacing any checkpoint of the same target. Passwords in SMB and
+   * SFTP paths are encrypted on the way in.
+   */
+  public void saveTransferCheckpoint(@NonNull TransferCheckpoint checkpoint) {
+    TransferCheckpoint encrypted =
+        new TransferCheckpoint(
+            encryptPathAsNecessary(checkpoint.path),
+            encryptPathAsNecessary(checkpoint.sourcePath),
+            checkpoint.sourceSize,
+            checkpoint.sourceLastModified);
+    encrypted.offset = checkpoint.offset;
+    encrypted.chunkLength = checkpoint.chunkLength;
+    encrypted.chunkHash = checkpoint.chunkHash;
+    encrypted.updated = checkpoint.updated;
+    utilitiesDatabase
+        .transferCheckpointDao()
+        .insert(encrypted)
+        .subscribeOn(Schedulers.io())
+        .blockingAwait();
+  }
+
+  public void removeTransferCheckpoint(@NonNull String targetPath) {
+    utilitiesDatabase
+        .transferCheckpointDao()
+        .deleteByPath(encryptPathAsNecessary(targetPath))
+        .subscribeOn(Schedulers.io())
+        .subscribe();
+  }
+
+  /** Forgets the checkpoints of copies that nobody resumed since {@code time} */
+  public void removeTransferCheckpointsOlderThan(long time) {
+    utilitiesDatabase
+        .transferCheckpointDao()
+        .deleteOlderThan(time)
+        .subscribeOn(Schedulers.io())
+        .subscribe();
+  }
+
+  private String encryptPathAsNecessary(String path) {
+    if (path == null || !(path.startsWith(SMB_URI_PREFIX) || path.startsWith(SSH_URI_PREFIX))) {
+      return path;
+    }
+    try {
+      return SmbUtil.getSmbEncryptedPath(context, path);
+    } catch (GeneralSecurityException | IOException e) {
+      Log.e(TAG, "Error encrypting path", e);
+      return path;
+    }
+  }
+
+  private String decryptPathAsNecessary(String path) {
+    if (path == null || !(path.startsWith(SMB_URI_PREFIX) || path.startsWith(SSH_URI_PREFIX))) {
+      return path;
+    }
+    try {
+      return SmbUtil.getSmbDecryptedPath(context, path);
+    } catch (GeneralSecurityException | IOException e) {
+      Log.e(TAG, "Error decrypting path", e);
+      return path;
+    }
+  }
+
   private void removeBookmarksPath(String name, String path) {
     utilitiesDatabase
         .bookmarkEntryDao()
@@ -0,0 +1,142 @@
+/*
+ * Copyright (C) 2014-2020 Arpit Khurana <arpitkh96@gmail.com>, Vishal Nehra <vishalmeham2@gmail.com>,
+ * Emmanuel Messulam<emmanuelbendavid@gmail.com>, Raymond Lai <airwave209gt at gmail.com> and Contributors.
+ *
+ * This file is part of Amaze File Manager.
+ *
+ * Amaze File Manager is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.amaze.filemanager.database.daos;
+
+import static com.amaze.filemanager.database.ListingCacheDatabase.COLUMN_CACHED_AT;
+import static com.amaze.filemanager.database.ListingCacheDatabase.COLUMN_DIRECTORY_OPEN_MODE;
+import static com.amaze.filemanager.database.ListingCacheDatabase.COLUMN_DIRECTORY_PATH;
+import static com.amaze.filemanager.database.ListingCacheDatabase.COLUMN_OPEN_MODE;
+import static com.amaze.filemanager.database.ListingCacheDatabase.COLUMN_PATH;
+import static com.amaze.filemanager.database.ListingCacheDatabase.TABLE_DIRECTORY;
+import static com.amaze.filemanager.database.ListingCacheDatabase.TABLE_ENTRY;
+
+import java.util.List;
+
+import com.amaze.filemanager.database.models.listingcache.CachedDirectory;
+import com.amaze.filemanager.database.models.listingcache.CachedEntry;
+import com.amaze.filemanager.utils.OpenMode;
+
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.OnConflictStrategy;
+import androidx.room.Query;
+
+import io.reactivex.Single;
+
+/**
+ * {@link Dao} interface definition for {@link CachedDirectory} and {@link CachedEntry}. Concrete
+ * class is generated by Room during build.
+ *
+ * <p>Writes are synchronous so that {@link com.amaze.filemanager.database.ListingCacheHandler} can
+ * group them in a single transaction.
+ *
+ * @see Dao
+ * @see com.amaze.filemanager.database.ListingCacheDatabase
+ */
+@Dao
+public interface ListingCacheDao {
+
+  @Query(
+      "SELECT * FROM "
+          + TABLE_DIRECTORY
+          + " WHERE "
+          + COLUMN_PATH
+          + " = :path AND "
+          + COLUMN_OPEN_MODE
+          + " = :openMode")
+  Single<CachedDirectory> findDirectory(String path, OpenMode openMode);
+
+  @Query(
+      "SELECT * FROM "
+          + TABLE_ENTRY
+          + " WHERE "
+          + COLUMN_DIRECTORY_PATH
+          + " = :path AND "
+          + COLUMN_DIRECTORY_OPEN_MODE
+          + " = :openMode")
+  Single<List<CachedEntry>> listEntries(String path, OpenMode openMode);
+
+  @Insert(onConflict = OnConflictStrategy.REPLACE)
+  void insertDirectory(CachedDirectory directory);
+
+  @Insert(onConflict = OnConflictStrategy.REPLACE)
+  void insertEntries(List<CachedEntry> entries);
+
+  @Query(
+      "DELETE FROM "
+          + TABLE_DIRECTORY
+          + " WHERE "
+          + COLUMN_PATH
+          + " = :path AND "
+          + COLUMN_OPEN_MODE
+          + " = :openMode")
+  void deleteDirectory(String path, OpenMode openMode);
+
+  @Query(
+      "DELETE FROM "
+          + TABLE_ENTRY
+          + " WHERE "
+          + COLUMN_DIRECTORY_PATH
+          + " = :path AND "
+          + COLUMN_DIRECTORY_OPEN_MODE
+          + " = :openMode")
+  void deleteEntries(String path, OpenMode openMode);
+
+  /** Drops all directories but the {@code keep} most recently listed ones */
+  @Query(
+      "DELETE FROM "
+          + TABLE_DIRECTORY
+          + " WHERE "
+          + COLUMN_CACHED_AT
+          + " < (SELECT "
+          + COLUMN_CACHED_AT
+          + " FROM "
+          + TABLE_DIRECTORY
+          + " ORDER BY "
+          + COLUMN_CACHED_AT
+          + " DESC LIMIT 1 OFFSET :keep)")
+  void trimDirectories(int keep);
+
+  /** Drops entries left over from directories removed by {@link #trimDirectories(int)} */
+  @Query(
+      "DELETE FROM "
+          + TABLE_ENTRY
+          + " WHERE NOT EXISTS (SELECT 1 FROM "
+          + TABLE_DIRECTORY
+          + " WHERE "
+          + TABLE_DIRECTORY
+          + "."
+          + COLUMN_PATH
+          + " = "
+          + TABLE_ENTRY
+          + "."
+          + COLUMN_DIRECTORY_PATH
+          + " AND "
+          + TABLE_DIRECTORY
+          + "."
+          + COLUMN_OPEN_MODE
+          + " = "
+          + TABLE_ENTRY
+          + "."
+          + COLUMN_DIRECTORY_OPEN_MODE
+          + ")")
+  void deleteOrphanEntries();
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright (C) 2014-2020 Arpit Khurana <arpitkh96@gmail.com>, Vishal Nehra <vishalmeham2@gmail.com>,
+ * Emmanuel Messulam<emmanuelbendavid@gmail.com>, Raymond Lai <airwave209gt at gmail.com> and Contributors.
+ *
+ * This file is part of Amaze File Manager.
+ *
+ * Amaze File Manager is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.amaze.filemanager.database.models.listingcache;
+
+import com.amaze.filemanager.database.ListingCacheDatabase;
+import com.amaze.filemanager.utils.OpenMode;
+
+import androidx.annotation.NonNull;
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+
+/**
+ * A directory whose listing is kept in {@link ListingCacheDatabase}, the listed children are
+ * {@link CachedEntry} rows with the same path and {@link OpenMode}.
+ */
+@Entity(
+    tableName = ListingCacheDatabase.TABLE_DIRECTORY,
+    primaryKeys = {ListingCacheDatabase.COLUMN_PATH, ListingCacheDatabase.COLUMN_OPEN_MODE})
+public class CachedDirectory {
+
+  @NonNull
+  @ColumnInfo(name = ListingCacheDatabase.COLUMN_PATH)
+  public final String path;
+
+  /** The mode the directory was asked to be opened in */
+  @NonNull
+  @ColumnInfo(name = ListingCacheDatabase.COLUMN_OPEN_MODE)
+  public final OpenMode openMode;
+
+  /** The mode the directory ended up being listed in, e.g. ROOT for a FILE path */
+  @NonNull
+  @ColumnInfo(name = ListingCacheDatabase.COLUMN_LISTED_OPEN_MODE)
+  public final OpenMode listedOpenMode;
+
+  /** Modification time of the directory when it was listed, 0 if it can't be read */
+  @ColumnInfo(name = ListingCacheDatabase.COLUMN_LAST_MODIFIED)
+  public final long lastModified;
+
+  @ColumnInfo(name = ListingCacheDatabase.COLUMN_SHOW_HIDDEN)
+  public final boolean showHidden;
+
+  /** Wall clock time of the listing, in millis */
+  @ColumnInfo(name = ListingCacheDatabase.COLUMN_CACHED_AT)
+  public final long cachedAt;
+
+  public CachedDirectory(
+      @NonNull String path,
+      @NonNull OpenMode openMode,
+      @NonNull OpenMode listedOpenMode,
+      long lastModified,
+      boolean showHidden,
+      long cachedAt) {
+    this.path = path;
+    this.openMode = openMode;
+    this.listedOpenMode = listedOpenMode;
+    this.lastModified = lastModified;
+    this.showHidden = showHidden;
+    this.cachedAt = cachedAt;
+  }
+}
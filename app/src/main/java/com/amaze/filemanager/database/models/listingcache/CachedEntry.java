@@ -0,0 +1,104 @@
+/*
+ * Copyright (C) 2014-2020 Arpit Khurana <arpitkh96@gmail.com>, Vishal Nehra <vishalmeham2@gmail.com>,
+ * Emmanuel Messulam<emmanuelbendavid@gmail.com>, Raymond Lai <airwave209gt at gmail.com> and Contributors.
+ *
+ * This file is part of Amaze File Manager.
+ *
+ * Amaze File Manager is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.amaze.filemanager.database.models.listingcache;
+
+import com.amaze.filemanager.database.ListingCacheDatabase;
+import com.amaze.filemanager.utils.OpenMode;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+
+/**
+ * A child of a {@link CachedDirectory}, holding what is needed to rebuild its {@link
+ * com.amaze.filemanager.adapters.data.LayoutElementParcelable}.
+ */
+@Entity(
+    tableName = ListingCacheDatabase.TABLE_ENTRY,
+    primaryKeys = {
+      ListingCacheDatabase.COLUMN_DIRECTORY_PATH,
+      ListingCacheDatabase.COLUMN_DIRECTORY_OPEN_MODE,
+      ListingCacheDatabase.COLUMN_PATH
+    })
+public class CachedEntry {
+
+  @NonNull
+  @ColumnInfo(name = ListingCacheDatabase.COLUMN_DIRECTORY_PATH)
+  public final String directoryPath;
+
+  @NonNull
+  @ColumnInfo(name = ListingCacheDatabase.COLUMN_DIRECTORY_OPEN_MODE)
+  public final OpenMode directoryOpenMode;
+
+  @NonNull
+  @ColumnInfo(name = ListingCacheDatabase.COLUMN_PATH)
+  public final String path;
+
+  @Nullable
+  @ColumnInfo(name = ListingCacheDatabase.COLUMN_TITLE)
+  public final String title;
+
+  @Nullable
+  @ColumnInfo(name = ListingCacheDatabase.COLUMN_PERMISSIONS)
+  public final String permissions;
+
+  @Nullable
+  @ColumnInfo(name = ListingCacheDatabase.COLUMN_SYMLINK)
+  public final String symlink;
+
+  /** Size in bytes, -1 if unknown */
+  @ColumnInfo(name = ListingCacheDatabase.COLUMN_SIZE)
+  public final long size;
+
+  @ColumnInfo(name = ListingCacheDatabase.COLUMN_DATE)
+  public final long date;
+
+  @ColumnInfo(name = ListingCacheDatabase.COLUMN_IS_DIRECTORY)
+  public final boolean isDirectory;
+
+  @NonNull
+  @ColumnInfo(name = ListingCacheDatabase.COLUMN_OPEN_MODE)
+  public final OpenMode openMode;
+
+  public CachedEntry(
+      @NonNull String directoryPath,
+      @NonNull OpenMode directoryOpenMode,
+      @NonNull String path,
+      @Nullable String title,
+      @Nullable String permissions,
+      @Nullable String symlink,
+      long size,
+      long date,
+      boolean isDirectory,
+      @NonNull OpenMode openMode) {
+    this.directoryPath = directoryPath;
+    this.directoryOpenMode = directoryOpenMode;
+    this.path = path;
+    this.title = title;
+    this.permissions = permissions;
+    this.symlink = symlink;
+    this.size = size;
+    this.date = date;
+    this.isDirectory = isDirectory;
+    this.openMode = openMode;
+  }
+}
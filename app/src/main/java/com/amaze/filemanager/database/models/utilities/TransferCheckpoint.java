@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) 2014-2020 Arpit Khurana <arpitkh96@gmail.com>, Vishal Nehra <vishalmeham2@gmail.com>,
+ * Emmanuel Messulam<emmanuelbendavid@gmail.com>, Raymond Lai <airwave209gt at gmail.com> and Contributors.
+ *
+ * This file is part of Amaze File Manager.
+ *
+ * Amaze File Manager is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.amaze.filemanager.database.models.utilities;
+
+import com.amaze.filemanager.database.UtilitiesDatabase;
+
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.Index;
+
+/**
+ * {@link Entity} representation of <code>transfer_checkpoint</code> table in utilities.db.
+ *
+ * <p>Records how far the copy of a file to {@link #path} got, with the {@link
+ * java.util.zip.Adler32} checksum of the last chunk written before {@link #offset}, so that both
+ * source and target can be checked before an interrupted copy is resumed.
+ *
+ * @see UtilitiesDatabase
+ */
+@Entity(
+    tableName = UtilitiesDatabase.TABLE_TRANSFER_CHECKPOINT,
+    indices = {@Index(value = UtilitiesDatabase.COLUMN_PATH, unique = true)})
+public class TransferCheckpoint extends OperationData {
+
+  @ColumnInfo(name = UtilitiesDatabase.COLUMN_SOURCE_PATH)
+  public String sourcePath;
+
+  @ColumnInfo(name = UtilitiesDatabase.COLUMN_SOURCE_SIZE)
+  public long sourceSize;
+
+  @ColumnInfo(name = UtilitiesDatabase.COLUMN_SOURCE_LAST_MODIFIED)
+  public long sourceLastModified;
+
+  @ColumnInfo(name = UtilitiesDatabase.COLUMN_TRANSFER_OFFSET)
+  public long offset;
+
+  @ColumnInfo(name = UtilitiesDatabase.COLUMN_CHUNK_LENGTH)
+  public int chunkLength;
+
+  @ColumnInfo(name = UtilitiesDatabase.COLUMN_CHUNK_HASH)
+  public long chunkHash;
+
+  @ColumnInfo(name = UtilitiesDatabase.COLUMN_UPDATED)
+  public long updated;
+
+  public TransferCheckpoint(
+      String path, String sourcePath, long sourceSize, long sourceLastModified) {
+    super(path);
+    this.sourcePath = sourcePath;
+    this.sourceSize = sourceSize;
+    this.sourceLastModified = sourceLastModified;
+  }
+
+  @Override
+  public String toString() {
+    return new StringBuilder(super.toString())
+        .append(",offset=[")
+        .append(offset)
+        .append("],sourceSize=[")
+        .append(sourceSize)
+        .append("]")
+        .toString();
+  }
+}
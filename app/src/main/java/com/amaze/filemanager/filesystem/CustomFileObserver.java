@@ -21,16 +21,15 @@
 package com.amaze.filemanager.filesystem;
 
 import java.io.File;
-import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Calendar;
-import java.util.Collections;
 import java.util.HashSet;
-import java.util.List;
-import java.util.Timer;
-import java.util.TimerTask;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 
 import android.os.Build;
@@ -38,6 +37,7 @@ import android.os.FileObserver;
 import android.os.Handler;
 
 import androidx.annotation.RequiresApi;
+import androidx.annotation.VisibleForTesting;
 
 /**
  * Class which monitors any change in local filesystem and updates the adapter Makes use of inotify
@@ -45,8 +45,8 @@ import androidx.annotation.RequiresApi;
  */
 public class CustomFileObserver extends FileObserver {
 
-  /** Values for what of Handler Message */
-  public static final int GOBACK = -1, NEW_ITEM = 0, DELETED_ITEM = 1;
+  /** Values for what of Handler Message, the obj of CHANGED is a {@link Changes} */
+  public static final int GOBACK = -1, CHANGED = 0;
 
   /**
    * When the bserver stops observing this event is recieved Check:
@@ -56,16 +56,29 @@ public class CustomFileObserver extends FileObserver {
 
   private static final int DEFER_CONSTANT_SECONDS = 5;
   private static final int DEFER_CONSTANT = DEFER_CONSTANT_SECONDS * 1000;
+  /** Events arriving within this time of the first one are sent together */
+  @VisibleForTesting static final int BATCH_WINDOW_MILLIS = 200;
+
   private static final int MASK = CREATE | MOVED_TO | DELETE | MOVED_FROM | DELETE_SELF | MOVE_SELF;
 
+  /** Sends the changes of all observers, and polls directories where inotify is broken */
+  private static final ScheduledExecutorService scheduler =
+      Executors.newSingleThreadScheduledExecutor(
+          runnable -> {
+            Thread thread = new Thread(runnable, "CustomFileObserver");
+            thread.setDaemon(true);
+            return thread;
+          });
+
   private long lastMessagedTime = 0L;
-  private boolean messagingScheduled = false;
   private boolean wasStopped = false;
 
   private Handler handler;
   private String path;
-  private final List<String> pathsAdded = Collections.synchronizedList(new ArrayList<>());
-  private final List<String> pathsRemoved = Collections.synchronizedList(new ArrayList<>());
+  /** Name of each changed file, and whether it was added (true) or removed (false) last */
+  private final Map<String, Boolean> pendingChanges = new LinkedHashMap<>();
+
+  private ScheduledFuture<?> scheduledMessage = null;
 
   public CustomFileObserver(String path, Handler handler) {
     super(path, MASK);
@@ -93,6 +106,7 @@ public class CustomFileObserver extends FileObserver {
   @Override
   public void stopWatching() {
     wasStopped = true;
+    cancelMessages();
 
     if (Build.VERSION.SDK_INT == Build.VERSION_CODES.M) {
       stopPollingSystem();
@@ -108,66 +122,71 @@ public class CustomFileObserver extends FileObserver {
       return;
     }
 
-    long deltaTime = Calendar.getInstance().getTimeInMillis() - lastMessagedTime;
-
     switch (event) {
       case CREATE:
       case MOVED_TO:
-        pathsAdded.add(path);
+        addChange(path, true);
         break;
       case DELETE:
       case MOVED_FROM:
-        pathsRemoved.add(path);
+        addChange(path, false);
         break;
       case DELETE_SELF:
       case MOVE_SELF:
         handler.obtainMessage(GOBACK).sendToTarget();
         return;
     }
+  }
 
-    if (deltaTime <= DEFER_CONSTANT) {
-      // defer the observer until unless it reports a change after at least 5 secs of last one
-      // keep adding files added, if there were any, to the buffer
-
-      new Timer()
-          .schedule(
-              new TimerTask() {
-                @Override
-                public void run() {
-
-                  if (messagingScheduled) return;
-                  sendMessages();
-                }
-              },
-              DEFER_CONSTANT - deltaTime);
-
-      messagingScheduled = true;
-    } else {
-      if (messagingScheduled) return;
-      sendMessages();
+  /**
+   * Changes are held back for {@link #BATCH_WINDOW_MILLIS}, or until {@link #DEFER_CONSTANT} has
+   * passed since the last ones were sent, so that a burst of events is sent as a single message.
+   */
+  private synchronized void addChange(String name, boolean added) {
+    // only the last event of a file matters, the listing checks what is there
+    pendingChanges.remove(name);
+    pendingChanges.put(name, added);
+
+    if (scheduledMessage == null && !wasStopped) {
+      long now = System.currentTimeMillis();
+      long delay = Math.max(BATCH_WINDOW_MILLIS, lastMessagedTime + DEFER_CONSTANT - now);
+      scheduledMessage = scheduler.schedule(this::sendMessages, delay, TimeUnit.MILLISECONDS);
     }
   }
 
   private synchronized void sendMessages() {
-    lastMessagedTime = Calendar.getInstance().getTimeInMillis();
-
-    synchronized (pathsAdded) {
-      for (String pathAdded : pathsAdded) {
-        handler.obtainMessage(NEW_ITEM, pathAdded).sendToTarget();
+    lastMessagedTime = System.currentTimeMillis();
+    scheduledMessage = null;
+    if (pendingChanges.isEmpty()) return;
+
+    Changes changes = new Changes();
+    for (Map.Entry<String, Boolean> change : pendingChanges.entrySet()) {
+      if (change.getValue()) {
+        changes.added.add(change.getKey());
+      } else {
+        changes.removed.add(change.getKey());
       }
     }
-    pathsAdded.clear();
+    pendingChanges.clear();
 
-    synchronized (pathsRemoved) {
-      for (String pathRemoved : pathsRemoved) {
-        handler.obtainMessage(DELETED_ITEM, pathRemoved).sendToTarget();
-      }
+    handler.obtainMessage(CHANGED, changes).sendToTarget();
+  }
+
+  private synchronized void cancelMessages() {
+    if (scheduledMessage != null) {
+      scheduledMessage.cancel(false);
+      scheduledMessage = null;
     }
-    pathsRemoved.clear();
-    messagingScheduled = false;
+    pendingChanges.clear();
+  }
+
+  /** Files added to and removed from the observed directory, by name */
+  public static final class Changes {
+    public final Set<String> added = new LinkedHashSet<>();
+    public final Set<String> removed = new LinkedHashSet<>();
   }
 
-  private ScheduledExecutorService executor = null;
+  private ScheduledFuture<?> polling = null;
 
   /**
    * In Marshmallow FileObserver is broken, this hack will let you know of changes to a directory
@@ -177,17 +196,17 @@ public class CustomFileObserver extends FileObserver {
    */
   @RequiresApi(api = Build.VERSION_CODES.LOLLIPOP)
   private void startPollingSystem() {
-    executor = Executors.newScheduledThreadPool(1);
-    executor.scheduleWithFixedDelay(
-        new FileTimerTask(path, this),
-        DEFER_CONSTANT_SECONDS,
-        DEFER_CONSTANT_SECONDS,
-        TimeUnit.SECONDS); // This doesn't work with milliseconds (don't know why)
+    polling =
+        scheduler.scheduleWithFixedDelay(
+            new FileTimerTask(path, this),
+            DEFER_CONSTANT_SECONDS,
+            DEFER_CONSTANT_SECONDS,
+            TimeUnit.SECONDS); // This doesn't work with milliseconds (don't know why)
   }
 
   @RequiresApi(api = Build.VERSION_CODES.LOLLIPOP)
   private void stopPollingSystem() {
-    executor.shutdown();
+    if (polling != null) polling.cancel(false);
   }
 
   @RequiresApi(api = Build.VERSION_CODES.LOLLIPOP)
@@ -31,7 +31,6 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.MalformedURLException;
 import java.util.ArrayList;
-import java.util.EnumSet;
 
 import com.amaze.filemanager.R;
 import com.amaze.filemanager.adapters.data.LayoutElementParcelable;
@@ -43,8 +42,8 @@ import com.amaze.filemanager.filesystem.cloud.CloudUtil;
 import com.amaze.filemanager.filesystem.files.FileUtils;
 import com.amaze.filemanager.filesystem.root.DeleteFileCommand;
 import com.amaze.filemanager.filesystem.root.ListFilesCommand;
+import com.amaze.filemanager.filesystem.smb.SmbAttributeCache;
 import com.amaze.filemanager.filesystem.ssh.SFtpClientTemplate;
-import com.amaze.filemanager.filesystem.ssh.SshClientTemplate;
 import com.amaze.filemanager.filesystem.ssh.SshClientUtils;
 import com.amaze.filemanager.filesystem.ssh.Statvfs;
 import com.amaze.filemanager.ui.fragments.preference_fragments.PreferencesConstants;
@@ -71,11 +70,9 @@ import io.reactivex.Single;
 import io.reactivex.schedulers.Schedulers;
 import jcifs.smb.SmbException;
 import jcifs.smb.SmbFile;
-import net.schmizz.sshj.SSHClient;
+import jcifs.smb.SmbRandomAccessFile;
 import net.schmizz.sshj.common.Buffer;
 import net.schmizz.sshj.sftp.FileMode;
-import net.schmizz.sshj.sftp.RemoteFile;
-import net.schmizz.sshj.sftp.RemoteResourceInfo;
 import net.schmizz.sshj.sftp.SFTPClient;
 import net.schmizz.sshj.sftp.SFTPException;
 
@@ -227,6 +224,8 @@ public class HybridFile {
               }
             });
       case SMB:
+        SmbAttributeCache.Attributes attributes = SmbAttributeCache.get(path);
+        if (attributes != null) return attributes.lastModified;
         SmbFile smbFile = getSmbFile();
         if (smbFile != null) {
           try {
@@ -253,6 +252,8 @@ public class HybridFile {
       case SFTP:
         return ((HybridFileParcelable) this).getSize();
       case SMB:
+        SmbAttributeCache.Attributes attributes = SmbAttributeCache.get(path);
+        if (attributes != null) return attributes.length;
         SmbFile smbFile = getSmbFile();
         if (smbFile != null)
           try {
@@ -415,6 +416,8 @@ public class HybridFile {
       case SFTP:
         return isDirectory(AppConfig.getInstance());
       case SMB:
+        SmbAttributeCache.Attributes attributes = SmbAttributeCache.get(path);
+        if (attributes != null) return attributes.isDirectory;
         SmbFile smbFile = getSmbFile();
         try {
           isDirectory = smbFile != null && smbFile.isDirectory();
@@ -469,6 +472,8 @@ public class HybridFile {
               }
             });
       case SMB:
+        SmbAttributeCache.Attributes attributes = SmbAttributeCache.get(path);
+        if (attributes != null) return attributes.isDirectory;
         try {
           isDirectory =
               Single.fromCallable(() -> getSmbFile().isDirectory())
@@ -564,7 +569,10 @@ public class HybridFile {
             new SFtpClientTemplate(path) {
               @Override
               public Long execute(SFTPClient client) throws IOException {
-                return client.size(SshClientUtils.extractRemotePathFrom(path));
+                return FileUtils.folderSizeSftp(
+                    client,
+                    SshClientUtils.extractBaseUriFrom(path),
+                    SshClientUtils.extractRemotePathFrom(path));
               }
             });
       case SMB:
@@ -723,16 +731,7 @@ public class HybridFile {
                 @Override
                 public Boolean execute(SFTPClient client) {
                   try {
-                    for (RemoteResourceInfo info :
-                        client.ls(SshClientUtils.extractRemotePathFrom(path))) {
-                      boolean isDirectory = false;
-                      try {
-                        isDirectory = SshClientUtils.isDirectory(client, info);
-                      } catch (IOException ifBrokenSymlink) {
-                        Log.w(TAG, "IOException checking isDirectory(): " + info.getPath());
-                        continue;
-                      }
-                      HybridFileParcelable f = new HybridFileParcelable(path, isDirectory, info);
+                    for (HybridFileParcelable f : SshClientUtils.listFiles(client, path)) {
                       onFileFound.onFileFound(f);
                     }
                   } catch (IOException e) {
@@ -755,16 +754,10 @@ public class HybridFile {
         try {
           SmbFile smbFile = getSmbFile();
           if (smbFile != null) {
+            // the listed files carry their attributes, reading them doesn't go to the server
             for (SmbFile smbFile1 : smbFile.listFiles()) {
-              HybridFileParcelable baseFile;
-              try {
-                SmbFile sf = new SmbFile(smbFile1.getURL(), smbFile.getContext());
-                baseFile = new HybridFileParcelable(sf);
-              } catch (MalformedURLException shouldNeverHappen) {
-                shouldNeverHappen.printStackTrace();
-                baseFile = new HybridFileParcelable(smbFile1);
-              }
-              onFileFound.onFileFound(baseFile);
+              SmbAttributeCache.put(smbFile1);
+              onFileFound.onFileFound(new HybridFileParcelable(smbFile1));
             }
           }
         } catch (SmbException e) {
@@ -815,19 +808,7 @@ public class HybridFile {
                       ArrayList<HybridFileParcelable> retval =
                           new ArrayList<HybridFileParcelable>();
                       try {
-                        for (RemoteResourceInfo info :
-                            client.ls(SshClientUtils.extractRemotePathFrom(path))) {
-                          boolean isDirectory = false;
-                          try {
-                            isDirectory = SshClientUtils.isDirectory(client, info);
-                          } catch (IOException ifBrokenSymlink) {
-                            Log.w(TAG, "IOException checking isDirectory(): " + info.getPath());
-                            continue;
-                          }
-                          HybridFileParcelable f =
-                              new HybridFileParcelable(path, isDirectory, info);
-                          retval.add(f);
-                        }
+                        retval.addAll(SshClientUtils.listFiles(client, path));
                       } catch (IOException e) {
                         Log.w("DEBUG.listFiles", "IOException", e);
                       }
@@ -844,6 +825,7 @@ public class HybridFile {
           SmbFile smbFile = getSmbFile();
           if (smbFile != null) {
             for (SmbFile smbFile1 : smbFile.listFiles()) {
+              SmbAttributeCache.put(smbFile1);
               HybridFileParcelable baseFile = new HybridFileParcelable(smbFile1);
               arrayList.add(baseFile);
             }
@@ -892,23 +874,7 @@ public class HybridFile {
   public InputStream getInputStream() {
     InputStream inputStream;
     if (isSftp()) {
-      return SshClientUtils.execute(
-          new SFtpClientTemplate(path) {
-            @Override
-            public InputStream execute(SFTPClient client) throws IOException {
-              final RemoteFile rf = client.open(SshClientUtils.extractRemotePathFrom(path));
-              return rf.new RemoteFileInputStream() {
-                @Override
-                public void close() throws IOException {
-                  try {
-                    super.close();
-                  } finally {
-                    rf.close();
-                  }
-                }
-              };
-            }
-          });
+      return SshClientUtils.openInputStream(path, SshClientUtils.DEFAULT_REQUEST_DEPTH);
     } else if (isSmb()) {
       try {
         inputStream = getSmbFile().getInputStream();
@@ -928,29 +894,19 @@ public class HybridFile {
   }
 
   public InputStream getInputStream(Context context) {
+    return getInputStream(context, SshClientUtils.DEFAULT_REQUEST_DEPTH);
+  }
+
+  /**
+   * Handles getting input stream for various {@link OpenMode}, keeping up to {@code requestDepth}
+   * read requests in flight for SFTP files.
+   */
+  public InputStream getInputStream(Context context, int requestDepth) {
     InputStream inputStream;
 
     switch (mode) {
       case SFTP:
-        inputStream =
-            SshClientUtils.execute(
-                new SFtpClientTemplate(path, false) {
-                  @Override
-                  public InputStream execute(final SFTPClient client) throws IOException {
-                    final RemoteFile rf = client.open(SshClientUtils.extractRemotePathFrom(path));
-                    return rf.new RemoteFileInputStream() {
-                      @Override
-                      public void close() throws IOException {
-                        try {
-                          super.close();
-                        } finally {
-                          rf.close();
-                          client.close();
-                        }
-                      }
-                    };
-                  }
-                });
+        inputStream = SshClientUtils.openInputStream(path, requestDepth);
         break;
       case SMB:
         try {
@@ -1000,40 +956,46 @@ public class HybridFile {
   }
 
   public OutputStream getOutputStream(Context context) {
+    return getOutputStream(context, 0);
+  }
+
+  /**
+   * Opens the file to write from {@code offset} on, keeping the bytes before it, to resume an
+   * interrupted copy. Only SMB and SFTP files can be written from an offset other than 0.
+   */
+  public OutputStream getOutputStream(Context context, long offset) {
+    return getOutputStream(context, offset, SshClientUtils.DEFAULT_REQUEST_DEPTH);
+  }
+
+  /**
+   * Opens the file to write from {@code offset} on, like {@link #getOutputStream(Context, long)},
+   * leaving up to {@code requestDepth} write requests unconfirmed for SFTP files.
+   */
+  public OutputStream getOutputStream(Context context, long offset, int requestDepth) {
+    if (offset != 0 && !isSmb() && !isSftp()) {
+      throw new IllegalArgumentException("Can't write " + mode + " files from an offset");
+    }
+
     OutputStream outputStream;
     switch (mode) {
       case SFTP:
-        return SshClientUtils.execute(
-            new SshClientTemplate(path, false) {
-              @Override
-              public OutputStream execute(final SSHClient ssh) throws IOException {
-                final SFTPClient client = ssh.newSFTPClient();
-                final RemoteFile rf =
-                    client.open(
-                        SshClientUtils.extractRemotePathFrom(path),
-                        EnumSet.of(
-                            net.schmizz.sshj.sftp.OpenMode.WRITE,
-                            net.schmizz.sshj.sftp.OpenMode.CREAT));
-                return rf.new RemoteFileOutputStream() {
-                  @Override
-                  public void close() throws IOException {
-                    try {
-                      super.close();
-                    } finally {
-                      try {
-                        rf.close();
-                        client.close();
-                      } catch (Exception e) {
-                        Log.w(TAG, "Error closing stream", e);
-                      }
-                    }
-                  }
-                };
-              }
-            });
+        return SshClientUtils.openOutputStream(path, offset, requestDepth);
       case SMB:
+        SmbAttributeCache.invalidate(path);
         try {
-          outputStream = getSmbFile().getOutputStream();
+          SmbFile smbFile = getSmbFile();
+          if (offset > 0) {
+            // drop whatever was written after the offset, then append
+            SmbRandomAccessFile randomAccessFile = smbFile.openRandomAccess("rw");
+            try {
+              randomAccessFile.setLength(offset);
+            } finally {
+              randomAccessFile.close();
+            }
+            outputStream = smbFile.openOutputStream(true);
+          } else {
+            outputStream = smbFile.getOutputStream();
+          }
         } catch (IOException e) {
           outputStream = null;
           e.printStackTrace();
@@ -1076,6 +1038,8 @@ public class HybridFile {
                 }
               });
     } else if (isSmb()) {
+      // not answered from SmbAttributeCache, the file may have been deleted by another client since
+      // it was listed, and conflict checks of copy and rename rely on this
       try {
         SmbFile smbFile = getSmbFile(2000);
         exists = smbFile != null && smbFile.exists();
@@ -1131,6 +1095,7 @@ public class HybridFile {
 
   public boolean setLastModified(final long date) {
     if (isSmb()) {
+      SmbAttributeCache.invalidate(path);
       try {
         SmbFile smbFile = getSmbFile();
         if (smbFile != null) {
@@ -1162,6 +1127,7 @@ public class HybridFile {
             }
           });
     } else if (isSmb()) {
+      SmbAttributeCache.invalidate(path);
       try {
         getSmbFile().mkdirs();
       } catch (SmbException e) {
@@ -1221,6 +1187,7 @@ public class HybridFile {
               });
       return retval != null && retval;
     } else if (isSmb()) {
+      SmbAttributeCache.invalidate(path);
       try {
         getSmbFile().delete();
       } catch (SmbException e) {
@@ -39,6 +39,7 @@ import com.amaze.filemanager.filesystem.files.FileUtils;
 import com.amaze.filemanager.filesystem.root.MakeDirectoryCommand;
 import com.amaze.filemanager.filesystem.root.MakeFileCommand;
 import com.amaze.filemanager.filesystem.root.RenameFileCommand;
+import com.amaze.filemanager.filesystem.smb.SmbAttributeCache;
 import com.amaze.filemanager.filesystem.ssh.SFtpClientTemplate;
 import com.amaze.filemanager.filesystem.ssh.SshClientUtils;
 import com.amaze.filemanager.utils.DataUtils;
@@ -407,6 +408,8 @@ public class Operations {
               return null;
             }
             smbFile.renameTo(smbFile1);
+            SmbAttributeCache.invalidate(oldFile.getPath());
+            SmbAttributeCache.invalidate(newFile.getPath());
             if (!smbFile.exists() && smbFile1.exists()) errorCallBack.done(newFile, true);
           } catch (SmbException | MalformedURLException e) {
             String errmsg =
@@ -43,6 +43,7 @@ import java.util.TimeZone;
 import java.util.Vector;
 
 import com.amaze.filemanager.filesystem.smbstreamer.Streamer;
+import com.amaze.filemanager.filesystem.streams.HttpSessions;
 
 import android.net.Uri;
 import android.util.Log;
@@ -202,7 +203,7 @@ public abstract class CloudStreamServer {
                     }
                   */
                   Socket accept = myServerSocket.accept();
-                  new HTTPSession(accept);
+                  HttpSessions.execute(accept, new HTTPSession(accept));
                 }
               } catch (IOException ioe) {
               }
@@ -229,7 +230,7 @@ public abstract class CloudStreamServer {
                     }
                   */
                   Socket accept = myServerSocket.accept();
-                  new HTTPSession(accept);
+                  HttpSessions.execute(accept, new HTTPSession(accept));
                 }
               } catch (IOException ioe) {
               }
@@ -316,24 +317,18 @@ public abstract class CloudStreamServer {
 
     public HTTPSession(Socket s) {
       socket = s;
-      // mySocket = s;
-      Thread t = new Thread(this);
-      t.setDaemon(true);
-      t.start();
     }
 
     public void run() {
       try {
-        // openInputStream();
-        handleResponse(socket);
+        // Keep answering until the client or an error ends the connection
+        while (handleResponse(socket)) {}
       } finally {
-        if (is != null) {
-          try {
-            is.close();
-            socket.close();
-          } catch (IOException e) {
-            e.printStackTrace();
-          }
+        try {
+          if (is != null) is.close();
+          socket.close();
+        } catch (IOException e) {
+          e.printStackTrace();
         }
       }
     }
@@ -342,18 +337,19 @@ public abstract class CloudStreamServer {
     //                      is = socket.getInputStream();
     //              }
 
-    private void handleResponse(Socket socket) {
+    /** @return whether the connection can be used for another request */
+    private boolean handleResponse(Socket socket) {
       try {
         is = socket.getInputStream();
-        if (is == null) return;
+        if (is == null) return false;
 
         // Read the first 8192 bytes.
         // The full header should fit in here.
         // Apache's default header limit is 8KB.
         int bufsize = 8192;
         byte[] buf = new byte[bufsize];
-        int rlen = is.read(buf, 0, bufsize);
-        if (rlen <= 0) return;
+        int rlen = HttpSessions.readRequest(socket, is, buf);
+        if (rlen <= 0) return false;
 
         // Create a BufferedReader for parsing the header.
         ByteArrayInputStream hbis = new ByteArrayInputStream(buf, 0, rlen);
@@ -471,14 +467,24 @@ public abstract class CloudStreamServer {
 
         // Ok, now do the serve()
         Response r = serve(uri, method, header, parms, files);
+        boolean keepAlive = false;
         if (r == null)
           sendError(
               socket,
               HTTP_INTERNALERROR,
               "SERVER INTERNAL ERROR: Serve() returned a null response.");
-        else sendResponse(socket, r.status, r.mimeType, r.header, r.data);
+        else
+          keepAlive =
+              sendResponse(
+                  socket,
+                  r.status,
+                  r.mimeType,
+                  r.header,
+                  r.data,
+                  HttpSessions.isKeepAlive(pre.getProperty("protocol"), header));
 
         in.close();
+        return keepAlive;
       } catch (IOException ioe) {
         try {
           sendError(
@@ -490,6 +496,7 @@ public abstract class CloudStreamServer {
       } catch (InterruptedException ie) {
         // Thrown by sendError, ignore and exit the thread.
       }
+      return false;
     }
 
     /** Decodes the sent headers and loads the data into java Properties' key - value pairs */
@@ -522,10 +529,12 @@ public abstract class CloudStreamServer {
         } else uri = Uri.decode(uri); // decodePercent(uri);
 
         // If there's another token, it's protocol version,
-        // followed by HTTP headers. Ignore version but parse headers.
+        // followed by HTTP headers. The version decides whether the
+        // connection is kept alive by default.
         // NOTE: this now forces header names lowercase since they are
         // case insensitive and vary by client.
         if (st.hasMoreTokens()) {
+          pre.put("protocol", st.nextToken());
           String line = in.readLine();
           while (line != null && line.trim().length() > 0) {
             int p = line.indexOf(':');
@@ -725,19 +734,33 @@ public abstract class CloudStreamServer {
      * request processing.
      */
     private void sendError(Socket socket, String status, String msg) throws InterruptedException {
-      sendResponse(socket, status, MIME_PLAINTEXT, null, null);
+      sendResponse(socket, status, MIME_PLAINTEXT, null, null, false);
       throw new InterruptedException();
     }
 
-    /** Sends given response to the socket. */
-    private void sendResponse(
-        Socket socket, String status, String mime, Properties header, CloudStreamSource data) {
+    /**
+     * Sends given response to the socket.
+     *
+     * @param keepAlive whether the client wants to reuse the connection
+     * @return whether the connection can be used for another request
+     */
+    private boolean sendResponse(
+        Socket socket,
+        String status,
+        String mime,
+        Properties header,
+        CloudStreamSource data,
+        boolean keepAlive) {
       try {
         if (status == null) throw new Error("sendResponse(): Status can't be null.");
 
+        // Without a length, the client can only tell the end of the body when the connection closes
+        long length = HttpSessions.getContentLength(header);
+        if (data != null && length < 0) keepAlive = false;
+
         OutputStream out = socket.getOutputStream();
         PrintWriter pw = new PrintWriter(out);
-        pw.print("HTTP/1.0 " + status + " \r\n");
+        pw.print("HTTP/1.1 " + status + " \r\n");
 
         if (mime != null) pw.print("Content-Type: " + mime + "\r\n");
 
@@ -753,31 +776,35 @@ public abstract class CloudStreamServer {
           }
         }
 
+        if (data == null && length < 0) pw.print("Content-Length: 0\r\n");
+        pw.print("Connection: " + (keepAlive ? "keep-alive" : "close") + "\r\n");
         pw.print("\r\n");
         pw.flush();
 
         if (data != null) {
-          // long pending = data.availableExact();      // This is to support partial sends, see
-          // serveFile()
           data.open();
-          byte[] buff = new byte[8192];
+          byte[] buff = new byte[HttpSessions.BUFFER_SIZE];
           int read = 0;
+          long sent = 0;
           while ((read = data.read(buff)) > 0) {
-            // if(SolidExplorer.LOG)Log.d(CloudUtil.TAG, "Read: "+ read +", pending: "+
-            // data.availableExact());
             out.write(buff, 0, read);
+            sent += read;
           }
+          // A short body would leave the client waiting for the rest
+          if (sent != length) keepAlive = false;
         }
         out.flush();
-        out.close();
-        if (data != null) data.close();
-
+        if (!keepAlive) out.close();
+        return keepAlive;
       } catch (IOException ioe) {
         // Couldn't write? No can do.
         try {
           socket.close();
         } catch (Throwable t) {
         }
+        return false;
+      } finally {
+        if (data != null) data.close();
       }
     }
 
@@ -20,75 +20,166 @@
 
 package com.amaze.filemanager.filesystem.cloud;
 
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
 
+import com.amaze.filemanager.filesystem.streams.HttpSessions;
 import com.amaze.filemanager.filesystem.streams.RandomAccessStream;
 
-/** Created by Vishal on 30-04-2017. */
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * Created by Vishal on 30-04-2017.
+ *
+ * <p>Content of a file streamed by {@link CloudStreamer}. Bytes found in the {@link SpillCache}
+ * are served from there, the rest is downloaded through an {@link Opener}, reopening the download
+ * at the requested offset if the provider allows it.
+ */
 public class CloudStreamSource extends RandomAccessStream {
+
+  /** Opens the content of a streamed file. */
+  public interface Opener {
+    /** Whether {@link #open(long)} can start anywhere in the file, else it is only asked for 0. */
+    boolean isSeekable();
+
+    /** @return the content of the file from {@code offset} on */
+    @NonNull
+    InputStream open(long offset) throws IOException;
+  }
+
+  /** Gaps up to this size are read through instead of opening the download again */
+  static final long MAX_READ_THROUGH = 1024 * 1024;
+
   protected long fp;
+  protected long limit;
   protected String name;
+  @Nullable private final Opener opener;
+  @Nullable private final SpillCache spillCache;
   private InputStream inputStream;
+  private long inputPosition;
+  private boolean closed = false;
 
+  /** Source for a download that was opened already, it can only move forward. */
   public CloudStreamSource(String fileName, long length, InputStream inputStream) {
+    this(fileName, length, null, null);
+    this.inputStream = inputStream;
+  }
+
+  CloudStreamSource(
+      String fileName, long length, @Nullable Opener opener, @Nullable SpillCache spillCache) {
     super(length);
 
     fp = 0;
+    limit = length;
     this.name = fileName;
-    this.inputStream = inputStream;
+    this.opener = opener;
+    this.spillCache = spillCache;
   }
 
-  /**
-   * You may notice a strange name for the smb input stream. I made some modifications to the
-   * original one in the jcifs library for my needs, but streaming required returning to the
-   * original one so I renamed it to "old". However, I needed to specify a buffer size in the
-   * constructor. It looks now like this:
-   *
-   * <p>public SmbFileInputStreamOld( SmbFile file, int readBuffer, int openFlags) throws
-   * SmbException, MalformedURLException, UnknownHostException { this.file = file; this.openFlags =
-   * SmbFile.O_RDONLY & 0xFFFF; this.access = (openFlags >>> 16) & 0xFFFF; if (file.type !=
-   * SmbFile.TYPE_NAMED_PIPE) { file.open( openFlags, access, SmbFile.ATTR_NORMAL, 0 );
-   * this.openFlags &= ~(SmbFile.O_CREAT | SmbFile.O_TRUNC); } else { file.connect0(); } readSize =
-   * readBuffer; fs = file.length(); }
-   *
-   * <p>Setting buffer size by properties didn't work for me so I created this constructor. In the
-   * libs folder there is a library modified by me. If you want to use a stock one, you have to set
-   * somehow the buffer size to be equal with http server's buffer size which is 8192.
-   */
+  /** Gets the download ready at the current position, unless that part is cached. */
   public void open() throws IOException {
-    try {
-      if (fp > 0) inputStream.skip(fp);
-    } catch (Exception e) {
-      throw new IOException(e);
+    if (spillCache != null && spillCache.contains(fp)) return;
+    position();
+  }
+
+  /** Stops reading at the given offset (exclusive), so a range request only downloads its range. */
+  public void setLimit(long limit) {
+    if (limit < 0 || length() < limit) {
+      throw new IllegalArgumentException("Limit out of the bounds of the file!");
     }
+
+    this.limit = limit;
   }
 
   @Override
   public int read() throws IOException {
-    int read = inputStream.read();
-    if (read != -1) fp++;
-    return read;
+    byte[] b = new byte[1];
+    return read(b, 0, 1) == 1 ? b[0] & 0xff : -1;
   }
 
   @Override
   public int read(byte[] bytes, int start, int offs) throws IOException {
-    int read = inputStream.read(bytes, start, offs);
+    if (start < 0 || offs < 0 || offs > bytes.length - start) {
+      throw new IndexOutOfBoundsException();
+    }
+    if (closed) throw new IOException("Stream closed");
+    if (offs == 0) return 0;
+    if (fp >= limit) return -1;
+
+    int count = (int) Math.min(offs, limit - fp);
+    if (spillCache != null) {
+      int cached = spillCache.read(fp, bytes, start, count);
+      if (cached > 0) {
+        fp += cached;
+        return cached;
+      }
+    }
+
+    position();
+    int read = inputStream.read(bytes, start, count);
+    if (read < 0) return -1;
+
+    if (spillCache != null) spillCache.write(fp, bytes, start, read);
+    inputPosition += read;
     fp += read;
     return read;
   }
 
-  @Override
-  public void close() {
+  /** Moves the download to {@link #fp}, reading through short gaps and reopening otherwise. */
+  private void position() throws IOException {
+    if (inputStream != null && inputPosition == fp) return;
+
+    boolean canReopen = opener != null;
+    boolean seekable = canReopen && opener.isSeekable();
+    if (inputStream != null
+        && inputPosition < fp
+        && (!seekable || fp - inputPosition <= MAX_READ_THROUGH)) {
+      readThrough(fp);
+      return;
+    }
+    if (!canReopen) {
+      throw new IOException("Can't move to " + fp + " in a stream that can't be reopened");
+    }
+
+    closeInput();
+    long offset = seekable ? fp : 0;
+    inputStream = opener.open(offset);
+    inputPosition = offset;
+    readThrough(fp);
+  }
+
+  /** Reads the download up to {@code position}, keeping what is read in the cache. */
+  private void readThrough(long position) throws IOException {
+    byte[] buffer = new byte[(int) Math.min(HttpSessions.BUFFER_SIZE, position - inputPosition)];
+    while (inputPosition < position) {
+      int read =
+          inputStream.read(buffer, 0, (int) Math.min(buffer.length, position - inputPosition));
+      if (read < 0) throw new EOFException("Download ended at " + inputPosition);
+
+      if (spillCache != null) spillCache.write(inputPosition, buffer, 0, read);
+      inputPosition += read;
+    }
+  }
+
+  private void closeInput() {
     if (inputStream != null) {
       try {
         inputStream.close();
       } catch (IOException e) {
         e.printStackTrace();
       }
+      inputStream = null;
     }
   }
 
+  @Override
+  public void close() {
+    closed = true;
+    closeInput();
+  }
+
   public String getName() {
     return name;
   }
@@ -22,10 +22,11 @@ package com.amaze.filemanager.filesystem.cloud;
 
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
 import java.util.Properties;
 import java.util.regex.Pattern;
 
+import com.amaze.filemanager.filesystem.streams.HttpSessions;
+
 import android.util.Log;
 
 import jcifs.smb.SmbFile;
@@ -35,7 +36,8 @@ public class CloudStreamer extends CloudStreamServer {
 
   public static final int PORT = 7871;
   public static final String URL = "http://127.0.0.1:" + PORT;
-  private InputStream inputStream;
+  private CloudStreamSource.Opener opener;
+  private SpillCache spillCache;
   private String fileName;
   long length = 0;
   private static CloudStreamer instance;
@@ -64,15 +66,36 @@ public class CloudStreamer extends CloudStreamServer {
     return pattern.matcher(file.getName()).matches();
   }
 
-  public void setStreamSrc(InputStream inputStream, String fileName, long length) {
-    this.inputStream = inputStream;
+  /**
+   * Serves the given file from now on. Ranges downloaded while it is played are kept in a {@link
+   * SpillCache} until another file is set or the server stops.
+   */
+  public synchronized void setStreamSrc(
+      CloudStreamSource.Opener opener, String fileName, long length) {
+    closeSpillCache();
+    try {
+      spillCache = new SpillCache(File.createTempFile("stream", ".spill"));
+    } catch (IOException e) {
+      Log.w(CloudUtil.TAG, "Streaming without a spill cache", e);
+    }
+    this.opener = opener;
     this.fileName = fileName;
     this.length = length;
   }
 
+  private void closeSpillCache() {
+    if (spillCache != null) {
+      spillCache.close();
+      spillCache = null;
+    }
+  }
+
   @Override
   public void stop() {
     super.stop();
+    synchronized (this) {
+      closeSpillCache();
+    }
     instance = null;
   }
 
@@ -80,50 +103,37 @@ public class CloudStreamer extends CloudStreamServer {
   public CloudStreamServer.Response serve(
       String uri, String method, Properties header, Properties parms, Properties files) {
     CloudStreamServer.Response res = null;
+    final CloudStreamSource.Opener opener;
+    final SpillCache spillCache;
+    final String fileName;
+    final long length;
+    synchronized (this) {
+      opener = this.opener;
+      spillCache = this.spillCache;
+      fileName = this.fileName;
+      length = this.length;
+    }
 
-    if (inputStream == null)
-      res = new CloudStreamServer.Response(HTTP_NOTFOUND, MIME_PLAINTEXT, null);
+    if (opener == null) res = new CloudStreamServer.Response(HTTP_NOTFOUND, MIME_PLAINTEXT, null);
     else {
-
-      long startFrom = 0;
-      long endAt = -1;
       String range = header.getProperty("range");
-      if (range != null) {
-        if (range.startsWith("bytes=")) {
-          range = range.substring("bytes=".length());
-          int minus = range.indexOf('-');
-          try {
-            if (minus > 0) {
-              startFrom = Long.parseLong(range.substring(0, minus));
-              endAt = Long.parseLong(range.substring(minus + 1));
-            }
-          } catch (NumberFormatException nfe) {
-          }
-        }
-      }
-      Log.d(CloudUtil.TAG, "Request: " + range + " from: " + startFrom + ", to: " + endAt);
-
-      // Change return code and add Content-Range header when skipping
-      // is requested
-      // source.open();
-      final CloudStreamSource source = new CloudStreamSource(fileName, length, inputStream);
+      final CloudStreamSource source = new CloudStreamSource(fileName, length, opener, spillCache);
       long fileLen = source.length();
-      if (range != null && startFrom > 0) {
-        if (startFrom >= fileLen) {
-          res = new CloudStreamServer.Response(HTTP_RANGE_NOT_SATISFIABLE, MIME_PLAINTEXT, null);
-          res.addHeader("Content-Range", "bytes 0-0/" + fileLen);
-        } else {
-          if (endAt < 0) endAt = fileLen - 1;
-          long newLen = fileLen - startFrom;
-          if (newLen < 0) newLen = 0;
-          Log.d(CloudUtil.TAG, "start=" + startFrom + ", endAt=" + endAt + ", newLen=" + newLen);
-          final long dataLen = newLen;
-          source.moveTo(startFrom);
-          Log.d(CloudUtil.TAG, "Skipped " + startFrom + " bytes");
-
-          res = new CloudStreamServer.Response(HTTP_PARTIALCONTENT, null, source);
-          res.addHeader("Content-length", "" + dataLen);
-        }
+      long[] bounds = HttpSessions.parseRange(range, fileLen);
+      Log.d(CloudUtil.TAG, "Request: " + range + " of " + fileLen + " bytes");
+
+      if (bounds != null && bounds[0] >= fileLen) {
+        res = new CloudStreamServer.Response(HTTP_RANGE_NOT_SATISFIABLE, MIME_PLAINTEXT, null);
+        res.addHeader("Content-Range", "bytes */" + fileLen);
+      } else if (bounds != null) {
+        long startFrom = bounds[0];
+        long endAt = bounds[1];
+        source.moveTo(startFrom);
+        source.setLimit(endAt + 1);
+
+        res = new CloudStreamServer.Response(HTTP_PARTIALCONTENT, null, source);
+        res.addHeader("Content-Length", "" + (endAt - startFrom + 1));
+        res.addHeader("Content-Range", "bytes " + startFrom + "-" + endAt + "/" + fileLen);
       } else {
         source.reset();
         res = new CloudStreamServer.Response(HTTP_OK, null, source);
@@ -34,7 +34,6 @@ import com.amaze.filemanager.database.CloudHandler;
 import com.amaze.filemanager.exceptions.CloudPluginException;
 import com.amaze.filemanager.filesystem.HybridFile;
 import com.amaze.filemanager.filesystem.HybridFileParcelable;
-import com.amaze.filemanager.filesystem.ssh.SFtpClientTemplate;
 import com.amaze.filemanager.filesystem.ssh.SshClientUtils;
 import com.amaze.filemanager.ui.activities.MainActivity;
 import com.amaze.filemanager.ui.icons.MimeTypes;
@@ -56,11 +55,9 @@ import android.net.Uri;
 import android.os.AsyncTask;
 import android.widget.Toast;
 
+import androidx.annotation.NonNull;
 import androidx.documentfile.provider.DocumentFile;
 
-import net.schmizz.sshj.sftp.RemoteFile;
-import net.schmizz.sshj.sftp.SFTPClient;
-
 /**
  * Created by vishal on 19/4/17.
  *
@@ -154,8 +151,25 @@ public class CloudUtil {
     new Thread(
             () -> {
               try {
+                // Providers only send whole files, seeking is served by reading through or from
+                // the spill cache
                 streamer.setStreamSrc(
-                    baseFile.getInputStream(activity),
+                    new CloudStreamSource.Opener() {
+                      @Override
+                      public boolean isSeekable() {
+                        return false;
+                      }
+
+                      @NonNull
+                      @Override
+                      public InputStream open(long offset) throws IOException {
+                        InputStream inputStream = baseFile.getInputStream(activity);
+                        if (inputStream == null) {
+                          throw new IOException("Can't download " + baseFile.getPath());
+                        }
+                        return inputStream;
+                      }
+                    },
                     baseFile.getName(activity),
                     baseFile.length(activity));
                 activity.runOnUiThread(
@@ -297,25 +311,8 @@ public class CloudUtil {
     switch (hybridFile.getMode()) {
       case SFTP:
         inputStream =
-            SshClientUtils.execute(
-                new SFtpClientTemplate(hybridFile.getPath(), false) {
-                  @Override
-                  public InputStream execute(final SFTPClient client) throws IOException {
-                    final RemoteFile rf =
-                        client.open(SshClientUtils.extractRemotePathFrom(hybridFile.getPath()));
-                    return rf.new RemoteFileInputStream() {
-                      @Override
-                      public void close() throws IOException {
-                        try {
-                          super.close();
-                        } finally {
-                          rf.close();
-                          client.close();
-                        }
-                      }
-                    };
-                  }
-                });
+            SshClientUtils.openInputStream(
+                hybridFile.getPath(), SshClientUtils.DEFAULT_REQUEST_DEPTH);
         break;
       case SMB:
         try {
@@ -0,0 +1,130 @@
+/*
+ * Copyright (C) 2014-2020 Arpit Khurana <arpitkh96@gmail.com>, Vishal Nehra <vishalmeham2@gmail.com>,
+ * Emmanuel Messulam<emmanuelbendavid@gmail.com>, Raymond Lai <airwave209gt at gmail.com> and Contributors.
+ *
+ * This file is part of Amaze File Manager.
+ *
+ * Amaze File Manager is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.amaze.filemanager.filesystem.cloud;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.TreeMap;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Byte ranges of a streamed file that were downloaded already, kept at their offset in a sparse
+ * file, so that a player seeking back or probing the end of the file again doesn't download them
+ * another time.
+ */
+final class SpillCache {
+
+  /** Bytes kept at most, later downloads are not kept */
+  static final long MAX_SIZE = 256L * 1024 * 1024;
+
+  private final File file;
+  private final RandomAccessFile raf;
+  /** Start of every cached range mapped to its end (exclusive), ranges never touch each other */
+  private final TreeMap<Long, Long> ranges = new TreeMap<>();
+
+  private final long maxSize;
+  private long size = 0;
+  private boolean closed = false;
+
+  SpillCache(@NonNull File file) throws IOException {
+    this(file, MAX_SIZE);
+  }
+
+  SpillCache(@NonNull File file, long maxSize) throws IOException {
+    this.file = file;
+    this.raf = new RandomAccessFile(file, "rw");
+    this.maxSize = maxSize;
+  }
+
+  /**
+   * Copies cached bytes starting at {@code position}.
+   *
+   * @return number of bytes copied, 0 if {@code position} is not cached
+   */
+  synchronized int read(long position, byte[] b, int off, int len) throws IOException {
+    if (closed) return 0;
+
+    Map.Entry<Long, Long> range = ranges.floorEntry(position);
+    if (range == null || range.getValue() <= position) return 0;
+
+    int count = (int) Math.min(len, range.getValue() - position);
+    raf.seek(position);
+    raf.readFully(b, off, count);
+    return count;
+  }
+
+  /** Whether the byte at {@code position} is cached */
+  synchronized boolean contains(long position) {
+    Map.Entry<Long, Long> range = ranges.floorEntry(position);
+    return !closed && range != null && range.getValue() > position;
+  }
+
+  /** Keeps {@code len} bytes downloaded from {@code position}, unless the cache is full. */
+  synchronized void write(long position, byte[] b, int off, int len) throws IOException {
+    if (closed || len <= 0) return;
+
+    long start = position;
+    long end = position + len;
+    long cached = 0;
+    Map.Entry<Long, Long> lower = ranges.floorEntry(position);
+    if (lower != null && lower.getValue() >= position) start = lower.getKey();
+
+    // Ranges overlapping or touching the new one are merged into it
+    ArrayList<Long> merged = new ArrayList<>();
+    for (Map.Entry<Long, Long> range : ranges.subMap(start, true, end, true).entrySet()) {
+      merged.add(range.getKey());
+      cached += range.getValue() - range.getKey();
+      end = Math.max(end, range.getValue());
+    }
+
+    long added = end - start - cached;
+    if (size + added > maxSize) return;
+
+    raf.seek(position);
+    raf.write(b, off, len);
+    for (Long key : merged) ranges.remove(key);
+    ranges.put(start, end);
+    size += added;
+  }
+
+  /** Number of bytes cached */
+  synchronized long size() {
+    return size;
+  }
+
+  /** Drops the cached data and deletes the file. */
+  synchronized void close() {
+    if (closed) return;
+
+    closed = true;
+    ranges.clear();
+    try {
+      raf.close();
+    } catch (IOException e) {
+      e.printStackTrace();
+    }
+    file.delete();
+  }
+}
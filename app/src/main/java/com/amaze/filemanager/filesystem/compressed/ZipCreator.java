@@ -0,0 +1,291 @@
+/*
+ * Copyright (C) 2014-2020 Arpit Khurana <arpitkh96@gmail.com>, Vishal Nehra <vishalmeham2@gmail.com>,
+ * Emmanuel Messulam<emmanuelbendavid@gmail.com>, Raymond Lai <airwave209gt at gmail.com> and Contributors.
+ *
+ * This file is part of Amaze File Manager.
+ *
+ * Amaze File Manager is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.amaze.filemanager.filesystem.compressed;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.ZipEntry;
+
+import org.apache.commons.compress.archivers.zip.ParallelScatterZipCreator;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+import org.apache.commons.compress.parallel.ScatterGatherBackingStore;
+
+import com.amaze.filemanager.ui.icons.MimeTypes;
+import com.amaze.filemanager.utils.ProgressHandler;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * Creates ZIP archives, compressing entries on a pool of threads with {@link
+ * ParallelScatterZipCreator}: every thread deflates its entries into a scatter file of its own,
+ * then the scatter files are copied one after the other into the archive.
+ *
+ * <p>{@link ProgressHandler#setSourceFilesProcessed(int)} counts the files and directories given
+ * to {@link #compress(List, OutputStream)} once every entry in them is compressed.
+ *
+ * <p>Files in formats compressed already (see {@link MimeTypes#isCompressed(String)}) are stored
+ * as they are, deflating them would cost time for a few bytes at best.
+ */
+public final class ZipCreator {
+
+  private static final String TAG = ZipCreator.class.getSimpleName();
+
+  private static final long STOP_TIMEOUT_SECONDS = 10;
+
+  private final int parallelism;
+  private final File scatterDirectory;
+  @Nullable private final ProgressHandler progressHandler;
+  private final AtomicInteger sourceFilesProcessed = new AtomicInteger();
+
+  /** Set once an archive is done with, so that threads still compressing entries give up */
+  private volatile boolean finished;
+
+  /**
+   * @param parallelism number of threads compressing entries
+   * @param scatterDirectory where the scatter files are kept until they are copied to the archive
+   * @param progressHandler counts bytes compressed and tells if the operation was cancelled
+   */
+  public ZipCreator(
+      int parallelism, @NonNull File scatterDirectory, @Nullable ProgressHandler progressHandler) {
+    this.parallelism = Math.max(1, parallelism);
+    this.scatterDirectory = scatterDirectory;
+    this.progressHandler = progressHandler;
+  }
+
+  /**
+   * Compresses {@code files}, directories with everything in them, into an archive written to
+   * {@code outputStream}, which is closed. Returns early if the operation is cancelled.
+   */
+  public void compress(@NonNull List<File> files, @NonNull OutputStream outputStream)
+      throws IOException {
+    finished = false;
+    sourceFilesProcessed.set(0);
+    ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+    List<ScatterGatherBackingStore> stores = Collections.synchronizedList(new ArrayList<>());
+    ParallelScatterZipCreator creator =
+        new ParallelScatterZipCreator(
+            executor,
+            () -> {
+              ScatterGatherBackingStore store =
+                  new ScatterFile(File.createTempFile("zip", ".scatter", scatterDirectory));
+              stores.add(store);
+              return store;
+            });
+
+    try (ZipArchiveOutputStream zipOutputStream = new ZipArchiveOutputStream(outputStream)) {
+      for (File file : files) {
+        SourceFile sourceFile = new SourceFile();
+        addEntries(creator, file, "", sourceFile);
+        sourceFile.onEntryDone();
+      }
+      creator.writeTo(zipOutputStream);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException();
+    } catch (ExecutionException e) {
+      if (isCancelled()) {
+        return;
+      }
+      if (e.getCause() instanceof IOException) {
+        throw (IOException) e.getCause();
+      }
+      throw new IOException(e.getCause());
+    } finally {
+      finished = true;
+      executor.shutdownNow();
+      try {
+        executor.awaitTermination(STOP_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      // scatter files are only deleted by writeTo() when every entry succeeded
+      synchronized (stores) {
+        for (ScatterGatherBackingStore store : stores) {
+          try {
+            store.close();
+          } catch (IOException e) {
+            Log.w(TAG, "Failed to delete scatter file", e);
+          }
+        }
+      }
+    }
+  }
+
+  private void addEntries(
+      @NonNull ParallelScatterZipCreator creator,
+      @NonNull File file,
+      @NonNull String path,
+      @NonNull SourceFile sourceFile) {
+    if (!file.isDirectory()) {
+      ZipArchiveEntry entry = new ZipArchiveEntry(path + "/" + file.getName());
+      entry.setMethod(MimeTypes.isCompressed(file.getName()) ? ZipEntry.STORED : ZipEntry.DEFLATED);
+      entry.setTime(file.lastModified());
+      sourceFile.addEntry();
+      creator.addArchiveEntry(entry, () -> new EntryInputStream(file, sourceFile));
+      return;
+    }
+
+    File[] children = file.listFiles();
+    if (children == null) return;
+
+    for (File child : children) {
+      addEntries(creator, child, path + File.separator + file.getName(), sourceFile);
+    }
+  }
+
+  private boolean isCancelled() {
+    return progressHandler != null && progressHandler.getCancelled();
+  }
+
+  /**
+   * Entries of one of the files given to {@link #compress(List, OutputStream)} still being
+   * compressed, plus one until all of them are added
+   */
+  private final class SourceFile {
+
+    private final AtomicInteger pendingEntries = new AtomicInteger(1);
+
+    void addEntry() {
+      pendingEntries.incrementAndGet();
+    }
+
+    void onEntryDone() {
+      if (pendingEntries.decrementAndGet() == 0 && progressHandler != null) {
+        progressHandler.setSourceFilesProcessed(sourceFilesProcessed.incrementAndGet());
+      }
+    }
+  }
+
+  /**
+   * Opens the file when first read, on the compressing thread, counts the bytes read and fails
+   * reads once the operation is cancelled or the archive failed
+   */
+  private final class EntryInputStream extends InputStream {
+
+    private final File file;
+    private final SourceFile sourceFile;
+    private InputStream inputStream;
+    private boolean done;
+
+    EntryInputStream(@NonNull File file, @NonNull SourceFile sourceFile) {
+      this.file = file;
+      this.sourceFile = sourceFile;
+    }
+
+    @Override
+    public int read() throws IOException {
+      byte[] b = new byte[1];
+      return read(b, 0, 1) == -1 ? -1 : b[0] & 0xff;
+    }
+
+    @Override
+    public int read(@NonNull byte[] b, int off, int len) throws IOException {
+      if (finished || isCancelled()) {
+        throw new InterruptedIOException("Stopped");
+      }
+      if (inputStream == null) {
+        inputStream = new FileInputStream(file);
+        if (progressHandler != null) {
+          progressHandler.setFileName(file.getName());
+        }
+      }
+
+      int count = inputStream.read(b, off, len);
+      if (count > 0 && progressHandler != null) {
+        progressHandler.addToPosition(count);
+      } else if (count == -1 && !done) {
+        done = true;
+        sourceFile.onEntryDone();
+      }
+      return count;
+    }
+
+    @Override
+    public void close() throws IOException {
+      if (inputStream != null) {
+        inputStream.close();
+      }
+    }
+  }
+
+  /**
+   * Scatter file written and read with plain streams, {@link
+   * org.apache.commons.compress.parallel.FileBasedScatterGatherBackingStore} needs java.nio.file,
+   * which is only there from Android 8.0
+   */
+  private static final class ScatterFile implements ScatterGatherBackingStore {
+
+    private final File file;
+    private final OutputStream outputStream;
+    private boolean closedForWriting;
+
+    ScatterFile(@NonNull File file) throws IOException {
+      this.file = file;
+      this.outputStream = new FileOutputStream(file);
+    }
+
+    @Override
+    public InputStream getInputStream() throws IOException {
+      return new FileInputStream(file);
+    }
+
+    @Override
+    public void writeOut(byte[] data, int offset, int length) throws IOException {
+      outputStream.write(data, offset, length);
+    }
+
+    @Override
+    public void closeForWriting() throws IOException {
+      if (!closedForWriting) {
+        closedForWriting = true;
+        outputStream.close();
+      }
+    }
+
+    @Override
+    public void close() throws IOException {
+      try {
+        closeForWriting();
+      } finally {
+        if (!file.delete() && file.exists()) {
+          throw new IOException("Failed to delete " + file);
+        }
+      }
+    }
+  }
+}
@@ -95,6 +95,9 @@ public abstract class Extractor {
     void onFinish();
 
     boolean isCancelled();
+
+    /** @param length bytes extracted since the last call */
+    default void onProgress(long length) {}
   }
 
   protected String fixEntryName(String entryName) {
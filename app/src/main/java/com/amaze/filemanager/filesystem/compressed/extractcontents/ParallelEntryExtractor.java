@@ -0,0 +1,289 @@
+/*
+ * Copyright (C) 2014-2020 Arpit Khurana <arpitkh96@gmail.com>, Vishal Nehra <vishalmeham2@gmail.com>,
+ * Emmanuel Messulam<emmanuelbendavid@gmail.com>, Raymond Lai <airwave209gt at gmail.com> and Contributors.
+ *
+ * This file is part of Amaze File Manager.
+ *
+ * Amaze File Manager is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.amaze.filemanager.filesystem.compressed.extractcontents;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.amaze.filemanager.filesystem.FileUtil;
+import com.amaze.filemanager.filesystem.files.GenericCopyUtil;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * Writes the entries of an archive to disk, on a few threads for archives whose entries can be
+ * read independently of each other, like ZIP archives and non solid RAR archives.
+ *
+ * <p>Directories are created first, on the calling thread, then the files are written by a pool
+ * of threads each reading through a handle on the archive of its own. Every call to {@link
+ * Extractor.OnUpdate} is made from the calling thread: the bytes written by the pool are summed
+ * and reported every {@link #PROGRESS_INTERVAL_MILLIS}, and an entry is reported once written.
+ *
+ * @param <H> handle on the archive entries are read through, e.g. a ZipFile
+ */
+public final class ParallelEntryExtractor<H> {
+
+  private static final String TAG = ParallelEntryExtractor.class.getSimpleName();
+
+  /** Writing entries is mostly I/O, more threads than this only contend for the storage */
+  private static final int MAX_PARALLELISM = 4;
+
+  private static final long PROGRESS_INTERVAL_MILLIS = 200;
+  private static final long STOP_TIMEOUT_SECONDS = 10;
+
+  /** Access to the archive entries are read from */
+  public interface Archive<H> {
+    /** Opens a new handle on the archive, for a thread of the pool */
+    @NonNull
+    H open() throws IOException;
+
+    /** Opens entry {@code index}, see {@link Entry#index}, through {@code handle} */
+    @NonNull
+    InputStream getInputStream(@NonNull H handle, int index) throws IOException;
+
+    /** Closes a handle returned by {@link #open()} */
+    void close(@NonNull H handle) throws IOException;
+  }
+
+  /** Entry to extract */
+  public static final class Entry {
+    /** Identifies the entry for {@link Archive#getInputStream(Object, int)} */
+    final int index;
+
+    final String name;
+    final File outputFile;
+    final boolean isDirectory;
+
+    public Entry(int index, @NonNull String name, @NonNull File outputFile, boolean isDirectory) {
+      this.index = index;
+      this.name = name;
+      this.outputFile = outputFile;
+      this.isDirectory = isDirectory;
+    }
+
+    @NonNull
+    public String getName() {
+      return name;
+    }
+  }
+
+  private final Context context;
+  private final Archive<H> archive;
+  private final Extractor.OnUpdate listener;
+  private final int parallelism;
+
+  private final ThreadLocal<H> threadHandles = new ThreadLocal<>();
+  private final List<H> openedHandles = new ArrayList<>();
+  /** Set when the pool must stop writing, after cancellation or a failure */
+  private volatile boolean stopped;
+
+  public ParallelEntryExtractor(
+      @NonNull Context context, @NonNull Archive<H> archive, @NonNull Extractor.OnUpdate listener) {
+    this(
+        context,
+        archive,
+        listener,
+        Math.min(MAX_PARALLELISM, Runtime.getRuntime().availableProcessors()));
+  }
+
+  ParallelEntryExtractor(
+      @NonNull Context context,
+      @NonNull Archive<H> archive,
+      @NonNull Extractor.OnUpdate listener,
+      int parallelism) {
+    this.context = context;
+    this.archive = archive;
+    this.listener = listener;
+    this.parallelism = parallelism;
+  }
+
+  /**
+   * Extracts {@code entries}, stopping early if the listener is cancelled
+   *
+   * @param handle handle the calling thread reads entries through, not closed
+   * @param parallel false to write files one after the other in their order in the archive, as
+   *     needed when entries depend on the previous ones (e.g. solid RAR archives)
+   */
+  public void extract(@NonNull H handle, @NonNull List<Entry> entries, boolean parallel)
+      throws IOException {
+    List<Entry> files = new ArrayList<>(entries.size());
+    for (Entry entry : entries) {
+      if (listener.isCancelled()) return;
+
+      if (entry.isDirectory) {
+        listener.onUpdate(entry.name);
+        FileUtil.mkdir(entry.outputFile, context);
+      } else {
+        File parent = entry.outputFile.getParentFile();
+        if (!parent.exists()) {
+          FileUtil.mkdir(parent, context);
+        }
+        files.add(entry);
+      }
+    }
+
+    if (!parallel || parallelism < 2 || files.size() < 2) {
+      for (Entry entry : files) {
+        if (listener.isCancelled()) return;
+
+        listener.onUpdate(entry.name);
+        write(handle, entry, null);
+      }
+    } else {
+      extractInParallel(files);
+    }
+  }
+
+  private void extractInParallel(@NonNull List<Entry> files) throws IOException {
+    ExecutorService executor = Executors.newFixedThreadPool(Math.min(parallelism, files.size()));
+    CompletionService<Entry> completionService = new ExecutorCompletionService<>(executor);
+    AtomicLong written = new AtomicLong();
+    stopped = false;
+
+    for (Entry entry : files) {
+      completionService.submit(
+          () -> {
+            write(getThreadHandle(), entry, written);
+            return entry;
+          });
+    }
+
+    try {
+      int remaining = files.size();
+      while (remaining > 0) {
+        Future<Entry> done =
+            completionService.poll(PROGRESS_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+        reportProgress(written);
+        if (listener.isCancelled()) return;
+
+        if (done != null) {
+          remaining--;
+          listener.onUpdate(getResult(done).name);
+        }
+      }
+      reportProgress(written);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException();
+    } finally {
+      stopped = true;
+      executor.shutdownNow();
+      try {
+        executor.awaitTermination(STOP_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      closeThreadHandles();
+    }
+  }
+
+  /** @param written counts the bytes written by the pool, null to report them to the listener */
+  private void write(@NonNull H handle, @NonNull Entry entry, @Nullable AtomicLong written)
+      throws IOException {
+    InputStream inputStream = archive.getInputStream(handle, entry.index);
+    OutputStream outputStream =
+        new BufferedOutputStream(FileUtil.getOutputStream(entry.outputFile, context));
+
+    try {
+      int len;
+      byte[] buf = new byte[GenericCopyUtil.DEFAULT_BUFFER_SIZE];
+      while ((len = inputStream.read(buf)) != -1) {
+        if (written == null ? listener.isCancelled() : stopped) break;
+
+        outputStream.write(buf, 0, len);
+        if (written == null) {
+          listener.onProgress(len);
+        } else {
+          written.addAndGet(len);
+        }
+      }
+    } finally {
+      outputStream.close();
+      inputStream.close();
+    }
+  }
+
+  @NonNull
+  private H getThreadHandle() throws IOException {
+    H handle = threadHandles.get();
+    if (handle == null) {
+      handle = archive.open();
+      threadHandles.set(handle);
+      synchronized (openedHandles) {
+        openedHandles.add(handle);
+      }
+    }
+    return handle;
+  }
+
+  private void closeThreadHandles() {
+    synchronized (openedHandles) {
+      for (H handle : openedHandles) {
+        try {
+          archive.close(handle);
+        } catch (IOException e) {
+          Log.w(TAG, "Failed to close archive", e);
+        }
+      }
+      openedHandles.clear();
+    }
+  }
+
+  private void reportProgress(@NonNull AtomicLong written) {
+    long length = written.getAndSet(0);
+    if (length > 0) {
+      listener.onProgress(length);
+    }
+  }
+
+  @NonNull
+  private static Entry getResult(@NonNull Future<Entry> done) throws IOException {
+    try {
+      return done.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException();
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof IOException) {
+        throw (IOException) e.getCause();
+      }
+      throw new IOException(e.getCause());
+    }
+  }
+}
@@ -30,7 +30,6 @@ import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
 import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
 import org.apache.commons.compress.compressors.gzip.GzipCompressorInputStream;
 
-import com.amaze.filemanager.asynchronous.management.ServiceWatcherUtil;
 import com.amaze.filemanager.filesystem.FileUtil;
 import com.amaze.filemanager.filesystem.compressed.CompressedHelper;
 import com.amaze.filemanager.filesystem.compressed.extractcontents.Extractor;
@@ -118,7 +117,7 @@ public class GzipExtractor extends Extractor {
       while ((len = inputStream.read(buf)) != -1) {
         if (!listener.isCancelled()) {
           outputStream.write(buf, 0, len);
-          ServiceWatcherUtil.position += len;
+          listener.onProgress(len);
         } else break;
       }
     } finally {
@@ -30,7 +30,6 @@ import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
 import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
 import org.apache.commons.compress.compressors.lzma.LZMACompressorInputStream;
 
-import com.amaze.filemanager.asynchronous.management.ServiceWatcherUtil;
 import com.amaze.filemanager.filesystem.FileUtil;
 import com.amaze.filemanager.filesystem.compressed.extractcontents.Extractor;
 import com.amaze.filemanager.filesystem.files.GenericCopyUtil;
@@ -107,7 +106,7 @@ public class LzmaExtractor extends Extractor {
       byte buf[] = new byte[GenericCopyUtil.DEFAULT_BUFFER_SIZE];
       while ((len = inputStream.read(buf)) != -1) {
         outputStream.write(buf, 0, len);
-        ServiceWatcherUtil.position += len;
+        listener.onProgress(len);
       }
     } finally {
       outputStream.close();
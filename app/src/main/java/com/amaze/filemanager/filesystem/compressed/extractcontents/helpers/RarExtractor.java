@@ -21,16 +21,15 @@
 package com.amaze.filemanager.filesystem.compressed.extractcontents.helpers;
 
 import java.io.BufferedInputStream;
-import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.List;
 
-import com.amaze.filemanager.asynchronous.management.ServiceWatcherUtil;
-import com.amaze.filemanager.filesystem.FileUtil;
 import com.amaze.filemanager.filesystem.compressed.CompressedHelper;
 import com.amaze.filemanager.filesystem.compressed.extractcontents.Extractor;
-import com.amaze.filemanager.filesystem.files.GenericCopyUtil;
+import com.amaze.filemanager.filesystem.compressed.extractcontents.ParallelEntryExtractor;
 import com.github.junrar.Archive;
 import com.github.junrar.exception.RarException;
 import com.github.junrar.rarfile.FileHeader;
@@ -54,71 +53,79 @@ public class RarExtractor extends Extractor {
     try {
       long totalBytes = 0;
       Archive rarFile = new Archive(new File(filePath));
-      ArrayList<FileHeader> arrayList = new ArrayList<>();
-
-      // iterating archive elements to find file names that are to be extracted
-      for (FileHeader header : rarFile.getFileHeaders()) {
-        if (CompressedHelper.isEntryPathValid(header.getFileNameString())) {
-          if (filter.shouldExtract(header.getFileNameString(), header.isDirectory())) {
-            // header to be extracted is at least the entry path (may be more, when it is a
-            // directory)
-            arrayList.add(header);
-            totalBytes += header.getFullUnpackSize();
+      ArrayList<ParallelEntryExtractor.Entry> arrayList = new ArrayList<>();
+
+      try {
+        // iterating archive elements to find file names that are to be extracted
+        List<FileHeader> fileHeaders = rarFile.getFileHeaders();
+        for (int i = 0; i < fileHeaders.size(); i++) {
+          FileHeader header = fileHeaders.get(i);
+          if (CompressedHelper.isEntryPathValid(header.getFileNameString())) {
+            if (filter.shouldExtract(header.getFileNameString(), header.isDirectory())) {
+              // header to be extracted is at least the entry path (may be more, when it is a
+              // directory)
+              arrayList.add(toEntry(i, header));
+              totalBytes += header.getFullUnpackSize();
+            }
+          } else {
+            invalidArchiveEntries.add(header.getFileNameString());
           }
-        } else {
-          invalidArchiveEntries.add(header.getFileNameString());
         }
-      }
 
-      listener.onStart(totalBytes, arrayList.get(0).getFileNameString());
+        listener.onStart(totalBytes, arrayList.get(0).getName());
 
-      for (FileHeader entry : arrayList) {
-        if (!listener.isCancelled()) {
-          listener.onUpdate(entry.getFileNameString());
-          extractEntry(context, rarFile, entry, outputPath);
-        }
+        // files of a solid archive are compressed as one stream, each depends on the previous ones
+        new ParallelEntryExtractor<>(context, new RarArchive(), listener)
+            .extract(rarFile, arrayList, !rarFile.getMainHeader().isSolid());
+        listener.onFinish();
+      } finally {
+        rarFile.close();
       }
-      listener.onFinish();
     } catch (RarException e) {
       throw new IOException(e);
     }
   }
 
-  private void extractEntry(
-      @NonNull final Context context, Archive zipFile, FileHeader entry, String outputDir)
-      throws RarException, IOException {
+  @NonNull
+  private ParallelEntryExtractor.Entry toEntry(int index, @NonNull FileHeader entry)
+      throws IOException {
     String name =
         fixEntryName(entry.getFileNameString()).replaceAll("\\\\", CompressedHelper.SEPARATOR);
-    File outputFile = new File(outputDir, name);
+    File outputFile = new File(outputPath, name);
 
-    if (!outputFile.getCanonicalPath().startsWith(outputDir)) {
+    if (!outputFile.getCanonicalPath().startsWith(outputPath)) {
       throw new IOException("Incorrect RAR FileHeader path!");
     }
 
-    if (entry.isDirectory()) {
-      FileUtil.mkdir(outputFile, context);
-      return;
-    }
+    return new ParallelEntryExtractor.Entry(
+        index, entry.getFileNameString(), outputFile, entry.isDirectory());
+  }
 
-    if (!outputFile.getParentFile().exists()) {
-      FileUtil.mkdir(outputFile.getParentFile(), context);
+  /** Every thread reads entries through an {@link Archive} of its own */
+  private class RarArchive implements ParallelEntryExtractor.Archive<Archive> {
+    @NonNull
+    @Override
+    public Archive open() throws IOException {
+      try {
+        return new Archive(new File(filePath));
+      } catch (RarException e) {
+        throw new IOException(e);
+      }
     }
-    //	Log.i("Amaze", "Extracting: " + entry);
-    BufferedInputStream inputStream = new BufferedInputStream(zipFile.getInputStream(entry));
-    BufferedOutputStream outputStream =
-        new BufferedOutputStream(FileUtil.getOutputStream(outputFile, context));
-    try {
-      int len;
-      byte buf[] = new byte[GenericCopyUtil.DEFAULT_BUFFER_SIZE];
-      while ((len = inputStream.read(buf)) != -1) {
-        if (!listener.isCancelled()) {
-          outputStream.write(buf, 0, len);
-          ServiceWatcherUtil.position += len;
-        } else break;
+
+    @NonNull
+    @Override
+    public InputStream getInputStream(@NonNull Archive rarFile, int index) throws IOException {
+      try {
+        return new BufferedInputStream(rarFile.getInputStream(rarFile.getFileHeaders().get(index)));
+      } catch (RarException e) {
+        throw new IOException(e);
       }
-    } finally {
-      outputStream.close();
-      inputStream.close();
+    }
+
+    @Override
+    public void close(@NonNull Archive rarFile) throws IOException {
+      rarFile.close();
     }
   }
 }
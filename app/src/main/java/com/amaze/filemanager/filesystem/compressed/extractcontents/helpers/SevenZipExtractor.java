@@ -25,7 +25,6 @@ import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 
-import com.amaze.filemanager.asynchronous.management.ServiceWatcherUtil;
 import com.amaze.filemanager.filesystem.FileUtil;
 import com.amaze.filemanager.filesystem.compressed.ArchivePasswordCache;
 import com.amaze.filemanager.filesystem.compressed.extractcontents.Extractor;
@@ -117,7 +116,7 @@ public class SevenZipExtractor extends Extractor {
                     ? GenericCopyUtil.DEFAULT_BUFFER_SIZE
                     : bytesLeft);
         outputStream.write(content, 0, length);
-        ServiceWatcherUtil.position += length;
+        listener.onProgress(length);
         progress += length;
       }
     } finally {
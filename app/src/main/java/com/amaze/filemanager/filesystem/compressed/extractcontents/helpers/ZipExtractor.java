@@ -21,18 +21,16 @@
 package com.amaze.filemanager.filesystem.compressed.extractcontents.helpers;
 
 import java.io.BufferedInputStream;
-import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.List;
 
-import com.amaze.filemanager.asynchronous.management.ServiceWatcherUtil;
-import com.amaze.filemanager.filesystem.FileUtil;
 import com.amaze.filemanager.filesystem.compressed.ArchivePasswordCache;
 import com.amaze.filemanager.filesystem.compressed.CompressedHelper;
 import com.amaze.filemanager.filesystem.compressed.extractcontents.Extractor;
-import com.amaze.filemanager.filesystem.files.GenericCopyUtil;
+import com.amaze.filemanager.filesystem.compressed.extractcontents.ParallelEntryExtractor;
 
 import android.content.Context;
 
@@ -55,20 +53,18 @@ public class ZipExtractor extends Extractor {
   @Override
   protected void extractWithFilter(@NonNull Filter filter) throws IOException {
     long totalBytes = 0;
-    List<FileHeader> entriesToExtract = new ArrayList<>();
+    List<ParallelEntryExtractor.Entry> entriesToExtract = new ArrayList<>();
     try {
-      ZipFile zipfile = new ZipFile(filePath);
-      if (ArchivePasswordCache.getInstance().containsKey(filePath)) {
-        zipfile.setPassword(ArchivePasswordCache.getInstance().get(filePath));
-      }
+      ZipFile zipfile = openZipFile();
 
       // iterating archive elements to find file names that are to be extracted
-      for (Object obj : zipfile.getFileHeaders()) {
-        FileHeader fileHeader = (FileHeader) obj;
+      List<?> fileHeaders = zipfile.getFileHeaders();
+      for (int i = 0; i < fileHeaders.size(); i++) {
+        FileHeader fileHeader = (FileHeader) fileHeaders.get(i);
 
         if (CompressedHelper.isEntryPathValid(fileHeader.getFileName())) {
           if (filter.shouldExtract(fileHeader.getFileName(), fileHeader.isDirectory())) {
-            entriesToExtract.add(fileHeader);
+            entriesToExtract.add(toEntry(i, fileHeader));
             totalBytes += fileHeader.getUncompressedSize();
           }
         } else {
@@ -76,66 +72,68 @@ public class ZipExtractor extends Extractor {
         }
       }
 
-      listener.onStart(totalBytes, entriesToExtract.get(0).getFileName());
+      listener.onStart(totalBytes, entriesToExtract.get(0).getName());
 
-      for (FileHeader entry : entriesToExtract) {
-        if (!listener.isCancelled()) {
-          listener.onUpdate(entry.getFileName());
-          extractEntry(context, zipfile, entry, outputPath);
-        }
-      }
+      // entries are compressed independently of each other, they can always be read in parallel
+      new ParallelEntryExtractor<>(context, new ZipArchive(), listener)
+          .extract(zipfile, entriesToExtract, true);
       listener.onFinish();
     } catch (ZipException e) {
       throw new IOException(e);
     }
   }
 
-  /**
-   * Method extracts {@link FileHeader} from {@link ZipFile}
-   *
-   * @param zipFile zip file from which entriesToExtract are to be extracted
-   * @param entry zip entry that is to be extracted
-   * @param outputDir output directory
-   */
-  private void extractEntry(
-      @NonNull final Context context, ZipFile zipFile, FileHeader entry, String outputDir)
-      throws IOException, ZipException {
-    final File outputFile = new File(outputDir, fixEntryName(entry.getFileName()));
-
-    if (ArchivePasswordCache.getInstance().containsKey(filePath))
-      entry.setPassword(ArchivePasswordCache.getInstance().get(filePath).toCharArray());
-
-    if (!outputFile.getCanonicalPath().startsWith(outputDir)) {
-      throw new IOException("Incorrect ZipEntry path!");
+  @NonNull
+  private ZipFile openZipFile() throws ZipException {
+    ZipFile zipfile = new ZipFile(filePath);
+    if (ArchivePasswordCache.getInstance().containsKey(filePath)) {
+      zipfile.setPassword(ArchivePasswordCache.getInstance().get(filePath));
     }
+    return zipfile;
+  }
 
-    if (entry.isDirectory()) {
-      // zip entry is a directory, return after creating new directory
-      FileUtil.mkdir(outputFile, context);
-      return;
-    }
+  @NonNull
+  private ParallelEntryExtractor.Entry toEntry(int index, @NonNull FileHeader entry)
+      throws IOException {
+    final File outputFile = new File(outputPath, fixEntryName(entry.getFileName()));
 
-    if (!outputFile.getParentFile().exists()) {
-      // creating directory if not already exists
-      FileUtil.mkdir(outputFile.getParentFile(), context);
+    if (!outputFile.getCanonicalPath().startsWith(outputPath)) {
+      throw new IOException("Incorrect ZipEntry path!");
     }
 
-    BufferedInputStream inputStream = new BufferedInputStream(zipFile.getInputStream(entry));
-    BufferedOutputStream outputStream =
-        new BufferedOutputStream(FileUtil.getOutputStream(outputFile, context));
+    return new ParallelEntryExtractor.Entry(
+        index, entry.getFileName(), outputFile, entry.isDirectory());
+  }
 
-    try {
-      int len;
-      byte buf[] = new byte[GenericCopyUtil.DEFAULT_BUFFER_SIZE];
-      while ((len = inputStream.read(buf)) != -1) {
-        if (!listener.isCancelled()) {
-          outputStream.write(buf, 0, len);
-          ServiceWatcherUtil.position += len;
-        } else break;
+  /** Every thread reads entries through a {@link ZipFile} of its own */
+  private class ZipArchive implements ParallelEntryExtractor.Archive<ZipFile> {
+    @NonNull
+    @Override
+    public ZipFile open() throws IOException {
+      try {
+        return openZipFile();
+      } catch (ZipException e) {
+        throw new IOException(e);
       }
-    } finally {
-      outputStream.close();
-      inputStream.close();
+    }
+
+    @NonNull
+    @Override
+    public InputStream getInputStream(@NonNull ZipFile zipFile, int index) throws IOException {
+      try {
+        FileHeader entry = (FileHeader) zipFile.getFileHeaders().get(index);
+        if (ArchivePasswordCache.getInstance().containsKey(filePath))
+          entry.setPassword(ArchivePasswordCache.getInstance().get(filePath).toCharArray());
+
+        return new BufferedInputStream(zipFile.getInputStream(entry));
+      } catch (ZipException e) {
+        throw new IOException(e);
+      }
+    }
+
+    @Override
+    public void close(@NonNull ZipFile zipFile) {
+      // streams of entries are closed after reading, there's nothing else to close
     }
   }
 }
@@ -0,0 +1,158 @@
+/*
+ * Copyright (C) 2014-2020 Arpit Khurana <arpitkh96@gmail.com>, Vishal Nehra <vishalmeham2@gmail.com>,
+ * Emmanuel Messulam<emmanuelbendavid@gmail.com>, Raymond Lai <airwave209gt at gmail.com> and Contributors.
+ *
+ * This file is part of Amaze File Manager.
+ *
+ * Amaze File Manager is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.amaze.filemanager.filesystem.compressed.showcontents;
+
+import static com.amaze.filemanager.filesystem.compressed.CompressedHelper.SEPARATOR;
+import static com.amaze.filemanager.filesystem.compressed.CompressedHelper.SEPARATOR_CHAR;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import com.amaze.filemanager.adapters.data.CompressedObjectParcelable;
+
+import android.util.LruCache;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+
+/**
+ * Directory tree of the entries of an archive.
+ *
+ * <p>Listing a directory inside an archive means reading all of its entries, and for compressed
+ * tarballs decompressing the whole file. The {@link Decompressor} helper tasks read the entries
+ * once into an index, which is then kept for the archive as long as its size and modification time
+ * stay the same, so going from folder to folder doesn't read the archive again. Indexes of the
+ * least recently browsed archives are dropped once they hold {@link #MAX_CACHED_ENTRIES} entries
+ * together.
+ */
+public final class ArchiveIndex {
+
+  @VisibleForTesting static final int MAX_CACHED_ENTRIES = 200000;
+
+  private static final LruCache<String, ArchiveIndex> indexes =
+      new LruCache<String, ArchiveIndex>(MAX_CACHED_ENTRIES) {
+        @Override
+        protected int sizeOf(String key, ArchiveIndex value) {
+          return value.size() + 1;
+        }
+      };
+
+  /** Children of each directory, keyed by the directory path without separator at either end */
+  private final Map<String, LinkedHashMap<String, CompressedObjectParcelable>> children =
+      new HashMap<>();
+  /** Directories that have no entry of their own in the archive */
+  private final Set<String> implicitDirectories = new HashSet<>();
+
+  private int size = 0;
+
+  /** @return the index of the archive at {@code archivePath}, or null if it wasn't read yet */
+  @Nullable
+  public static ArchiveIndex get(@NonNull String archivePath) {
+    return indexes.get(getKey(archivePath));
+  }
+
+  /** Keep the index of the archive at {@code archivePath} for later listings */
+  public static void put(@NonNull String archivePath, @NonNull ArchiveIndex index) {
+    indexes.put(getKey(archivePath), index);
+  }
+
+  /** Forget all indexes */
+  public static void clear() {
+    indexes.evictAll();
+  }
+
+  // a changed archive has to be read again
+  private static String getKey(@NonNull String archivePath) {
+    File file = new File(archivePath);
+    return archivePath + '@' + file.length() + '#' + file.lastModified();
+  }
+
+  /**
+   * Add an entry of the archive. Parent directories without an entry of their own are added too,
+   * only the first entry is kept if the archive has several with the same path.
+   */
+  public void add(@NonNull CompressedObjectParcelable entry) {
+    String path = trimSeparators(entry.path);
+    if (path.isEmpty()) return;
+
+    LinkedHashMap<String, CompressedObjectParcelable> siblings = getChildren(getParent(path));
+    if (!siblings.containsKey(path)) {
+      size++;
+      siblings.put(path, entry);
+    } else if (entry.directory && implicitDirectories.remove(path)) {
+      siblings.put(path, entry);
+    }
+  }
+
+  /**
+   * @param directory separator is "/", with or without separator at the end, empty for the root
+   * @return the entries directly inside {@code directory}
+   */
+  @NonNull
+  public ArrayList<CompressedObjectParcelable> list(@Nullable String directory) {
+    Map<String, CompressedObjectParcelable> entries =
+        children.get(directory == null ? "" : trimSeparators(directory));
+    return entries == null ? new ArrayList<>() : new ArrayList<>(entries.values());
+  }
+
+  /** @return the number of entries, including the implicit directories */
+  public int size() {
+    return size;
+  }
+
+  private LinkedHashMap<String, CompressedObjectParcelable> getChildren(String directory) {
+    LinkedHashMap<String, CompressedObjectParcelable> entries = children.get(directory);
+    if (entries == null) {
+      entries = new LinkedHashMap<>();
+      children.put(directory, entries);
+
+      if (!directory.isEmpty()) {
+        LinkedHashMap<String, CompressedObjectParcelable> siblings =
+            getChildren(getParent(directory));
+        if (!siblings.containsKey(directory)) {
+          size++;
+          implicitDirectories.add(directory);
+          siblings.put(
+              directory, new CompressedObjectParcelable(directory + SEPARATOR, 0, 0, true));
+        }
+      }
+    }
+    return entries;
+  }
+
+  private static String getParent(String path) {
+    int index = path.lastIndexOf(SEPARATOR);
+    return index < 0 ? "" : path.substring(0, index);
+  }
+
+  private static String trimSeparators(String path) {
+    int start = 0, end = path.length();
+    while (start < end && path.charAt(start) == SEPARATOR_CHAR) start++;
+    while (end > start && path.charAt(end - 1) == SEPARATOR_CHAR) end--;
+    return path.substring(start, end);
+  }
+}
@@ -84,6 +84,9 @@ import androidx.annotation.RequiresApi;
  * <p>We use buffered streams to process files, usage of NIO will probably mildly effect the
  * performance.
  *
+ * <p>Files are written in the segmented container of {@link SegmentedCipher}, files encrypted
+ * before it as a single GCM stream are still decrypted.
+ *
  * <p>Be sure to use constructors to encrypt/decrypt files only, and to call service through {@link
  * ServiceWatcherUtil} and to initialize watchers beforehand
  */
@@ -330,32 +333,7 @@ public class CryptUtil {
   @RequiresApi(api = Build.VERSION_CODES.M)
   private void aesEncrypt(BufferedInputStream inputStream, BufferedOutputStream outputStream)
       throws GeneralSecurityException, IOException {
-
-    Cipher cipher = Cipher.getInstance(ALGO_AES);
-
-    GCMParameterSpec gcmParameterSpec = new GCMParameterSpec(128, IV.getBytes());
-
-    cipher.init(Cipher.ENCRYPT_MODE, getSecretKey(), gcmParameterSpec);
-
-    byte[] buffer = new byte[GenericCopyUtil.DEFAULT_BUFFER_SIZE];
-    int count;
-
-    CipherOutputStream cipherOutputStream = new CipherOutputStream(outputStream, cipher);
-
-    try {
-
-      while ((count = inputStream.read(buffer)) != -1) {
-        if (!progressHandler.getCancelled()) {
-          cipherOutputStream.write(buffer, 0, count);
-          ServiceWatcherUtil.position += count;
-        } else break;
-      }
-    } finally {
-
-      cipherOutputStream.flush();
-      cipherOutputStream.close();
-      inputStream.close();
-    }
+    segmentedEncrypt(getSecretKey(), inputStream, outputStream);
   }
 
   /**
@@ -367,11 +345,48 @@ public class CryptUtil {
   @RequiresApi(api = Build.VERSION_CODES.M)
   private void aesDecrypt(BufferedInputStream inputStream, BufferedOutputStream outputStream)
       throws GeneralSecurityException, IOException {
+    if (SegmentedCipher.isSegmented(inputStream)) {
+      segmentedDecrypt(getSecretKey(), inputStream, outputStream);
+      return;
+    }
 
     Cipher cipher = Cipher.getInstance(ALGO_AES);
     GCMParameterSpec gcmParameterSpec = new GCMParameterSpec(128, IV.getBytes());
 
     cipher.init(Cipher.DECRYPT_MODE, getSecretKey(), gcmParameterSpec);
+    legacyDecrypt(cipher, inputStream, outputStream);
+  }
+
+  /** Writes the segmented container, see {@link SegmentedCipher} */
+  private void segmentedEncrypt(
+      Key key, BufferedInputStream inputStream, BufferedOutputStream outputStream)
+      throws GeneralSecurityException, IOException {
+    try {
+      new SegmentedCipher(key).encrypt(inputStream, outputStream, progressHandler);
+    } finally {
+      outputStream.flush();
+      outputStream.close();
+      inputStream.close();
+    }
+  }
+
+  /** Reads the segmented container, see {@link SegmentedCipher} */
+  private void segmentedDecrypt(
+      Key key, BufferedInputStream inputStream, BufferedOutputStream outputStream)
+      throws GeneralSecurityException, IOException {
+    try {
+      new SegmentedCipher(key).decrypt(inputStream, outputStream, progressHandler);
+    } finally {
+      outputStream.flush();
+      outputStream.close();
+      inputStream.close();
+    }
+  }
+
+  /** Reads files encrypted before the segmented container, as a single GCM stream */
+  private void legacyDecrypt(
+      Cipher cipher, BufferedInputStream inputStream, BufferedOutputStream outputStream)
+      throws IOException {
     CipherInputStream cipherInputStream = new CipherInputStream(inputStream, cipher);
 
     byte[] buffer = new byte[GenericCopyUtil.DEFAULT_BUFFER_SIZE];
@@ -382,7 +397,7 @@ public class CryptUtil {
       while ((count = cipherInputStream.read(buffer)) != -1) {
         if (!progressHandler.getCancelled()) {
           outputStream.write(buffer, 0, count);
-          ServiceWatcherUtil.position += count;
+          progressHandler.addToPosition(count);
         } else break;
       }
     } finally {
@@ -425,62 +440,25 @@ public class CryptUtil {
   private void rsaEncrypt(
       Context context, BufferedInputStream inputStream, BufferedOutputStream outputStream)
       throws GeneralSecurityException, IOException {
-
-    Cipher cipher = Cipher.getInstance(ALGO_AES);
     RSAKeygen keygen = new RSAKeygen(context);
-
-    IvParameterSpec ivParameterSpec = new IvParameterSpec(IV.getBytes());
-    cipher.init(Cipher.ENCRYPT_MODE, keygen.getSecretKey(), ivParameterSpec);
-
-    byte[] buffer = new byte[GenericCopyUtil.DEFAULT_BUFFER_SIZE];
-    int count;
-
-    CipherOutputStream cipherOutputStream = new CipherOutputStream(outputStream, cipher);
-    try {
-
-      while ((count = inputStream.read(buffer)) != -1) {
-        if (!progressHandler.getCancelled()) {
-          cipherOutputStream.write(buffer, 0, count);
-          ServiceWatcherUtil.position += count;
-        } else break;
-      }
-    } finally {
-
-      cipherOutputStream.flush();
-      cipherOutputStream.close();
-      inputStream.close();
-    }
+    segmentedEncrypt(keygen.getSecretKey(), inputStream, outputStream);
   }
 
   @RequiresApi(api = Build.VERSION_CODES.JELLY_BEAN_MR2)
   private void rsaDecrypt(
       Context context, BufferedInputStream inputStream, BufferedOutputStream outputStream)
       throws GeneralSecurityException, IOException {
+    RSAKeygen keygen = new RSAKeygen(context);
+    if (SegmentedCipher.isSegmented(inputStream)) {
+      segmentedDecrypt(keygen.getSecretKey(), inputStream, outputStream);
+      return;
+    }
 
     Cipher cipher = Cipher.getInstance(ALGO_AES);
-    RSAKeygen keygen = new RSAKeygen(context);
 
     IvParameterSpec ivParameterSpec = new IvParameterSpec(IV.getBytes());
     cipher.init(Cipher.DECRYPT_MODE, keygen.getSecretKey(), ivParameterSpec);
-    CipherInputStream cipherInputStream = new CipherInputStream(inputStream, cipher);
-
-    byte[] buffer = new byte[GenericCopyUtil.DEFAULT_BUFFER_SIZE];
-    int count;
-
-    try {
-
-      while ((count = cipherInputStream.read(buffer)) != -1) {
-        if (!progressHandler.getCancelled()) {
-          outputStream.write(buffer, 0, count);
-          ServiceWatcherUtil.position += count;
-        } else break;
-      }
-    } finally {
-
-      outputStream.flush();
-      outputStream.close();
-      cipherInputStream.close();
-    }
+    legacyDecrypt(cipher, inputStream, outputStream);
   }
 
   @RequiresApi(api = Build.VERSION_CODES.JELLY_BEAN_MR2)
@@ -0,0 +1,90 @@
+/*
+ * Copyright (C) 2014-2020 Arpit Khurana <arpitkh96@gmail.com>, Vishal Nehra <vishalmeham2@gmail.com>,
+ * Emmanuel Messulam<emmanuelbendavid@gmail.com>, Raymond Lai <airwave209gt at gmail.com> and Contributors.
+ *
+ * This file is part of Amaze File Manager.
+ *
+ * Amaze File Manager is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.amaze.filemanager.filesystem.files;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Direct buffers shared by the transfers of {@link GenericCopyUtil}, so that copying a batch of
+ * files doesn't allocate (and leave to the GC) a native buffer per file. Sizes are powers of two
+ * between {@link #MIN_SIZE} and {@link #MAX_SIZE}.
+ */
+public final class DirectBufferPool {
+
+  public static final int MIN_SIZE = 64 * 1024;
+  public static final int MAX_SIZE = 1024 * 1024;
+
+  /** Buffers kept per size, enough for the workers of a parallel copy */
+  private static final int MAX_POOLED_PER_SIZE = 8;
+
+  private static final int SIZE_CLASSES =
+      Integer.numberOfTrailingZeros(MAX_SIZE) - Integer.numberOfTrailingZeros(MIN_SIZE) + 1;
+
+  @SuppressWarnings("unchecked")
+  private static final ArrayDeque<ByteBuffer>[] pool = new ArrayDeque[SIZE_CLASSES];
+
+  static {
+    for (int i = 0; i < SIZE_CLASSES; i++) {
+      pool[i] = new ArrayDeque<>(MAX_POOLED_PER_SIZE);
+    }
+  }
+
+  private DirectBufferPool() {}
+
+  /** @return a cleared direct buffer of at least {@code size} bytes, up to {@link #MAX_SIZE} */
+  @NonNull
+  public static ByteBuffer acquire(int size) {
+    final int sizeClass = getSizeClass(size);
+    synchronized (pool) {
+      ByteBuffer buffer = pool[sizeClass].poll();
+      if (buffer != null) {
+        buffer.clear();
+        return buffer;
+      }
+    }
+    return ByteBuffer.allocateDirect(MIN_SIZE << sizeClass);
+  }
+
+  /** Gives back a buffer from {@link #acquire(int)}, it must not be used afterwards */
+  public static void release(@NonNull ByteBuffer buffer) {
+    final int capacity = buffer.capacity();
+    if (!buffer.isDirect() || Integer.bitCount(capacity) != 1) return;
+    if (capacity < MIN_SIZE || capacity > MAX_SIZE) return;
+
+    final int sizeClass = getSizeClass(capacity);
+    synchronized (pool) {
+      if (pool[sizeClass].size() < MAX_POOLED_PER_SIZE) {
+        pool[sizeClass].push(buffer);
+      }
+    }
+  }
+
+  /** @return the index of the smallest size class holding {@code size} bytes */
+  static int getSizeClass(int size) {
+    if (size <= MIN_SIZE) return 0;
+    if (size >= MAX_SIZE) return SIZE_CLASSES - 1;
+    int rounded = Integer.highestOneBit(size - 1) << 1;
+    return Integer.numberOfTrailingZeros(rounded) - Integer.numberOfTrailingZeros(MIN_SIZE);
+  }
+}
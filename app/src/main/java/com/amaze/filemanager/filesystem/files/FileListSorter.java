@@ -21,11 +21,23 @@
 package com.amaze.filemanager.filesystem.files;
 
 import java.util.Comparator;
+import java.util.List;
 
 import com.amaze.filemanager.adapters.data.LayoutElementParcelable;
 
+import androidx.annotation.NonNull;
+
 public class FileListSorter implements Comparator<LayoutElementParcelable> {
 
+  public static final int SORT_BY_NAME = 0,
+      SORT_BY_LAST_MODIFIED = 1,
+      SORT_BY_SIZE = 2,
+      SORT_BY_TYPE = 3,
+      SORT_BY_NATURAL_NAME = 4;
+
+  /** Index sort falls back to insertion sort for runs up to this length */
+  private static final int INSERTION_SORT_THRESHOLD = 7;
+
   private int dirsOnTop = 0;
   private int asc = 1;
   private int sort = 0;
@@ -36,6 +48,43 @@ public class FileListSorter implements Comparator<LayoutElementParcelable> {
     this.sort = sort;
   }
 
+  /**
+   * Sort types are persisted as a single int: 0 to 3 are name/last modified/size/type ascending, 4
+   * to 7 the same descending. Sort modes added later take two values each from 8 on (ascending,
+   * descending), so that values saved by older versions keep their meaning.
+   *
+   * @return the sort mode of a persisted sort type, one of the {@code SORT_BY_*} constants
+   */
+  public static int getSortBy(int sortType) {
+    if (sortType <= 3) {
+      return sortType;
+    } else if (sortType <= 7) {
+      return sortType - 4;
+    } else {
+      return SORT_BY_NATURAL_NAME + (sortType - 8) / 2;
+    }
+  }
+
+  /** @return 1 if a persisted sort type is ascending, -1 if descending */
+  public static int getSortOrder(int sortType) {
+    if (sortType <= 3) {
+      return 1;
+    } else if (sortType <= 7) {
+      return -1;
+    } else {
+      return (sortType - 8) % 2 == 0 ? 1 : -1;
+    }
+  }
+
+  /** @return the sort type to persist for a sort mode, inverse of {@link #getSortBy(int)} */
+  public static int toSortType(int sortBy, boolean desc) {
+    if (sortBy <= SORT_BY_TYPE) {
+      return desc ? sortBy + 4 : sortBy;
+    } else {
+      return 8 + (sortBy - SORT_BY_NATURAL_NAME) * 2 + (desc ? 1 : 0);
+    }
+  }
+
   private boolean isDirectory(LayoutElementParcelable path) {
     return path.isDirectory;
   }
@@ -81,15 +130,15 @@ public class FileListSorter implements Comparator<LayoutElementParcelable> {
       }
     }
 
-    if (sort == 0) {
+    if (sort == SORT_BY_NAME) {
 
       // sort by name
       return asc * file1.title.compareToIgnoreCase(file2.title);
-    } else if (sort == 1) {
+    } else if (sort == SORT_BY_LAST_MODIFIED) {
 
       // sort by last modified
       return asc * Long.valueOf(file1.date).compareTo(file2.date);
-    } else if (sort == 2) {
+    } else if (sort == SORT_BY_SIZE) {
 
       // sort by size
       if (!file1.isDirectory && !file2.isDirectory) {
@@ -100,7 +149,7 @@ public class FileListSorter implements Comparator<LayoutElementParcelable> {
         return file1.title.compareToIgnoreCase(file2.title);
       }
 
-    } else if (sort == 3) {
+    } else if (sort == SORT_BY_TYPE) {
 
       // sort by type
       if (!file1.isDirectory && !file2.isDirectory) {
@@ -116,11 +165,205 @@ public class FileListSorter implements Comparator<LayoutElementParcelable> {
       } else {
         return file1.title.compareToIgnoreCase(file2.title);
       }
+    } else if (sort == SORT_BY_NATURAL_NAME) {
+
+      // sort by name, runs of digits compared by their numeric value
+      return asc * compareNatural(file1.title, file2.title);
     }
     return 0;
   }
 
+  /**
+   * Sorts the list in the same order as {@link #compare(LayoutElementParcelable,
+   * LayoutElementParcelable)}, but derives the sort keys (case folded names, extensions, dates and
+   * sizes) once per element instead of once per comparison, and sorts an index array over them.
+   * Like {@link java.util.Collections#sort(List, Comparator)} the sort is stable.
+   */
+  public void sort(@NonNull List<LayoutElementParcelable> list) {
+    final int size = list.size();
+    if (size < 2) return;
+
+    LayoutElementParcelable[] elements = list.toArray(new LayoutElementParcelable[size]);
+    SortKeys keys = new SortKeys(elements);
+
+    int[] indices = new int[size];
+    for (int i = 0; i < size; i++) {
+      indices[i] = i;
+    }
+    mergeSort(keys, indices.clone(), indices, 0, size);
+
+    for (int i = 0; i < size; i++) {
+      list.set(i, elements[indices[i]]);
+    }
+  }
+
+  /** Sorts {@code dest[low, high)}, {@code src} must hold the same indices in that range */
+  private void mergeSort(SortKeys keys, int[] src, int[] dest, int low, int high) {
+    if (high - low <= INSERTION_SORT_THRESHOLD) {
+      for (int i = low + 1; i < high; i++) {
+        for (int j = i; j > low && compare(keys, dest[j - 1], dest[j]) > 0; j--) {
+          int t = dest[j];
+          dest[j] = dest[j - 1];
+          dest[j - 1] = t;
+        }
+      }
+      return;
+    }
+
+    int mid = (low + high) >>> 1;
+    mergeSort(keys, dest, src, low, mid);
+    mergeSort(keys, dest, src, mid, high);
+
+    if (compare(keys, src[mid - 1], src[mid]) <= 0) {
+      System.arraycopy(src, low, dest, low, high - low);
+      return;
+    }
+
+    for (int i = low, p = low, q = mid; i < high; i++) {
+      if (q >= high || (p < mid && compare(keys, src[p], src[q]) <= 0)) {
+        dest[i] = src[p++];
+      } else {
+        dest[i] = src[q++];
+      }
+    }
+  }
+
+  /** Same as {@link #compare(LayoutElementParcelable, LayoutElementParcelable)} on sort keys */
+  private int compare(SortKeys keys, int i1, int i2) {
+    final boolean dir1 = keys.isDirectory[i1], dir2 = keys.isDirectory[i2];
+
+    if (dirsOnTop == 0 && dir1 != dir2) {
+      return dir1 ? -1 : 1;
+    } else if (dirsOnTop == 1 && dir1 != dir2) {
+      return dir1 ? 1 : -1;
+    }
+
+    switch (sort) {
+      case SORT_BY_NAME:
+        return asc * keys.names[i1].compareTo(keys.names[i2]);
+      case SORT_BY_LAST_MODIFIED:
+        return asc * Long.compare(keys.dates[i1], keys.dates[i2]);
+      case SORT_BY_SIZE:
+        if (!dir1 && !dir2) {
+          return asc * Long.compare(keys.sizes[i1], keys.sizes[i2]);
+        } else {
+          return keys.names[i1].compareTo(keys.names[i2]);
+        }
+      case SORT_BY_TYPE:
+        if (!dir1 && !dir2) {
+          final int res = asc * keys.extensions[i1].compareTo(keys.extensions[i2]);
+          if (res == 0) {
+            return asc * keys.names[i1].compareTo(keys.names[i2]);
+          }
+          return res;
+        } else {
+          return keys.names[i1].compareTo(keys.names[i2]);
+        }
+      case SORT_BY_NATURAL_NAME:
+        return asc * compareNatural(keys.names[i1], keys.names[i2]);
+      default:
+        return 0;
+    }
+  }
+
+  /**
+   * Case insensitive comparison where runs of digits are compared by their numeric value, so that
+   * "img2" goes before "img10". Names that only differ in case or leading zeroes are equal.
+   */
+  static int compareNatural(String a, String b) {
+    final int lengthA = a.length(), lengthB = b.length();
+    int i = 0, j = 0;
+
+    while (i < lengthA && j < lengthB) {
+      final char charA = a.charAt(i), charB = b.charAt(j);
+
+      if (isDigit(charA) && isDigit(charB)) {
+        while (i < lengthA && a.charAt(i) == '0') i++;
+        while (j < lengthB && b.charAt(j) == '0') j++;
+
+        int endA = i, endB = j;
+        while (endA < lengthA && isDigit(a.charAt(endA))) endA++;
+        while (endB < lengthB && isDigit(b.charAt(endB))) endB++;
+
+        // without leading zeroes the longer number is the bigger one
+        if (endA - i != endB - j) {
+          return (endA - i) - (endB - j);
+        }
+        for (; i < endA; i++, j++) {
+          if (a.charAt(i) != b.charAt(j)) {
+            return a.charAt(i) - b.charAt(j);
+          }
+        }
+      } else {
+        final char foldedA = foldCase(charA), foldedB = foldCase(charB);
+        if (foldedA != foldedB) {
+          return foldedA - foldedB;
+        }
+        i++;
+        j++;
+      }
+    }
+
+    return (lengthA - i) - (lengthB - j);
+  }
+
+  private static boolean isDigit(char c) {
+    return c >= '0' && c <= '9';
+  }
+
+  /** Same folding as {@link String#compareToIgnoreCase(String)} does for each char */
+  private static char foldCase(char c) {
+    return Character.toLowerCase(Character.toUpperCase(c));
+  }
+
+  /**
+   * @return the string with every char folded, comparing the results with {@link
+   *     String#compareTo(String)} gives the same order as {@link
+   *     String#compareToIgnoreCase(String)}
+   */
+  static String foldCase(String s) {
+    char[] folded = null;
+    for (int i = 0; i < s.length(); i++) {
+      char c = s.charAt(i);
+      char f = foldCase(c);
+      if (f != c) {
+        if (folded == null) folded = s.toCharArray();
+        folded[i] = f;
+      }
+    }
+    return folded == null ? s : new String(folded);
+  }
+
   private static String getExtension(String a) {
     return a.substring(a.lastIndexOf(".") + 1).toLowerCase();
   }
+
+  /** Sort keys of a list of elements, derived once before sorting, indexed by list position */
+  private final class SortKeys {
+    final boolean[] isDirectory;
+    final String[] names;
+    final String[] extensions;
+    final long[] dates;
+    final long[] sizes;
+
+    SortKeys(LayoutElementParcelable[] elements) {
+      final int size = elements.length;
+      isDirectory = new boolean[size];
+      names = sort != SORT_BY_LAST_MODIFIED ? new String[size] : null;
+      extensions = sort == SORT_BY_TYPE ? new String[size] : null;
+      dates = sort == SORT_BY_LAST_MODIFIED ? new long[size] : null;
+      sizes = sort == SORT_BY_SIZE ? new long[size] : null;
+
+      for (int i = 0; i < size; i++) {
+        LayoutElementParcelable element = elements[i];
+        isDirectory[i] = element.isDirectory;
+        if (names != null) names[i] = foldCase(element.title);
+        if (extensions != null && !element.isDirectory) {
+          extensions[i] = getExtension(element.title);
+        }
+        if (dates != null) dates[i] = element.date;
+        if (sizes != null) sizes[i] = element.longSize;
+      }
+    }
+  }
 }
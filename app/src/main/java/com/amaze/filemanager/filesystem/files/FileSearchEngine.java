@@ -0,0 +1,186 @@
+/*
+ * Copyright (C) 2014-2020 Arpit Khurana <arpitkh96@gmail.com>, Vishal Nehra <vishalmeham2@gmail.com>,
+ * Emmanuel Messulam<emmanuelbendavid@gmail.com>, Raymond Lai <airwave209gt at gmail.com> and Contributors.
+ *
+ * This file is part of Amaze File Manager.
+ *
+ * Amaze File Manager is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.amaze.filemanager.filesystem.files;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.amaze.filemanager.asynchronous.asynctasks.SearchAsyncTask;
+import com.amaze.filemanager.filesystem.HybridFile;
+import com.amaze.filemanager.filesystem.HybridFileParcelable;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Searches file names in a tree, listing its directories in parallel.
+ *
+ * <p>Every listed directory hands its subdirectories to the pool, so idle threads pick up whatever
+ * subtree is left. Matches are queued, and collected by the caller with {@link #drain()} at its
+ * own pace instead of being posted one by one.
+ */
+public final class FileSearchEngine {
+
+  private static final String TAG = FileSearchEngine.class.getSimpleName();
+
+  private static final int REMOTE_PARALLELISM = 4;
+  private static final int SLOW_PARALLELISM = 2;
+
+  private final Context context;
+  private final boolean rootMode;
+  private final SearchAsyncTask.SearchFilter filter;
+  private final ExecutorService executor;
+
+  private final AtomicInteger pending = new AtomicInteger();
+  private final CountDownLatch done = new CountDownLatch(1);
+  private final Object resultsLock = new Object();
+  private ArrayList<HybridFileParcelable> results = new ArrayList<>();
+  private volatile boolean cancelled = false;
+
+  /**
+   * @param filter matcher of the file names, called from several threads at once
+   * @param parallelism number of directories listed at once, see {@link #getParallelism(HybridFile,
+   *     boolean)}
+   */
+  public FileSearchEngine(
+      @NonNull Context context,
+      boolean rootMode,
+      @NonNull SearchAsyncTask.SearchFilter filter,
+      int parallelism) {
+    this.context = context.getApplicationContext();
+    this.rootMode = rootMode;
+    this.filter = filter;
+    this.executor = Executors.newFixedThreadPool(parallelism);
+  }
+
+  /** @return how many directories of the tree of {@code root} can be listed at once */
+  public static int getParallelism(@NonNull HybridFile root, boolean rootMode) {
+    switch (root.getMode()) {
+      case ROOT:
+        // there's a single root shell
+        return 1;
+      case FILE:
+        return rootMode ? 1 : Math.max(2, Runtime.getRuntime().availableProcessors());
+      case SMB:
+      case SFTP:
+        return REMOTE_PARALLELISM;
+      default:
+        return SLOW_PARALLELISM;
+    }
+  }
+
+  /** @return the name of {@code file}, without the trailing '/' of SMB directories */
+  @NonNull
+  public static String getSearchedName(
+      @NonNull Context context, @NonNull HybridFileParcelable file) {
+    String name = file.getName(context);
+    return name.length() > 1 && name.endsWith("/") ? name.substring(0, name.length() - 1) : name;
+  }
+
+  /** Starts searching the tree of {@code directory} */
+  public void start(@NonNull HybridFile directory) {
+    pending.incrementAndGet();
+    submit(directory);
+  }
+
+  /**
+   * Waits for the search to end.
+   *
+   * @return true if it ended, false if it's still going after {@code millis}
+   */
+  public boolean await(long millis) throws InterruptedException {
+    return done.await(millis, TimeUnit.MILLISECONDS);
+  }
+
+  /** @return the matches found since the last call, in no particular order */
+  @NonNull
+  public List<HybridFileParcelable> drain() {
+    synchronized (resultsLock) {
+      if (results.isEmpty()) return results;
+      ArrayList<HybridFileParcelable> drained = results;
+      results = new ArrayList<>();
+      return drained;
+    }
+  }
+
+  /** Stops listing, directories being listed are abandoned */
+  public void cancel() {
+    cancelled = true;
+    executor.shutdownNow();
+    done.countDown();
+  }
+
+  private void submit(@NonNull HybridFile directory) {
+    try {
+      executor.execute(() -> search(directory));
+    } catch (RejectedExecutionException e) {
+      // cancelled
+      complete();
+    }
+  }
+
+  private void search(@NonNull HybridFile directory) {
+    try {
+      if (cancelled) return;
+
+      if (!directory.isDirectory(context)) { // do you have permission to read this directory?
+        Log.d(TAG, "Cannot search " + directory.getPath() + ": Permission Denied");
+        return;
+      }
+
+      directory.forEachChildrenFile(
+          context,
+          rootMode,
+          file -> {
+            if (cancelled) return;
+
+            if (filter.searchFilter(getSearchedName(context, file))) {
+              synchronized (resultsLock) {
+                results.add(file);
+              }
+            }
+            if (file.isDirectory()) {
+              pending.incrementAndGet();
+              submit(file);
+            }
+          });
+    } catch (Exception e) {
+      Log.w(TAG, "Failed to search " + directory.getPath(), e);
+    } finally {
+      complete();
+    }
+  }
+
+  private void complete() {
+    if (pending.decrementAndGet() == 0) {
+      executor.shutdown();
+      done.countDown();
+    }
+  }
+}
@@ -86,9 +86,7 @@ import androidx.core.content.FileProvider;
 import androidx.documentfile.provider.DocumentFile;
 
 import jcifs.smb.SmbFile;
-import net.schmizz.sshj.sftp.RemoteResourceInfo;
 import net.schmizz.sshj.sftp.SFTPClient;
-import net.schmizz.sshj.sftp.SFTPException;
 
 /** Functions that deal with files */
 public class FileUtils {
@@ -98,21 +96,9 @@ public class FileUtils {
   public static final String FILE_PROVIDER_PREFIX = "storage_root";
   public static final String NOMEDIA_FILE = ".nomedia";
 
+  /** @see FolderSizeCalculator#getSize(File, OnProgressUpdate) */
   public static long folderSize(File directory, OnProgressUpdate<Long> updateState) {
-    long length = 0;
-    try {
-      for (File file : directory.listFiles()) {
-        if (file.isFile()) length += file.length();
-        else
-          length +=
-              folderSize(file, null); // null because updateState would be called for children dirs
-
-        if (updateState != null) updateState.onUpdate(length);
-      }
-    } catch (Exception e) {
-      e.printStackTrace();
-    }
-    return length;
+    return FolderSizeCalculator.getSize(directory, updateState);
   }
 
   public static long folderSize(HybridFile directory, OnProgressUpdate<Long> updateState) {
@@ -120,60 +106,28 @@ public class FileUtils {
     else return directory.folderSize(AppConfig.getInstance());
   }
 
+  /** @see FolderSizeCalculator#getSize(SmbFile) */
   public static long folderSize(SmbFile directory) {
-    long length = 0;
-    try {
-      for (SmbFile file : directory.listFiles()) {
-
-        if (file.isFile()) length += file.length();
-        else length += folderSize(file);
-      }
-    } catch (Exception e) {
-      e.printStackTrace();
-    }
-    return length;
+    return FolderSizeCalculator.getSize(directory);
   }
 
   /**
-   * Use recursive <code>ls</code> to get folder size.
+   * Use recursive <code>ls</code> to get folder size, listing a few directories at once.
    *
-   * <p>It is slow, it is stupid, and may be inaccurate (because of permission problems). Only for
-   * fallback use when <code>du</code> is not available.
+   * <p>It may be inaccurate (because of permission problems). Only for fallback use when <code>du
+   * </code> is not available.
    *
    * @see HybridFile#folderSize(Context)
+   * @see FolderSizeCalculator#getSize(SFTPClient, String, String)
    * @return Folder size in bytes
    */
-  public static Long folderSizeSftp(SFTPClient client, String remotePath) {
-    Long retval = 0L;
-    try {
-      for (RemoteResourceInfo info : client.ls(remotePath)) {
-        if (info.isDirectory()) retval += folderSizeSftp(client, info.getPath());
-        else retval += info.getAttributes().getSize();
-      }
-    } catch (SFTPException e) {
-      // Usually happens when permission denied listing files in directory
-      Log.e("folderSizeSftp", "Problem accessing " + remotePath, e);
-    } finally {
-      return retval;
-    }
+  public static Long folderSizeSftp(SFTPClient client, String baseUri, String remotePath) {
+    return FolderSizeCalculator.getSize(client, baseUri, remotePath);
   }
 
+  /** @see FolderSizeCalculator#getSize(OpenMode, CloudMetaData) */
   public static long folderSizeCloud(OpenMode openMode, CloudMetaData sourceFileMeta) {
-
-    DataUtils dataUtils = DataUtils.getInstance();
-    long length = 0;
-    CloudStorage cloudStorage = dataUtils.getAccount(openMode);
-    for (CloudMetaData metaData :
-        cloudStorage.getChildren(CloudUtil.stripPath(openMode, sourceFileMeta.getPath()))) {
-
-      if (metaData.getFolder()) {
-        length += folderSizeCloud(openMode, metaData);
-      } else {
-        length += metaData.getSize();
-      }
-    }
-
-    return length;
+    return FolderSizeCalculator.getSize(openMode, sourceFileMeta);
   }
 
   /** Helper method to get size of an otg folder */
@@ -184,12 +138,21 @@ public class FileUtils {
     return totalBytes.longValue();
   }
 
-  /** Helper method to calculate source files size */
+  /**
+   * Helper method to calculate source files size. Local files are walked together, sharing the
+   * threads of a single {@link FolderSizeCalculator} walk.
+   */
   public static long getTotalBytes(ArrayList<HybridFileParcelable> files, Context context) {
     long totalBytes = 0L;
+    ArrayList<File> localFiles = new ArrayList<>();
     for (HybridFileParcelable file : files) {
-      totalBytes += getBaseFileSize(file, context);
+      if (file.getMode() == OpenMode.FILE) {
+        localFiles.add(file.getFile());
+      } else {
+        totalBytes += getBaseFileSize(file, context);
+      }
     }
+    if (!localFiles.isEmpty()) totalBytes += FolderSizeCalculator.getSize(localFiles, null);
     return totalBytes;
   }
 
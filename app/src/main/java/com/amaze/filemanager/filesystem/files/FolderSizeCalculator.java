@@ -0,0 +1,462 @@
+/*
+ * Copyright (C) 2014-2020 Arpit Khurana <arpitkh96@gmail.com>, Vishal Nehra <vishalmeham2@gmail.com>,
+ * Emmanuel Messulam<emmanuelbendavid@gmail.com>, Raymond Lai <airwave209gt at gmail.com> and Contributors.
+ *
+ * This file is part of Amaze File Manager.
+ *
+ * Amaze File Manager is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.amaze.filemanager.filesystem.files;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.amaze.filemanager.filesystem.cloud.CloudUtil;
+import com.amaze.filemanager.utils.DataUtils;
+import com.amaze.filemanager.utils.OnProgressUpdate;
+import com.amaze.filemanager.utils.OpenMode;
+import com.cloudrail.si.interfaces.CloudStorage;
+import com.cloudrail.si.types.CloudMetaData;
+
+import android.util.Log;
+import android.util.LruCache;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+
+import jcifs.smb.SmbFile;
+import net.schmizz.sshj.sftp.FileAttributes;
+import net.schmizz.sshj.sftp.FileMode;
+import net.schmizz.sshj.sftp.RemoteResourceInfo;
+import net.schmizz.sshj.sftp.SFTPClient;
+
+/**
+ * Computes the size of directory trees by listing their subdirectories in parallel.
+ *
+ * <p>Local trees use one thread per core, every listed directory handing its subdirectories to the
+ * pool so that idle threads pick them up. Remote trees are walked the same way with a few threads
+ * only, not to flood the server.
+ *
+ * <p>Sizes of the subtrees walked are kept in a shared index by path and modification time, so
+ * that sizing the same tree again (e.g. in the properties dialog and then before copying it) skips
+ * the subtrees already known. A directory's modification time doesn't change when files deeper in
+ * it do, so entries also expire after {@link #MAX_AGE_MILLIS}.
+ */
+public final class FolderSizeCalculator {
+
+  private static final String TAG = FolderSizeCalculator.class.getSimpleName();
+
+  @VisibleForTesting static final long MAX_AGE_MILLIS = 60 * 1000;
+
+  private static final int MAX_CACHED_SIZES = 8192;
+
+  private static final int SMB_PARALLELISM = 4;
+  // the walking threads share one SFTP channel, so this is the number of ls requests in flight
+  private static final int SFTP_PARALLELISM = 8;
+  private static final int CLOUD_PARALLELISM = 2;
+
+  /** How often the running total is published while walking */
+  private static final long PROGRESS_INTERVAL_MILLIS = 200;
+
+  private static final LruCache<String, CachedSize> sizes = new LruCache<>(MAX_CACHED_SIZES);
+
+  private FolderSizeCalculator() {}
+
+  /** @return the size of everything in the local {@code directory} */
+  public static long getSize(@NonNull File directory, @Nullable OnProgressUpdate<Long> listener) {
+    return getSize(Collections.singletonList(directory), listener);
+  }
+
+  /** @return the size of all local {@code files}, walking directories among them */
+  public static long getSize(@NonNull List<File> files, @Nullable OnProgressUpdate<Long> listener) {
+    int parallelism = Math.max(2, Runtime.getRuntime().availableProcessors());
+    return new Walker<>(new LocalLister(), parallelism, listener).walk(files);
+  }
+
+  /** @return the size of everything in the SMB {@code directory} */
+  public static long getSize(@NonNull SmbFile directory) {
+    return new Walker<>(new SmbLister(), SMB_PARALLELISM, null)
+        .walk(Collections.singletonList(directory));
+  }
+
+  /**
+   * @param baseUri the server {@code client} is connected to, as in {@link
+   *     com.amaze.filemanager.filesystem.ssh.SshClientUtils#extractBaseUriFrom(String)}
+   * @return the size of everything in the SFTP directory at {@code remotePath}
+   */
+  public static long getSize(
+      @NonNull SFTPClient client, @NonNull String baseUri, @NonNull String remotePath) {
+    try {
+      SftpFile root = new SftpFile(remotePath, client.stat(remotePath));
+      return new Walker<>(new SftpLister(client, baseUri), SFTP_PARALLELISM, null)
+          .walk(Collections.singletonList(root));
+    } catch (Exception e) {
+      // Usually happens when permission denied accessing the directory
+      Log.e(TAG, "Problem accessing " + remotePath, e);
+      return 0;
+    }
+  }
+
+  /** @return the size of everything in the cloud directory of {@code directory} */
+  public static long getSize(@NonNull OpenMode openMode, @NonNull CloudMetaData directory) {
+    CloudStorage cloudStorage = DataUtils.getInstance().getAccount(openMode);
+    return new Walker<>(new CloudLister(openMode, cloudStorage), CLOUD_PARALLELISM, null)
+        .walk(Collections.singletonList(directory));
+  }
+
+  /** Forgets all sizes computed so far */
+  public static void clearCache() {
+    sizes.evictAll();
+  }
+
+  @Nullable
+  private static Long getCachedSize(@NonNull String path, long lastModified) {
+    CachedSize cached = sizes.get(path);
+    if (cached == null
+        || cached.lastModified != lastModified
+        || System.currentTimeMillis() - cached.time > MAX_AGE_MILLIS) {
+      return null;
+    }
+    return cached.size;
+  }
+
+  private static final class CachedSize {
+    final long lastModified;
+    final long size;
+    final long time = System.currentTimeMillis();
+
+    CachedSize(long lastModified, long size) {
+      this.lastModified = lastModified;
+      this.size = size;
+    }
+  }
+
+  /** How to walk a kind of file */
+  @VisibleForTesting
+  interface Lister<T> {
+    @NonNull
+    List<T> listChildren(@NonNull T directory) throws Exception;
+
+    boolean isDirectory(@NonNull T file);
+
+    long length(@NonNull T file);
+
+    long lastModified(@NonNull T file);
+
+    /** @return the key of {@code directory} in the size index */
+    @NonNull
+    String getKey(@NonNull T directory);
+  }
+
+  /**
+   * Walks a tree with a fixed number of threads. Each directory is a {@link Node} that completes
+   * once it and all its subdirectories were listed, then adds its size to its parent's, like a
+   * {@link java.util.concurrent.CountedCompleter}, which isn't available before Lollipop.
+   */
+  @VisibleForTesting
+  static final class Walker<T> {
+    private final Lister<T> lister;
+    private final int parallelism;
+    @Nullable private final OnProgressUpdate<Long> listener;
+    private final AtomicLong total = new AtomicLong();
+    private final CountDownLatch done = new CountDownLatch(1);
+    private ExecutorService executor;
+
+    Walker(@NonNull Lister<T> lister, int parallelism, @Nullable OnProgressUpdate<Long> listener) {
+      this.lister = lister;
+      this.parallelism = parallelism;
+      this.listener = listener;
+    }
+
+    long walk(@NonNull List<T> roots) {
+      Node top = new Node(null, null, 0);
+      List<T> directories = new ArrayList<>();
+      for (T file : roots) {
+        if (lister.isDirectory(file)) directories.add(file);
+        else add(top, lister.length(file));
+      }
+
+      if (directories.isEmpty()) return total.get();
+
+      executor = Executors.newFixedThreadPool(parallelism);
+      try {
+        for (T directory : directories) {
+          fork(top, directory);
+        }
+        complete(top);
+
+        while (!done.await(PROGRESS_INTERVAL_MILLIS, TimeUnit.MILLISECONDS)) {
+          if (listener != null) listener.onUpdate(total.get());
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      } finally {
+        executor.shutdownNow();
+      }
+
+      if (listener != null) listener.onUpdate(total.get());
+      return total.get();
+    }
+
+    private void fork(@NonNull Node parent, @NonNull T directory) {
+      final Node node = new Node(parent, lister.getKey(directory), lister.lastModified(directory));
+      parent.pending.incrementAndGet();
+      try {
+        executor.execute(() -> list(node, directory));
+      } catch (RejectedExecutionException e) {
+        // walk was interrupted
+        node.failed = true;
+        complete(node);
+      }
+    }
+
+    private void list(@NonNull Node node, @NonNull T directory) {
+      try {
+        Long cached = getCachedSize(node.key, node.lastModified);
+        if (cached != null) {
+          node.cached = true;
+          add(node, cached);
+          return;
+        }
+
+        for (T file : lister.listChildren(directory)) {
+          if (Thread.currentThread().isInterrupted()) {
+            node.failed = true;
+            return;
+          }
+          if (lister.isDirectory(file)) fork(node, file);
+          else add(node, lister.length(file));
+        }
+      } catch (Exception e) {
+        // Usually happens when permission denied listing files in directory
+        Log.w(TAG, "Problem accessing " + node.key, e);
+        node.failed = true;
+      } finally {
+        complete(node);
+      }
+    }
+
+    private void add(@NonNull Node node, long length) {
+      node.size.addAndGet(length);
+      total.addAndGet(length);
+    }
+
+    private void complete(@NonNull Node node) {
+      while (node.pending.decrementAndGet() == 0) {
+        if (node.key != null && !node.cached && !node.failed) {
+          sizes.put(node.key, new CachedSize(node.lastModified, node.size.get()));
+        }
+
+        Node parent = node.parent;
+        if (parent == null) {
+          done.countDown();
+          return;
+        }
+        parent.size.addAndGet(node.size.get());
+        if (node.failed) parent.failed = true;
+        node = parent;
+      }
+    }
+  }
+
+  private static final class Node {
+    @Nullable final Node parent;
+    @Nullable final String key;
+    final long lastModified;
+    final AtomicLong size = new AtomicLong();
+    /** This node's own listing, plus the subdirectories not yet completed */
+    final AtomicInteger pending = new AtomicInteger(1);
+
+    volatile boolean cached = false;
+    volatile boolean failed = false;
+
+    Node(@Nullable Node parent, @Nullable String key, long lastModified) {
+      this.parent = parent;
+      this.key = key;
+      this.lastModified = lastModified;
+    }
+  }
+
+  private static final class LocalLister implements Lister<File> {
+    @NonNull
+    @Override
+    public List<File> listChildren(@NonNull File directory) {
+      File[] files = directory.listFiles();
+      return files != null ? Arrays.asList(files) : Collections.emptyList();
+    }
+
+    @Override
+    public boolean isDirectory(@NonNull File file) {
+      return file.isDirectory();
+    }
+
+    @Override
+    public long length(@NonNull File file) {
+      return file.length();
+    }
+
+    @Override
+    public long lastModified(@NonNull File file) {
+      return file.lastModified();
+    }
+
+    @NonNull
+    @Override
+    public String getKey(@NonNull File directory) {
+      return directory.getAbsolutePath();
+    }
+  }
+
+  private static final class SmbLister implements Lister<SmbFile> {
+    @NonNull
+    @Override
+    public List<SmbFile> listChildren(@NonNull SmbFile directory) throws Exception {
+      return Arrays.asList(directory.listFiles());
+    }
+
+    @Override
+    public boolean isDirectory(@NonNull SmbFile file) {
+      try {
+        return !file.isFile();
+      } catch (Exception e) {
+        return false;
+      }
+    }
+
+    @Override
+    public long length(@NonNull SmbFile file) {
+      try {
+        return file.length();
+      } catch (Exception e) {
+        return 0;
+      }
+    }
+
+    @Override
+    public long lastModified(@NonNull SmbFile file) {
+      try {
+        return file.lastModified();
+      } catch (Exception e) {
+        return 0;
+      }
+    }
+
+    @NonNull
+    @Override
+    public String getKey(@NonNull SmbFile directory) {
+      return directory.getPath();
+    }
+  }
+
+  private static final class SftpFile {
+    final String path;
+    final FileAttributes attributes;
+
+    SftpFile(String path, FileAttributes attributes) {
+      this.path = path;
+      this.attributes = attributes;
+    }
+  }
+
+  private static final class SftpLister implements Lister<SftpFile> {
+    private final SFTPClient client;
+    private final String baseUri;
+
+    SftpLister(@NonNull SFTPClient client, @NonNull String baseUri) {
+      this.client = client;
+      this.baseUri = baseUri;
+    }
+
+    @NonNull
+    @Override
+    public List<SftpFile> listChildren(@NonNull SftpFile directory) throws Exception {
+      List<RemoteResourceInfo> infos = client.ls(directory.path);
+      List<SftpFile> files = new ArrayList<>(infos.size());
+      for (RemoteResourceInfo info : infos) {
+        files.add(new SftpFile(info.getPath(), info.getAttributes()));
+      }
+      return files;
+    }
+
+    @Override
+    public boolean isDirectory(@NonNull SftpFile file) {
+      return file.attributes.getType() == FileMode.Type.DIRECTORY;
+    }
+
+    @Override
+    public long length(@NonNull SftpFile file) {
+      return file.attributes.getSize();
+    }
+
+    @Override
+    public long lastModified(@NonNull SftpFile file) {
+      return file.attributes.getMtime();
+    }
+
+    @NonNull
+    @Override
+    public String getKey(@NonNull SftpFile directory) {
+      return baseUri + directory.path;
+    }
+  }
+
+  private static final class CloudLister implements Lister<CloudMetaData> {
+    private final OpenMode openMode;
+    private final CloudStorage cloudStorage;
+
+    CloudLister(@NonNull OpenMode openMode, @NonNull CloudStorage cloudStorage) {
+      this.openMode = openMode;
+      this.cloudStorage = cloudStorage;
+    }
+
+    @NonNull
+    @Override
+    public List<CloudMetaData> listChildren(@NonNull CloudMetaData directory) {
+      return cloudStorage.getChildren(CloudUtil.stripPath(openMode, directory.getPath()));
+    }
+
+    @Override
+    public boolean isDirectory(@NonNull CloudMetaData file) {
+      return file.getFolder();
+    }
+
+    @Override
+    public long length(@NonNull CloudMetaData file) {
+      return file.getSize();
+    }
+
+    @Override
+    public long lastModified(@NonNull CloudMetaData file) {
+      return file.getModifiedAt() == null ? 0 : file.getModifiedAt();
+    }
+
+    @NonNull
+    @Override
+    public String getKey(@NonNull CloudMetaData directory) {
+      return openMode + directory.getPath();
+    }
+  }
+}
@@ -37,12 +37,12 @@ import java.nio.channels.WritableByteChannel;
 
 import com.amaze.filemanager.R;
 import com.amaze.filemanager.application.AppConfig;
-import com.amaze.filemanager.asynchronous.management.ServiceWatcherUtil;
 import com.amaze.filemanager.filesystem.FileUtil;
 import com.amaze.filemanager.filesystem.HybridFile;
 import com.amaze.filemanager.filesystem.HybridFileParcelable;
 import com.amaze.filemanager.filesystem.MediaStoreHack;
 import com.amaze.filemanager.filesystem.cloud.CloudUtil;
+import com.amaze.filemanager.filesystem.ssh.SshClientUtils;
 import com.amaze.filemanager.utils.DataUtils;
 import com.amaze.filemanager.utils.OTGUtil;
 import com.amaze.filemanager.utils.OpenMode;
@@ -70,13 +70,14 @@ public class GenericCopyUtil {
 
   public static final int DEFAULT_BUFFER_SIZE = 8192;
 
-  /*
-     Defines the block size per transfer over NIO channels.
+  /**
+   * Bytes moved by a single {@link FileChannel#transferTo(long, long, WritableByteChannel)} call,
+   * so that progress is published and cancellation checked while copying big local files.
+   */
+  private static final long TRANSFER_TO_CHUNK = 8 * 1024 * 1024;
 
-     Cannot modify DEFAULT_BUFFER_SIZE since it's used by other classes, will have undesired
-     effect on other functions
-  */
-  private static final int DEFAULT_TRANSFER_QUANTUM = 65536;
+  /** The storage limiting the current copy, its buffer sizes adapt to the measured throughput */
+  private TransferBufferSizer.Backend backend = TransferBufferSizer.Backend.LOCAL;
 
   public GenericCopyUtil(Context context, ProgressHandler progressHandler) {
     this.mContext = context;
@@ -100,8 +101,11 @@ public class GenericCopyUtil {
     FileChannel outChannel = null;
     BufferedInputStream bufferedInputStream = null;
     BufferedOutputStream bufferedOutputStream = null;
+    ResumableTransfer resumableTransfer = null;
+    long resumeOffset = 0;
 
     try {
+      backend = getBackend(mSourceFile, mTargetFile);
 
       // initializing the input channels based on file types
       if (mSourceFile.isOtgFile()) {
@@ -112,42 +116,48 @@ public class GenericCopyUtil {
 
         bufferedInputStream =
             new BufferedInputStream(
-                contentResolver.openInputStream(documentSourceFile.getUri()), DEFAULT_BUFFER_SIZE);
+                contentResolver.openInputStream(documentSourceFile.getUri()), getBufferSize());
       } else if (mSourceFile.isSmb()) {
 
         // source is in smb
         bufferedInputStream =
-            new BufferedInputStream(mSourceFile.getInputStream(mContext), DEFAULT_TRANSFER_QUANTUM);
+            new BufferedInputStream(mSourceFile.getInputStream(mContext), getBufferSize());
       } else if (mSourceFile.isSftp()) {
         bufferedInputStream =
-            new BufferedInputStream(mSourceFile.getInputStream(mContext), DEFAULT_TRANSFER_QUANTUM);
+            new BufferedInputStream(
+                mSourceFile.getInputStream(mContext, SshClientUtils.getRequestDepth(mContext)),
+                getBufferSize());
       } else if (mSourceFile.isDropBoxFile()) {
 
         CloudStorage cloudStorageDropbox = dataUtils.getAccount(OpenMode.DROPBOX);
         bufferedInputStream =
             new BufferedInputStream(
                 cloudStorageDropbox.download(
-                    CloudUtil.stripPath(OpenMode.DROPBOX, mSourceFile.getPath())));
+                    CloudUtil.stripPath(OpenMode.DROPBOX, mSourceFile.getPath())),
+                getBufferSize());
       } else if (mSourceFile.isBoxFile()) {
 
         CloudStorage cloudStorageBox = dataUtils.getAccount(OpenMode.BOX);
         bufferedInputStream =
             new BufferedInputStream(
-                cloudStorageBox.download(CloudUtil.stripPath(OpenMode.BOX, mSourceFile.getPath())));
+                cloudStorageBox.download(CloudUtil.stripPath(OpenMode.BOX, mSourceFile.getPath())),
+                getBufferSize());
       } else if (mSourceFile.isGoogleDriveFile()) {
 
         CloudStorage cloudStorageGdrive = dataUtils.getAccount(OpenMode.GDRIVE);
         bufferedInputStream =
             new BufferedInputStream(
                 cloudStorageGdrive.download(
-                    CloudUtil.stripPath(OpenMode.GDRIVE, mSourceFile.getPath())));
+                    CloudUtil.stripPath(OpenMode.GDRIVE, mSourceFile.getPath())),
+                getBufferSize());
       } else if (mSourceFile.isOneDriveFile()) {
 
         CloudStorage cloudStorageOnedrive = dataUtils.getAccount(OpenMode.ONEDRIVE);
         bufferedInputStream =
             new BufferedInputStream(
                 cloudStorageOnedrive.download(
-                    CloudUtil.stripPath(OpenMode.ONEDRIVE, mSourceFile.getPath())));
+                    CloudUtil.stripPath(OpenMode.ONEDRIVE, mSourceFile.getPath())),
+                getBufferSize());
       } else {
 
         // source file is neither smb nor otg; getting a channel from direct file instead of stream
@@ -160,7 +170,8 @@ public class GenericCopyUtil {
               || mTargetFile.isBoxFile()
               || lowOnMemory) {
             // our target is cloud, we need a stream not channel
-            bufferedInputStream = new BufferedInputStream(new FileInputStream(file));
+            bufferedInputStream =
+                new BufferedInputStream(new FileInputStream(file), getBufferSize());
           } else {
 
             inChannel = new RandomAccessFile(file, "r").getChannel();
@@ -171,10 +182,11 @@ public class GenericCopyUtil {
             DocumentFile documentSourceFile =
                 FileUtil.getDocumentFile(file, mSourceFile.isDirectory(), mContext);
 
+            backend = TransferBufferSizer.Backend.DOCUMENT_FILE;
             bufferedInputStream =
                 new BufferedInputStream(
                     contentResolver.openInputStream(documentSourceFile.getUri()),
-                    DEFAULT_BUFFER_SIZE);
+                    getBufferSize());
           } else if (Build.VERSION.SDK_INT == Build.VERSION_CODES.KITKAT) {
             InputStream inputStream1 =
                 MediaStoreHack.getInputStream(mContext, file, mSourceFile.getSize());
@@ -193,15 +205,24 @@ public class GenericCopyUtil {
 
         bufferedOutputStream =
             new BufferedOutputStream(
-                contentResolver.openOutputStream(documentTargetFile.getUri()), DEFAULT_BUFFER_SIZE);
-      } else if (mTargetFile.isSftp()) {
-        bufferedOutputStream =
-            new BufferedOutputStream(
-                mTargetFile.getOutputStream(mContext), DEFAULT_TRANSFER_QUANTUM);
-      } else if (mTargetFile.isSmb()) {
+                contentResolver.openOutputStream(documentTargetFile.getUri()), getBufferSize());
+      } else if (mTargetFile.isSftp() || mTargetFile.isSmb()) {
+        if (ResumableTransfer.isResumable(mTargetFile, mSourceFile.getSize())) {
+          // big files over the network, continue where an interrupted copy stopped
+          resumableTransfer =
+              new ResumableTransfer(
+                  AppConfig.getInstance().getUtilsHandler(),
+                  mSourceFile.getPath(),
+                  mSourceFile.getSize(),
+                  mSourceFile.getDate(),
+                  mTargetFile.getPath());
+          resumeOffset = resumableTransfer.resume(mContext, mSourceFile, mTargetFile);
+        }
         bufferedOutputStream =
             new BufferedOutputStream(
-                mTargetFile.getOutputStream(mContext), DEFAULT_TRANSFER_QUANTUM);
+                mTargetFile.getOutputStream(
+                    mContext, resumeOffset, SshClientUtils.getRequestDepth(mContext)),
+                getBufferSize());
       } else if (mTargetFile.isDropBoxFile()) {
         // API doesn't support output stream, we'll upload the file directly
         CloudStorage cloudStorageDropbox = dataUtils.getAccount(OpenMode.DROPBOX);
@@ -283,7 +304,8 @@ public class GenericCopyUtil {
         if (FileUtil.isWritable(file)) {
 
           if (lowOnMemory) {
-            bufferedOutputStream = new BufferedOutputStream(new FileOutputStream(file));
+            bufferedOutputStream =
+                new BufferedOutputStream(new FileOutputStream(file), getBufferSize());
           } else {
 
             outChannel = new RandomAccessFile(file, "rw").getChannel();
@@ -294,10 +316,11 @@ public class GenericCopyUtil {
             DocumentFile documentTargetFile =
                 FileUtil.getDocumentFile(file, mTargetFile.isDirectory(mContext), mContext);
 
+            backend = TransferBufferSizer.Backend.DOCUMENT_FILE;
             bufferedOutputStream =
                 new BufferedOutputStream(
                     contentResolver.openOutputStream(documentTargetFile.getUri()),
-                    DEFAULT_BUFFER_SIZE);
+                    getBufferSize());
           } else if (Build.VERSION.SDK_INT == Build.VERSION_CODES.KITKAT) {
             // Workaround for Kitkat ext SD card
             bufferedOutputStream =
@@ -306,7 +329,18 @@ public class GenericCopyUtil {
         }
       }
 
-      if (bufferedInputStream != null) {
+      if (resumableTransfer != null && (bufferedInputStream != null || inChannel != null)) {
+        InputStream in;
+        if (bufferedInputStream != null) {
+          ResumableTransfer.skipFully(bufferedInputStream, resumeOffset);
+          in = bufferedInputStream;
+        } else {
+          inChannel.position(resumeOffset);
+          in = Channels.newInputStream(inChannel);
+        }
+        progressHandler.addToPosition(resumeOffset);
+        copyResumable(in, bufferedOutputStream, resumableTransfer);
+      } else if (bufferedInputStream != null) {
         if (bufferedOutputStream != null) copyFile(bufferedInputStream, bufferedOutputStream);
         else if (outChannel != null) {
           copyFile(bufferedInputStream, outChannel);
@@ -349,6 +383,36 @@ public class GenericCopyUtil {
     }
   }
 
+  /**
+   * @return the storage limiting a copy from {@code source} to {@code target}, before finding out
+   *     whether local files have to be accessed through {@link DocumentFile}
+   */
+  private static TransferBufferSizer.Backend getBackend(
+      @NonNull HybridFile source, @NonNull HybridFile target) {
+    if (source.isOtgFile() || target.isOtgFile()) {
+      return TransferBufferSizer.Backend.OTG;
+    } else if (source.isSftp() || target.isSftp()) {
+      return TransferBufferSizer.Backend.SFTP;
+    } else if (source.isSmb() || target.isSmb()) {
+      return TransferBufferSizer.Backend.SMB;
+    } else if (isCloudFile(source) || isCloudFile(target)) {
+      return TransferBufferSizer.Backend.CLOUD;
+    } else {
+      return TransferBufferSizer.Backend.LOCAL;
+    }
+  }
+
+  private static boolean isCloudFile(@NonNull HybridFile file) {
+    return file.isDropBoxFile()
+        || file.isBoxFile()
+        || file.isGoogleDriveFile()
+        || file.isOneDriveFile();
+  }
+
+  private int getBufferSize() {
+    return TransferBufferSizer.getBufferSize(backend);
+  }
+
   /**
    * Method exposes this class to initiate copy
    *
@@ -387,11 +451,33 @@ public class GenericCopyUtil {
   @VisibleForTesting
   void copyFile(@NonNull FileChannel inChannel, @NonNull FileChannel outChannel)
       throws IOException {
-    // MappedByteBuffer inByteBuffer = inChannel.map(FileChannel.MapMode.READ_ONLY, 0,
-    // inChannel.size());
-    // MappedByteBuffer outByteBuffer = outChannel.map(FileChannel.MapMode.READ_WRITE, 0,
-    // inChannel.size());
-    doCopy(inChannel, outChannel);
+    // let the kernel move the bytes (sendfile/splice) instead of copying them through a buffer
+    final long size = inChannel.size();
+    long position = 0;
+    try {
+      while (position < size && !progressHandler.getCancelled()) {
+        long chunk = Math.min(TRANSFER_TO_CHUNK, size - position);
+        long count = inChannel.transferTo(position, chunk, outChannel);
+        if (count <= 0) break;
+        position += count;
+        progressHandler.addToPosition(count);
+      }
+    } catch (IOException e) {
+      // some filesystems can't transfer directly, copy the rest through a buffer
+      Log.w(getClass().getSimpleName(), "transferTo failed, falling back to buffered copy", e);
+    }
+
+    if (position < size && !progressHandler.getCancelled()) {
+      inChannel.position(position);
+      outChannel.position(position);
+      doCopy(inChannel, outChannel);
+      return;
+    }
+
+    // the target may have been bigger before
+    if (!progressHandler.getCancelled()) outChannel.truncate(position);
+    inChannel.close();
+    outChannel.close();
   }
 
   /**
@@ -425,22 +511,60 @@ public class GenericCopyUtil {
     doCopy(inChannel, Channels.newChannel(bufferedOutputStream));
   }
 
+  /**
+   * Copies {@code in} to {@code out} from their current positions, saving a checkpoint of the
+   * {@link ResumableTransfer} each time a chunk reached the target.
+   */
+  @VisibleForTesting
+  void copyResumable(
+      @NonNull InputStream in, @NonNull OutputStream out, @NonNull ResumableTransfer transfer)
+      throws IOException {
+    final byte[] buffer = new byte[getBufferSize()];
+    int read;
+    while (!progressHandler.getCancelled()
+        && (read = in.read(buffer, 0, transfer.getWritableLength(buffer.length))) != -1) {
+      out.write(buffer, 0, read);
+      progressHandler.addToPosition(read);
+      if (transfer.onWritten(buffer, 0, read)) {
+        out.flush();
+        transfer.checkpoint();
+      }
+    }
+    out.flush();
+
+    if (!progressHandler.getCancelled()) transfer.finish();
+  }
+
   @VisibleForTesting
   void doCopy(@NonNull ReadableByteChannel from, @NonNull WritableByteChannel to)
       throws IOException {
-    ByteBuffer buffer = ByteBuffer.allocateDirect(DEFAULT_TRANSFER_QUANTUM);
-    long count;
-    while ((from.read(buffer) != -1 || buffer.position() > 0) && !progressHandler.getCancelled()) {
+    final TransferBufferSizer.Backend backend = this.backend;
+    final int bufferSize = TransferBufferSizer.getBufferSize(backend);
+    final ByteBuffer buffer = DirectBufferPool.acquire(bufferSize);
+    final long start = System.nanoTime();
+    long total = 0;
+    try {
+      long count;
+      while ((from.read(buffer) != -1 || buffer.position() > 0)
+          && !progressHandler.getCancelled()) {
+        buffer.flip();
+        count = to.write(buffer);
+        total += count;
+        progressHandler.addToPosition(count);
+        buffer.compact();
+      }
+
       buffer.flip();
-      count = to.write(buffer);
-      ServiceWatcherUtil.position += count;
-      buffer.compact();
+      while (buffer.hasRemaining()) to.write(buffer);
+    } finally {
+      DirectBufferPool.release(buffer);
     }
 
-    buffer.flip();
-    while (buffer.hasRemaining()) to.write(buffer);
-
     from.close();
     to.close();
+
+    if (!progressHandler.getCancelled()) {
+      TransferBufferSizer.report(backend, bufferSize, total, System.nanoTime() - start);
+    }
   }
 }
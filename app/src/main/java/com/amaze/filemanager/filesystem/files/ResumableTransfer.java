@@ -0,0 +1,192 @@
+/*
+ * Copyright (C) 2014-2020 Arpit Khurana <arpitkh96@gmail.com>, Vishal Nehra <vishalmeham2@gmail.com>,
+ * Emmanuel Messulam<emmanuelbendavid@gmail.com>, Raymond Lai <airwave209gt at gmail.com> and Contributors.
+ *
+ * This file is part of Amaze File Manager.
+ *
+ * Amaze File Manager is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.amaze.filemanager.filesystem.files;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Adler32;
+
+import com.amaze.filemanager.database.UtilsHandler;
+import com.amaze.filemanager.database.models.utilities.TransferCheckpoint;
+import com.amaze.filemanager.filesystem.HybridFile;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * Checkpoints the copy of a big file to SMB or SFTP every {@link #CHECKPOINT_INTERVAL} bytes, so
+ * that copying it again after an interruption continues where it stopped instead of from byte 0.
+ *
+ * <p>A checkpoint holds the offset reached and the {@link Adler32} checksum of the chunk before
+ * it. Before resuming, that chunk is read again from both source and target and must match.
+ *
+ * @see TransferCheckpoint
+ */
+class ResumableTransfer {
+
+  private static final String TAG = ResumableTransfer.class.getSimpleName();
+
+  /** Smaller files are copied again faster than a checkpoint is verified */
+  static final long MIN_RESUMABLE_SIZE = 64 * 1024 * 1024;
+
+  static final int CHECKPOINT_INTERVAL = 8 * 1024 * 1024;
+
+  /** Checkpoints of copies nobody retried for this long are dropped */
+  private static final long MAX_CHECKPOINT_AGE = TimeUnit.DAYS.toMillis(7);
+
+  private static final int VERIFY_BUFFER_SIZE = 64 * 1024;
+
+  private final UtilsHandler utilsHandler;
+  private final TransferCheckpoint checkpoint;
+  private final Adler32 chunkHash = new Adler32();
+  private int chunkLength = 0;
+
+  ResumableTransfer(
+      @NonNull UtilsHandler utilsHandler,
+      @NonNull String sourcePath,
+      long sourceSize,
+      long sourceLastModified,
+      @NonNull String targetPath) {
+    this.utilsHandler = utilsHandler;
+    this.checkpoint =
+        new TransferCheckpoint(targetPath, sourcePath, sourceSize, sourceLastModified);
+  }
+
+  /** @return true if a copy of {@code size} bytes to {@code target} is worth checkpointing */
+  static boolean isResumable(@NonNull HybridFile target, long size) {
+    return (target.isSmb() || target.isSftp()) && size >= MIN_RESUMABLE_SIZE;
+  }
+
+  /**
+   * Looks for the checkpoint of an earlier copy of the same, unchanged source to the same target,
+   * and checks the chunk it recorded against both files.
+   *
+   * @return the offset to continue the copy from, 0 to copy the whole file
+   */
+  long resume(@NonNull Context context, @NonNull HybridFile source, @NonNull HybridFile target) {
+    utilsHandler.removeTransferCheckpointsOlderThan(
+        System.currentTimeMillis() - MAX_CHECKPOINT_AGE);
+
+    TransferCheckpoint saved = utilsHandler.getTransferCheckpoint(checkpoint.path);
+    if (!isSameTransfer(saved)) return 0;
+
+    try {
+      if (!matches(source.getInputStream(context), saved)
+          || !matches(target.getInputStream(context), saved)) {
+        Log.d(TAG, "Checkpoint doesn't match the files, copying from the start");
+        return 0;
+      }
+    } catch (IOException e) {
+      Log.w(TAG, "Failed to verify checkpoint", e);
+      return 0;
+    }
+
+    checkpoint.offset = saved.offset;
+    return saved.offset;
+  }
+
+  private boolean isSameTransfer(@Nullable TransferCheckpoint saved) {
+    return saved != null
+        && checkpoint.sourcePath.equals(saved.sourcePath)
+        && checkpoint.sourceSize == saved.sourceSize
+        && checkpoint.sourceLastModified == saved.sourceLastModified
+        && saved.chunkLength > 0
+        && saved.chunkLength <= saved.offset
+        && saved.offset <= saved.sourceSize;
+  }
+
+  /** @return true if the chunk before the checkpoint offset in {@code in} has its checksum */
+  static boolean matches(@Nullable InputStream in, @NonNull TransferCheckpoint saved)
+      throws IOException {
+    if (in == null) return false;
+
+    try {
+      skipFully(in, saved.offset - saved.chunkLength);
+
+      Adler32 hash = new Adler32();
+      byte[] buffer = new byte[VERIFY_BUFFER_SIZE];
+      int remaining = saved.chunkLength;
+      while (remaining > 0) {
+        int read = in.read(buffer, 0, Math.min(buffer.length, remaining));
+        if (read == -1) return false;
+        hash.update(buffer, 0, read);
+        remaining -= read;
+      }
+      return hash.getValue() == saved.chunkHash;
+    } catch (EOFException e) {
+      return false;
+    } finally {
+      in.close();
+    }
+  }
+
+  /** Skips exactly {@code count} bytes, seeking where the stream supports it */
+  static void skipFully(@NonNull InputStream in, long count) throws IOException {
+    while (count > 0) {
+      long skipped = in.skip(count);
+      if (skipped <= 0) {
+        // skip() may give up early, make sure it's not the end of the stream
+        if (in.read() == -1) throw new EOFException();
+        skipped = 1;
+      }
+      count -= skipped;
+    }
+  }
+
+  /** @return how many of the next {@code length} bytes fit before the next checkpoint */
+  int getWritableLength(int length) {
+    return Math.min(length, CHECKPOINT_INTERVAL - chunkLength);
+  }
+
+  /**
+   * Records bytes written to the target.
+   *
+   * @return true when a chunk is complete, and {@link #checkpoint()} is due once the target was
+   *     flushed
+   */
+  boolean onWritten(@NonNull byte[] buffer, int offset, int length) {
+    chunkHash.update(buffer, offset, length);
+    chunkLength += length;
+    checkpoint.offset += length;
+    return chunkLength >= CHECKPOINT_INTERVAL;
+  }
+
+  /** Saves the offset reached, every byte written before must be on the target already */
+  void checkpoint() {
+    checkpoint.chunkLength = chunkLength;
+    checkpoint.chunkHash = chunkHash.getValue();
+    checkpoint.updated = System.currentTimeMillis();
+    utilsHandler.saveTransferCheckpoint(checkpoint);
+
+    chunkHash.reset();
+    chunkLength = 0;
+  }
+
+  /** Forgets the checkpoint of a copy that completed */
+  void finish() {
+    utilsHandler.removeTransferCheckpoint(checkpoint.path);
+  }
+}
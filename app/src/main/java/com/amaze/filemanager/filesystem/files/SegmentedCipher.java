@@ -0,0 +1,454 @@
+/*
+ * Copyright (C) 2014-2020 Arpit Khurana <arpitkh96@gmail.com>, Vishal Nehra <vishalmeham2@gmail.com>,
+ * Emmanuel Messulam<emmanuelbendavid@gmail.com>, Raymond Lai <airwave209gt at gmail.com> and Contributors.
+ *
+ * This file is part of Amaze File Manager.
+ *
+ * Amaze File Manager is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.amaze.filemanager.filesystem.files;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.security.SecureRandom;
+import java.security.spec.AlgorithmParameterSpec;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+import com.amaze.filemanager.utils.ProgressHandler;
+
+import android.os.Build;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+
+/**
+ * Reads and writes the segmented .aze container.
+ *
+ * <p>The plaintext is split in segments of {@link #SEGMENT_SIZE} bytes, each one sealed on its own
+ * with AES-GCM. Segments are encrypted and decrypted on all cores, each one is verified before any
+ * of it is written out, and a range of the file can be read by decrypting only the segments
+ * holding it.
+ *
+ * <p>Every file is sealed with its own random key, stored in the header wrapped with the key given
+ * to the constructor, so that nonces only have to be unique within one file however many files
+ * share that key. The file starts with {@link #MAGIC}, a version byte, the segment size, a random
+ * nonce prefix and the wrapped file key. The nonce of a segment is the prefix, the segment index
+ * and a flag set on the last segment, so segments can't be swapped or dropped from the end without
+ * failing verification.
+ *
+ * <p>Files encrypted before this container are a single GCM stream with no header, see {@link
+ * #isSegmented(InputStream)}.
+ */
+public final class SegmentedCipher {
+
+  private static final String ALGO_AES = "AES/GCM/NoPadding";
+
+  @VisibleForTesting static final byte[] MAGIC = {'A', 'M', 'A', 'Z', 'E', 'A', 'Z', 'E'};
+  @VisibleForTesting static final byte VERSION = 3;
+  @VisibleForTesting static final int SEGMENT_SIZE = 256 * 1024;
+  @VisibleForTesting static final int TAG_SIZE = 16;
+
+  private static final int NONCE_PREFIX_SIZE = 7;
+  private static final int NONCE_SIZE = 12;
+  private static final int FILE_KEY_SIZE = 16;
+  /** Size of the file key as stored, with the nonce and tag of its wrapping */
+  @VisibleForTesting static final int WRAPPED_KEY_SIZE = NONCE_SIZE + FILE_KEY_SIZE + TAG_SIZE;
+
+  @VisibleForTesting
+  static final int HEADER_SIZE = MAGIC.length + 1 + 4 + NONCE_PREFIX_SIZE + WRAPPED_KEY_SIZE;
+
+  /** Largest segment size accepted when reading a header */
+  private static final int MAX_SEGMENT_SIZE = 16 * 1024 * 1024;
+  /** Segments queued per thread, bounds the memory taken by segments waiting to be written */
+  private static final int SEGMENTS_PER_THREAD = 2;
+
+  private static final byte[] EMPTY = new byte[0];
+
+  private final Key key;
+  private final int parallelism;
+
+  /** @param key the AES key the key of every file is wrapped with */
+  public SegmentedCipher(@NonNull Key key) {
+    this(key, Runtime.getRuntime().availableProcessors());
+  }
+
+  @VisibleForTesting
+  SegmentedCipher(@NonNull Key key, int parallelism) {
+    this.key = key;
+    this.parallelism = Math.max(1, parallelism);
+  }
+
+  /**
+   * Checks whether {@code inputStream} starts with the header of this container, leaving the
+   * stream where it was
+   */
+  public static boolean isSegmented(@NonNull InputStream inputStream) throws IOException {
+    byte[] magic = new byte[MAGIC.length];
+    inputStream.mark(magic.length);
+    try {
+      return readFully(inputStream, magic) == magic.length && Arrays.equals(magic, MAGIC);
+    } finally {
+      inputStream.reset();
+    }
+  }
+
+  /**
+   * Encrypts {@code inputStream} into {@code outputStream}, stopping early if {@code
+   * progressHandler} is cancelled. Neither stream is closed.
+   */
+  public void encrypt(
+      @NonNull InputStream inputStream,
+      @NonNull OutputStream outputStream,
+      @Nullable ProgressHandler progressHandler)
+      throws GeneralSecurityException, IOException {
+    SecureRandom random = new SecureRandom();
+    byte[] noncePrefix = new byte[NONCE_PREFIX_SIZE];
+    random.nextBytes(noncePrefix);
+    byte[] fileKey = new byte[FILE_KEY_SIZE];
+    random.nextBytes(fileKey);
+    byte[] keyNonce = new byte[NONCE_SIZE];
+    random.nextBytes(keyNonce);
+
+    outputStream.write(
+        ByteBuffer.allocate(HEADER_SIZE)
+            .put(MAGIC)
+            .put(VERSION)
+            .putInt(SEGMENT_SIZE)
+            .put(noncePrefix)
+            .put(keyNonce)
+            .put(doFinal(Cipher.ENCRYPT_MODE, key, keyNonce, fileKey))
+            .array());
+
+    process(
+        Cipher.ENCRYPT_MODE,
+        new SecretKeySpec(fileKey, "AES"),
+        noncePrefix,
+        SEGMENT_SIZE,
+        inputStream,
+        outputStream,
+        progressHandler);
+  }
+
+  /**
+   * Decrypts {@code inputStream}, header included, into {@code outputStream}, stopping early if
+   * {@code progressHandler} is cancelled. Neither stream is closed.
+   *
+   * @throws javax.crypto.AEADBadTagException when a segment doesn't verify, nothing from that
+   *     segment on is written
+   */
+  public void decrypt(
+      @NonNull InputStream inputStream,
+      @NonNull OutputStream outputStream,
+      @Nullable ProgressHandler progressHandler)
+      throws GeneralSecurityException, IOException {
+    byte[] header = new byte[HEADER_SIZE];
+    if (readFully(inputStream, header) != HEADER_SIZE) {
+      throw new IOException("Truncated header");
+    }
+    Header parsed = new Header(header);
+
+    process(
+        Cipher.DECRYPT_MODE,
+        parsed.unwrapKey(key),
+        parsed.noncePrefix,
+        parsed.segmentSize + TAG_SIZE,
+        inputStream,
+        outputStream,
+        progressHandler);
+  }
+
+  /** Reads a file of this container for random access, see {@link Reader} */
+  @NonNull
+  public Reader open(@NonNull RandomAccessFile file) throws GeneralSecurityException, IOException {
+    byte[] header = new byte[HEADER_SIZE];
+    file.seek(0);
+    file.readFully(header);
+    Header parsed = new Header(header);
+    return new Reader(file, parsed, parsed.unwrapKey(key));
+  }
+
+  /**
+   * Seals (or opens) segments on a pool of {@link #parallelism} threads. The queue of pending
+   * results doubles as the reorder buffer: results are written in the order segments were read,
+   * and reading stops while the queue is full.
+   */
+  private void process(
+      int mode,
+      @NonNull Key fileKey,
+      @NonNull byte[] noncePrefix,
+      int segmentSize,
+      @NonNull InputStream inputStream,
+      @NonNull OutputStream outputStream,
+      @Nullable ProgressHandler progressHandler)
+      throws GeneralSecurityException, IOException {
+    ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+    ArrayDeque<Future<byte[]>> pending = new ArrayDeque<>();
+    int overhead = mode == Cipher.ENCRYPT_MODE ? TAG_SIZE : 0;
+
+    try {
+      // one segment is read ahead, to know whether the current one is the last
+      byte[] next = readSegment(inputStream, segmentSize);
+      boolean last = false;
+      for (long index = 0; !last; index++) {
+        if (progressHandler != null && progressHandler.getCancelled()) {
+          return;
+        }
+
+        byte[] segment = next;
+        next = segment.length == segmentSize ? readSegment(inputStream, segmentSize) : EMPTY;
+        last = next.length == 0;
+
+        byte[] nonce = getNonce(noncePrefix, index, last);
+        pending.add(executor.submit(() -> doFinal(mode, fileKey, nonce, segment)));
+
+        if (pending.size() >= parallelism * SEGMENTS_PER_THREAD) {
+          write(pending.remove(), outputStream, overhead, progressHandler);
+        }
+      }
+
+      while (!pending.isEmpty()) {
+        write(pending.remove(), outputStream, overhead, progressHandler);
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private void write(
+      @NonNull Future<byte[]> result,
+      @NonNull OutputStream outputStream,
+      int overhead,
+      @Nullable ProgressHandler progressHandler)
+      throws GeneralSecurityException, IOException {
+    byte[] bytes = getResult(result);
+    outputStream.write(bytes);
+    if (progressHandler != null) {
+      progressHandler.addToPosition(bytes.length - overhead);
+    }
+  }
+
+  @NonNull
+  private static byte[] doFinal(
+      int mode, @NonNull Key key, @NonNull byte[] nonce, @NonNull byte[] input)
+      throws GeneralSecurityException {
+    Cipher cipher = Cipher.getInstance(ALGO_AES);
+    cipher.init(mode, key, getParameterSpec(nonce));
+    return cipher.doFinal(input);
+  }
+
+  @NonNull
+  private static byte[] getResult(@NonNull Future<byte[]> result)
+      throws GeneralSecurityException, IOException {
+    try {
+      return result.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException();
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof GeneralSecurityException) {
+        throw (GeneralSecurityException) e.getCause();
+      }
+      throw new IOException(e.getCause());
+    }
+  }
+
+  @NonNull
+  private static byte[] getNonce(@NonNull byte[] noncePrefix, long index, boolean last)
+      throws IOException {
+    if (index > 0xFFFFFFFFL) {
+      throw new IOException("Too many segments");
+    }
+
+    return ByteBuffer.allocate(NONCE_SIZE)
+        .put(noncePrefix)
+        .putInt((int) index)
+        .put((byte) (last ? 1 : 0))
+        .array();
+  }
+
+  /** Android only knows {@link GCMParameterSpec} since KitKat, older providers take the IV */
+  @NonNull
+  private static AlgorithmParameterSpec getParameterSpec(@NonNull byte[] nonce) {
+    if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+      return new GCMParameterSpec(TAG_SIZE * 8, nonce);
+    } else {
+      return new IvParameterSpec(nonce);
+    }
+  }
+
+  @NonNull
+  private static byte[] readSegment(@NonNull InputStream inputStream, int size)
+      throws IOException {
+    byte[] segment = new byte[size];
+    int count = readFully(inputStream, segment);
+    if (count == 0) {
+      return EMPTY;
+    }
+    return count == size ? segment : Arrays.copyOf(segment, count);
+  }
+
+  /** @return the number of bytes read, less than the buffer's length only at end of stream */
+  private static int readFully(@NonNull InputStream inputStream, @NonNull byte[] buffer)
+      throws IOException {
+    int total = 0;
+    int count;
+    while (total < buffer.length
+        && (count = inputStream.read(buffer, total, buffer.length - total)) != -1) {
+      total += count;
+    }
+    return total;
+  }
+
+  private static final class Header {
+    final int segmentSize;
+    final byte[] noncePrefix;
+    final byte[] keyNonce;
+    final byte[] wrappedKey;
+
+    Header(@NonNull byte[] header) throws IOException {
+      ByteBuffer buffer = ByteBuffer.wrap(header);
+      byte[] magic = new byte[MAGIC.length];
+      buffer.get(magic);
+      if (!Arrays.equals(magic, MAGIC)) {
+        throw new IOException("Not a segmented file");
+      }
+
+      byte version = buffer.get();
+      if (version != VERSION) {
+        throw new IOException("Unsupported version " + version);
+      }
+
+      segmentSize = buffer.getInt();
+      if (segmentSize <= 0 || segmentSize > MAX_SEGMENT_SIZE) {
+        throw new IOException("Invalid segment size " + segmentSize);
+      }
+
+      noncePrefix = new byte[NONCE_PREFIX_SIZE];
+      buffer.get(noncePrefix);
+      keyNonce = new byte[NONCE_SIZE];
+      buffer.get(keyNonce);
+      wrappedKey = new byte[FILE_KEY_SIZE + TAG_SIZE];
+      buffer.get(wrappedKey);
+    }
+
+    /**
+     * @return the key the segments of the file are sealed with
+     * @throws javax.crypto.AEADBadTagException if the file wasn't written with {@code key}
+     */
+    @NonNull
+    Key unwrapKey(@NonNull Key key) throws GeneralSecurityException {
+      return new SecretKeySpec(doFinal(Cipher.DECRYPT_MODE, key, keyNonce, wrappedKey), "AES");
+    }
+  }
+
+  /**
+   * Random access to the plaintext of a file, decrypting and verifying only the segments read. The
+   * last segment read is kept, so that reading a segment in small parts decrypts it once. Not
+   * thread safe, the file is not closed.
+   */
+  public final class Reader {
+
+    private final RandomAccessFile file;
+    private final Header header;
+    private final Key fileKey;
+    private final int sealedSize;
+    private final long fileLength;
+    private final long segmentCount;
+    private final long length;
+
+    private long cachedIndex = -1;
+    private byte[] cachedSegment;
+
+    private Reader(@NonNull RandomAccessFile file, @NonNull Header header, @NonNull Key fileKey)
+        throws IOException {
+      this.file = file;
+      this.header = header;
+      this.fileKey = fileKey;
+      sealedSize = header.segmentSize + TAG_SIZE;
+      fileLength = file.length();
+
+      long body = fileLength - HEADER_SIZE;
+      long remainder = body % sealedSize;
+      if (body < TAG_SIZE || (remainder > 0 && remainder < TAG_SIZE)) {
+        throw new IOException("Truncated file");
+      }
+      segmentCount = body / sealedSize + (remainder > 0 ? 1 : 0);
+      length = body - segmentCount * TAG_SIZE;
+    }
+
+    /** @return the length of the plaintext */
+    public long length() {
+      return length;
+    }
+
+    /**
+     * Reads up to {@code count} bytes of plaintext starting at {@code position}
+     *
+     * @return the number of bytes read, -1 if {@code position} is at or past the end
+     * @throws javax.crypto.AEADBadTagException when a segment read doesn't verify
+     */
+    public int read(long position, @NonNull byte[] buffer, int offset, int count)
+        throws GeneralSecurityException, IOException {
+      if (position >= length) {
+        return -1;
+      }
+
+      int total = 0;
+      while (total < count && position < length) {
+        long index = position / header.segmentSize;
+        byte[] segment = getSegment(index);
+        int start = (int) (position - index * header.segmentSize);
+        int copied = Math.min(count - total, segment.length - start);
+        System.arraycopy(segment, start, buffer, offset + total, copied);
+        total += copied;
+        position += copied;
+      }
+      return total;
+    }
+
+    @NonNull
+    private byte[] getSegment(long index) throws GeneralSecurityException, IOException {
+      if (index != cachedIndex) {
+        long start = HEADER_SIZE + index * sealedSize;
+        byte[] sealed = new byte[(int) Math.min(sealedSize, fileLength - start)];
+        file.seek(start);
+        file.readFully(sealed);
+
+        cachedIndex = -1;
+        byte[] nonce = getNonce(header.noncePrefix, index, index == segmentCount - 1);
+        cachedSegment = doFinal(Cipher.DECRYPT_MODE, fileKey, nonce, sealed);
+        cachedIndex = index;
+      }
+      return cachedSegment;
+    }
+  }
+}
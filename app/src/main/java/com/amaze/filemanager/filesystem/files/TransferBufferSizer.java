@@ -0,0 +1,126 @@
+/*
+ * Copyright (C) 2014-2020 Arpit Khurana <arpitkh96@gmail.com>, Vishal Nehra <vishalmeham2@gmail.com>,
+ * Emmanuel Messulam<emmanuelbendavid@gmail.com>, Raymond Lai <airwave209gt at gmail.com> and Contributors.
+ *
+ * This file is part of Amaze File Manager.
+ *
+ * Amaze File Manager is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.amaze.filemanager.filesystem.files;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Chooses the buffer size of the transfers of {@link GenericCopyUtil} per kind of storage, and
+ * adapts it to the throughput measured by the transfers: the size keeps moving (doubling or
+ * halving) while throughput improves, and goes back a step when it gets worse.
+ */
+public final class TransferBufferSizer {
+
+  /** The kind of storage that limits a transfer, the slowest end of it */
+  public enum Backend {
+    LOCAL(DirectBufferPool.MIN_SIZE),
+    DOCUMENT_FILE(DirectBufferPool.MIN_SIZE),
+    OTG(128 * 1024),
+    SMB(256 * 1024),
+    SFTP(DirectBufferPool.MIN_SIZE),
+    CLOUD(256 * 1024);
+
+    final int initialSize;
+
+    Backend(int initialSize) {
+      this.initialSize = initialSize;
+    }
+  }
+
+  /** Transfers shorter than this many buffers say little about throughput and are ignored */
+  private static final int MIN_BUFFERS_MEASURED = 16;
+
+  /** Relative change in throughput that counts as better or worse */
+  private static final double THRESHOLD = 0.1;
+
+  private static final State[] states = new State[Backend.values().length];
+
+  private TransferBufferSizer() {}
+
+  /** @return the buffer size to use for the next transfer limited by {@code backend} */
+  public static int getBufferSize(@NonNull Backend backend) {
+    synchronized (states) {
+      return getState(backend).size;
+    }
+  }
+
+  /**
+   * Reports a finished transfer.
+   *
+   * @param bufferSize the size the transfer was made with
+   * @param bytes bytes transferred
+   * @param nanos time the transfer took
+   */
+  public static void report(@NonNull Backend backend, int bufferSize, long bytes, long nanos) {
+    if (bytes < (long) bufferSize * MIN_BUFFERS_MEASURED || nanos <= 0) return;
+
+    final double throughput = (double) bytes / nanos;
+    synchronized (states) {
+      State state = getState(backend);
+      if (bufferSize != state.size) return; // measured with a size that was already left
+
+      if (state.bestThroughput <= 0 || throughput > state.bestThroughput * (1 + THRESHOLD)) {
+        state.bestThroughput = throughput;
+        state.step();
+      } else if (throughput < state.bestThroughput * (1 - THRESHOLD)) {
+        // go back to the size of the best throughput, and stay there while it holds
+        state.growing = !state.growing;
+        state.step();
+      }
+    }
+  }
+
+  /** Forgets all measures */
+  static void reset() {
+    synchronized (states) {
+      for (int i = 0; i < states.length; i++) {
+        states[i] = null;
+      }
+    }
+  }
+
+  private static State getState(@NonNull Backend backend) {
+    State state = states[backend.ordinal()];
+    if (state == null) {
+      state = new State(backend.initialSize);
+      states[backend.ordinal()] = state;
+    }
+    return state;
+  }
+
+  private static final class State {
+    int size;
+    boolean growing = true;
+    double bestThroughput = 0;
+
+    State(int size) {
+      this.size = size;
+    }
+
+    void step() {
+      int next = growing ? size * 2 : size / 2;
+      // at the limits of the pool stay put, a slower transfer will turn around
+      if (next >= DirectBufferPool.MIN_SIZE && next <= DirectBufferPool.MAX_SIZE) {
+        size = next;
+      }
+    }
+  }
+}
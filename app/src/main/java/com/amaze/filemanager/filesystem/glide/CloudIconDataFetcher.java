@@ -20,26 +20,49 @@
 
 package com.amaze.filemanager.filesystem.glide;
 
+import java.io.BufferedInputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 
 import com.amaze.filemanager.filesystem.cloud.CloudUtil;
 import com.bumptech.glide.Priority;
 import com.bumptech.glide.load.DataSource;
 import com.bumptech.glide.load.data.DataFetcher;
+import com.bumptech.glide.request.target.Target;
 
 import android.content.Context;
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 
-/** Created by Vishal Nehra on 3/27/2018. */
+/**
+ * Created by Vishal Nehra on 3/27/2018.
+ *
+ * <p>Loads the thumbnail of a remote image. The size of the image is read first, so that it can be
+ * decoded down to about the requested size; only a few thumbnails are fetched from the same host
+ * at a time, so that a long list doesn't flood a server with downloads.
+ */
 public class CloudIconDataFetcher implements DataFetcher<Bitmap> {
 
+  /** Thumbnails fetched from the same host at the same time */
+  static final int MAX_FETCHES_PER_HOST = 2;
+
+  /** Bytes kept while reading the size, to decode the image without downloading it again */
+  private static final int MARK_LIMIT = 1024 * 1024;
+
+  private static final ConcurrentHashMap<String, Semaphore> hostPermits = new ConcurrentHashMap<>();
+
   private String path;
   private Context context;
-  private InputStream inputStream;
+  private volatile InputStream inputStream;
+  private volatile boolean cancelled = false;
   private int width, height;
 
   public CloudIconDataFetcher(Context context, String path, int width, int height) {
@@ -51,18 +74,75 @@ public class CloudIconDataFetcher implements DataFetcher<Bitmap> {
 
   @Override
   public void loadData(Priority priority, DataCallback<? super Bitmap> callback) {
-    inputStream = CloudUtil.getThumbnailInputStreamForCloud(context, path);
+    Semaphore permits = getHostPermits(getHostKey(path));
+    try {
+      while (!permits.tryAcquire(100, TimeUnit.MILLISECONDS)) {
+        if (cancelled) return;
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      callback.onLoadFailed(e);
+      return;
+    }
+
+    try {
+      Bitmap bitmap = decode();
+      if (cancelled) return;
+
+      if (bitmap == null) callback.onLoadFailed(new IOException("Can't decode " + path));
+      else callback.onDataReady(bitmap);
+    } catch (IOException e) {
+      if (!cancelled) callback.onLoadFailed(e);
+    } finally {
+      permits.release();
+    }
+  }
+
+  @Nullable
+  private Bitmap decode() throws IOException {
+    InputStream stream = open();
+    if (stream == null) return null;
+
     BitmapFactory.Options options = new BitmapFactory.Options();
-    options.outWidth = width;
-    options.outHeight = height;
-    Bitmap drawable = BitmapFactory.decodeStream(inputStream, null, options);
-    callback.onDataReady(drawable);
+    options.inJustDecodeBounds = true;
+    stream.mark(MARK_LIMIT);
+    BitmapFactory.decodeStream(stream, null, options);
+    if (cancelled || options.outWidth <= 0 || options.outHeight <= 0) return null;
+
+    try {
+      stream.reset();
+    } catch (IOException e) {
+      // The header was too big to keep, start over
+      cleanup();
+      stream = open();
+      if (stream == null) return null;
+    }
+
+    options.inJustDecodeBounds = false;
+    options.inSampleSize =
+        calculateInSampleSize(options.outWidth, options.outHeight, width, height);
+    return BitmapFactory.decodeStream(stream, null, options);
+  }
+
+  @Nullable
+  private InputStream open() throws IOException {
+    InputStream stream = CloudUtil.getThumbnailInputStreamForCloud(context, path);
+    if (stream == null) return null;
+
+    inputStream = new BufferedInputStream(new CancellableInputStream(stream));
+    if (cancelled) {
+      cleanup();
+      throw new InterruptedIOException("Cancelled");
+    }
+    return inputStream;
   }
 
   @Override
   public void cleanup() {
     try {
-      if (inputStream != null) inputStream.close();
+      InputStream stream = inputStream;
+      inputStream = null;
+      if (stream != null) stream.close();
     } catch (IOException e) {
       e.printStackTrace();
     }
@@ -70,7 +150,8 @@ public class CloudIconDataFetcher implements DataFetcher<Bitmap> {
 
   @Override
   public void cancel() {
-    // do nothing
+    // The download stops at the next read, see CancellableInputStream
+    cancelled = true;
   }
 
   @NonNull
@@ -84,4 +165,75 @@ public class CloudIconDataFetcher implements DataFetcher<Bitmap> {
   public DataSource getDataSource() {
     return DataSource.REMOTE;
   }
+
+  /**
+   * Largest power of two to divide the image dimensions by that keeps both at least as big as the
+   * requested ones.
+   */
+  static int calculateInSampleSize(int outWidth, int outHeight, int reqWidth, int reqHeight) {
+    if (reqWidth == Target.SIZE_ORIGINAL || reqHeight == Target.SIZE_ORIGINAL) return 1;
+    if (reqWidth <= 0 || reqHeight <= 0) return 1;
+
+    int sampleSize = 1;
+    while (outWidth / (sampleSize * 2) >= reqWidth && outHeight / (sampleSize * 2) >= reqHeight) {
+      sampleSize *= 2;
+    }
+    return sampleSize;
+  }
+
+  /**
+   * Key of the server a thumbnail is fetched from: the host of an SMB or SFTP path, the account
+   * for cloud storage.
+   */
+  @NonNull
+  static String getHostKey(@NonNull String path) {
+    int scheme = path.indexOf(":/");
+    if (scheme < 0) return "";
+    if (!path.startsWith("smb:/") && !path.startsWith("ssh:/")) return path.substring(0, scheme);
+
+    int start = scheme + 2;
+    while (start < path.length() && path.charAt(start) == '/') start++;
+    int end = path.indexOf('/', start);
+    String authority = end < 0 ? path.substring(start) : path.substring(start, end);
+    return path.substring(0, scheme) + "://" + authority.substring(authority.lastIndexOf('@') + 1);
+  }
+
+  private static Semaphore getHostPermits(String hostKey) {
+    Semaphore permits = hostPermits.get(hostKey);
+    if (permits == null) {
+      Semaphore created = new Semaphore(MAX_FETCHES_PER_HOST);
+      permits = hostPermits.putIfAbsent(hostKey, created);
+      if (permits == null) permits = created;
+    }
+    return permits;
+  }
+
+  /** Fails reads once the load is cancelled, so decoding stops without reading the rest. */
+  private class CancellableInputStream extends FilterInputStream {
+    CancellableInputStream(InputStream in) {
+      super(in);
+    }
+
+    @Override
+    public int read() throws IOException {
+      checkCancelled();
+      return super.read();
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      checkCancelled();
+      return super.read(b, off, len);
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+      checkCancelled();
+      return super.skip(n);
+    }
+
+    private void checkCancelled() throws InterruptedIOException {
+      if (cancelled) throw new InterruptedIOException("Cancelled");
+    }
+  }
 }
@@ -42,12 +42,9 @@ public class CloudIconModelLoader implements ModelLoader<String, Bitmap> {
   @Nullable
   @Override
   public LoadData<Bitmap> buildLoadData(String s, int width, int height, Options options) {
-    // we put key as current time since we're not disk caching the images for cloud,
-    // as there is no way to differentiate input streams returned by different cloud services
-    // for future instances and they don't expose concrete paths either
-    return new LoadData<>(
-        new ObjectKey(System.currentTimeMillis()),
-        new CloudIconDataFetcher(context, s, width, height));
+    // Keyed by path only, requests add the size and date of the file as signature so that a
+    // changed file gets a new thumbnail
+    return new LoadData<>(new ObjectKey(s), new CloudIconDataFetcher(context, s, width, height));
   }
 
   @Override
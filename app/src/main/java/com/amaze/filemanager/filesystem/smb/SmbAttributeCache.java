@@ -0,0 +1,123 @@
+/*
+ * Copyright (C) 2014-2020 Arpit Khurana <arpitkh96@gmail.com>, Vishal Nehra <vishalmeham2@gmail.com>,
+ * Emmanuel Messulam<emmanuelbendavid@gmail.com>, Raymond Lai <airwave209gt at gmail.com> and Contributors.
+ *
+ * This file is part of Amaze File Manager.
+ *
+ * Amaze File Manager is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.amaze.filemanager.filesystem.smb;
+
+import android.util.LruCache;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+
+import jcifs.smb.SmbException;
+import jcifs.smb.SmbFile;
+
+/**
+ * Short-lived cache of SMB file attributes.
+ *
+ * <p>A directory listing already brings the type, size and modification time of every child, but
+ * a {@link SmbFile} created again from the path knows none of it and asks the server for each
+ * attribute. Listings put their children here, so that {@link
+ * com.amaze.filemanager.filesystem.HybridFile} can answer from the listing instead. Entries expire
+ * after {@link #MAX_AGE_MILLIS} and are dropped when the file is changed through the app.
+ */
+public final class SmbAttributeCache {
+
+  @VisibleForTesting static final long MAX_AGE_MILLIS = 10 * 1000;
+
+  private static final int MAX_ENTRIES = 4096;
+
+  private static final LruCache<String, Attributes> attributes = new LruCache<>(MAX_ENTRIES);
+
+  private SmbAttributeCache() {}
+
+  /**
+   * Remember the attributes of a file obtained from a listing. Calling this on a {@link SmbFile}
+   * that wasn't listed asks the server for them.
+   */
+  public static void put(@NonNull SmbFile file) {
+    try {
+      boolean isDirectory = file.isDirectory();
+      attributes.put(
+          getKey(file.getPath()),
+          new Attributes(isDirectory, isDirectory ? 0 : file.length(), file.lastModified()));
+    } catch (SmbException e) {
+      invalidate(file.getPath());
+    }
+  }
+
+  /** Remember the attributes of all files of a listing */
+  public static void putAll(@NonNull SmbFile[] files) {
+    for (SmbFile file : files) {
+      put(file);
+    }
+  }
+
+  /** @return the attributes of the file at {@code path}, or null if not known or too old */
+  @Nullable
+  public static Attributes get(@NonNull String path) {
+    return get(path, System.currentTimeMillis());
+  }
+
+  @VisibleForTesting
+  @Nullable
+  static Attributes get(@NonNull String path, long now) {
+    String key = getKey(path);
+    Attributes cached = attributes.get(key);
+    if (cached != null && now - cached.time > MAX_AGE_MILLIS) {
+      attributes.remove(key);
+      return null;
+    }
+    return cached;
+  }
+
+  /** Forget the attributes of the file at {@code path}, e.g. because it was changed */
+  public static void invalidate(@NonNull String path) {
+    attributes.remove(getKey(path));
+  }
+
+  /** Forget all attributes */
+  public static void clear() {
+    attributes.evictAll();
+  }
+
+  // the same file is reached with and without the trailing slash of directories and the query
+  // parameters used to create the SmbFile
+  private static String getKey(@NonNull String path) {
+    int end = path.indexOf('?');
+    if (end < 0) end = path.length();
+    if (end > 0 && path.charAt(end - 1) == '/') end--;
+    return path.substring(0, end);
+  }
+
+  /** Attributes of a SMB file as of when it was listed */
+  public static final class Attributes {
+    public final boolean isDirectory;
+    public final long length;
+    public final long lastModified;
+    final long time = System.currentTimeMillis();
+
+    Attributes(boolean isDirectory, long length, long lastModified) {
+      this.isDirectory = isDirectory;
+      this.length = length;
+      this.lastModified = lastModified;
+    }
+  }
+}
@@ -22,68 +22,135 @@ package com.amaze.filemanager.filesystem.smbstreamer;
 
 /** Created by Arpit on 06-07-2015. */
 import java.io.IOException;
-import java.io.InputStream;
+import java.util.Arrays;
 
 import com.amaze.filemanager.filesystem.streams.RandomAccessStream;
 
+import android.util.LruCache;
 import android.webkit.MimeTypeMap;
 
+import jcifs.SmbRandomAccess;
 import jcifs.smb.SmbFile;
 
+/**
+ * Seekable view of an {@link SmbFile} for {@link Streamer}.
+ *
+ * <p>Content is fetched with positional reads of {@link #BLOCK_SIZE} bytes through a random access
+ * handle, so moving to another offset costs a single seek instead of re-reading the file from the
+ * start. Fetched blocks are kept in a small cache shared by all sources, since players tend to
+ * request the same region (e.g. the container index at the end of a video) over and over.
+ */
 public class StreamSource extends RandomAccessStream {
 
+  /** Bytes fetched from the server per positional read, and the unit of the block cache. */
+  static final int BLOCK_SIZE = 512 * 1024;
+
+  /** Total size in bytes of the blocks kept across all sources. */
+  private static final int BLOCK_CACHE_SIZE = 16 * BLOCK_SIZE;
+
+  private static final LruCache<String, byte[]> blocks =
+      new LruCache<String, byte[]>(BLOCK_CACHE_SIZE) {
+        @Override
+        protected int sizeOf(String key, byte[] value) {
+          return value.length;
+        }
+      };
+
   protected String mime;
   protected long fp;
+  protected long limit;
   protected String name;
   protected SmbFile file;
-  InputStream input;
+  private SmbRandomAccess input;
+  private boolean opened;
+  private byte[] block;
+  private long blockIndex = -1;
 
   public StreamSource(SmbFile file, long l) {
     super(l);
 
     fp = 0;
+    limit = l;
     mime = MimeTypeMap.getFileExtensionFromUrl(file.getName());
     name = file.getName();
     this.file = file;
   }
 
   /**
-   * You may notice a strange name for the smb input stream. I made some modifications to the
-   * original one in the jcifs library for my needs, but streaming required returning to the
-   * original one so I renamed it to "old". However, I needed to specify a buffer size in the
-   * constructor. It looks now like this:
-   *
-   * <p>public SmbFileInputStreamOld( SmbFile file, int readBuffer, int openFlags) throws
-   * SmbException, MalformedURLException, UnknownHostException { this.file = file; this.openFlags =
-   * SmbFile.O_RDONLY & 0xFFFF; this.access = (openFlags >>> 16) & 0xFFFF; if (file.type !=
-   * SmbFile.TYPE_NAMED_PIPE) { file.open( openFlags, access, SmbFile.ATTR_NORMAL, 0 );
-   * this.openFlags &= ~(SmbFile.O_CREAT | SmbFile.O_TRUNC); } else { file.connect0(); } readSize =
-   * readBuffer; fs = file.length(); }
-   *
-   * <p>Setting buffer size by properties didn't work for me so I created this constructor. In the
-   * libs folder there is a library modified by me. If you want to use a stock one, you have to set
-   * somehow the buffer size to be equal with http server's buffer size which is 8192.
+   * Prepares the source for reading from the current position. The connection to the server is
+   * only opened once a block that is not cached is needed.
    */
   public void open() throws IOException {
-    try {
-      input = file.getInputStream(); // new SmbFileInputStream(file, bufferSize, 1);
-      if (fp > 0) input.skip(fp);
-    } catch (Exception e) {
-      throw new IOException(e);
+    opened = true;
+  }
+
+  /**
+   * Stops reading at the given offset (exclusive), so that a range request only fetches what was
+   * asked for.
+   */
+  public void setLimit(long limit) {
+    if (limit < 0 || length() < limit) {
+      throw new IllegalArgumentException("Limit out of the bounds of the file!");
     }
+
+    this.limit = limit;
   }
 
   @Override
   public int read() throws IOException {
-    int read = input.read();
-    if (read != -1) fp++;
-    return read;
+    byte[] b = new byte[1];
+    return read(b, 0, 1) == 1 ? b[0] & 0xff : -1;
   }
 
+  @Override
   public int read(byte[] bytes, int start, int offs) throws IOException {
-    int read = input.read(bytes, start, offs);
-    fp += read;
-    return read;
+    if (start < 0 || offs < 0 || offs > bytes.length - start) {
+      throw new IndexOutOfBoundsException();
+    }
+    if (!opened) throw new IOException("Stream is not open");
+    if (offs == 0) return 0;
+    if (fp >= limit) return -1;
+
+    byte[] current = getBlock(fp / BLOCK_SIZE);
+    int offsetInBlock = (int) (fp % BLOCK_SIZE);
+    int count = (int) Math.min(Math.min(offs, current.length - offsetInBlock), limit - fp);
+    if (count <= 0) return -1; // file got shorter than announced
+
+    System.arraycopy(current, offsetInBlock, bytes, start, count);
+    fp += count;
+    return count;
+  }
+
+  private byte[] getBlock(long index) throws IOException {
+    if (index == blockIndex) return block;
+
+    String key = file.getPath() + '@' + length() + '#' + index;
+    byte[] data = blocks.get(key);
+    if (data == null) {
+      data = readBlock(index);
+      blocks.put(key, data);
+    }
+
+    block = data;
+    blockIndex = index;
+    return data;
+  }
+
+  private byte[] readBlock(long index) throws IOException {
+    if (input == null) input = file.openRandomAccess("r");
+
+    long position = index * BLOCK_SIZE;
+    int size = (int) Math.max(0, Math.min(BLOCK_SIZE, length() - position));
+    byte[] data = new byte[size];
+    input.seek(position);
+
+    int total = 0;
+    while (total < size) {
+      int read = input.read(data, total, size - total);
+      if (read < 0) break;
+      total += read;
+    }
+    return total == size ? data : Arrays.copyOf(data, total);
   }
 
   @Override
@@ -97,12 +164,16 @@ public class StreamSource extends RandomAccessStream {
 
   @Override
   public void close() {
+    opened = false;
+    block = null;
+    blockIndex = -1;
     if (input != null) {
       try {
         input.close();
       } catch (IOException e) {
         e.printStackTrace();
       }
+      input = null;
     }
   }
 
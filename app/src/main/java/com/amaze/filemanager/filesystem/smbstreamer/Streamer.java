@@ -26,6 +26,7 @@ import java.util.Properties;
 import java.util.regex.Pattern;
 
 import com.amaze.filemanager.filesystem.cloud.CloudUtil;
+import com.amaze.filemanager.filesystem.streams.HttpSessions;
 
 import android.util.Log;
 
@@ -96,45 +97,24 @@ public class Streamer extends StreamServer {
     }*/
     if (sourceFile == null) res = new Response(HTTP_NOTFOUND, MIME_PLAINTEXT, null);
     else {
-      long startFrom = 0;
-      long endAt = -1;
       String range = header.getProperty("range");
-      if (range != null) {
-        if (range.startsWith("bytes=")) {
-          range = range.substring("bytes=".length());
-          int minus = range.indexOf('-');
-          try {
-            if (minus > 0) {
-              startFrom = Long.parseLong(range.substring(0, minus));
-              endAt = Long.parseLong(range.substring(minus + 1));
-            }
-          } catch (NumberFormatException nfe) {
-          }
-        }
-      }
-      Log.d(CloudUtil.TAG, "Request: " + range + " from: " + startFrom + ", to: " + endAt);
-
-      // Change return code and add Content-Range header when skipping
-      // is requested
-      // source.open();
       final StreamSource source = new StreamSource(sourceFile, length);
       long fileLen = source.length();
-      if (range != null && startFrom > 0) {
-        if (startFrom >= fileLen) {
-          res = new Response(HTTP_RANGE_NOT_SATISFIABLE, MIME_PLAINTEXT, null);
-          res.addHeader("Content-Range", "bytes 0-0/" + fileLen);
-        } else {
-          if (endAt < 0) endAt = fileLen - 1;
-          long newLen = fileLen - startFrom;
-          if (newLen < 0) newLen = 0;
-          Log.d(CloudUtil.TAG, "start=" + startFrom + ", endAt=" + endAt + ", newLen=" + newLen);
-          final long dataLen = newLen;
-          source.moveTo(startFrom);
-          Log.d(CloudUtil.TAG, "Skipped " + startFrom + " bytes");
-
-          res = new Response(HTTP_PARTIALCONTENT, source.getMimeType(), source);
-          res.addHeader("Content-length", "" + dataLen);
-        }
+      long[] bounds = HttpSessions.parseRange(range, fileLen);
+      Log.d(CloudUtil.TAG, "Request: " + range + " of " + fileLen + " bytes");
+
+      if (bounds != null && bounds[0] >= fileLen) {
+        res = new Response(HTTP_RANGE_NOT_SATISFIABLE, MIME_PLAINTEXT, null);
+        res.addHeader("Content-Range", "bytes */" + fileLen);
+      } else if (bounds != null) {
+        long startFrom = bounds[0];
+        long endAt = bounds[1];
+        source.moveTo(startFrom);
+        source.setLimit(endAt + 1);
+
+        res = new Response(HTTP_PARTIALCONTENT, source.getMimeType(), source);
+        res.addHeader("Content-Length", "" + (endAt - startFrom + 1));
+        res.addHeader("Content-Range", "bytes " + startFrom + "-" + endAt + "/" + fileLen);
       } else {
         source.reset();
         res = new Response(HTTP_OK, source.getMimeType(), source);
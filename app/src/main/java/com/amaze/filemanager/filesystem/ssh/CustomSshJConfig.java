@@ -22,6 +22,7 @@ package com.amaze.filemanager.filesystem.ssh;
 
 import java.security.Security;
 
+import net.schmizz.keepalive.KeepAliveProvider;
 import net.schmizz.sshj.DefaultConfig;
 
 /**
@@ -34,6 +35,12 @@ import net.schmizz.sshj.DefaultConfig;
  * @see net.schmizz.sshj.AndroidConfig
  */
 public class CustomSshJConfig extends DefaultConfig {
+
+  public CustomSshJConfig() {
+    // keepalive requests that expect a reply, so connections that died get disconnected
+    setKeepAliveProvider(KeepAliveProvider.KEEP_ALIVE);
+  }
+
   // This is where we different from the original AndroidConfig. Found it only work if we remove
   // BouncyCastle bundled with Android before registering our BouncyCastle provider
   public static void init() {
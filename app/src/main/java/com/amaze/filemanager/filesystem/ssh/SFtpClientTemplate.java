@@ -40,8 +40,8 @@ public abstract class SFtpClientTemplate {
   }
 
   /**
-   * If closeClientOnFinish is set to true, calling code needs to handle closing of {@link
-   * SFTPClient} session.
+   * If closeClientOnFinish is set to false, calling code needs to hand the {@link SFTPClient} back
+   * to {@link SftpChannelPool} when done with it.
    *
    * @param url SSH connection URL, in the form of <code>
    *     ssh://&lt;username&gt;:&lt;password&gt;@&lt;host&gt;:&lt;port&gt;</code> or <code>
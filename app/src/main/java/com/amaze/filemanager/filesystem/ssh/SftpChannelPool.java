@@ -0,0 +1,215 @@
+/*
+ * Copyright (C) 2014-2020 Arpit Khurana <arpitkh96@gmail.com>, Vishal Nehra <vishalmeham2@gmail.com>,
+ * Emmanuel Messulam<emmanuelbendavid@gmail.com>, Raymond Lai <airwave209gt at gmail.com> and Contributors.
+ *
+ * This file is part of Amaze File Manager.
+ *
+ * Amaze File Manager is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.amaze.filemanager.filesystem.ssh;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import net.schmizz.sshj.SSHClient;
+import net.schmizz.sshj.sftp.SFTPClient;
+
+/**
+ * Keeps {@link SFTPClient} channels open on the connections held by {@link SshConnectionPool}, so
+ * an SFTP operation doesn't have to open a channel, start the subsystem and negotiate the protocol
+ * version before doing its actual request.
+ *
+ * <p>Channels are leased with {@link #lease(SSHClient)} and handed back with {@link
+ * #release(SFTPClient)}. A channel that has been idle for too long, or whose connection has gone
+ * away, is closed instead of being leased again.
+ */
+public final class SftpChannelPool {
+
+  private static final String TAG = SftpChannelPool.class.getSimpleName();
+
+  /** Idle channels kept per connection; channels released beyond this are closed. */
+  static final int MAX_IDLE_CHANNELS = 4;
+
+  /** Idle channels older than this are closed on the next sweep. */
+  static final long IDLE_TIMEOUT = 60 * 1000;
+
+  private final Map<SSHClient, Deque<IdleChannel>> idleChannels = new IdentityHashMap<>();
+
+  private final Map<SFTPClient, SSHClient> leasedChannels = new IdentityHashMap<>();
+
+  SftpChannelPool() {}
+
+  private static final class SftpChannelPoolHolder {
+    private static final SftpChannelPool instance = new SftpChannelPool();
+  }
+
+  public static SftpChannelPool getInstance() {
+    return SftpChannelPoolHolder.instance;
+  }
+
+  /**
+   * Lease an open {@link SFTPClient} channel on the given connection, reusing an idle one when
+   * possible.
+   *
+   * @param ssh connection, already opened and authenticated
+   * @return {@link SFTPClient} to return with {@link #release(SFTPClient)} when done
+   * @throws IOException if a new channel can't be opened
+   */
+  @NonNull
+  public SFTPClient lease(@NonNull SSHClient ssh) throws IOException {
+    evictIdle(IDLE_TIMEOUT);
+
+    while (true) {
+      IdleChannel idle;
+      synchronized (this) {
+        Deque<IdleChannel> channels = idleChannels.get(ssh);
+        idle = channels == null ? null : channels.pollFirst();
+        if (idle == null) break;
+        if (isUsable(ssh, idle.client)) {
+          leasedChannels.put(idle.client, ssh);
+          return idle.client;
+        }
+      }
+      closeQuietly(idle.client);
+    }
+
+    SFTPClient client = ssh.newSFTPClient();
+    synchronized (this) {
+      leasedChannels.put(client, ssh);
+    }
+    return client;
+  }
+
+  /**
+   * Return a leased channel to the pool. Channels that are no longer usable, or that exceed {@link
+   * #MAX_IDLE_CHANNELS} for their connection, are closed.
+   *
+   * @param client {@link SFTPClient} obtained from {@link #lease(SSHClient)}
+   */
+  public void release(@Nullable SFTPClient client) {
+    if (client == null) return;
+
+    boolean keep = false;
+    synchronized (this) {
+      SSHClient ssh = leasedChannels.remove(client);
+      if (ssh != null && isUsable(ssh, client)) {
+        Deque<IdleChannel> channels = idleChannels.get(ssh);
+        if (channels == null) {
+          channels = new ArrayDeque<>();
+          idleChannels.put(ssh, channels);
+        }
+        if (channels.size() < MAX_IDLE_CHANNELS) {
+          // most recently used first, so the older ones age out when traffic drops
+          channels.offerFirst(new IdleChannel(client, SystemClock.elapsedRealtime()));
+          keep = true;
+        }
+      }
+    }
+    if (!keep) closeQuietly(client);
+  }
+
+  /**
+   * Close a leased channel instead of returning it to the pool, e.g. after a transport error left
+   * it in an unknown state.
+   *
+   * @param client {@link SFTPClient} obtained from {@link #lease(SSHClient)}
+   */
+  public void invalidate(@Nullable SFTPClient client) {
+    if (client == null) return;
+
+    synchronized (this) {
+      leasedChannels.remove(client);
+    }
+    closeQuietly(client);
+  }
+
+  /**
+   * Close the idle channels of a connection that is about to be disconnected. Channels still
+   * leased are closed when they are released.
+   *
+   * @param ssh connection
+   */
+  public void closeAll(@NonNull SSHClient ssh) {
+    Deque<IdleChannel> channels;
+    synchronized (this) {
+      channels = idleChannels.remove(ssh);
+    }
+    if (channels != null) {
+      for (IdleChannel idle : channels) {
+        closeQuietly(idle.client);
+      }
+    }
+  }
+
+  /** Number of channels kept open for the given connection, for tests. */
+  synchronized int getIdleCount(@NonNull SSHClient ssh) {
+    Deque<IdleChannel> channels = idleChannels.get(ssh);
+    return channels == null ? 0 : channels.size();
+  }
+
+  /** Close channels that have been idle for longer than {@code maxIdleMillis}. */
+  void evictIdle(long maxIdleMillis) {
+    Deque<SFTPClient> expired = new ArrayDeque<>();
+    long now = SystemClock.elapsedRealtime();
+    synchronized (this) {
+      Iterator<Deque<IdleChannel>> it = idleChannels.values().iterator();
+      while (it.hasNext()) {
+        Deque<IdleChannel> channels = it.next();
+        // oldest channels are at the tail
+        while (!channels.isEmpty() && now - channels.peekLast().idleSince >= maxIdleMillis) {
+          expired.add(channels.pollLast().client);
+        }
+        if (channels.isEmpty()) it.remove();
+      }
+    }
+    for (SFTPClient client : expired) {
+      closeQuietly(client);
+    }
+  }
+
+  private static boolean isUsable(@NonNull SSHClient ssh, @NonNull SFTPClient client) {
+    return ssh.isConnected()
+        && ssh.isAuthenticated()
+        && client.getSFTPEngine().getSubsystem().isOpen();
+  }
+
+  private static void closeQuietly(@NonNull SFTPClient client) {
+    try {
+      client.close();
+    } catch (IOException e) {
+      Log.w(TAG, "Error closing SFTP client", e);
+    }
+  }
+
+  private static final class IdleChannel {
+    final SFTPClient client;
+    final long idleSince;
+
+    IdleChannel(SFTPClient client, long idleSince) {
+      this.client = client;
+      this.idleSince = idleSince;
+    }
+  }
+}
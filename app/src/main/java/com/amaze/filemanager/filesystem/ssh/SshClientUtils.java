@@ -24,16 +24,25 @@ import static com.amaze.filemanager.filesystem.ssh.SshConnectionPool.SSH_URI_PRE
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.security.GeneralSecurityException;
 import java.security.KeyPair;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.EnumSet;
 import java.util.List;
 import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
 
 import com.amaze.filemanager.R;
 import com.amaze.filemanager.application.AppConfig;
 import com.amaze.filemanager.filesystem.HybridFileParcelable;
+import com.amaze.filemanager.filesystem.cloud.CloudStreamSource;
 import com.amaze.filemanager.filesystem.cloud.CloudStreamer;
 import com.amaze.filemanager.ui.activities.MainActivity;
+import com.amaze.filemanager.ui.fragments.preference_fragments.PreferencesConstants;
 import com.amaze.filemanager.ui.icons.MimeTypes;
 import com.amaze.filemanager.utils.SmbUtil;
 
@@ -43,6 +52,7 @@ import android.content.Intent;
 import android.content.pm.PackageManager;
 import android.content.pm.ResolveInfo;
 import android.net.Uri;
+import android.preference.PreferenceManager;
 import android.util.Log;
 import android.widget.Toast;
 
@@ -51,17 +61,29 @@ import androidx.annotation.Nullable;
 
 import io.reactivex.Single;
 import io.reactivex.schedulers.Schedulers;
+import net.schmizz.concurrent.Promise;
 import net.schmizz.sshj.SSHClient;
 import net.schmizz.sshj.connection.channel.direct.Session;
-import net.schmizz.sshj.sftp.FileAttributes;
 import net.schmizz.sshj.sftp.FileMode;
+import net.schmizz.sshj.sftp.PacketType;
+import net.schmizz.sshj.sftp.RemoteFile;
 import net.schmizz.sshj.sftp.RemoteResourceInfo;
+import net.schmizz.sshj.sftp.Request;
+import net.schmizz.sshj.sftp.Response;
 import net.schmizz.sshj.sftp.SFTPClient;
+import net.schmizz.sshj.sftp.SFTPEngine;
+import net.schmizz.sshj.sftp.SFTPException;
 
 public abstract class SshClientUtils {
 
   private static final String TAG = SshClientUtils.class.getSimpleName();
 
+  /** Most stat requests kept in flight while resolving symbolic links in a listing */
+  static final int MAX_PENDING_STATS = 32;
+
+  /** Default number of SFTP read/write requests kept in flight by a stream */
+  public static final int DEFAULT_REQUEST_DEPTH = 16;
+
   /**
    * Execute the given SshClientTemplate.
    *
@@ -128,6 +150,10 @@ public abstract class SshClientUtils {
   /**
    * Execute the given template with SshClientTemplate.
    *
+   * <p>The {@link SFTPClient} is leased from {@link SftpChannelPool}. If the template doesn't close
+   * the client on finish, calling code must hand it back with {@link
+   * SftpChannelPool#release(SFTPClient)} when done.
+   *
    * @param template {@link SFtpClientTemplate} to execute
    * @param <T> Type of return value
    * @return Template execution results
@@ -137,20 +163,26 @@ public abstract class SshClientUtils {
         new SshClientTemplate(template.url, false) {
           @Override
           public T execute(SSHClient client) {
+            SftpChannelPool channelPool = SftpChannelPool.getInstance();
             SFTPClient sftpClient = null;
+            boolean broken = false;
+            boolean handedOver = false;
             T retval = null;
             try {
-              sftpClient = client.newSFTPClient();
+              sftpClient = channelPool.lease(client);
               retval = template.execute(sftpClient);
+              handedOver = !template.closeClientOnFinish && retval != null;
+            } catch (SFTPException e) {
+              // the server answered, so the channel is still good
+              Log.e(TAG, "Error executing template method", e);
             } catch (IOException e) {
+              broken = true;
               Log.e(TAG, "Error executing template method", e);
             } finally {
-              if (sftpClient != null && template.closeClientOnFinish) {
-                try {
-                  sftpClient.close();
-                } catch (IOException e) {
-                  Log.w(TAG, "Error closing SFTP client", e);
-                }
+              if (sftpClient != null && broken) {
+                channelPool.invalidate(sftpClient);
+              } else if (sftpClient != null && !handedOver) {
+                channelPool.release(sftpClient);
               }
             }
             return retval;
@@ -158,6 +190,108 @@ public abstract class SshClientUtils {
         });
   }
 
+  /**
+   * Open a remote file for reading, keeping up to {@code requestDepth} read requests in flight so
+   * throughput isn't capped at one packet per round trip.
+   *
+   * <p>The {@link SFTPClient} goes back to {@link SftpChannelPool} when the stream is closed.
+   *
+   * @param fullUri SSH URL of the file
+   * @param requestDepth number of outstanding read requests
+   * @return stream, or null if the file couldn't be opened
+   */
+  @Nullable
+  public static InputStream openInputStream(@NonNull String fullUri, int requestDepth) {
+    return openInputStream(fullUri, 0, requestDepth);
+  }
+
+  /**
+   * Same as {@link #openInputStream(String, int)}, starting to read at {@code offset}.
+   *
+   * @param offset position of the first byte read
+   */
+  @Nullable
+  public static InputStream openInputStream(
+      @NonNull String fullUri, long offset, int requestDepth) {
+    return execute(
+        new SFtpClientTemplate(fullUri, false) {
+          @Override
+          public InputStream execute(@NonNull final SFTPClient client) throws IOException {
+            final RemoteFile rf = client.open(extractRemotePathFrom(fullUri));
+            return rf.new ReadAheadRemoteFileInputStream(Math.max(1, requestDepth), offset) {
+              @Override
+              public void close() throws IOException {
+                try {
+                  super.close();
+                } finally {
+                  rf.close();
+                  SftpChannelPool.getInstance().release(client);
+                }
+              }
+            };
+          }
+        });
+  }
+
+  /**
+   * Open a remote file for writing from {@code offset} on, leaving up to {@code requestDepth} write
+   * requests unconfirmed at a time. Closing the stream waits for the remaining confirmations.
+   *
+   * <p>The {@link SFTPClient} goes back to {@link SftpChannelPool} when the stream is closed.
+   *
+   * @param fullUri SSH URL of the file
+   * @param offset position to start writing at
+   * @param requestDepth number of unconfirmed write requests
+   * @return stream, or null if the file couldn't be opened
+   */
+  @Nullable
+  public static OutputStream openOutputStream(
+      @NonNull String fullUri, long offset, int requestDepth) {
+    return execute(
+        new SFtpClientTemplate(fullUri, false) {
+          @Override
+          public OutputStream execute(@NonNull final SFTPClient client) throws IOException {
+            final RemoteFile rf =
+                client.open(
+                    extractRemotePathFrom(fullUri),
+                    EnumSet.of(
+                        net.schmizz.sshj.sftp.OpenMode.WRITE,
+                        net.schmizz.sshj.sftp.OpenMode.CREAT));
+            return rf.new RemoteFileOutputStream(offset, Math.max(0, requestDepth - 1)) {
+              @Override
+              public void close() throws IOException {
+                try {
+                  super.close();
+                } finally {
+                  try {
+                    rf.close();
+                  } finally {
+                    SftpChannelPool.getInstance().release(client);
+                  }
+                }
+              }
+            };
+          }
+        });
+  }
+
+  /**
+   * Number of SFTP requests kept in flight by transfers, from the preferences.
+   *
+   * @see PreferencesConstants#PREFERENCE_SFTP_REQUEST_DEPTH
+   */
+  public static int getRequestDepth(@NonNull Context context) {
+    try {
+      return Integer.parseInt(
+          PreferenceManager.getDefaultSharedPreferences(context)
+              .getString(
+                  PreferencesConstants.PREFERENCE_SFTP_REQUEST_DEPTH,
+                  String.valueOf(DEFAULT_REQUEST_DEPTH)));
+    } catch (NumberFormatException e) {
+      return DEFAULT_REQUEST_DEPTH;
+    }
+  }
+
   /**
    * Convenience method to call {@link SmbUtil#getSmbEncryptedPath(Context, String)} if the given
    * SSH URL contains the password (assuming the password is encrypted).
@@ -238,6 +372,7 @@ public abstract class SshClientUtils {
    */
   public static final void tryDisconnect(SSHClient client) {
     if (client != null && client.isConnected()) {
+      SftpChannelPool.getInstance().closeAll(client);
       try {
         client.disconnect();
       } catch (IOException e) {
@@ -252,8 +387,25 @@ public abstract class SshClientUtils {
     new Thread(
             () -> {
               try {
+                final int requestDepth = getRequestDepth(activity);
                 streamer.setStreamSrc(
-                    baseFile.getInputStream(activity),
+                    new CloudStreamSource.Opener() {
+                      @Override
+                      public boolean isSeekable() {
+                        return true;
+                      }
+
+                      @NonNull
+                      @Override
+                      public InputStream open(long offset) throws IOException {
+                        InputStream inputStream =
+                            openInputStream(baseFile.getPath(), offset, requestDepth);
+                        if (inputStream == null) {
+                          throw new IOException("Can't open " + baseFile.getPath());
+                        }
+                        return inputStream;
+                      }
+                    },
                     baseFile.getName(activity),
                     baseFile.length(activity));
                 activity.runOnUiThread(
@@ -303,18 +455,83 @@ public abstract class SshClientUtils {
         : String.format("ssh://%s:%s@%s:%d%s", username, password, hostname, port, pathSuffix);
   }
 
-  public static boolean isDirectory(@NonNull SFTPClient client, @NonNull RemoteResourceInfo info)
-      throws IOException {
-    boolean isDirectory = info.isDirectory();
-    if (info.getAttributes().getType().equals(FileMode.Type.SYMLINK)) {
+  /**
+   * List the children of a remote directory.
+   *
+   * <p>Whether a symbolic link points to a directory takes a stat of the link target. Those stat
+   * requests are sent without waiting for the replies, up to {@link #MAX_PENDING_STATS} at a time,
+   * so a directory full of links costs a few round trips instead of one per link. Broken links are
+   * skipped.
+   *
+   * @param client {@link SFTPClient} to list with
+   * @param path SSH URL of the directory
+   * @return children of the directory
+   * @throws IOException if the directory can't be listed
+   */
+  @NonNull
+  public static List<HybridFileParcelable> listFiles(
+      @NonNull SFTPClient client, @NonNull String path) throws IOException {
+    List<RemoteResourceInfo> infos = client.ls(extractRemotePathFrom(path));
+    Boolean[] directories = resolveDirectories(client, infos);
+    List<HybridFileParcelable> retval = new ArrayList<>(infos.size());
+    for (int i = 0; i < infos.size(); i++) {
+      if (directories[i] == null) {
+        Log.w(TAG, String.format("Symbolic link %s is broken, skipping", infos.get(i).getPath()));
+        continue;
+      }
+      retval.add(new HybridFileParcelable(path, directories[i], infos.get(i)));
+    }
+    return retval;
+  }
+
+  /**
+   * Tell which of the given entries are directories, following symbolic links with pipelined stat
+   * requests.
+   *
+   * @return for each entry whether it is a directory, or null if it is a broken link
+   */
+  @NonNull
+  static Boolean[] resolveDirectories(
+      @NonNull SFTPClient client, @NonNull List<RemoteResourceInfo> infos) throws IOException {
+    SFTPEngine engine = client.getSFTPEngine();
+    Boolean[] retval = new Boolean[infos.size()];
+    Deque<PendingStat> pending = new ArrayDeque<>();
+    for (int i = 0; i < infos.size(); i++) {
+      RemoteResourceInfo info = infos.get(i);
+      if (info.getAttributes().getType() != FileMode.Type.SYMLINK) {
+        retval[i] = info.isDirectory();
+        continue;
+      }
+      if (pending.size() >= MAX_PENDING_STATS) {
+        pending.poll().resolve(engine, retval);
+      }
+      Request request = engine.newRequest(PacketType.STAT);
+      request.putString(info.getPath());
+      pending.add(new PendingStat(i, engine.request(request)));
+    }
+    while (!pending.isEmpty()) {
+      pending.poll().resolve(engine, retval);
+    }
+    return retval;
+  }
+
+  private static final class PendingStat {
+    final int index;
+    final Promise<Response, SFTPException> response;
+
+    PendingStat(int index, Promise<Response, SFTPException> response) {
+      this.index = index;
+      this.response = response;
+    }
+
+    void resolve(@NonNull SFTPEngine engine, @NonNull Boolean[] directories) throws IOException {
       try {
-        FileAttributes symlinkAttrs = client.stat(info.getPath());
-        isDirectory = symlinkAttrs.getType().equals(FileMode.Type.DIRECTORY);
-      } catch (IOException ifSymlinkIsBroken) {
-        Log.w(TAG, String.format("Symbolic link %s is broken, skipping", info.getPath()));
-        throw ifSymlinkIsBroken;
+        Response stat = response.retrieve(engine.getTimeoutMs(), TimeUnit.MILLISECONDS);
+        stat.ensurePacketTypeIs(PacketType.ATTRS);
+        directories[index] = stat.readFileAttributes().getType() == FileMode.Type.DIRECTORY;
+      } catch (SFTPException ifSymlinkIsBroken) {
+        directories[index] = null;
       }
     }
-    return isDirectory;
   }
 }
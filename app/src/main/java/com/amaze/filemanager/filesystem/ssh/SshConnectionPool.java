@@ -22,10 +22,15 @@ package com.amaze.filemanager.filesystem.ssh;
 
 import java.io.IOException;
 import java.security.KeyPair;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 
 import com.amaze.filemanager.application.AppConfig;
@@ -34,21 +39,30 @@ import com.amaze.filemanager.asynchronous.asynctasks.ssh.PemToKeyPairTask;
 import com.amaze.filemanager.asynchronous.asynctasks.ssh.SshAuthenticationTask;
 import com.amaze.filemanager.database.UtilsHandler;
 import com.amaze.filemanager.ui.activities.MainActivity;
+import com.amaze.filemanager.ui.fragments.preference_fragments.PreferencesConstants;
 
 import android.os.AsyncTask;
+import android.os.SystemClock;
+import android.preference.PreferenceManager;
 import android.util.Log;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
 
 import net.schmizz.sshj.Config;
 import net.schmizz.sshj.SSHClient;
+import net.schmizz.sshj.connection.Connection;
 
 /**
  * Poor man's implementation of SSH connection pool.
  *
- * <p>It uses a {@link ConcurrentHashMap} to hold the opened SSH connections; all code that uses
- * {@link SSHClient} can ask for connection here with <code>getConnection(url)</code>.
+ * <p>It holds the opened SSH connections per server; all code that uses {@link SSHClient} can ask
+ * for connection here with <code>getConnection(url)</code>. Connections to the same server are set
+ * up one at a time, so concurrent callers wait for the handshake in flight instead of starting
+ * their own, while callers that find an open connection get it right away. Up to {@link
+ * #getMaxConnectionsPerHost()} connections are opened to a server as they are asked for, then
+ * handed out in turn.
  */
 public class SshConnectionPool {
   public static final int SSH_DEFAULT_PORT = 22;
@@ -57,14 +71,25 @@ public class SshConnectionPool {
 
   public static final int SSH_CONNECT_TIMEOUT = 30000;
 
+  /** Seconds between keepalive requests on idle connections */
+  public static final int SSH_KEEPALIVE_INTERVAL = 30;
+
+  public static final int DEFAULT_MAX_CONNECTIONS_PER_HOST = 1;
+
   private static final String TAG = SshConnectionPool.class.getSimpleName();
 
   private static SSHClientFactory factory = new DefaultSSHClientFactory();
 
-  private final Map<String, SSHClient> connections;
+  private final Map<String, HostConnections> connections;
+
+  // private keys parsed from PEM, so reconnecting doesn't parse (or ask the passphrase) again
+  private final Map<String, KeyPair> keyPairs;
+
+  private final Metrics metrics = new Metrics();
 
   private SshConnectionPool() {
     connections = new ConcurrentHashMap<>();
+    keyPairs = new ConcurrentHashMap<>();
   }
 
   private static final class SshConnectionPoolHolder {
@@ -88,6 +113,32 @@ public class SshConnectionPool {
     return factory;
   }
 
+  /**
+   * Number of connections opened to the same server at most, from the preferences. Connections
+   * already open beyond a lowered limit are kept until they break or are removed.
+   *
+   * @see PreferencesConstants#PREFERENCE_SSH_CONNECTIONS_PER_HOST
+   */
+  public int getMaxConnectionsPerHost() {
+    try {
+      return Math.max(
+          1,
+          Integer.parseInt(
+              PreferenceManager.getDefaultSharedPreferences(AppConfig.getInstance())
+                  .getString(
+                      PreferencesConstants.PREFERENCE_SSH_CONNECTIONS_PER_HOST,
+                      String.valueOf(DEFAULT_MAX_CONNECTIONS_PER_HOST))));
+    } catch (NumberFormatException e) {
+      return DEFAULT_MAX_CONNECTIONS_PER_HOST;
+    }
+  }
+
+  /** Counters of how connections were obtained from this pool. */
+  @NonNull
+  public Metrics getMetrics() {
+    return metrics;
+  }
+
   /**
    * Remove a SSH connection from connection pool. Disconnects from server before removing.
    *
@@ -106,7 +157,8 @@ public class SshConnectionPool {
    * Obtain a {@link SSHClient} connection from the underlying connection pool.
    *
    * <p>Beneath it will return the connection if it exists; otherwise it will create a new one and
-   * put it into the connection pool.
+   * put it into the connection pool. Opening a connection blocks until the handshake is done, so
+   * this must not be called on the main thread.
    *
    * @param url SSH connection URL, in the form of <code>
    *     ssh://&lt;username&gt;:&lt;password&gt;@&lt;host&gt;:&lt;port&gt;</code> or <code>
@@ -115,22 +167,8 @@ public class SshConnectionPool {
    * @throws IOException IOExceptions that occur during connection setup
    */
   public SSHClient getConnection(@NonNull String url) {
-    url = SshClientUtils.extractBaseUriFrom(url);
-
-    SSHClient client = connections.get(url);
-    if (client == null) {
-      client = create(url);
-      if (client != null) connections.put(url, client);
-    } else {
-      if (!validate(client)) {
-        Log.d(TAG, "Connection no longer usable. Reconnecting...");
-        expire(client);
-        connections.remove(url);
-        client = create(url);
-        if (client != null) connections.put(url, client);
-      }
-    }
-    return client;
+    final String baseUrl = SshClientUtils.extractBaseUriFrom(url);
+    return getConnection(baseUrl, () -> create(baseUrl));
   }
 
   /**
@@ -140,7 +178,8 @@ public class SshConnectionPool {
    * put it into the connection pool.
    *
    * <p>Different from {@link #getConnection(String)} above, this accepts broken down parameters as
-   * convenience method during setting up SCP/SFTP connection.
+   * convenience method during setting up SCP/SFTP connection. Must not be called on the main
+   * thread either.
    *
    * @param host host name/IP, required
    * @param port SSH server port, required
@@ -159,21 +198,109 @@ public class SshConnectionPool {
       @Nullable KeyPair keyPair) {
 
     String url = SshClientUtils.deriveSftpPathFrom(host, port, "", username, password, keyPair);
+    return getConnection(
+        url, () -> create(host, port, hostFingerprint, username, password, keyPair));
+  }
+
+  private SSHClient getConnection(@NonNull String url, @NonNull Creator creator) {
+    HostConnections host = connections.get(url);
+    if (host == null) {
+      HostConnections created = new HostConnections();
+      host = connections.putIfAbsent(url, created);
+      if (host == null) host = created;
+    }
+
+    final FutureTask<SSHClient> handshake;
+    final boolean reconnect;
+    boolean owner = false;
+    synchronized (host) {
+      reconnect = removeBroken(host);
+      if (host.handshake != null) {
+        // one handshake per server at a time, callers arriving meanwhile get its result
+        handshake = host.handshake;
+      } else if (host.clients.size() < getMaxConnectionsPerHost()) {
+        handshake = new FutureTask<>(creator::create);
+        host.handshake = handshake;
+        owner = true;
+      } else {
+        metrics.hits.incrementAndGet();
+        return next(host);
+      }
+    }
+
+    // the handshake runs outside the lock, so that callers finding an open connection don't wait
+    // for it
+    SSHClient client;
+    if (owner) {
+      long start = SystemClock.elapsedRealtime();
+      handshake.run();
+      try {
+        client = await(handshake);
+      } finally {
+        synchronized (host) {
+          host.handshake = null;
+        }
+      }
+
+      synchronized (host) {
+        if (client != null && host.closed) {
+          SshClientUtils.tryDisconnect(client);
+          client = null;
+        }
+        if (client != null) {
+          startKeepAlive(client);
+          host.clients.add(client);
+          metrics.onCreated(reconnect, SystemClock.elapsedRealtime() - start);
+          return client;
+        }
+        metrics.failures.incrementAndGet();
+        return host.clients.isEmpty() ? null : next(host);
+      }
+    }
 
-    SSHClient client = connections.get(url);
-    if (client == null) {
-      client = create(host, port, hostFingerprint, username, password, keyPair);
-      if (client != null) connections.put(url, client);
-    } else {
+    client = await(handshake);
+    if (client != null) {
+      metrics.hits.incrementAndGet();
+      return client;
+    }
+    synchronized (host) {
+      return host.clients.isEmpty() ? null : next(host);
+    }
+  }
+
+  // drops the connections that broke, returns whether there were any
+  private boolean removeBroken(@NonNull HostConnections host) {
+    boolean removed = false;
+    Iterator<SSHClient> it = host.clients.iterator();
+    while (it.hasNext()) {
+      SSHClient client = it.next();
       if (!validate(client)) {
         Log.d(TAG, "Connection no longer usable. Reconnecting...");
         expire(client);
-        connections.remove(url);
-        client = create(host, port, hostFingerprint, username, password, keyPair);
-        if (client != null) connections.put(url, client);
+        it.remove();
+        removed = true;
       }
     }
-    return client;
+    return removed;
+  }
+
+  @NonNull
+  private SSHClient next(@NonNull HostConnections host) {
+    host.next = (host.next + 1) % host.clients.size();
+    return host.clients.get(host.next);
+  }
+
+  @Nullable
+  private SSHClient await(@NonNull FutureTask<SSHClient> handshake) {
+    try {
+      return handshake.get();
+    } catch (InterruptedException e) {
+      // FIXME: proper handling
+      throw new RuntimeException(e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+      throw new RuntimeException(e.getCause());
+    }
   }
 
   /**
@@ -187,15 +314,24 @@ public class SshConnectionPool {
     AppConfig.getInstance()
         .runInBackground(
             () -> {
-              if (!connections.isEmpty()) {
-                for (SSHClient connection : connections.values()) {
-                  SshClientUtils.tryDisconnect(connection);
-                }
-                connections.clear();
+              for (String url : connections.keySet()) {
+                disconnectAll(connections.remove(url));
               }
+              keyPairs.clear();
             });
   }
 
+  /**
+   * Put an already opened connection into the pool, for tests that don't go through the
+   * authentication flow.
+   */
+  @VisibleForTesting
+  public void addConnection(@NonNull String url, @NonNull SSHClient client) {
+    HostConnections host = new HostConnections();
+    host.clients.add(client);
+    disconnectAll(connections.put(SshClientUtils.extractBaseUriFrom(url), host));
+  }
+
   // Logic for creating SSH connection. Depends on password existence in given Uri password or
   // key-based authentication
   private SSHClient create(@NonNull String url) {
@@ -204,20 +340,12 @@ public class SshConnectionPool {
     UtilsHandler utilsHandler = AppConfig.getInstance().getUtilsHandler();
     String pem = utilsHandler.getSshAuthPrivateKey(url);
 
-    AtomicReference<KeyPair> keyPair = new AtomicReference<>(null);
+    KeyPair keyPair = null;
     if (pem != null && !pem.isEmpty()) {
-      try {
-        CountDownLatch latch = new CountDownLatch(1);
-        new PemToKeyPairTask(
-                pem,
-                result -> {
-                  keyPair.set(result);
-                  latch.countDown();
-                })
-            .execute();
-        latch.await();
-      } catch (InterruptedException e) {
-        throw new RuntimeException(e);
+      keyPair = keyPairs.get(pem);
+      if (keyPair == null) {
+        keyPair = parseKeyPair(pem);
+        if (keyPair != null) keyPairs.put(pem, keyPair);
       }
     }
 
@@ -225,7 +353,25 @@ public class SshConnectionPool {
     if (hostKey == null) return null;
 
     return create(
-        connInfo.host, connInfo.port, hostKey, connInfo.username, connInfo.password, keyPair.get());
+        connInfo.host, connInfo.port, hostKey, connInfo.username, connInfo.password, keyPair);
+  }
+
+  private KeyPair parseKeyPair(@NonNull String pem) {
+    AtomicReference<KeyPair> keyPair = new AtomicReference<>(null);
+    try {
+      CountDownLatch latch = new CountDownLatch(1);
+      new PemToKeyPairTask(
+              pem,
+              result -> {
+                keyPair.set(result);
+                latch.countDown();
+              })
+          .execute();
+      latch.await();
+    } catch (InterruptedException e) {
+      throw new RuntimeException(e);
+    }
+    return keyPair.get();
   }
 
   private SSHClient create(
@@ -237,9 +383,10 @@ public class SshConnectionPool {
       @Nullable KeyPair keyPair) {
 
     try {
+      // not on the serial executor, so handshakes with different servers don't queue up
       AsyncTaskResult<SSHClient> taskResult =
           new SshAuthenticationTask(host, port, hostKey, username, password, keyPair)
-              .execute()
+              .executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR)
               .get();
 
       SSHClient client = taskResult.result;
@@ -261,6 +408,27 @@ public class SshConnectionPool {
     SshClientUtils.tryDisconnect(client);
   }
 
+  // keepalive requests stop NAT and firewalls dropping idle connections, and let sshj notice
+  // connections that died, so that validate() fails on them
+  private void startKeepAlive(@NonNull SSHClient client) {
+    Connection connection = client.getConnection();
+    if (connection != null) {
+      connection.getKeepAlive().setKeepAliveInterval(SSH_KEEPALIVE_INTERVAL);
+    }
+  }
+
+  private void disconnectAll(@Nullable HostConnections host) {
+    if (host == null) return;
+
+    synchronized (host) {
+      host.closed = true;
+      for (SSHClient client : host.clients) {
+        SshClientUtils.tryDisconnect(client);
+      }
+      host.clients.clear();
+    }
+  }
+
   /**
    * Container object for SSH URI, encapsulating logic for splitting information from given URI.
    * <code>Uri.parse()</code> only parse URI that is compliant to RFC2396, but we have to deal with
@@ -318,9 +486,7 @@ public class SshConnectionPool {
     protected Void doInBackground(Void... voids) {
       url = SshClientUtils.extractBaseUriFrom(url);
 
-      if (connections.containsKey(url)) {
-        SshClientUtils.tryDisconnect(connections.remove(url));
-      }
+      disconnectAll(connections.remove(url));
       return null;
     }
 
@@ -341,6 +507,62 @@ public class SshConnectionPool {
     SSHClient create(Config config);
   }
 
+  /** Creates a connection to one server, or returns null if that failed. */
+  private interface Creator {
+    @Nullable
+    SSHClient create();
+  }
+
+  private static final class HostConnections {
+    final List<SSHClient> clients = new ArrayList<>();
+    int next = 0;
+    // the connection being opened, null if none
+    @Nullable FutureTask<SSHClient> handshake;
+    // set once removed from the pool, a connection opened meanwhile is closed again
+    boolean closed = false;
+  }
+
+  /** Counters of {@link SshConnectionPool} use, since the app started. */
+  public static final class Metrics {
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong creates = new AtomicLong();
+    private final AtomicLong reconnects = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong handshakeMillis = new AtomicLong();
+
+    void onCreated(boolean reconnect, long millis) {
+      creates.incrementAndGet();
+      if (reconnect) reconnects.incrementAndGet();
+      handshakeMillis.addAndGet(millis);
+    }
+
+    /** Number of times an open connection was handed out */
+    public long getHits() {
+      return hits.get();
+    }
+
+    /** Number of connections opened, including reconnects */
+    public long getCreates() {
+      return creates.get();
+    }
+
+    /** Number of connections opened to replace one that broke */
+    public long getReconnects() {
+      return reconnects.get();
+    }
+
+    /** Number of connections that couldn't be opened */
+    public long getFailures() {
+      return failures.get();
+    }
+
+    /** Mean time taken to connect and authenticate, in milliseconds */
+    public long getAverageHandshakeMillis() {
+      long count = creates.get();
+      return count == 0 ? 0 : handshakeMillis.get() / count;
+    }
+  }
+
   /** Default {@link SSHClientFactory} implementation. */
   static class DefaultSSHClientFactory implements SSHClientFactory {
     @NonNull
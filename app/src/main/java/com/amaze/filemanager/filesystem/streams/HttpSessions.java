@@ -0,0 +1,207 @@
+/*
+ * Copyright (C) 2014-2020 Arpit Khurana <arpitkh96@gmail.com>, Vishal Nehra <vishalmeham2@gmail.com>,
+ * Emmanuel Messulam<emmanuelbendavid@gmail.com>, Raymond Lai <airwave209gt at gmail.com> and Contributors.
+ *
+ * This file is part of Amaze File Manager.
+ *
+ * Amaze File Manager is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.amaze.filemanager.filesystem.streams;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.Properties;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * Worker threads and connection rules shared by the local HTTP servers used for streaming ({@link
+ * com.amaze.filemanager.filesystem.smbstreamer.StreamServer} and {@link
+ * com.amaze.filemanager.filesystem.cloud.CloudStreamServer}).
+ *
+ * <p>Connections are served by a bounded pool instead of a new thread each, and are kept open
+ * between requests, so a player seeking around a video reuses a warm worker and socket. Idle
+ * connections are dropped after {@link #KEEP_ALIVE_TIMEOUT}, or as soon as another connection
+ * waits for a worker, so that players which open a new connection per seek can't hold all of them.
+ */
+public final class HttpSessions {
+
+  private static final String TAG = HttpSessions.class.getSimpleName();
+
+  /** Connections served at the same time */
+  public static final int MAX_SESSIONS = 8;
+
+  /** Connections waiting for a free worker before new ones are refused */
+  private static final int MAX_QUEUED_SESSIONS = 32;
+
+  /** Time an idle connection is kept open waiting for the next request, in milliseconds */
+  public static final int KEEP_ALIVE_TIMEOUT = 15 * 1000;
+
+  /** How often an idle connection checks whether its worker is needed, in milliseconds */
+  private static final int IDLE_POLL_INTERVAL = 250;
+
+  /** Size of the chunks copied from a stream source to the socket */
+  public static final int BUFFER_SIZE = 64 * 1024;
+
+  private static final ThreadPoolExecutor executor;
+
+  static {
+    final AtomicInteger threadCount = new AtomicInteger();
+    final ThreadFactory threadFactory =
+        runnable -> {
+          Thread thread = new Thread(runnable, TAG + "-" + threadCount.incrementAndGet());
+          thread.setDaemon(true);
+          return thread;
+        };
+    executor =
+        new ThreadPoolExecutor(
+            MAX_SESSIONS,
+            MAX_SESSIONS,
+            KEEP_ALIVE_TIMEOUT,
+            TimeUnit.MILLISECONDS,
+            new LinkedBlockingQueue<>(MAX_QUEUED_SESSIONS),
+            threadFactory);
+    executor.allowCoreThreadTimeOut(true);
+  }
+
+  private HttpSessions() {}
+
+  /**
+   * Runs {@code session} on a worker thread. If too many connections are pending already, {@code
+   * socket} is closed instead.
+   */
+  public static void execute(@NonNull Socket socket, @NonNull Runnable session) {
+    try {
+      socket.setSoTimeout(KEEP_ALIVE_TIMEOUT);
+      executor.execute(session);
+    } catch (IOException | RejectedExecutionException e) {
+      Log.w(TAG, "Refusing connection", e);
+      try {
+        socket.close();
+      } catch (IOException ignored) {
+      }
+    }
+  }
+
+  /**
+   * Reads the start of the next request of a connection, into {@code buf}.
+   *
+   * @return the number of bytes read, -1 if the connection was closed or stayed idle for too long
+   *     or while another connection was waiting for a worker
+   */
+  public static int readRequest(
+      @NonNull Socket socket, @NonNull InputStream is, @NonNull byte[] buf) throws IOException {
+    final long idleSince = System.currentTimeMillis();
+    socket.setSoTimeout(IDLE_POLL_INTERVAL);
+    try {
+      while (true) {
+        try {
+          return is.read(buf, 0, buf.length);
+        } catch (SocketTimeoutException idle) {
+          if (!executor.getQueue().isEmpty()
+              || System.currentTimeMillis() - idleSince >= KEEP_ALIVE_TIMEOUT) {
+            return -1;
+          }
+        }
+      }
+    } finally {
+      socket.setSoTimeout(KEEP_ALIVE_TIMEOUT);
+    }
+  }
+
+  /**
+   * Whether the connection may be reused after answering a request.
+   *
+   * @param protocol protocol of the request line, e.g. "HTTP/1.1", may be null
+   * @param header request headers, with lowercase names
+   */
+  public static boolean isKeepAlive(@Nullable String protocol, @NonNull Properties header) {
+    String connection = header.getProperty("connection");
+    if (connection != null) {
+      return connection.equalsIgnoreCase("keep-alive");
+    }
+    return "HTTP/1.1".equalsIgnoreCase(protocol);
+  }
+
+  /**
+   * Parses the Range header of a request for a file of {@code length} bytes.
+   *
+   * <p>Requests for several ranges at once get the whole file, which RFC 7233 allows and which
+   * players handle anyway.
+   *
+   * @param range value of the Range header, may be null
+   * @return first and last byte to send, the last one clamped to the file; null to send the whole
+   *     file. If the first byte is not below {@code length}, the range can't be satisfied.
+   */
+  @Nullable
+  public static long[] parseRange(@Nullable String range, long length) {
+    if (range == null || !range.startsWith("bytes=")) return null;
+
+    range = range.substring("bytes=".length()).trim();
+    int minus = range.indexOf('-');
+    if (minus < 0 || range.indexOf(',') >= 0) return null;
+
+    String first = range.substring(0, minus).trim();
+    String last = range.substring(minus + 1).trim();
+    try {
+      if (first.isEmpty()) {
+        // Suffix range, i.e. the last bytes of the file
+        if (last.isEmpty()) return null;
+        long suffix = Long.parseLong(last);
+        return new long[] {suffix > 0 ? Math.max(0, length - suffix) : length, length - 1};
+      }
+
+      long start = Long.parseLong(first);
+      if (last.isEmpty()) return new long[] {start, length - 1};
+
+      long end = Long.parseLong(last);
+      if (end < start) return null;
+      return new long[] {start, Math.min(end, length - 1)};
+    } catch (NumberFormatException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Value of the Content-Length response header, whatever its case.
+   *
+   * @return the length in bytes, -1 if missing or invalid
+   */
+  public static long getContentLength(@Nullable Properties header) {
+    if (header == null) return -1;
+
+    for (String name : header.stringPropertyNames()) {
+      if (name.equalsIgnoreCase("Content-Length")) {
+        try {
+          return Long.parseLong(header.getProperty(name).trim());
+        } catch (NumberFormatException e) {
+          return -1;
+        }
+      }
+    }
+    return -1;
+  }
+}
@@ -1857,8 +1857,8 @@ public class MainActivity extends PermissionsActivity
   }
 
   @Override
-  public void onProgressUpdate(HybridFileParcelable val, String query) {
-    getCurrentMainFragment().addSearchResult(val, query);
+  public void onProgressUpdate(@NonNull List<HybridFileParcelable> results, String query) {
+    getCurrentMainFragment().addSearchResults(results, query);
   }
 
   @Override
@@ -57,6 +57,7 @@ import com.amaze.filemanager.filesystem.RootHelper;
 import com.amaze.filemanager.filesystem.compressed.CompressedHelper;
 import com.amaze.filemanager.filesystem.files.CryptUtil;
 import com.amaze.filemanager.filesystem.files.EncryptDecryptUtils;
+import com.amaze.filemanager.filesystem.files.FileListSorter;
 import com.amaze.filemanager.filesystem.files.FileUtils;
 import com.amaze.filemanager.filesystem.root.ChangeFilePermissionsCommand;
 import com.amaze.filemanager.ui.activities.MainActivity;
@@ -285,7 +286,7 @@ public class GeneralDialogCreation {
                 .append(". ")
                 .append(layoutElement.title)
                 .append(" (")
-                .append(layoutElement.size)
+                .append(layoutElement.getSize(c))
                 .append(")");
             sizeTotal += layoutElement.longSize;
           }
@@ -1170,7 +1171,7 @@ public class GeneralDialogCreation {
     a.theme(appTheme.getMaterialDialogTheme());
     a.items(sort)
         .itemsCallbackSingleChoice(
-            current > 3 ? current - 4 : current, (dialog, view, which, text) -> true);
+            FileListSorter.getSortBy(current), (dialog, view, which, text) -> true);
     final Set<String> sortbyOnlyThis =
         sharedPref.getStringSet(PREFERENCE_SORTBY_ONLY_THIS, Collections.emptySet());
     final Set<String> onlyThisFloders = new HashSet<>(sortbyOnlyThis);
@@ -1209,7 +1210,7 @@ public class GeneralDialogCreation {
       Set<String> onlyThisFloders,
       MaterialDialog dialog,
       boolean desc) {
-    final int sortType = desc ? dialog.getSelectedIndex() + 4 : dialog.getSelectedIndex();
+    final int sortType = FileListSorter.toSortType(dialog.getSelectedIndex(), desc);
     SortHandler sortHandler = SortHandler.getInstance();
     if (onlyThisFloders.contains(m.getCurrentPath())) {
       Sort oldSort = sortHandler.findEntry(m.getCurrentPath());
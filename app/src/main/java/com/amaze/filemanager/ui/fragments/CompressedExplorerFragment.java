@@ -272,6 +272,8 @@ public class CompressedExplorerFragment extends Fragment implements BottomBarBut
           hideOption(R.id.share, menu);
           hideOption(R.id.openwith, menu);
           showOption(R.id.all, menu);
+          hideOption(R.id.invert_selection, menu);
+          hideOption(R.id.select_range, menu);
           hideOption(R.id.compress, menu);
           hideOption(R.id.hide, menu);
           showOption(R.id.ex, menu);
@@ -30,7 +30,7 @@ import static com.amaze.filemanager.ui.fragments.preference_fragments.Preference
 
 import java.io.File;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 
@@ -53,6 +53,7 @@ import com.amaze.filemanager.filesystem.cloud.CloudUtil;
 import com.amaze.filemanager.filesystem.files.CryptUtil;
 import com.amaze.filemanager.filesystem.files.EncryptDecryptUtils;
 import com.amaze.filemanager.filesystem.files.FileListSorter;
+import com.amaze.filemanager.filesystem.files.FileSearchEngine;
 import com.amaze.filemanager.filesystem.files.FileUtils;
 import com.amaze.filemanager.filesystem.smbstreamer.Streamer;
 import com.amaze.filemanager.filesystem.ssh.SshClientUtils;
@@ -93,7 +94,6 @@ import android.os.Build;
 import android.os.Bundle;
 import android.preference.PreferenceManager;
 import android.text.TextUtils;
-import android.text.format.Formatter;
 import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.Menu;
@@ -242,7 +242,8 @@ public class MainFragment extends Fragment implements BottomBarButtonPath {
 
     mSwipeRefreshLayout = rootView.findViewById(R.id.activity_main_swipe_refresh_layout);
 
-    mSwipeRefreshLayout.setOnRefreshListener(() -> loadlist((CURRENT_PATH), false, openMode));
+    mSwipeRefreshLayout.setOnRefreshListener(
+        () -> loadlist((CURRENT_PATH), false, openMode, true));
 
     // String itemsstring = res.getString(R.string.items);// TODO: 23/5/2017 use or delete
     mToolbarContainer.setBackgroundColor(
@@ -392,7 +393,7 @@ public class MainFragment extends Fragment implements BottomBarButtonPath {
         reloadListElements(true, results, !IS_LIST);
       }
       if (selection) {
-        for (Integer index : adapter.getCheckedItemsIndex()) {
+        for (int index : adapter.getCheckedItemsIndex()) {
           adapter.toggleChecked(index, null);
         }
       }
@@ -460,17 +461,18 @@ public class MainFragment extends Fragment implements BottomBarButtonPath {
          * onCreateActionMode, but may be called multiple times if the mode is invalidated.
          */
         public boolean onPrepareActionMode(ActionMode mode, Menu menu) {
-          ArrayList<LayoutElementParcelable> positions = adapter.getCheckedItems();
+          int checkedCount = adapter.getCheckedItemCount();
           TextView textView1 = actionModeView.findViewById(R.id.item_count);
-          textView1.setText(String.valueOf(positions.size()));
+          textView1.setText(String.valueOf(checkedCount));
           textView1.setOnClickListener(null);
-          mode.setTitle(positions.size() + "");
+          mode.setTitle(checkedCount + "");
           hideOption(R.id.openmulti, menu);
           menu.findItem(R.id.all)
               .setTitle(
-                  positions.size() == folder_count + file_count
+                  checkedCount == folder_count + file_count
                       ? R.string.deselect_all
                       : R.string.select_all);
+          menu.findItem(R.id.select_range).setVisible(checkedCount > 1);
 
           if (openMode != OpenMode.FILE) {
             hideOption(R.id.addshortcut, menu);
@@ -483,7 +485,7 @@ public class MainFragment extends Fragment implements BottomBarButtonPath {
           // tv.setText(positions.size());
           if (!results) {
             hideOption(R.id.openparent, menu);
-            if (positions.size() == 1) {
+            if (checkedCount == 1) {
               showOption(R.id.addshortcut, menu);
               showOption(R.id.openwith, menu);
               showOption(R.id.share, menu);
@@ -504,12 +506,9 @@ public class MainFragment extends Fragment implements BottomBarButtonPath {
                 showOption(R.id.share, menu);
                 if (getMainActivity().mReturnIntent)
                   if (Build.VERSION.SDK_INT >= 16) showOption(R.id.openmulti, menu);
-                for (LayoutElementParcelable e : adapter.getCheckedItems()) {
-                  File x = new File(e.desc);
-                  if (x.isDirectory()) {
-                    hideOption(R.id.share, menu);
-                    hideOption(R.id.openmulti, menu);
-                  }
+                if (adapter.isDirectoryChecked()) {
+                  hideOption(R.id.share, menu);
+                  hideOption(R.id.openmulti, menu);
                 }
               } catch (Exception e) {
                 e.printStackTrace();
@@ -518,7 +517,7 @@ public class MainFragment extends Fragment implements BottomBarButtonPath {
               hideOption(R.id.addshortcut, menu);
             }
           } else {
-            if (positions.size() == 1) {
+            if (checkedCount == 1) {
               showOption(R.id.addshortcut, menu);
               showOption(R.id.openparent, menu);
               showOption(R.id.openwith, menu);
@@ -541,12 +540,9 @@ public class MainFragment extends Fragment implements BottomBarButtonPath {
               if (getMainActivity().mReturnIntent)
                 if (Build.VERSION.SDK_INT >= 16) showOption(R.id.openmulti, menu);
               try {
-                for (LayoutElementParcelable e : adapter.getCheckedItems()) {
-                  File x = new File(e.desc);
-                  if (x.isDirectory()) {
-                    hideOption(R.id.share, menu);
-                    hideOption(R.id.openmulti, menu);
-                  }
+                if (adapter.isDirectoryChecked()) {
+                  hideOption(R.id.share, menu);
+                  hideOption(R.id.openmulti, menu);
                 }
               } catch (Exception e) {
                 e.printStackTrace();
@@ -647,6 +643,12 @@ public class MainFragment extends Fragment implements BottomBarButtonPath {
               }
               mode.invalidate();
 
+              return true;
+            case R.id.invert_selection:
+              adapter.invertChecked(getCurrentPath());
+              return true;
+            case R.id.select_range:
+              adapter.checkRange();
               return true;
             case R.id.rename:
               final HybridFileParcelable f;
@@ -931,6 +933,19 @@ public class MainFragment extends Fragment implements BottomBarButtonPath {
    * @param openMode the mode in which the directory should be opened
    */
   public void loadlist(final String path, final boolean back, final OpenMode openMode) {
+    loadlist(path, back, openMode, false);
+  }
+
+  /**
+   * This loads a path into the MainFragment.
+   *
+   * @param path the path to be loaded
+   * @param back if we're coming back from any directory and want the scroll to be restored
+   * @param openMode the mode in which the directory should be opened
+   * @param forceReload list the directory again even if its cached listing seems up to date
+   */
+  public void loadlist(
+      final String path, final boolean back, final OpenMode openMode, boolean forceReload) {
     if (mActionMode != null) mActionMode.finish();
 
     mSwipeRefreshLayout.setRefreshing(true);
@@ -939,6 +954,7 @@ public class MainFragment extends Fragment implements BottomBarButtonPath {
       loadFilesListTask.cancel(true);
     }
 
+    final boolean[] isFirstPage = {true};
     loadFilesListTask =
         new LoadFilesListTask(
             getActivity(),
@@ -947,6 +963,7 @@ public class MainFragment extends Fragment implements BottomBarButtonPath {
             openMode,
             getBoolean(PREFERENCE_SHOW_THUMB),
             getBoolean(PREFERENCE_SHOW_HIDDENFILES),
+            forceReload,
             (data) -> {
               if (data != null && data.second != null) {
                 boolean isPathLayoutGrid =
@@ -954,6 +971,13 @@ public class MainFragment extends Fragment implements BottomBarButtonPath {
                 setListElements(data.second, back, path, data.first, false, isPathLayoutGrid);
                 mSwipeRefreshLayout.setRefreshing(false);
               }
+            },
+            (pageOpenMode, page, sorter) -> {
+              boolean isPathLayoutGrid =
+                  dataUtils.getListOrGridForPath(path, DataUtils.LIST) == DataUtils.GRID;
+              addListElementsPage(
+                  page, isFirstPage[0], path, pageOpenMode, sorter, isPathLayoutGrid);
+              isFirstPage[0] = false;
             });
     loadFilesListTask.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
   }
@@ -963,7 +987,7 @@ public class MainFragment extends Fragment implements BottomBarButtonPath {
     nofilesview.setColorSchemeColors(accentColor);
     nofilesview.setOnRefreshListener(
         () -> {
-          loadlist((CURRENT_PATH), false, openMode);
+          loadlist((CURRENT_PATH), false, openMode, true);
           nofilesview.setRefreshing(false);
         });
     if (utilsProvider.getAppTheme().equals(AppTheme.LIGHT)) {
@@ -996,10 +1020,12 @@ public class MainFragment extends Fragment implements BottomBarButtonPath {
       boolean results,
       boolean grid) {
     if (bitmap != null) {
+      // the same directory is shown already (cached or partly loaded), only update what changed
+      boolean isShown = adapter != null && !this.results && !results && path.equals(CURRENT_PATH);
       LIST_ELEMENTS = bitmap;
       CURRENT_PATH = path;
       this.openMode = openMode;
-      reloadListElements(back, results, grid);
+      reloadListElements(back, results, grid, isShown);
     } else {
       // list loading cancelled
       // TODO: Add support for cancelling list loading
@@ -1007,7 +1033,73 @@ public class MainFragment extends Fragment implements BottomBarButtonPath {
     }
   }
 
+  /**
+   * Shows a page of a listing that is still being loaded, so that the first rows are visible
+   * before the whole directory has been read. The first page replaces what the adapter shows, the
+   * following ones are merged in sorted order. The complete list still arrives through {@link
+   * #setListElements(ArrayList, boolean, String, OpenMode, boolean, boolean)}, which also adds the
+   * back button and headers and starts observing the directory.
+   *
+   * @param page elements sorted by {@code sorter}
+   * @param isFirstPage whether this is the first page of a new listing
+   * @param path the path being listed
+   * @param openMode the type of file being listed
+   * @param sorter the order the elements are in, same as the order of the complete list
+   * @param grid whether to set grid view or list view
+   */
+  private void addListElementsPage(
+      ArrayList<LayoutElementParcelable> page,
+      boolean isFirstPage,
+      String path,
+      OpenMode openMode,
+      Comparator<LayoutElementParcelable> sorter,
+      boolean grid) {
+    if (!isAdded()) return;
+
+    if (!isFirstPage && adapter != null) {
+      LIST_ELEMENTS.addAll(page);
+      adapter.addItemsSorted(page, sorter);
+      return;
+    }
+
+    LIST_ELEMENTS = new ArrayList<>(page);
+    CURRENT_PATH = path;
+    this.openMode = openMode;
+    results = false;
+
+    mSwipeRefreshLayout.setEnabled(true);
+    nofilesview.setVisibility(View.GONE);
+    listView.setVisibility(View.VISIBLE);
+
+    if (grid && IS_LIST) switchToGrid();
+    else if (!grid && !IS_LIST) switchToList();
+
+    if (adapter == null) {
+      adapter =
+          new RecyclerAdapter(
+              getMainActivity(),
+              this,
+              utilsProvider,
+              sharedPref,
+              listView,
+              LIST_ELEMENTS,
+              getActivity());
+    } else {
+      adapter.setItems(listView, new ArrayList<>(LIST_ELEMENTS));
+    }
+
+    listView.setAdapter(adapter);
+  }
+
   public void reloadListElements(boolean back, boolean results, boolean grid) {
+    reloadListElements(back, results, grid, false);
+  }
+
+  /**
+   * @param diff whether the adapter shows the same directory, only the changed rows are updated
+   *     then instead of the whole list
+   */
+  private void reloadListElements(boolean back, boolean results, boolean grid, boolean diff) {
     if (isAdded()) {
       this.results = results;
       boolean isOtg = CURRENT_PATH.equals(OTGUtil.PREFIX_OTG + "/"),
@@ -1022,8 +1114,7 @@ public class MainFragment extends Fragment implements BottomBarButtonPath {
           && (openMode == OpenMode.FILE || openMode == OpenMode.ROOT)
           && !isOtg
           && !isOnTheCloud
-          && (LIST_ELEMENTS.size() == 0
-              || !LIST_ELEMENTS.get(0).size.equals(getString(R.string.goback)))
+          && (LIST_ELEMENTS.size() == 0 || !LIST_ELEMENTS.get(0).isBack)
           && !results) {
         LIST_ELEMENTS.add(0, getBackElement());
       }
@@ -1041,6 +1132,9 @@ public class MainFragment extends Fragment implements BottomBarButtonPath {
       if (grid && IS_LIST) switchToGrid();
       else if (!grid && !IS_LIST) switchToList();
 
+      // switching layouts drops the adapter
+      diff = diff && adapter != null && listView.getAdapter() == adapter;
+
       if (adapter == null) {
         adapter =
             new RecyclerAdapter(
@@ -1051,6 +1145,8 @@ public class MainFragment extends Fragment implements BottomBarButtonPath {
                 listView,
                 LIST_ELEMENTS,
                 getActivity());
+      } else if (diff) {
+        adapter.setItemsWithDiff(listView, new ArrayList<>(LIST_ELEMENTS));
       } else {
         adapter.setItems(listView, new ArrayList<>(LIST_ELEMENTS));
       }
@@ -1061,7 +1157,9 @@ public class MainFragment extends Fragment implements BottomBarButtonPath {
         dataUtils.addHistoryFile(CURRENT_PATH);
       }
 
-      listView.setAdapter(adapter);
+      if (!diff) {
+        listView.setAdapter(adapter);
+      }
 
       if (!addheader) {
         listView.removeItemDecoration(dividerItemDecoration);
@@ -1361,25 +1459,20 @@ public class MainFragment extends Fragment implements BottomBarButtonPath {
 
   public void updateList() {
     computeScroll();
-    loadlist((CURRENT_PATH), true, openMode);
+    loadlist((CURRENT_PATH), true, openMode, true);
   }
 
   /**
    * Assigns sort modes A value from 0 to 3 defines sort mode as name/last modified/size/type in
    * ascending order Values from 4 to 7 defines sort mode as name/last modified/size/type in
-   * descending order
+   * descending order, see {@link FileListSorter#getSortBy(int)} for the modes added after those
    *
-   * <p>Final value of {@link #sortby} varies from 0 to 3
+   * <p>Final value of {@link #sortby} is one of the {@code FileListSorter.SORT_BY_*} constants
    */
   public void getSortModes() {
     int t = SortHandler.getSortType(getContext(), getCurrentPath());
-    if (t <= 3) {
-      sortby = t;
-      asc = 1;
-    } else {
-      asc = -1;
-      sortby = t - 4;
-    }
+    sortby = FileListSorter.getSortBy(t);
+    asc = FileListSorter.getSortOrder(t);
 
     dsort = Integer.parseInt(sharedPref.getString(PREFERENCE_DIRECTORY_SORT_MODE, "0"));
   }
@@ -1433,15 +1526,14 @@ public class MainFragment extends Fragment implements BottomBarButtonPath {
 
         LayoutElementParcelable layoutElement =
             new LayoutElementParcelable(
-                getContext(),
+                false,
                 name,
                 aMFilePathBuilder.build().toString(),
                 "",
                 "",
-                "",
                 0,
                 false,
-                aMFile.lastModified() + "",
+                aMFile.lastModified(),
                 true,
                 getBoolean(PREFERENCE_SHOW_THUMB),
                 OpenMode.SMB);
@@ -1453,15 +1545,14 @@ public class MainFragment extends Fragment implements BottomBarButtonPath {
         file_count++;
         LayoutElementParcelable layoutElement =
             new LayoutElementParcelable(
-                getContext(),
+                false,
                 name,
                 aMFile.getPath(),
                 "",
                 "",
-                Formatter.formatFileSize(getContext(), aMFile.length()),
                 aMFile.length(),
                 false,
-                aMFile.lastModified() + "",
+                aMFile.lastModified(),
                 false,
                 getBoolean(PREFERENCE_SHOW_THUMB),
                 OpenMode.SMB);
@@ -1475,62 +1566,31 @@ public class MainFragment extends Fragment implements BottomBarButtonPath {
 
   // method to add search result entry to the LIST_ELEMENT arrayList
   private LayoutElementParcelable addTo(HybridFileParcelable mFile) {
-    File f = new File(mFile.getPath());
-    String size = "";
     if (!dataUtils.isFileHidden(mFile.getPath())) {
+      // File would turn the "//" of remote URIs into "/"
+      boolean isLocal = mFile.getMode() == OpenMode.FILE || mFile.getMode() == OpenMode.ROOT;
+      File f = new File(mFile.getPath());
+      LayoutElementParcelable layoutElement =
+          new LayoutElementParcelable(
+              false,
+              isLocal ? f.getName() : FileSearchEngine.getSearchedName(getContext(), mFile),
+              isLocal ? f.getPath() : mFile.getPath(),
+              mFile.getPermission(),
+              mFile.getLink(),
+              mFile.isDirectory() ? 0 : mFile.getSize(),
+              mFile.isDirectory(),
+              mFile.getDate(),
+              mFile.isDirectory(),
+              getBoolean(PREFERENCE_SHOW_THUMB),
+              mFile.getMode());
+
+      LIST_ELEMENTS.add(layoutElement);
       if (mFile.isDirectory()) {
-        size = "";
-        LayoutElementParcelable layoutElement =
-            new LayoutElementParcelable(
-                getContext(),
-                f.getPath(),
-                mFile.getPermission(),
-                mFile.getLink(),
-                size,
-                0,
-                true,
-                mFile.getDate() + "",
-                true,
-                getBoolean(PREFERENCE_SHOW_THUMB),
-                mFile.getMode());
-
-        LIST_ELEMENTS.add(layoutElement);
         folder_count++;
-        return layoutElement;
       } else {
-        long longSize = 0;
-        try {
-          if (mFile.getSize() != -1) {
-            longSize = mFile.getSize();
-            size = Formatter.formatFileSize(getContext(), longSize);
-          } else {
-            size = "";
-            longSize = 0;
-          }
-        } catch (NumberFormatException e) {
-          // e.printStackTrace();
-        }
-        try {
-          LayoutElementParcelable layoutElement =
-              new LayoutElementParcelable(
-                  getContext(),
-                  f.getPath(),
-                  mFile.getPermission(),
-                  mFile.getLink(),
-                  size,
-                  longSize,
-                  false,
-                  mFile.getDate() + "",
-                  false,
-                  getBoolean(PREFERENCE_SHOW_THUMB),
-                  mFile.getMode());
-          LIST_ELEMENTS.add(layoutElement);
-          file_count++;
-          return layoutElement;
-        } catch (Exception e) {
-          e.printStackTrace();
-        }
+        file_count++;
       }
+      return layoutElement;
     }
 
     return null;
@@ -1610,7 +1670,7 @@ public class MainFragment extends Fragment implements BottomBarButtonPath {
 
   // adds search results based on result boolean. If false, the adapter is initialised with initial
   // values, if true, new values are added to the adapter.
-  public void addSearchResult(HybridFileParcelable a, String query) {
+  public void addSearchResults(List<HybridFileParcelable> batch, String query) {
     if (listView != null) {
 
       // initially clearing the array for new result set
@@ -1620,8 +1680,12 @@ public class MainFragment extends Fragment implements BottomBarButtonPath {
         folder_count = 0;
       }
 
-      // adding new value to LIST_ELEMENTS
-      LayoutElementParcelable layoutElementAdded = addTo(a);
+      // adding new values to LIST_ELEMENTS
+      ArrayList<LayoutElementParcelable> layoutElementsAdded = new ArrayList<>(batch.size());
+      for (HybridFileParcelable a : batch) {
+        LayoutElementParcelable layoutElementAdded = addTo(a);
+        if (layoutElementAdded != null) layoutElementsAdded.add(layoutElementAdded);
+      }
       if (!getMainActivity()
           .getAppbar()
           .getBottomBar()
@@ -1636,7 +1700,7 @@ public class MainFragment extends Fragment implements BottomBarButtonPath {
         reloadListElements(false, true, !IS_LIST);
         getMainActivity().getAppbar().getBottomBar().setPathText("");
       } else {
-        adapter.addItem(layoutElementAdded);
+        adapter.addItems(layoutElementsAdded);
       }
       stopAnimation();
     }
@@ -1650,7 +1714,7 @@ public class MainFragment extends Fragment implements BottomBarButtonPath {
     new AsyncTask<Void, Void, Void>() {
       @Override
       protected Void doInBackground(Void... params) {
-        Collections.sort(LIST_ELEMENTS, new FileListSorter(dsort, sortby, asc));
+        new FileListSorter(dsort, sortby, asc).sort(LIST_ELEMENTS);
         return null;
       }
 
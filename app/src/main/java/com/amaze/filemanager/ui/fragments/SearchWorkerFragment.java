@@ -20,6 +20,8 @@
 
 package com.amaze.filemanager.ui.fragments;
 
+import java.util.List;
+
 import com.amaze.filemanager.asynchronous.asynctasks.SearchAsyncTask;
 import com.amaze.filemanager.filesystem.HybridFileParcelable;
 import com.amaze.filemanager.utils.OpenMode;
@@ -56,7 +58,8 @@ public class SearchWorkerFragment extends Fragment {
 
     void onPostExecute(String query);
 
-    void onProgressUpdate(HybridFileParcelable val, String query);
+    /** Called with the matches found since the last call */
+    void onProgressUpdate(@NonNull List<HybridFileParcelable> results, String query);
 
     void onCancelled();
   }
@@ -26,13 +26,17 @@ import static com.amaze.filemanager.utils.Utils.EMAIL_VISHAL;
 
 import java.io.IOException;
 import java.security.GeneralSecurityException;
+import java.util.Arrays;
 import java.util.List;
 
 import com.afollestad.materialdialogs.MaterialDialog;
 import com.afollestad.materialdialogs.folderselector.FolderChooserDialog;
 import com.amaze.filemanager.R;
 import com.amaze.filemanager.application.AppConfig;
+import com.amaze.filemanager.asynchronous.management.CopyScheduler;
 import com.amaze.filemanager.filesystem.files.CryptUtil;
+import com.amaze.filemanager.filesystem.ssh.SshClientUtils;
+import com.amaze.filemanager.filesystem.ssh.SshConnectionPool;
 import com.amaze.filemanager.ui.activities.AboutActivity;
 import com.amaze.filemanager.ui.activities.PreferencesActivity;
 import com.amaze.filemanager.ui.activities.superclasses.BasicActivity;
@@ -82,7 +86,10 @@ public class PrefFrag extends PreferenceFragment implements Preference.OnPrefere
     PreferencesConstants.FRAGMENT_ADVANCED_SEARCH,
     PreferencesConstants.PREFERENCE_ZIP_CREATE_PATH,
     PreferencesConstants.PREFERENCE_ZIP_EXTRACT_PATH,
-    PreferencesConstants.PREFERENCE_CLEAR_OPEN_FILE
+    PreferencesConstants.PREFERENCE_CLEAR_OPEN_FILE,
+    PreferencesConstants.PREFERENCE_COPY_THREADS,
+    PreferencesConstants.PREFERENCE_SFTP_REQUEST_DEPTH,
+    PreferencesConstants.PREFERENCE_SSH_CONNECTIONS_PER_HOST
   };
 
   private UtilitiesProvider utilsProvider;
@@ -212,6 +219,79 @@ public class PrefFrag extends PreferenceFragment implements Preference.OnPrefere
                 });
         builder.build().show();
         return true;
+      case PreferencesConstants.PREFERENCE_COPY_THREADS:
+        sort = getResources().getStringArray(R.array.copy_threads);
+        builder = new MaterialDialog.Builder(getActivity());
+        builder.theme(utilsProvider.getAppTheme().getMaterialDialogTheme());
+        builder.title(R.string.copy_threads);
+        String threads =
+            sharedPref.getString(
+                PreferencesConstants.PREFERENCE_COPY_THREADS,
+                String.valueOf(CopyScheduler.DEFAULT_WORKERS));
+        current = Math.max(0, Arrays.asList(sort).indexOf(threads));
+        builder
+            .items(sort)
+            .itemsCallbackSingleChoice(
+                current,
+                (dialog, view, which, text) -> {
+                  sharedPref
+                      .edit()
+                      .putString(PreferencesConstants.PREFERENCE_COPY_THREADS, sort[which])
+                      .apply();
+                  dialog.dismiss();
+                  return true;
+                });
+        builder.build().show();
+        return true;
+      case PreferencesConstants.PREFERENCE_SFTP_REQUEST_DEPTH:
+        sort = getResources().getStringArray(R.array.sftp_request_depth);
+        builder = new MaterialDialog.Builder(getActivity());
+        builder.theme(utilsProvider.getAppTheme().getMaterialDialogTheme());
+        builder.title(R.string.sftp_request_depth);
+        String depth =
+            sharedPref.getString(
+                PreferencesConstants.PREFERENCE_SFTP_REQUEST_DEPTH,
+                String.valueOf(SshClientUtils.DEFAULT_REQUEST_DEPTH));
+        current = Math.max(0, Arrays.asList(sort).indexOf(depth));
+        builder
+            .items(sort)
+            .itemsCallbackSingleChoice(
+                current,
+                (dialog, view, which, text) -> {
+                  sharedPref
+                      .edit()
+                      .putString(PreferencesConstants.PREFERENCE_SFTP_REQUEST_DEPTH, sort[which])
+                      .apply();
+                  dialog.dismiss();
+                  return true;
+                });
+        builder.build().show();
+        return true;
+      case PreferencesConstants.PREFERENCE_SSH_CONNECTIONS_PER_HOST:
+        sort = getResources().getStringArray(R.array.ssh_connections_per_host);
+        builder = new MaterialDialog.Builder(getActivity());
+        builder.theme(utilsProvider.getAppTheme().getMaterialDialogTheme());
+        builder.title(R.string.ssh_connections_per_host);
+        String sshConnections =
+            sharedPref.getString(
+                PreferencesConstants.PREFERENCE_SSH_CONNECTIONS_PER_HOST,
+                String.valueOf(SshConnectionPool.DEFAULT_MAX_CONNECTIONS_PER_HOST));
+        current = Math.max(0, Arrays.asList(sort).indexOf(sshConnections));
+        builder
+            .items(sort)
+            .itemsCallbackSingleChoice(
+                current,
+                (dialog, view, which, text) -> {
+                  sharedPref
+                      .edit()
+                      .putString(
+                          PreferencesConstants.PREFERENCE_SSH_CONNECTIONS_PER_HOST, sort[which])
+                      .apply();
+                  dialog.dismiss();
+                  return true;
+                });
+        builder.build().show();
+        return true;
       case PreferencesConstants.FRAGMENT_THEME:
         sort = getResources().getStringArray(R.array.theme);
         current = Integer.parseInt(sharedPref.getString(PreferencesConstants.FRAGMENT_THEME, "0"));
@@ -96,6 +96,12 @@ public class PreferencesConstants {
   public static final String PREFERENCE_COLOR_CONFIG = "color config";
   // END random preferences
 
+  // START file operation preferences
+  public static final String PREFERENCE_COPY_THREADS = "copyThreads";
+  public static final String PREFERENCE_SFTP_REQUEST_DEPTH = "sftpRequestDepth";
+  public static final String PREFERENCE_SSH_CONNECTIONS_PER_HOST = "sshConnectionsPerHost";
+  // END file operation preferences
+
   // START sort preferences
   public static final String PREFERENCE_SORTBY_ONLY_THIS = "sortby_only_this";
   // END sort preferences
@@ -20,7 +20,9 @@
 
 package com.amaze.filemanager.ui.icons;
 
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Locale;
 import java.util.regex.Pattern;
 
@@ -35,6 +37,38 @@ public final class MimeTypes {
   // construct a with an approximation of the capacity
   private static final HashMap<String, String> MIME_TYPES = new HashMap<>(1 + (int) (68 / 0.75));
 
+  // formats compressed already, deflating them again barely makes them smaller
+  private static final HashSet<String> COMPRESSED_MIME_TYPES =
+      new HashSet<>(
+          Arrays.asList(
+              "image/jpeg",
+              "image/png",
+              "image/gif",
+              "image/webp",
+              "image/heic",
+              "image/heif",
+              "application/zip",
+              "application/x-rar-compressed",
+              "application/x-7z-compressed",
+              "application/x-gzip",
+              "application/gzip",
+              "application/x-bzip",
+              "application/x-bzip2",
+              "application/x-xz",
+              "application/x-lzma",
+              "application/x-compress",
+              "application/x-ace-compressed",
+              "application/vnd.ms-cab-compressed",
+              "application/java-archive",
+              "application/vnd.android.package-archive",
+              "application/epub+zip",
+              "application/x-ibooks+zip",
+              "crypt/aze"));
+
+  // audio formats that aren't compressed
+  private static final HashSet<String> PCM_MIME_TYPES =
+      new HashSet<>(Arrays.asList("audio/wav", "audio/x-wav", "audio/x-aiff"));
+
   static {
 
     /*
@@ -152,6 +186,25 @@ public final class MimeTypes {
     return type;
   }
 
+  /**
+   * Checks whether the format of a file is compressed already, like most pictures, audio and video,
+   * archives or office documents, so that compressing it again only costs time
+   *
+   * @param path the file to check
+   */
+  public static boolean isCompressed(String path) {
+    String type = getMimeType(path, false);
+    if (COMPRESSED_MIME_TYPES.contains(type)) {
+      return true;
+    }
+    if (type.startsWith("audio/")) {
+      return !PCM_MIME_TYPES.contains(type);
+    }
+    return type.startsWith("video/")
+        || type.startsWith("application/vnd.openxmlformats-officedocument.")
+        || type.startsWith("application/vnd.oasis.opendocument.");
+  }
+
   public static boolean mimeTypeMatch(String mime, String input) {
     return Pattern.matches(mime.replace("*", ".*"), input);
   }
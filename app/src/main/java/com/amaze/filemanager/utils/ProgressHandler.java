@@ -20,6 +20,8 @@
 
 package com.amaze.filemanager.utils;
 
+import java.util.concurrent.atomic.AtomicLong;
+
 import com.amaze.filemanager.ui.fragments.ProcessViewerFragment;
 
 /**
@@ -37,10 +39,28 @@ public class ProgressHandler {
   private volatile long totalSize = 0L;
 
   /**
-   * total bytes written in process so far Volatile because non volatile long r/w are not atomic
-   * (see Java Language Specification 17.7)
+   * total bytes written in process so far, as last published by {@link #addWrittenLength(long)}
+   * Volatile because non volatile long r/w are not atomic (see Java Language Specification 17.7)
    */
   private volatile long writtenSize = 0L;
+
+  /**
+   * bytes processed so far, added to by the threads doing the work of this operation only. Each
+   * operation has its own, so several operations can run at the same time.
+   */
+  private final AtomicLong position = new AtomicLong();
+
+  /** weight of the newest measure in {@link #averageSpeed} */
+  private static final double SPEED_SMOOTHING = 0.3;
+
+  /** time of the last call to {@link #addWrittenLength(long)}, from {@link System#nanoTime()} */
+  private long lastWrittenTime = 0L;
+
+  /** smoothed write speed in bytes per second, negative until first measured */
+  private double averageSpeed = -1;
+
+  /** whether no progress was made for a while, see ServiceWatcherUtil */
+  private volatile boolean isHalted = false;
   /** total number of source files to be processed */
   private volatile int sourceFiles = 0;
 
@@ -64,10 +84,40 @@ public class ProgressHandler {
    * @param newPosition the position of byte for file being processed
    */
   public synchronized void addWrittenLength(long newPosition) {
-    long speedRaw = (newPosition - writtenSize);
+    long now = System.nanoTime();
+    long written = newPosition - writtenSize;
     this.writtenSize = newPosition;
 
-    progressListener.onProgressed(speedRaw);
+    // measure over the actual time since the last call, not the nominal watcher period
+    double seconds = lastWrittenTime == 0L ? 1d : (now - lastWrittenTime) / 1e9;
+    lastWrittenTime = now;
+    if (seconds > 0) {
+      double speed = written / seconds;
+      averageSpeed =
+          averageSpeed < 0
+              ? speed
+              : SPEED_SMOOTHING * speed + (1 - SPEED_SMOOTHING) * averageSpeed;
+    }
+
+    progressListener.onProgressed(Math.max(0, Math.round(averageSpeed)));
+  }
+
+  /** Adds bytes processed by the operation, safe to call from several threads */
+  public void addToPosition(long length) {
+    position.addAndGet(length);
+  }
+
+  /** @return bytes processed so far, see {@link #addToPosition(long)} */
+  public long getPosition() {
+    return position.get();
+  }
+
+  public void setHalted(boolean isHalted) {
+    this.isHalted = isHalted;
+  }
+
+  public boolean isHalted() {
+    return isHalted;
   }
 
   public void setFileName(String fileName) {
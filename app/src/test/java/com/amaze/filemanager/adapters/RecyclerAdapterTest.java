@@ -0,0 +1,166 @@
+/*
+ * Copyright (C) 2014-2020 Arpit Khurana <arpitkh96@gmail.com>, Vishal Nehra <vishalmeham2@gmail.com>,
+ * Emmanuel Messulam<emmanuelbendavid@gmail.com>, Raymond Lai <airwave209gt at gmail.com> and Contributors.
+ *
+ * This file is part of Amaze File Manager.
+ *
+ * Amaze File Manager is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.amaze.filemanager.adapters;
+
+import static android.os.Build.VERSION_CODES.JELLY_BEAN;
+import static android.os.Build.VERSION_CODES.KITKAT;
+import static android.os.Build.VERSION_CODES.P;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.mockStatic;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.MockedStatic;
+import org.robolectric.annotation.Config;
+
+import com.amaze.filemanager.GlideApp;
+import com.amaze.filemanager.GlideRequests;
+import com.amaze.filemanager.adapters.data.LayoutElementParcelable;
+import com.amaze.filemanager.shadows.ShadowMultiDex;
+import com.amaze.filemanager.ui.activities.MainActivity;
+import com.amaze.filemanager.ui.activities.superclasses.PreferenceActivity;
+import com.amaze.filemanager.ui.colors.UserColorPreferences;
+import com.amaze.filemanager.ui.fragments.MainFragment;
+import com.amaze.filemanager.ui.provider.UtilitiesProvider;
+import com.amaze.filemanager.utils.OpenMode;
+
+import android.content.Context;
+
+import androidx.appcompat.view.ActionMode;
+import androidx.fragment.app.Fragment;
+import androidx.recyclerview.widget.RecyclerView;
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+/** Drives the selection actions of the contextual menu through the adapter */
+@RunWith(AndroidJUnit4.class)
+@Config(
+    shadows = {ShadowMultiDex.class},
+    sdk = {JELLY_BEAN, KITKAT, P})
+public class RecyclerAdapterTest {
+
+  private static final String PATH = "/storage/emulated/0";
+
+  private MockedStatic<GlideApp> glideApp;
+  private MainFragment mainFragment;
+  private RecyclerAdapter adapter;
+
+  @Before
+  public void setUp() {
+    Context context = ApplicationProvider.getApplicationContext();
+
+    glideApp = mockStatic(GlideApp.class);
+    glideApp
+        .when(() -> GlideApp.with(any(Fragment.class)))
+        .thenReturn(mock(GlideRequests.class, RETURNS_DEEP_STUBS));
+
+    MainActivity mainActivity = mock(MainActivity.class);
+    when(mainActivity.getCurrentColorPreference())
+        .thenReturn(new UserColorPreferences(0, 0, 0, 0));
+    when(mainActivity.startSupportActionMode(any())).thenReturn(mock(ActionMode.class));
+
+    mainFragment = mock(MainFragment.class);
+    mainFragment.IS_LIST = true;
+    when(mainFragment.getMainActivity()).thenReturn(mainActivity);
+
+    ArrayList<LayoutElementParcelable> elements = new ArrayList<>();
+    for (int i = 0; i < 6; i++) {
+      elements.add(
+          new LayoutElementParcelable(
+              false,
+              "file" + i,
+              PATH + "/file" + i,
+              "",
+              "",
+              0,
+              false,
+              0,
+              false,
+              false,
+              OpenMode.FILE));
+    }
+
+    adapter =
+        new RecyclerAdapter(
+            mock(PreferenceActivity.class),
+            mainFragment,
+            mock(UtilitiesProvider.class),
+            null,
+            new RecyclerView(context),
+            elements,
+            context);
+  }
+
+  @After
+  public void tearDown() {
+    glideApp.close();
+  }
+
+  @Test
+  public void testInvertChecked() {
+    adapter.toggleChecked(1, null);
+    adapter.toggleChecked(4, null);
+
+    adapter.invertChecked(PATH);
+    // the empty row closing the list can't be checked
+    assertArrayEquals(new int[] {0, 2, 3, 5}, adapter.getCheckedItemsIndex());
+    assertEquals(4, adapter.getCheckedItemCount());
+
+    adapter.invertChecked(PATH);
+    assertArrayEquals(new int[] {1, 4}, adapter.getCheckedItemsIndex());
+  }
+
+  @Test
+  public void testInvertAllCheckedEndsSelection() {
+    adapter.toggleChecked(true, PATH);
+    adapter.invertChecked(PATH);
+
+    assertEquals(0, adapter.getCheckedItemCount());
+    assertFalse(mainFragment.selection);
+  }
+
+  @Test
+  public void testCheckRange() {
+    adapter.toggleChecked(1, null);
+    adapter.toggleChecked(4, null);
+
+    adapter.checkRange();
+    assertArrayEquals(new int[] {1, 2, 3, 4}, adapter.getCheckedItemsIndex());
+  }
+
+  @Test
+  public void testCheckRangeNeedsTwoCheckedItems() {
+    adapter.toggleChecked(2, null);
+
+    adapter.checkRange();
+    assertArrayEquals(new int[] {2}, adapter.getCheckedItemsIndex());
+  }
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright (C) 2014-2020 Arpit Khurana <arpitkh96@gmail.com>, Vishal Nehra <vishalmeham2@gmail.com>,
+ * Emmanuel Messulam<emmanuelbendavid@gmail.com>, Raymond Lai <airwave209gt at gmail.com> and Contributors.
+ *
+ * This file is part of Amaze File Manager.
+ *
+ * Amaze File Manager is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.amaze.filemanager.adapters;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class SelectionModelTest {
+
+  private static final int SIZE = 20;
+
+  /** Rows that can't be selected, like headers */
+  private final BitSet headers = new BitSet();
+
+  private final List<int[]> changes = new ArrayList<>();
+
+  private SelectionModel selection;
+
+  @Before
+  public void setUp() {
+    headers.set(0);
+    headers.set(10);
+    selection =
+        new SelectionModel(
+            new SelectionModel.Callback() {
+              @Override
+              public boolean isSelectable(int position) {
+                return !headers.get(position);
+              }
+
+              @Override
+              public void onSelectionChanged(int positionStart, int itemCount) {
+                changes.add(new int[] {positionStart, itemCount});
+              }
+            });
+  }
+
+  @Test
+  public void testSelectOne() {
+    selection.setSelected(3, true);
+    assertTrue(selection.isSelected(3));
+    assertEquals(1, selection.getCount());
+    assertChanges(new int[] {3, 1});
+
+    selection.setSelected(3, true);
+    assertEquals(1, selection.getCount());
+    assertChanges();
+
+    selection.setSelected(3, false);
+    assertTrue(selection.isEmpty());
+    assertChanges(new int[] {3, 1});
+  }
+
+  @Test
+  public void testSelectAll() {
+    selection.setSelected(5, true);
+    changes.clear();
+
+    selection.setRangeSelected(0, SIZE, true);
+    assertEquals(SIZE - 2, selection.getCount());
+    assertFalse(selection.isSelected(0));
+    assertFalse(selection.isSelected(10));
+    assertChanges(new int[] {1, 4}, new int[] {6, 4}, new int[] {11, 9});
+
+    selection.setRangeSelected(0, SIZE, false);
+    assertTrue(selection.isEmpty());
+    assertChanges(new int[] {1, 9}, new int[] {11, 9});
+  }
+
+  @Test
+  public void testDeselectRange() {
+    selection.setRangeSelected(0, SIZE, true);
+    changes.clear();
+
+    selection.setRangeSelected(3, 13, false);
+    assertEquals(SIZE - 2 - 9, selection.getCount());
+    assertTrue(selection.isSelected(2));
+    assertTrue(selection.isSelected(13));
+    assertChanges(new int[] {3, 7}, new int[] {11, 2});
+  }
+
+  @Test
+  public void testInvert() {
+    selection.setSelected(1, true);
+    selection.setSelected(2, true);
+    changes.clear();
+
+    selection.invertRange(0, SIZE);
+    assertEquals(SIZE - 2 - 2, selection.getCount());
+    assertArrayEquals(
+        new int[] {3, 4, 5, 6, 7, 8, 9, 11, 12, 13, 14, 15, 16, 17, 18, 19},
+        selection.getSelectedPositions());
+    assertChanges(new int[] {1, 9}, new int[] {11, 9});
+  }
+
+  @Test
+  public void testReset() {
+    BitSet positions = new BitSet();
+    positions.set(4);
+    positions.set(7);
+    selection.reset(positions);
+    positions.set(8);
+
+    assertEquals(2, selection.getCount());
+    assertArrayEquals(new int[] {4, 7}, selection.getSelectedPositions());
+    assertEquals(7, selection.nextSelected(5));
+    assertEquals(-1, selection.nextSelected(8));
+    assertChanges();
+
+    selection.clear();
+    assertTrue(selection.isEmpty());
+    assertEquals(0, selection.getSelectedPositions().length);
+  }
+
+  private void assertChanges(int[]... expected) {
+    assertEquals(expected.length, changes.size());
+    for (int i = 0; i < expected.length; i++) {
+      assertArrayEquals(expected[i], changes.get(i));
+    }
+    changes.clear();
+  }
+}
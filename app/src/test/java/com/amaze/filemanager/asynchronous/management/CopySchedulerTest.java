@@ -0,0 +1,131 @@
+/*
+ * Copyright (C) 2014-2020 Arpit Khurana <arpitkh96@gmail.com>, Vishal Nehra <vishalmeham2@gmail.com>,
+ * Emmanuel Messulam<emmanuelbendavid@gmail.com>, Raymond Lai <airwave209gt at gmail.com> and Contributors.
+ *
+ * This file is part of Amaze File Manager.
+ *
+ * Amaze File Manager is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.amaze.filemanager.asynchronous.management;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.amaze.filemanager.asynchronous.management.CopyScheduler.Transfer;
+import com.amaze.filemanager.utils.OpenMode;
+
+public class CopySchedulerTest {
+
+  @Test
+  public void testRunsAllTransfers() throws InterruptedException {
+    CopyScheduler<Transfer> scheduler = new CopyScheduler<>(4);
+    AtomicInteger done = new AtomicInteger();
+    for (int i = 0; i < 1000; i++) {
+      scheduler.submit(OpenMode.FILE, done::incrementAndGet);
+    }
+    scheduler.awaitCompletion();
+    scheduler.shutdown();
+
+    assertEquals(1000, done.get());
+  }
+
+  @Test
+  public void testRunsTransfersInParallel() throws InterruptedException {
+    assertEquals(4, getMaxConcurrency(OpenMode.FILE, 4));
+  }
+
+  @Test
+  public void testBoundsTransfersPerTarget() throws InterruptedException {
+    assertEquals(1, getMaxConcurrency(OpenMode.OTG, 8));
+    assertEquals(2, getMaxConcurrency(OpenMode.GDRIVE, 8));
+    assertEquals(4, getMaxConcurrency(OpenMode.SMB, 8));
+  }
+
+  @Test
+  public void testSurvivesFailingTransfer() throws InterruptedException {
+    CopyScheduler<Transfer> scheduler = new CopyScheduler<>(2);
+    AtomicInteger done = new AtomicInteger();
+    Transfer failing =
+        () -> {
+          throw new IllegalStateException();
+        };
+    scheduler.submit(OpenMode.FILE, failing);
+    scheduler.submit(OpenMode.FILE, done::incrementAndGet);
+    scheduler.awaitCompletion();
+    List<Transfer> notDone = scheduler.shutdown();
+
+    assertEquals(1, done.get());
+    assertEquals(1, notDone.size());
+    assertSame(failing, notDone.get(0));
+  }
+
+  @Test
+  public void testReturnsDroppedTransfers() throws InterruptedException {
+    CopyScheduler<Transfer> scheduler = new CopyScheduler<>(1);
+    CountDownLatch started = new CountDownLatch(1);
+    scheduler.submit(
+        OpenMode.FILE,
+        () -> {
+          started.countDown();
+          try {
+            Thread.sleep(TimeUnit.SECONDS.toMillis(10));
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+        });
+    assertTrue(started.await(5, TimeUnit.SECONDS));
+    Transfer queued = () -> {};
+    scheduler.submit(OpenMode.FILE, queued);
+
+    // stopped without awaiting completion, the running transfer is interrupted
+    List<Transfer> notDone = scheduler.shutdown();
+
+    assertEquals(1, notDone.size());
+    assertSame(queued, notDone.get(0));
+  }
+
+  private static int getMaxConcurrency(OpenMode openMode, int workers)
+      throws InterruptedException {
+    CopyScheduler<Transfer> scheduler = new CopyScheduler<>(workers);
+    AtomicInteger running = new AtomicInteger(), maxRunning = new AtomicInteger();
+    for (int i = 0; i < workers * 8; i++) {
+      scheduler.submit(
+          openMode,
+          () -> {
+            int now = running.incrementAndGet();
+            maxRunning.accumulateAndGet(now, Math::max);
+            try {
+              Thread.sleep(20);
+            } catch (InterruptedException e) {
+              Thread.currentThread().interrupt();
+            }
+            running.decrementAndGet();
+          });
+    }
+    scheduler.awaitCompletion();
+    scheduler.shutdown();
+
+    assertTrue(maxRunning.get() > 0);
+    return maxRunning.get();
+  }
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright (C) 2014-2020 Arpit Khurana <arpitkh96@gmail.com>, Vishal Nehra <vishalmeham2@gmail.com>,
+ * Emmanuel Messulam<emmanuelbendavid@gmail.com>, Raymond Lai <airwave209gt at gmail.com> and Contributors.
+ *
+ * This file is part of Amaze File Manager.
+ *
+ * Amaze File Manager is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.amaze.filemanager.database;
+
+import static android.os.Build.VERSION_CODES.JELLY_BEAN;
+import static android.os.Build.VERSION_CODES.KITKAT;
+import static android.os.Build.VERSION_CODES.P;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.annotation.Config;
+
+import com.amaze.filemanager.adapters.data.LayoutElementParcelable;
+import com.amaze.filemanager.database.models.listingcache.CachedDirectory;
+import com.amaze.filemanager.database.models.listingcache.CachedEntry;
+import com.amaze.filemanager.shadows.ShadowMultiDex;
+import com.amaze.filemanager.utils.OpenMode;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+@RunWith(AndroidJUnit4.class)
+@Config(
+    shadows = {ShadowMultiDex.class},
+    sdk = {JELLY_BEAN, KITKAT, P})
+public class ListingCacheHandlerTest {
+
+  @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Test
+  public void testLocalListingValidUntilDirectoryChanges() throws Exception {
+    File dir = temporaryFolder.newFolder("dir");
+    assertTrue(dir.setLastModified(1000000000000L));
+
+    ListingCacheHandler.Listing listing =
+        createListing(dir.getPath(), OpenMode.FILE, dir.lastModified(), 0);
+    assertTrue(listing.isValid());
+
+    assertTrue(dir.setLastModified(1000000005000L));
+    assertFalse(listing.isValid());
+  }
+
+  @Test
+  public void testLocalListingWithoutModificationTimeIsInvalid() {
+    ListingCacheHandler.Listing listing =
+        createListing("/does/not/exist", OpenMode.FILE, 0, System.currentTimeMillis());
+    assertFalse(listing.isValid());
+  }
+
+  @Test
+  public void testRemoteListingValidForTtl() {
+    long now = System.currentTimeMillis();
+    assertTrue(createListing("smb://host/share/", OpenMode.SMB, 0, now).isValid());
+    assertFalse(
+        createListing(
+                "smb://host/share/",
+                OpenMode.SMB,
+                0,
+                now - ListingCacheHandler.REMOTE_TTL_MILLIS - 1)
+            .isValid());
+  }
+
+  @Test
+  public void testListingsWithLoginsArentPersisted() {
+    assertTrue(ListingCacheHandler.isPersistable(OpenMode.FILE));
+    assertTrue(ListingCacheHandler.isPersistable(OpenMode.GDRIVE));
+    assertFalse(ListingCacheHandler.isPersistable(OpenMode.SMB));
+    assertFalse(ListingCacheHandler.isPersistable(OpenMode.SFTP));
+  }
+
+  @Test
+  public void testToElements() {
+    CachedDirectory directory =
+        new CachedDirectory("/dir", OpenMode.FILE, OpenMode.ROOT, 1, false, 1);
+    ArrayList<CachedEntry> entries = new ArrayList<>();
+    entries.add(
+        new CachedEntry(
+            "/dir", OpenMode.FILE, "/dir/a", "a", "rwx", null, -1, 42, false, OpenMode.ROOT));
+    entries.add(
+        new CachedEntry(
+            "/dir", OpenMode.FILE, "/dir/b", "b", null, "/c", 0, 43, true, OpenMode.ROOT));
+
+    ArrayList<LayoutElementParcelable> elements =
+        new ListingCacheHandler.Listing(directory, entries).toElements(true);
+    assertEquals(2, elements.size());
+
+    LayoutElementParcelable file = elements.get(0);
+    assertEquals("/dir/a", file.desc);
+    assertEquals("a", file.title);
+    assertEquals("rwx", file.permissions);
+    assertEquals("", file.symlink);
+    assertTrue(file.isSizeUnknown());
+    assertEquals(42, file.date);
+    assertFalse(file.isDirectory);
+    assertEquals(OpenMode.ROOT, file.getMode());
+
+    LayoutElementParcelable folder = elements.get(1);
+    assertEquals("", folder.permissions);
+    assertEquals("/c", folder.symlink);
+    assertFalse(folder.isSizeUnknown());
+    assertTrue(folder.isDirectory);
+  }
+
+  private static ListingCacheHandler.Listing createListing(
+      String path, OpenMode openMode, long lastModified, long cachedAt) {
+    CachedDirectory directory =
+        new CachedDirectory(path, openMode, openMode, lastModified, false, cachedAt);
+    return new ListingCacheHandler.Listing(directory, Collections.emptyList());
+  }
+}
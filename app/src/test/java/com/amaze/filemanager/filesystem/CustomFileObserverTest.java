@@ -0,0 +1,122 @@
+/*
+ * Copyright (C) 2014-2020 Arpit Khurana <arpitkh96@gmail.com>, Vishal Nehra <vishalmeham2@gmail.com>,
+ * Emmanuel Messulam<emmanuelbendavid@gmail.com>, Raymond Lai <airwave209gt at gmail.com> and Contributors.
+ *
+ * This file is part of Amaze File Manager.
+ *
+ * Amaze File Manager is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.amaze.filemanager.filesystem;
+
+import static android.os.Build.VERSION_CODES.P;
+import static android.os.FileObserver.CREATE;
+import static android.os.FileObserver.DELETE;
+import static android.os.FileObserver.DELETE_SELF;
+import static android.os.FileObserver.MOVED_FROM;
+import static android.os.FileObserver.MOVED_TO;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.annotation.Config;
+
+import com.amaze.filemanager.shadows.ShadowMultiDex;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Message;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+@RunWith(AndroidJUnit4.class)
+@Config(
+    shadows = {ShadowMultiDex.class},
+    sdk = {P})
+public class CustomFileObserverTest {
+
+  @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private final BlockingQueue<Message> messages = new LinkedBlockingQueue<>();
+
+  private CustomFileObserver observer;
+
+  @Before
+  public void setUp() {
+    Handler handler =
+        new Handler(Looper.getMainLooper()) {
+          @Override
+          public boolean sendMessageAtTime(Message msg, long uptimeMillis) {
+            messages.add(Message.obtain(msg));
+            return true;
+          }
+        };
+    observer = new CustomFileObserver(temporaryFolder.getRoot().getPath(), handler);
+  }
+
+  @Test
+  public void testBurstIsSentOnce() throws InterruptedException {
+    observer.onEvent(CREATE, "a");
+    observer.onEvent(CREATE, "b");
+    observer.onEvent(DELETE, "a");
+    observer.onEvent(MOVED_TO, "c");
+    observer.onEvent(MOVED_FROM, "d");
+
+    CustomFileObserver.Changes changes = pollChanges(2000);
+    assertEquals(new HashSet<>(Arrays.asList("b", "c")), changes.added);
+    assertEquals(new HashSet<>(Arrays.asList("a", "d")), changes.removed);
+    assertNull(messages.poll(CustomFileObserver.BATCH_WINDOW_MILLIS * 3, TimeUnit.MILLISECONDS));
+  }
+
+  @Test
+  public void testNextBurstIsDeferred() throws InterruptedException {
+    observer.onEvent(CREATE, "a");
+    assertEquals(new HashSet<>(Arrays.asList("a")), pollChanges(2000).added);
+
+    observer.onEvent(DELETE, "a");
+    observer.onEvent(CREATE, "b");
+    assertNull(messages.poll(CustomFileObserver.BATCH_WINDOW_MILLIS * 3, TimeUnit.MILLISECONDS));
+
+    CustomFileObserver.Changes changes = pollChanges(10000);
+    assertEquals(new HashSet<>(Arrays.asList("b")), changes.added);
+    assertEquals(new HashSet<>(Arrays.asList("a")), changes.removed);
+  }
+
+  @Test
+  public void testDeleteSelfGoesBack() throws InterruptedException {
+    observer.onEvent(DELETE_SELF, null);
+
+    Message message = messages.poll(0, TimeUnit.MILLISECONDS);
+    assertNotNull(message);
+    assertEquals(CustomFileObserver.GOBACK, message.what);
+  }
+
+  private CustomFileObserver.Changes pollChanges(long timeoutMillis) throws InterruptedException {
+    Message message = messages.poll(timeoutMillis, TimeUnit.MILLISECONDS);
+    assertNotNull(message);
+    assertEquals(CustomFileObserver.CHANGED, message.what);
+    return (CustomFileObserver.Changes) message.obj;
+  }
+}
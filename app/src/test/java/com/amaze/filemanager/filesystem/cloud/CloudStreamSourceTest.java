@@ -30,10 +30,14 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 
 import org.junit.After;
 import org.junit.Before;
@@ -45,6 +49,7 @@ import com.amaze.filemanager.shadows.ShadowMultiDex;
 
 import android.os.Environment;
 
+import androidx.annotation.NonNull;
 import androidx.test.ext.junit.runners.AndroidJUnit4;
 
 /** Created by Rustam Khadipash on 31/3/2018. */
@@ -271,4 +276,47 @@ public class CloudStreamSourceTest {
     cs.reset();
     assertEquals(len, cs.availableExact());
   }
+
+  /**
+   * Purpose: Seek in a file that can be opened at any offset, then read it again Input:
+   * moveTo(position), read(buff) Expected: the download is opened at the position once, then
+   * served from the spill cache
+   */
+  @Test
+  public void seekWithSpillCache() throws IOException {
+    final List<Long> offsets = new ArrayList<>();
+    CloudStreamSource.Opener opener =
+        new CloudStreamSource.Opener() {
+          @Override
+          public boolean isSeekable() {
+            return true;
+          }
+
+          @NonNull
+          @Override
+          public InputStream open(long offset) throws IOException {
+            offsets.add(offset);
+            InputStream inputStream = new FileInputStream(testFilePath);
+            inputStream.skip(offset);
+            return inputStream;
+          }
+        };
+    SpillCache spillCache = new SpillCache(File.createTempFile("test", ".spill"));
+
+    for (int i = 0; i < 2; i++) {
+      CloudStreamSource source = new CloudStreamSource(fn, len, opener, spillCache);
+      source.moveTo(12);
+      source.setLimit(16);
+      source.open();
+
+      byte[] buff = new byte[100];
+      assertEquals(4, source.read(buff));
+      assertArrayEquals(Arrays.copyOfRange(text, 12, 16), Arrays.copyOf(buff, 4));
+      assertEquals(-1, source.read(buff));
+      source.close();
+    }
+
+    assertEquals(Collections.singletonList(12L), offsets);
+    spillCache.close();
+  }
 }
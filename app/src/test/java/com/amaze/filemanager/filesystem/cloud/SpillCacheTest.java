@@ -0,0 +1,110 @@
+/*
+ * Copyright (C) 2014-2020 Arpit Khurana <arpitkh96@gmail.com>, Vishal Nehra <vishalmeham2@gmail.com>,
+ * Emmanuel Messulam<emmanuelbendavid@gmail.com>, Raymond Lai <airwave209gt at gmail.com> and Contributors.
+ *
+ * This file is part of Amaze File Manager.
+ *
+ * Amaze File Manager is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.amaze.filemanager.filesystem.cloud;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class SpillCacheTest {
+
+  @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private byte[] content;
+  private File file;
+  private SpillCache spillCache;
+
+  @Before
+  public void setUp() throws IOException {
+    content = new byte[1000];
+    new Random(1).nextBytes(content);
+    file = temporaryFolder.newFile();
+    spillCache = new SpillCache(file, 800);
+  }
+
+  @After
+  public void tearDown() {
+    spillCache.close();
+  }
+
+  @Test
+  public void testReadCachedRange() throws IOException {
+    spillCache.write(100, content, 100, 200);
+    assertTrue(spillCache.contains(100));
+    assertTrue(spillCache.contains(299));
+    assertFalse(spillCache.contains(99));
+    assertFalse(spillCache.contains(300));
+
+    byte[] buffer = new byte[500];
+    assertEquals(150, spillCache.read(150, buffer, 0, buffer.length));
+    assertArrayEquals(Arrays.copyOfRange(content, 150, 300), Arrays.copyOf(buffer, 150));
+    assertEquals(0, spillCache.read(300, buffer, 0, buffer.length));
+  }
+
+  @Test
+  public void testMergeRanges() throws IOException {
+    spillCache.write(0, content, 0, 100);
+    spillCache.write(200, content, 200, 100);
+    assertEquals(200, spillCache.size());
+
+    // Fills the gap and overlaps both neighbours
+    spillCache.write(50, content, 50, 200);
+    assertEquals(300, spillCache.size());
+
+    byte[] buffer = new byte[300];
+    assertEquals(300, spillCache.read(0, buffer, 0, buffer.length));
+    assertArrayEquals(Arrays.copyOf(content, 300), buffer);
+  }
+
+  @Test
+  public void testMaxSize() throws IOException {
+    spillCache.write(0, content, 0, 700);
+    spillCache.write(800, content, 800, 200);
+    assertEquals(700, spillCache.size());
+    assertFalse(spillCache.contains(800));
+
+    // Data cached already doesn't count again
+    spillCache.write(600, content, 600, 150);
+    assertEquals(750, spillCache.size());
+  }
+
+  @Test
+  public void testClose() throws IOException {
+    spillCache.write(0, content, 0, 100);
+    spillCache.close();
+
+    assertFalse(file.exists());
+    assertFalse(spillCache.contains(0));
+    assertEquals(0, spillCache.read(0, new byte[10], 0, 10));
+  }
+}
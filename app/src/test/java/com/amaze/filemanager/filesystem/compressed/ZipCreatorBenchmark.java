@@ -0,0 +1,111 @@
+/*
+ * Copyright (C) 2014-2020 Arpit Khurana <arpitkh96@gmail.com>, Vishal Nehra <vishalmeham2@gmail.com>,
+ * Emmanuel Messulam<emmanuelbendavid@gmail.com>, Raymond Lai <airwave209gt at gmail.com> and Contributors.
+ *
+ * This file is part of Amaze File Manager.
+ *
+ * Amaze File Manager is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.amaze.filemanager.filesystem.compressed;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Collections;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Ignore;
+import org.junit.Test;
+
+import com.amaze.filemanager.test.DummyFileGenerator;
+
+/**
+ * Measures the time {@link ZipCreator} takes to compress a directory of files with different
+ * numbers of threads: warmup iterations first, then the mean of the measured iterations.
+ */
+@Ignore("Benchmark, remove to run manually")
+public class ZipCreatorBenchmark {
+
+  private static final int WARMUP_ITERATIONS = 2;
+  private static final int MEASURED_ITERATIONS = 3;
+
+  private static final int FILES = 64;
+  private static final int FILE_SIZE = 8 * 1024 * 1024;
+
+  private File source, scatterDirectory, target;
+
+  @Before
+  public void setUp() throws IOException {
+    source = createDirectory("benchmark");
+    scatterDirectory = createDirectory("scatter");
+    target = File.createTempFile("benchmark", ".zip");
+
+    for (int i = 0; i < FILES; i++) {
+      File file = new File(source, i + ".bin");
+      // half random, half zeroes, so that deflating takes time and gains something
+      DummyFileGenerator.createFile(file, FILE_SIZE / 2);
+      try (FileOutputStream outputStream = new FileOutputStream(file, true)) {
+        outputStream.write(new byte[FILE_SIZE / 2]);
+      }
+    }
+  }
+
+  @After
+  public void tearDown() {
+    for (File file : source.listFiles()) {
+      file.delete();
+    }
+    source.delete();
+    scatterDirectory.delete();
+    target.delete();
+  }
+
+  @Test
+  public void benchmark() throws IOException {
+    int processors = Runtime.getRuntime().availableProcessors();
+    for (int threads = 1; threads <= processors; threads <<= 1) {
+      System.out.printf(
+          "%d MB in %d files, %d threads: %.1f MB/s%n",
+          (long) FILES * FILE_SIZE >> 20, FILES, threads, measure(threads));
+    }
+  }
+
+  private double measure(int threads) throws IOException {
+    for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+      compressOnce(threads);
+    }
+
+    long total = 0;
+    for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+      total += compressOnce(threads);
+    }
+    return (double) FILES * FILE_SIZE * MEASURED_ITERATIONS / (total / 1_000_000_000d) / (1 << 20);
+  }
+
+  private long compressOnce(int threads) throws IOException {
+    long start = System.nanoTime();
+    new ZipCreator(threads, scatterDirectory, null)
+        .compress(Collections.singletonList(source), new FileOutputStream(target));
+    return System.nanoTime() - start;
+  }
+
+  private static File createDirectory(String prefix) throws IOException {
+    File directory = File.createTempFile(prefix, "");
+    directory.delete();
+    directory.mkdirs();
+    return directory;
+  }
+}
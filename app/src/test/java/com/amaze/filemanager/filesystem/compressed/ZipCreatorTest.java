@@ -0,0 +1,201 @@
+/*
+ * Copyright (C) 2014-2020 Arpit Khurana <arpitkh96@gmail.com>, Vishal Nehra <vishalmeham2@gmail.com>,
+ * Emmanuel Messulam<emmanuelbendavid@gmail.com>, Raymond Lai <airwave209gt at gmail.com> and Contributors.
+ *
+ * This file is part of Amaze File Manager.
+ *
+ * Amaze File Manager is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.amaze.filemanager.filesystem.compressed;
+
+import static android.os.Build.VERSION_CODES.JELLY_BEAN;
+import static android.os.Build.VERSION_CODES.KITKAT;
+import static android.os.Build.VERSION_CODES.P;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Shadows;
+import org.robolectric.annotation.Config;
+
+import com.amaze.filemanager.shadows.ShadowMultiDex;
+import com.amaze.filemanager.utils.ProgressHandler;
+
+import android.webkit.MimeTypeMap;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+@RunWith(AndroidJUnit4.class)
+@Config(
+    shadows = {ShadowMultiDex.class},
+    sdk = {JELLY_BEAN, KITKAT, P})
+public class ZipCreatorTest {
+
+  private File root;
+  private File scatterDirectory;
+  private File zipFile;
+  private Map<String, byte[]> contents;
+
+  @Before
+  public void setUp() throws IOException {
+    // By default Robolectric's MimeTypeMap is empty, we need to populate them
+    Shadows.shadowOf(MimeTypeMap.getSingleton()).addExtensionMimeTypMapping("jpg", "image/jpeg");
+
+    root = createDirectory("root");
+    scatterDirectory = createDirectory("scatter");
+    zipFile = File.createTempFile("test", ".zip");
+
+    contents = new HashMap<>();
+    File photos = new File(root, "photos");
+    createFile(new File(photos, "a.jpg"), randomBytes(300 * 1024));
+    createFile(new File(photos, "b.txt"), repeatedBytes(200 * 1024));
+    createFile(new File(photos, "sub/c.txt"), repeatedBytes(10));
+    createFile(new File(root, "d.txt"), new byte[0]);
+  }
+
+  @After
+  public void tearDown() {
+    delete(root);
+    delete(scatterDirectory);
+    zipFile.delete();
+  }
+
+  @Test
+  public void testCompress() throws IOException {
+    ProgressHandler progressHandler = new ProgressHandler();
+    new ZipCreator(3, scatterDirectory, progressHandler)
+        .compress(
+            Arrays.asList(new File(root, "photos"), new File(root, "d.txt")),
+            new FileOutputStream(zipFile));
+
+    Map<String, byte[]> entries = new HashMap<>();
+    try (ZipFile zip = new ZipFile(zipFile)) {
+      Enumeration<? extends ZipEntry> e = zip.entries();
+      while (e.hasMoreElements()) {
+        ZipEntry entry = e.nextElement();
+        try (InputStream inputStream = zip.getInputStream(entry)) {
+          entries.put(entry.getName(), readAll(inputStream));
+        }
+        assertEquals(
+            entry.getName(),
+            entry.getName().endsWith(".jpg") ? ZipEntry.STORED : ZipEntry.DEFLATED,
+            entry.getMethod());
+      }
+    }
+
+    assertEquals(contents.keySet(), entries.keySet());
+    long size = 0;
+    for (Map.Entry<String, byte[]> entry : contents.entrySet()) {
+      assertArrayEquals(entry.getKey(), entry.getValue(), entries.get(entry.getKey()));
+      size += entry.getValue().length;
+    }
+    assertEquals(size, progressHandler.getPosition());
+    assertEquals(2, progressHandler.getSourceFilesProcessed());
+    assertEquals(0, scatterDirectory.list().length);
+  }
+
+  @Test
+  public void testCancel() throws IOException {
+    ProgressHandler progressHandler = new ProgressHandler();
+    progressHandler.setCancelled(true);
+    new ZipCreator(2, scatterDirectory, progressHandler)
+        .compress(Arrays.asList(root.listFiles()), new FileOutputStream(zipFile));
+
+    assertEquals(0, progressHandler.getPosition());
+    assertEquals(0, progressHandler.getSourceFilesProcessed());
+    assertEquals(0, scatterDirectory.list().length);
+  }
+
+  @Test
+  public void testMissingFile() throws IOException {
+    try {
+      new ZipCreator(2, scatterDirectory, null)
+          .compress(
+              Arrays.asList(new File(root, "photos"), new File(root, "missing.txt")),
+              new FileOutputStream(zipFile));
+      fail("Missing file was compressed");
+    } catch (FileNotFoundException expected) {
+      assertEquals(0, scatterDirectory.list().length);
+    }
+  }
+
+  private void createFile(File file, byte[] bytes) throws IOException {
+    file.getParentFile().mkdirs();
+    try (FileOutputStream outputStream = new FileOutputStream(file)) {
+      outputStream.write(bytes);
+    }
+    String path = file.getAbsolutePath().substring(root.getAbsolutePath().length());
+    contents.put(path, bytes);
+  }
+
+  private static File createDirectory(String prefix) throws IOException {
+    File directory = File.createTempFile(prefix, "");
+    directory.delete();
+    directory.mkdirs();
+    return directory;
+  }
+
+  private static void delete(File file) {
+    File[] children = file.listFiles();
+    if (children != null) {
+      for (File child : children) {
+        delete(child);
+      }
+    }
+    file.delete();
+  }
+
+  private static byte[] readAll(InputStream inputStream) throws IOException {
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    byte[] buffer = new byte[8192];
+    int count;
+    while ((count = inputStream.read(buffer)) != -1) {
+      outputStream.write(buffer, 0, count);
+    }
+    return outputStream.toByteArray();
+  }
+
+  private static byte[] randomBytes(int size) {
+    byte[] bytes = new byte[size];
+    new Random(size).nextBytes(bytes);
+    return bytes;
+  }
+
+  private static byte[] repeatedBytes(int size) {
+    byte[] bytes = new byte[size];
+    for (int i = 0; i < size; i++) {
+      bytes[i] = (byte) ('a' + i % 26);
+    }
+    return bytes;
+  }
+}
@@ -0,0 +1,257 @@
+/*
+ * Copyright (C) 2014-2020 Arpit Khurana <arpitkh96@gmail.com>, Vishal Nehra <vishalmeham2@gmail.com>,
+ * Emmanuel Messulam<emmanuelbendavid@gmail.com>, Raymond Lai <airwave209gt at gmail.com> and Contributors.
+ *
+ * This file is part of Amaze File Manager.
+ *
+ * Amaze File Manager is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.amaze.filemanager.filesystem.compressed.extractcontents;
+
+import static android.os.Build.VERSION_CODES.JELLY_BEAN;
+import static android.os.Build.VERSION_CODES.KITKAT;
+import static android.os.Build.VERSION_CODES.P;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.annotation.Config;
+
+import com.amaze.filemanager.shadows.ShadowMultiDex;
+
+import androidx.annotation.NonNull;
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+@RunWith(AndroidJUnit4.class)
+@Config(
+    shadows = {ShadowMultiDex.class},
+    sdk = {JELLY_BEAN, KITKAT, P})
+public class ParallelEntryExtractorTest {
+
+  private static final int FILES = 20;
+
+  private File outputDirectory;
+  private List<ParallelEntryExtractor.Entry> entries;
+  private List<byte[]> contents;
+  private FakeArchive archive;
+  private RecordingListener listener;
+
+  @Before
+  public void setUp() throws IOException {
+    outputDirectory = File.createTempFile("test", "");
+    outputDirectory.delete();
+    outputDirectory.mkdirs();
+
+    entries = new ArrayList<>();
+    contents = new ArrayList<>();
+    addEntry("empty/", null);
+    for (int i = 0; i < FILES; i++) {
+      // no entry for the directory of the odd files, it is created anyway
+      byte[] bytes = new byte[1000 * i];
+      new Random(i).nextBytes(bytes);
+      addEntry((i % 2 == 0 ? "even/" : "odd/") + i + ".bin", bytes);
+    }
+    addEntry("even/", null);
+
+    archive = new FakeArchive();
+    listener = new RecordingListener();
+  }
+
+  @After
+  public void tearDown() {
+    delete(outputDirectory);
+  }
+
+  @Test
+  public void testExtractInParallel() throws IOException {
+    new ParallelEntryExtractor<>(ApplicationProvider.getApplicationContext(), archive, listener, 3)
+        .extract("caller", entries, true);
+
+    assertExtracted();
+    // the pool reads through handles of its own, all closed afterwards
+    assertTrue(archive.opened.get() > 0 && archive.opened.get() <= 3);
+    assertEquals(archive.opened.get(), archive.closed.get());
+    assertFalse(archive.readers.contains(Thread.currentThread()));
+  }
+
+  @Test
+  public void testExtractSerially() throws IOException {
+    new ParallelEntryExtractor<>(ApplicationProvider.getApplicationContext(), archive, listener, 3)
+        .extract("caller", entries, false);
+
+    assertExtracted();
+    // files are read on the calling thread, in their order in the archive
+    assertEquals(0, archive.opened.get());
+    assertEquals(Collections.singleton(Thread.currentThread()), archive.readers);
+    for (int i = 1; i < archive.order.size(); i++) {
+      assertTrue(archive.order.get(i - 1) < archive.order.get(i));
+    }
+  }
+
+  @Test
+  public void testFailure() {
+    archive.failingIndex = 7;
+    try {
+      new ParallelEntryExtractor<>(
+              ApplicationProvider.getApplicationContext(), archive, listener, 3)
+          .extract("caller", entries, true);
+      fail("Failure was not thrown");
+    } catch (IOException expected) {
+      assertEquals("Broken entry", expected.getMessage());
+    }
+    assertEquals(archive.opened.get(), archive.closed.get());
+  }
+
+  @Test
+  public void testCancel() throws IOException {
+    listener.cancelled = true;
+    new ParallelEntryExtractor<>(ApplicationProvider.getApplicationContext(), archive, listener, 3)
+        .extract("caller", entries, true);
+
+    assertEquals(0, archive.order.size());
+    assertEquals(0, listener.progress);
+  }
+
+  private void assertExtracted() throws IOException {
+    long size = 0;
+    Set<String> names = new HashSet<>();
+    for (int i = 0; i < entries.size(); i++) {
+      ParallelEntryExtractor.Entry entry = entries.get(i);
+      names.add(entry.name);
+      if (entry.isDirectory) {
+        assertTrue(entry.outputFile.isDirectory());
+      } else {
+        assertArrayEquals(contents.get(i), readAll(entry.outputFile));
+        size += contents.get(i).length;
+      }
+    }
+    assertEquals(size, listener.progress);
+    assertEquals(names, new HashSet<>(listener.updated));
+    assertEquals(entries.size(), listener.updated.size());
+    // every callback was made on the calling thread
+    assertEquals(Collections.singleton(Thread.currentThread()), listener.threads);
+  }
+
+  private void addEntry(String name, byte[] bytes) {
+    entries.add(
+        new ParallelEntryExtractor.Entry(
+            entries.size(), name, new File(outputDirectory, name), bytes == null));
+    contents.add(bytes);
+  }
+
+  private static byte[] readAll(File file) throws IOException {
+    byte[] bytes = new byte[(int) file.length()];
+    try (InputStream inputStream = new FileInputStream(file)) {
+      int total = 0;
+      int count;
+      while (total < bytes.length
+          && (count = inputStream.read(bytes, total, bytes.length - total)) != -1) {
+        total += count;
+      }
+    }
+    return bytes;
+  }
+
+  private static void delete(File file) {
+    File[] children = file.listFiles();
+    if (children != null) {
+      for (File child : children) {
+        delete(child);
+      }
+    }
+    file.delete();
+  }
+
+  private class FakeArchive implements ParallelEntryExtractor.Archive<String> {
+    final AtomicInteger opened = new AtomicInteger();
+    final AtomicInteger closed = new AtomicInteger();
+    final Set<Thread> readers = Collections.synchronizedSet(new HashSet<>());
+    final List<Integer> order = Collections.synchronizedList(new ArrayList<>());
+    volatile int failingIndex = -1;
+
+    @NonNull
+    @Override
+    public String open() {
+      return "handle" + opened.incrementAndGet();
+    }
+
+    @NonNull
+    @Override
+    public InputStream getInputStream(@NonNull String handle, int index) throws IOException {
+      if (index == failingIndex) {
+        throw new IOException("Broken entry");
+      }
+      readers.add(Thread.currentThread());
+      order.add(index);
+      return new ByteArrayInputStream(contents.get(index));
+    }
+
+    @Override
+    public void close(@NonNull String handle) {
+      closed.incrementAndGet();
+    }
+  }
+
+  private static class RecordingListener implements Extractor.OnUpdate {
+    final List<String> updated = new ArrayList<>();
+    final Set<Thread> threads = new HashSet<>();
+    long progress;
+    boolean cancelled;
+
+    @Override
+    public void onStart(long totalBytes, String firstEntryName) {}
+
+    @Override
+    public void onUpdate(String entryPath) {
+      threads.add(Thread.currentThread());
+      updated.add(entryPath);
+    }
+
+    @Override
+    public void onFinish() {}
+
+    @Override
+    public boolean isCancelled() {
+      threads.add(Thread.currentThread());
+      return cancelled;
+    }
+
+    @Override
+    public void onProgress(long length) {
+      threads.add(Thread.currentThread());
+      progress += length;
+    }
+  }
+}
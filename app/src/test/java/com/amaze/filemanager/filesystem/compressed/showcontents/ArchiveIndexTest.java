@@ -0,0 +1,170 @@
+/*
+ * Copyright (C) 2014-2020 Arpit Khurana <arpitkh96@gmail.com>, Vishal Nehra <vishalmeham2@gmail.com>,
+ * Emmanuel Messulam<emmanuelbendavid@gmail.com>, Raymond Lai <airwave209gt at gmail.com> and Contributors.
+ *
+ * This file is part of Amaze File Manager.
+ *
+ * Amaze File Manager is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.amaze.filemanager.filesystem.compressed.showcontents;
+
+import static android.os.Build.VERSION_CODES.JELLY_BEAN;
+import static android.os.Build.VERSION_CODES.KITKAT;
+import static android.os.Build.VERSION_CODES.P;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.annotation.Config;
+
+import com.amaze.filemanager.adapters.data.CompressedObjectParcelable;
+import com.amaze.filemanager.shadows.ShadowMultiDex;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+@RunWith(AndroidJUnit4.class)
+@Config(
+    shadows = {ShadowMultiDex.class},
+    sdk = {JELLY_BEAN, KITKAT, P})
+public class ArchiveIndexTest {
+
+  @After
+  public void tearDown() {
+    ArchiveIndex.clear();
+  }
+
+  @Test
+  public void testListDirectories() {
+    ArchiveIndex index = new ArchiveIndex();
+    index.add(new CompressedObjectParcelable("a/", 1, 0, true));
+    index.add(new CompressedObjectParcelable("a/b.txt", 2, 10, false));
+    index.add(new CompressedObjectParcelable("a/c/d.txt", 3, 20, false));
+    index.add(new CompressedObjectParcelable("e.txt", 4, 30, false));
+
+    assertEquals(5, index.size());
+    assertEquals(names("a", "e.txt"), names(index.list("")));
+    assertEquals(names("c", "b.txt"), names(index.list("a")));
+    assertEquals(names("c", "b.txt"), names(index.list("a/")));
+    assertEquals(names("d.txt"), names(index.list("a/c")));
+    assertTrue(index.list("a/c/d.txt").isEmpty());
+    assertTrue(index.list("f").isEmpty());
+  }
+
+  @Test
+  public void testImplicitDirectories() {
+    ArchiveIndex index = new ArchiveIndex();
+    index.add(new CompressedObjectParcelable("/a/b/c.txt", 5, 10, false));
+
+    ArrayList<CompressedObjectParcelable> root = index.list(null);
+    assertEquals(1, root.size());
+    assertEquals("a/", root.get(0).path);
+    assertTrue(root.get(0).directory);
+    assertEquals("a/b/", index.list("a").get(0).path);
+    assertEquals("/a/b/c.txt", index.list("/a/b/").get(0).path);
+
+    // the entry of the directory itself comes after its children
+    index.add(new CompressedObjectParcelable("a/", 6, 0, true));
+    assertEquals(6, index.list("").get(0).date);
+    assertEquals(3, index.size());
+  }
+
+  @Test
+  public void testDuplicateEntries() {
+    ArchiveIndex index = new ArchiveIndex();
+    index.add(new CompressedObjectParcelable("a.txt", 1, 10, false));
+    index.add(new CompressedObjectParcelable("a.txt", 2, 20, false));
+    index.add(new CompressedObjectParcelable("b/", 3, 0, true));
+    index.add(new CompressedObjectParcelable("b/", 4, 0, true));
+
+    assertEquals(2, index.size());
+    ArrayList<CompressedObjectParcelable> root = index.list("");
+    Collections.sort(root, new CompressedObjectParcelable.Sorter());
+    assertEquals(3, root.get(0).date);
+    assertEquals(1, root.get(1).date);
+  }
+
+  @Test
+  public void testCachedUntilArchiveChanges() throws IOException {
+    File archive = File.createTempFile("archive", ".zip");
+    archive.deleteOnExit();
+    write(archive, 16);
+
+    assertNull(ArchiveIndex.get(archive.getPath()));
+    ArchiveIndex index = new ArchiveIndex();
+    index.add(new CompressedObjectParcelable("a.txt", 1, 10, false));
+    ArchiveIndex.put(archive.getPath(), index);
+    assertSame(index, ArchiveIndex.get(archive.getPath()));
+
+    write(archive, 32);
+    assertNull(ArchiveIndex.get(archive.getPath()));
+  }
+
+  @Test
+  public void testEvictsLeastRecentlyUsed() {
+    ArchiveIndex big = new ArchiveIndex();
+    // two of these fill the cache
+    for (int i = 0; big.size() < ArchiveIndex.MAX_CACHED_ENTRIES / 2 - 1; i++) {
+      big.add(new CompressedObjectParcelable("dir" + (i % 100) + "/" + i, 0, 0, false));
+    }
+    ArchiveIndex other = new ArchiveIndex();
+    other.add(new CompressedObjectParcelable("a.txt", 1, 10, false));
+
+    ArchiveIndex.put("/first.zip", big);
+    ArchiveIndex.put("/second.zip", other);
+    assertNotNull(ArchiveIndex.get("/first.zip"));
+    ArchiveIndex.put("/third.zip", big);
+
+    assertNull(ArchiveIndex.get("/second.zip"));
+    assertSame(big, ArchiveIndex.get("/first.zip"));
+    assertSame(big, ArchiveIndex.get("/third.zip"));
+    assertFalse(ArchiveIndex.get("/first.zip").list("dir7").isEmpty());
+  }
+
+  private static ArrayList<String> names(String... names) {
+    ArrayList<String> list = new ArrayList<>();
+    Collections.addAll(list, names);
+    return list;
+  }
+
+  private static ArrayList<String> names(ArrayList<CompressedObjectParcelable> entries) {
+    Collections.sort(entries, new CompressedObjectParcelable.Sorter());
+    ArrayList<String> list = new ArrayList<>();
+    for (CompressedObjectParcelable entry : entries) {
+      list.add(entry.name);
+    }
+    return list;
+  }
+
+  private static void write(File file, int length) throws IOException {
+    FileOutputStream out = new FileOutputStream(file);
+    try {
+      out.write(new byte[length]);
+    } finally {
+      out.close();
+    }
+  }
+}
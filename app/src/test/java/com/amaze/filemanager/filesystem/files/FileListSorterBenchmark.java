@@ -0,0 +1,128 @@
+/*
+ * Copyright (C) 2014-2020 Arpit Khurana <arpitkh96@gmail.com>, Vishal Nehra <vishalmeham2@gmail.com>,
+ * Emmanuel Messulam<emmanuelbendavid@gmail.com>, Raymond Lai <airwave209gt at gmail.com> and Contributors.
+ *
+ * This file is part of Amaze File Manager.
+ *
+ * Amaze File Manager is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.amaze.filemanager.filesystem.files;
+
+import static android.os.Build.VERSION_CODES.P;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Ignore;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowDateFormat;
+
+import com.amaze.filemanager.adapters.data.LayoutElementParcelable;
+import com.amaze.filemanager.shadows.ShadowMultiDex;
+import com.amaze.filemanager.utils.OpenMode;
+
+import android.content.Context;
+
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+/**
+ * Compares {@link FileListSorter#sort(List)} with {@link Collections#sort(List,
+ * java.util.Comparator)} using the same sorter on synthetic listings, in the manner of a JMH
+ * average time benchmark: warmup iterations first, then the mean time of the measured iterations.
+ */
+@Ignore("Benchmark, remove to run manually")
+@RunWith(AndroidJUnit4.class)
+@Config(
+    shadows = {ShadowMultiDex.class, ShadowDateFormat.class},
+    sdk = {P})
+public class FileListSorterBenchmark {
+
+  private static final int WARMUP_ITERATIONS = 5;
+  private static final int MEASURED_ITERATIONS = 10;
+
+  @Test
+  public void benchmark() {
+    for (int size : new int[] {10_000, 100_000}) {
+      List<LayoutElementParcelable> elements = createElements(size);
+
+      for (int sort = FileListSorter.SORT_BY_NAME;
+          sort <= FileListSorter.SORT_BY_NATURAL_NAME;
+          sort++) {
+        FileListSorter sorter = new FileListSorter(0, sort, 1);
+
+        double comparator = measure(elements, list -> Collections.sort(list, sorter));
+        double sortKeys = measure(elements, sorter::sort);
+
+        System.out.printf(
+            "size %d, sort %d: Collections.sort %.2f ms/op, FileListSorter.sort %.2f ms/op%n",
+            size, sort, comparator, sortKeys);
+      }
+    }
+  }
+
+  private static double measure(List<LayoutElementParcelable> elements, SortAction action) {
+    for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+      action.sort(new ArrayList<>(elements));
+    }
+
+    long total = 0;
+    for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+      List<LayoutElementParcelable> list = new ArrayList<>(elements);
+      long start = System.nanoTime();
+      action.sort(list);
+      total += System.nanoTime() - start;
+    }
+    return total / (MEASURED_ITERATIONS * 1_000_000d);
+  }
+
+  private static List<LayoutElementParcelable> createElements(int size) {
+    Context context = ApplicationProvider.getApplicationContext();
+    String[] extensions = {"jpg", "JPG", "mp4", "png", "txt", "pdf"};
+    Random random = new Random(size);
+    List<LayoutElementParcelable> elements = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      boolean isDirectory = random.nextInt(10) == 0;
+      String title =
+          isDirectory
+              ? "Folder " + random.nextInt(size)
+              : "IMG_" + random.nextInt(size * 10) + "." + extensions[random.nextInt(6)];
+      long longSize = isDirectory ? 0 : random.nextInt(Integer.MAX_VALUE);
+      elements.add(
+          new LayoutElementParcelable(
+              context,
+              title,
+              "/storage/emulated/0/DCIM/" + title,
+              "",
+              "",
+              "",
+              longSize,
+              false,
+              String.valueOf(1_500_000_000_000L + random.nextInt(Integer.MAX_VALUE)),
+              isDirectory,
+              false,
+              OpenMode.FILE));
+    }
+    return elements;
+  }
+
+  private interface SortAction {
+    void sort(List<LayoutElementParcelable> list);
+  }
+}
@@ -28,6 +28,11 @@ import static org.hamcrest.Matchers.lessThan;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertThat;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.robolectric.annotation.Config;
@@ -92,7 +97,8 @@ public class FileListSorterTest {
   /*
      public LayoutElementParcelable(String title, String path, String permissions,
                                 String symlink, String size, long longSize, boolean header,
-                                String date, boolean isDirectory, boolean useThumbs, OpenMode openMode)
+                                String date, boolean isDirectory, boolean useThumbs,
+                                OpenMode openMode)
   */
 
   /**
@@ -944,4 +950,99 @@ public class FileListSorterTest {
 
     assertEquals(fileListSorter.compare(file1, file2), 0);
   }
+
+  /**
+   * Purpose: sorting with precomputed keys gives the same order as the comparator Input: random
+   * names, dates and sizes sorted with every sort mode with folders or files on top Expected: same
+   * order as Collections.sort with the comparator
+   */
+  @Test
+  public void testSortMatchesComparator() {
+    Random random = new Random(42);
+    String alphabet = "aAbBzZ._0129";
+    List<LayoutElementParcelable> elements = new ArrayList<>();
+    for (int i = 0; i < 200; i++) {
+      StringBuilder name = new StringBuilder();
+      for (int j = random.nextInt(6); j >= 0; j--) {
+        name.append(alphabet.charAt(random.nextInt(alphabet.length())));
+      }
+      elements.add(createElement(name.toString(), random.nextBoolean(), random.nextInt(5), 100));
+    }
+
+    for (int dirsOnTop = 0; dirsOnTop <= 1; dirsOnTop++) {
+      for (int sort = FileListSorter.SORT_BY_NAME;
+          sort <= FileListSorter.SORT_BY_NATURAL_NAME;
+          sort++) {
+        for (int asc = -1; asc <= 1; asc += 2) {
+          FileListSorter fileListSorter = new FileListSorter(dirsOnTop, sort, asc);
+          List<LayoutElementParcelable> expected = new ArrayList<>(elements);
+          List<LayoutElementParcelable> actual = new ArrayList<>(elements);
+          Collections.sort(expected, fileListSorter);
+          fileListSorter.sort(actual);
+
+          assertEquals(expected, actual);
+        }
+      }
+    }
+  }
+
+  /**
+   * Purpose: natural sort compares runs of digits by value Input: FileListSorter(0,4,1) sort is 4
+   * Expected: img2 before img10, case and leading zeroes are ignored
+   */
+  @Test
+  public void testSortNaturalName() {
+    List<LayoutElementParcelable> elements = new ArrayList<>();
+    for (String name : new String[] {"img10.jpg", "IMG2.jpg", "img1.jpg", "b1c10", "b1c2"}) {
+      elements.add(createElement(name, false, 1234, 100));
+    }
+
+    new FileListSorter(0, FileListSorter.SORT_BY_NATURAL_NAME, 1).sort(elements);
+
+    List<String> titles = new ArrayList<>();
+    for (LayoutElementParcelable element : elements) {
+      titles.add(element.title);
+    }
+    assertEquals(titles.toString(), "[b1c2, b1c10, img1.jpg, IMG2.jpg, img10.jpg]");
+    assertEquals(FileListSorter.compareNatural("img01", "IMG1"), 0);
+  }
+
+  /**
+   * Purpose: persisted sort types keep their meaning Input: sort types of every sort mode
+   * ascending and descending Expected: legacy values 0 to 7 unchanged, new modes round trip
+   */
+  @Test
+  public void testSortTypeRoundTrip() {
+    assertEquals(FileListSorter.toSortType(FileListSorter.SORT_BY_TYPE, false), 3);
+    assertEquals(FileListSorter.toSortType(FileListSorter.SORT_BY_NAME, true), 4);
+    assertEquals(FileListSorter.getSortBy(6), FileListSorter.SORT_BY_SIZE);
+    assertEquals(FileListSorter.getSortOrder(6), -1);
+
+    for (int sort = FileListSorter.SORT_BY_NAME;
+        sort <= FileListSorter.SORT_BY_NATURAL_NAME;
+        sort++) {
+      for (boolean desc : new boolean[] {false, true}) {
+        int sortType = FileListSorter.toSortType(sort, desc);
+        assertEquals(FileListSorter.getSortBy(sortType), sort);
+        assertEquals(FileListSorter.getSortOrder(sortType), desc ? -1 : 1);
+      }
+    }
+  }
+
+  private static LayoutElementParcelable createElement(
+      String title, boolean isDirectory, long date, long size) {
+    return new LayoutElementParcelable(
+        ApplicationProvider.getApplicationContext(),
+        title,
+        "/storage/emulated/0/" + title,
+        "user",
+        "symlink",
+        String.valueOf(size),
+        size,
+        false,
+        String.valueOf(date),
+        isDirectory,
+        false,
+        OpenMode.UNKNOWN);
+  }
 }
@@ -0,0 +1,132 @@
+/*
+ * Copyright (C) 2014-2020 Arpit Khurana <arpitkh96@gmail.com>, Vishal Nehra <vishalmeham2@gmail.com>,
+ * Emmanuel Messulam<emmanuelbendavid@gmail.com>, Raymond Lai <airwave209gt at gmail.com> and Contributors.
+ *
+ * This file is part of Amaze File Manager.
+ *
+ * Amaze File Manager is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.amaze.filemanager.filesystem.files;
+
+import static android.os.Build.VERSION_CODES.JELLY_BEAN;
+import static android.os.Build.VERSION_CODES.KITKAT;
+import static android.os.Build.VERSION_CODES.P;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.annotation.Config;
+
+import com.amaze.filemanager.asynchronous.asynctasks.SearchAsyncTask.SearchFilter;
+import com.amaze.filemanager.filesystem.HybridFile;
+import com.amaze.filemanager.filesystem.HybridFileParcelable;
+import com.amaze.filemanager.shadows.ShadowMultiDex;
+import com.amaze.filemanager.utils.OpenMode;
+
+import android.content.Context;
+
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+@RunWith(AndroidJUnit4.class)
+@Config(
+    shadows = {ShadowMultiDex.class},
+    sdk = {JELLY_BEAN, KITKAT, P})
+public class FileSearchEngineTest {
+
+  @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Test
+  public void testFindsMatchesInWholeTree() throws Exception {
+    File root = temporaryFolder.newFolder("root");
+    List<String> expected = new ArrayList<>();
+    createTree(root, 3, 3, expected);
+
+    List<String> found = search(root, 4, name -> name.contains("match"));
+
+    Collections.sort(expected);
+    Collections.sort(found);
+    assertEquals(expected, found);
+  }
+
+  @Test
+  public void testSingleThread() throws Exception {
+    File root = temporaryFolder.newFolder("root");
+    List<String> expected = new ArrayList<>();
+    createTree(root, 2, 2, expected);
+
+    assertEquals(expected.size(), search(root, 1, name -> name.contains("match")).size());
+  }
+
+  @Test
+  public void testEmptyDirectory() throws Exception {
+    assertTrue(search(temporaryFolder.newFolder("empty"), 2, name -> true).isEmpty());
+  }
+
+  @Test
+  public void testCancel() throws Exception {
+    File root = temporaryFolder.newFolder("root");
+    createTree(root, 3, 3, new ArrayList<>());
+
+    Context context = ApplicationProvider.getApplicationContext();
+    FileSearchEngine engine = new FileSearchEngine(context, false, name -> true, 2);
+    engine.start(new HybridFile(OpenMode.FILE, root.getPath()));
+    engine.cancel();
+    assertTrue(engine.await(0));
+  }
+
+  private static List<String> search(File root, int parallelism, SearchFilter filter)
+      throws InterruptedException {
+    Context context = ApplicationProvider.getApplicationContext();
+    FileSearchEngine engine = new FileSearchEngine(context, false, filter, parallelism);
+    engine.start(new HybridFile(OpenMode.FILE, root.getPath()));
+
+    List<String> found = new ArrayList<>();
+    boolean finished;
+    do {
+      finished = engine.await(50);
+      for (HybridFileParcelable file : engine.drain()) {
+        found.add(file.getPath());
+      }
+    } while (!finished);
+    return found;
+  }
+
+  private static void createTree(File directory, int depth, int width, List<String> matches)
+      throws IOException {
+    for (int i = 0; i < width; i++) {
+      File match = new File(directory, "match" + i);
+      assertTrue(match.createNewFile());
+      matches.add(match.getPath());
+      assertTrue(new File(directory, "other" + i).createNewFile());
+
+      if (depth > 0) {
+        File sub = new File(directory, (i % 2 == 0 ? "dir" : "match_dir") + i);
+        assertTrue(sub.mkdir());
+        if (i % 2 != 0) matches.add(sub.getPath());
+        createTree(sub, depth - 1, width, matches);
+      }
+    }
+  }
+}
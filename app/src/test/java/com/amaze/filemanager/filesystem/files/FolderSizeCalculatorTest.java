@@ -0,0 +1,176 @@
+/*
+ * Copyright (C) 2014-2020 Arpit Khurana <arpitkh96@gmail.com>, Vishal Nehra <vishalmeham2@gmail.com>,
+ * Emmanuel Messulam<emmanuelbendavid@gmail.com>, Raymond Lai <airwave209gt at gmail.com> and Contributors.
+ *
+ * This file is part of Amaze File Manager.
+ *
+ * Amaze File Manager is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.amaze.filemanager.filesystem.files;
+
+import static android.os.Build.VERSION_CODES.JELLY_BEAN;
+import static android.os.Build.VERSION_CODES.KITKAT;
+import static android.os.Build.VERSION_CODES.P;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.annotation.Config;
+
+import com.amaze.filemanager.shadows.ShadowMultiDex;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+@RunWith(AndroidJUnit4.class)
+@Config(
+    shadows = {ShadowMultiDex.class},
+    sdk = {JELLY_BEAN, KITKAT, P})
+public class FolderSizeCalculatorTest {
+
+  @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private File root;
+  private long expected;
+
+  @Before
+  public void setUp() throws IOException {
+    FolderSizeCalculator.clearCache();
+    root = temporaryFolder.newFolder("root");
+    expected = createTree(root, 3, 4);
+  }
+
+  @Test
+  public void testSize() {
+    assertEquals(expected, FolderSizeCalculator.getSize(root, null));
+    assertEquals(0, FolderSizeCalculator.getSize(temporaryFolder.newFolder(), null));
+  }
+
+  @Test
+  public void testSameSizeFromIndex() {
+    assertEquals(expected, FolderSizeCalculator.getSize(root, null));
+    assertEquals(expected, FolderSizeCalculator.getSize(root, null));
+  }
+
+  @Test
+  public void testChangedDirectoryIsWalkedAgain() throws IOException {
+    assertEquals(expected, FolderSizeCalculator.getSize(root, null));
+
+    File sub = new File(root, "d0");
+    writeFile(new File(sub, "new"), 1234);
+    assertTrue(sub.setLastModified(sub.lastModified() + 10000));
+    assertTrue(root.setLastModified(root.lastModified() + 10000));
+    assertEquals(expected + 1234, FolderSizeCalculator.getSize(root, null));
+  }
+
+  @Test
+  public void testSeveralRoots() throws IOException {
+    File other = temporaryFolder.newFolder("other");
+    long otherSize = createTree(other, 2, 2);
+    File single = temporaryFolder.newFile("single");
+    writeFile(single, 100);
+
+    assertEquals(
+        expected + otherSize + 100,
+        FolderSizeCalculator.getSize(Arrays.asList(root, other, single), null));
+  }
+
+  @Test
+  public void testProgressReachesTotal() {
+    AtomicLong last = new AtomicLong(-1);
+    FolderSizeCalculator.getSize(root, last::set);
+    assertEquals(expected, last.get());
+  }
+
+  @Test
+  public void testFailedListingIsNotIndexed() {
+    List<String> failing = new ArrayList<>();
+    failing.add("b");
+    FakeLister lister = new FakeLister(failing);
+
+    assertEquals(
+        10, new FolderSizeCalculator.Walker<>(lister, 2, null).walk(Arrays.asList("root")));
+    failing.clear();
+    assertEquals(
+        30, new FolderSizeCalculator.Walker<>(lister, 2, null).walk(Arrays.asList("root")));
+  }
+
+  private static long createTree(File directory, int depth, int width) throws IOException {
+    long size = 0;
+    for (int i = 0; i < width; i++) {
+      int length = (depth * 1000) + i;
+      writeFile(new File(directory, "f" + i), length);
+      size += length;
+      if (depth > 0) {
+        File sub = new File(directory, "d" + i);
+        assertTrue(sub.mkdir());
+        size += createTree(sub, depth - 1, width);
+      }
+    }
+    return size;
+  }
+
+  private static void writeFile(File file, int length) throws IOException {
+    try (FileOutputStream out = new FileOutputStream(file)) {
+      out.write(new byte[length]);
+    }
+  }
+
+  /** root holds "a" (10 bytes) and directory "b" which holds "c" (20 bytes) */
+  private static final class FakeLister implements FolderSizeCalculator.Lister<String> {
+    private final List<String> failing;
+
+    FakeLister(List<String> failing) {
+      this.failing = failing;
+    }
+
+    @Override
+    public List<String> listChildren(String directory) throws Exception {
+      if (failing.contains(directory)) throw new IOException("Permission denied");
+      return directory.equals("root") ? Arrays.asList("a", "b") : Arrays.asList("c");
+    }
+
+    @Override
+    public boolean isDirectory(String file) {
+      return file.equals("root") || file.equals("b");
+    }
+
+    @Override
+    public long length(String file) {
+      return file.equals("a") ? 10 : 20;
+    }
+
+    @Override
+    public long lastModified(String file) {
+      return 0;
+    }
+
+    @Override
+    public String getKey(String directory) {
+      return "fake:" + directory;
+    }
+  }
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright (C) 2014-2020 Arpit Khurana <arpitkh96@gmail.com>, Vishal Nehra <vishalmeham2@gmail.com>,
+ * Emmanuel Messulam<emmanuelbendavid@gmail.com>, Raymond Lai <airwave209gt at gmail.com> and Contributors.
+ *
+ * This file is part of Amaze File Manager.
+ *
+ * Amaze File Manager is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.amaze.filemanager.filesystem.files;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Ignore;
+import org.junit.Test;
+
+import com.amaze.filemanager.test.DummyFileGenerator;
+
+/**
+ * Measures the throughput of local copies with {@link FileChannel#transferTo(long, long,
+ * java.nio.channels.WritableByteChannel)} against copies through direct buffers of the sizes
+ * {@link TransferBufferSizer} chooses from: warmup iterations first, then the mean throughput of
+ * the measured iterations.
+ */
+@Ignore("Benchmark, remove to run manually")
+public class GenericCopyUtilBenchmark {
+
+  private static final int WARMUP_ITERATIONS = 3;
+  private static final int MEASURED_ITERATIONS = 5;
+
+  private File source, target;
+
+  @Before
+  public void setUp() throws IOException {
+    source = File.createTempFile("benchmark", "bin");
+    target = File.createTempFile("benchmark", "bin");
+  }
+
+  @After
+  public void tearDown() {
+    source.delete();
+    target.delete();
+  }
+
+  @Test
+  public void benchmark() throws Exception {
+    for (int size : new int[] {1024 * 1024, 64 * 1024 * 1024, 256 * 1024 * 1024}) {
+      DummyFileGenerator.createFile(source, size);
+
+      System.out.printf(
+          "size %d MB: transferTo %.1f MB/s%n", size >> 20, measure(size, this::transferTo));
+      for (int bufferSize = DirectBufferPool.MIN_SIZE;
+          bufferSize <= DirectBufferPool.MAX_SIZE;
+          bufferSize <<= 1) {
+        final int copyBufferSize = bufferSize;
+        System.out.printf(
+            "size %d MB: buffer %d KB %.1f MB/s%n",
+            size >> 20,
+            bufferSize >> 10,
+            measure(size, (in, out) -> bufferedCopy(in, out, copyBufferSize)));
+      }
+    }
+  }
+
+  private double measure(long size, Copy copy) throws IOException {
+    for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+      copyOnce(copy);
+    }
+
+    long total = 0;
+    for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+      total += copyOnce(copy);
+    }
+    return size * MEASURED_ITERATIONS / (total / 1_000_000_000d) / (1024 * 1024);
+  }
+
+  private long copyOnce(Copy copy) throws IOException {
+    try (FileChannel in = new FileInputStream(source).getChannel();
+        FileChannel out = new RandomAccessFile(target, "rw").getChannel()) {
+      out.truncate(0);
+      long start = System.nanoTime();
+      copy.copy(in, out);
+      out.force(false);
+      return System.nanoTime() - start;
+    }
+  }
+
+  private void transferTo(FileChannel in, FileChannel out) throws IOException {
+    long size = in.size();
+    long position = 0;
+    while (position < size) {
+      position += in.transferTo(position, size - position, out);
+    }
+  }
+
+  private static void bufferedCopy(FileChannel in, FileChannel out, int bufferSize)
+      throws IOException {
+    ByteBuffer buffer = DirectBufferPool.acquire(bufferSize);
+    try {
+      while (in.read(buffer) != -1 || buffer.position() > 0) {
+        buffer.flip();
+        out.write(buffer);
+        buffer.compact();
+      }
+    } finally {
+      DirectBufferPool.release(buffer);
+    }
+  }
+
+  private interface Copy {
+    void copy(FileChannel in, FileChannel out) throws IOException;
+  }
+}
@@ -0,0 +1,226 @@
+/*
+ * Copyright (C) 2014-2020 Arpit Khurana <arpitkh96@gmail.com>, Vishal Nehra <vishalmeham2@gmail.com>,
+ * Emmanuel Messulam<emmanuelbendavid@gmail.com>, Raymond Lai <airwave209gt at gmail.com> and Contributors.
+ *
+ * This file is part of Amaze File Manager.
+ *
+ * Amaze File Manager is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.amaze.filemanager.filesystem.files;
+
+import static android.os.Build.VERSION_CODES.P;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.Adler32;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.annotation.Config;
+
+import com.amaze.filemanager.database.UtilsHandler;
+import com.amaze.filemanager.database.models.utilities.TransferCheckpoint;
+import com.amaze.filemanager.filesystem.HybridFile;
+import com.amaze.filemanager.shadows.ShadowMultiDex;
+import com.amaze.filemanager.utils.OpenMode;
+
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+@RunWith(AndroidJUnit4.class)
+@Config(
+    shadows = {ShadowMultiDex.class},
+    sdk = {P})
+public class ResumableTransferTest {
+
+  private static final int SIZE = ResumableTransfer.CHECKPOINT_INTERVAL * 2 + 1000;
+
+  @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private UtilsHandler utilsHandler;
+  private byte[] data;
+
+  @Before
+  public void setUp() {
+    utilsHandler = mock(UtilsHandler.class);
+    data = new byte[SIZE];
+    new Random(SIZE).nextBytes(data);
+  }
+
+  @Test
+  public void testCheckpointsEveryInterval() {
+    List<Long> offsets = new ArrayList<>();
+    List<Long> hashes = new ArrayList<>();
+    doAnswer(
+            invocation -> {
+              TransferCheckpoint checkpoint = invocation.getArgument(0);
+              offsets.add(checkpoint.offset);
+              hashes.add(checkpoint.chunkHash);
+              return null;
+            })
+        .when(utilsHandler)
+        .saveTransferCheckpoint(any());
+
+    ResumableTransfer transfer = createTransfer();
+    write(transfer, 0, SIZE, 100_000);
+
+    assertEquals(2, offsets.size());
+    assertEquals(ResumableTransfer.CHECKPOINT_INTERVAL, (long) offsets.get(0));
+    assertEquals(ResumableTransfer.CHECKPOINT_INTERVAL * 2, (long) offsets.get(1));
+    assertEquals(adler32(ResumableTransfer.CHECKPOINT_INTERVAL), (long) hashes.get(1));
+  }
+
+  @Test
+  public void testResumeVerifiesBothFiles() throws IOException {
+    File source = createFile("source", SIZE);
+    File target = createFile("target", ResumableTransfer.CHECKPOINT_INTERVAL * 2 + 10);
+    when(utilsHandler.getTransferCheckpoint(target.getPath()))
+        .thenReturn(createCheckpoint(source, target, ResumableTransfer.CHECKPOINT_INTERVAL * 2));
+
+    assertEquals(
+        ResumableTransfer.CHECKPOINT_INTERVAL * 2,
+        createTransfer(source, target)
+            .resume(
+                ApplicationProvider.getApplicationContext(),
+                new HybridFile(OpenMode.FILE, source.getPath()),
+                new HybridFile(OpenMode.FILE, target.getPath())));
+  }
+
+  @Test
+  public void testResumeFromStartIfTargetDiffers() throws IOException {
+    File source = createFile("source", SIZE);
+    File target = createFile("target", ResumableTransfer.CHECKPOINT_INTERVAL * 2);
+    data[ResumableTransfer.CHECKPOINT_INTERVAL + 1]++;
+    try (FileOutputStream out = new FileOutputStream(target)) {
+      out.write(data, 0, ResumableTransfer.CHECKPOINT_INTERVAL * 2);
+    }
+    data[ResumableTransfer.CHECKPOINT_INTERVAL + 1]--;
+    when(utilsHandler.getTransferCheckpoint(target.getPath()))
+        .thenReturn(createCheckpoint(source, target, ResumableTransfer.CHECKPOINT_INTERVAL * 2));
+
+    assertEquals(
+        0,
+        createTransfer(source, target)
+            .resume(
+                ApplicationProvider.getApplicationContext(),
+                new HybridFile(OpenMode.FILE, source.getPath()),
+                new HybridFile(OpenMode.FILE, target.getPath())));
+  }
+
+  @Test
+  public void testResumeFromStartIfSourceChanged() throws IOException {
+    File source = createFile("source", SIZE);
+    File target = createFile("target", ResumableTransfer.CHECKPOINT_INTERVAL);
+    TransferCheckpoint checkpoint =
+        createCheckpoint(source, target, ResumableTransfer.CHECKPOINT_INTERVAL);
+    checkpoint.sourceLastModified--;
+    when(utilsHandler.getTransferCheckpoint(target.getPath())).thenReturn(checkpoint);
+
+    assertEquals(
+        0,
+        createTransfer(source, target)
+            .resume(
+                ApplicationProvider.getApplicationContext(),
+                new HybridFile(OpenMode.FILE, source.getPath()),
+                new HybridFile(OpenMode.FILE, target.getPath())));
+  }
+
+  @Test
+  public void testFinishRemovesCheckpoint() {
+    ResumableTransfer transfer = createTransfer();
+    write(transfer, 0, 1000, 1000);
+    verify(utilsHandler, never()).saveTransferCheckpoint(any());
+
+    transfer.finish();
+    verify(utilsHandler).removeTransferCheckpoint(anyString());
+  }
+
+  @Test
+  public void testMatches() throws IOException {
+    TransferCheckpoint checkpoint = new TransferCheckpoint("target", "source", SIZE, 0);
+    checkpoint.offset = 3000;
+    checkpoint.chunkLength = 1000;
+    Adler32 hash = new Adler32();
+    hash.update(data, 2000, 1000);
+    checkpoint.chunkHash = hash.getValue();
+
+    assertTrue(ResumableTransfer.matches(new ByteArrayInputStream(data), checkpoint));
+    assertFalse(ResumableTransfer.matches(new ByteArrayInputStream(data, 0, 2500), checkpoint));
+    assertFalse(ResumableTransfer.matches(new ByteArrayInputStream(data, 1, SIZE), checkpoint));
+    assertFalse(ResumableTransfer.matches(null, checkpoint));
+  }
+
+  private ResumableTransfer createTransfer() {
+    return new ResumableTransfer(utilsHandler, "/sdcard/source", SIZE, 0, "smb://host/target");
+  }
+
+  private ResumableTransfer createTransfer(File source, File target) {
+    return new ResumableTransfer(
+        utilsHandler, source.getPath(), source.length(), source.lastModified(), target.getPath());
+  }
+
+  private TransferCheckpoint createCheckpoint(File source, File target, long offset) {
+    TransferCheckpoint checkpoint =
+        new TransferCheckpoint(
+            target.getPath(), source.getPath(), source.length(), source.lastModified());
+    checkpoint.offset = offset;
+    checkpoint.chunkLength = ResumableTransfer.CHECKPOINT_INTERVAL;
+    Adler32 hash = new Adler32();
+    hash.update(data, (int) offset - checkpoint.chunkLength, checkpoint.chunkLength);
+    checkpoint.chunkHash = hash.getValue();
+    return checkpoint;
+  }
+
+  private File createFile(String name, int length) throws IOException {
+    File file = temporaryFolder.newFile(name);
+    try (FileOutputStream out = new FileOutputStream(file)) {
+      out.write(data, 0, length);
+    }
+    return file;
+  }
+
+  private void write(ResumableTransfer transfer, int from, int to, int bufferSize) {
+    int position = from;
+    while (position < to) {
+      int length = transfer.getWritableLength(Math.min(bufferSize, to - position));
+      if (transfer.onWritten(data, position, length)) transfer.checkpoint();
+      position += length;
+    }
+  }
+
+  private long adler32(int offset) {
+    Adler32 hash = new Adler32();
+    hash.update(data, offset, ResumableTransfer.CHECKPOINT_INTERVAL);
+    return hash.getValue();
+  }
+}
@@ -0,0 +1,253 @@
+/*
+ * Copyright (C) 2014-2020 Arpit Khurana <arpitkh96@gmail.com>, Vishal Nehra <vishalmeham2@gmail.com>,
+ * Emmanuel Messulam<emmanuelbendavid@gmail.com>, Raymond Lai <airwave209gt at gmail.com> and Contributors.
+ *
+ * This file is part of Amaze File Manager.
+ *
+ * Amaze File Manager is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.amaze.filemanager.filesystem.files;
+
+import static android.os.Build.VERSION_CODES.KITKAT;
+import static android.os.Build.VERSION_CODES.P;
+import static com.amaze.filemanager.filesystem.files.SegmentedCipher.HEADER_SIZE;
+import static com.amaze.filemanager.filesystem.files.SegmentedCipher.SEGMENT_SIZE;
+import static com.amaze.filemanager.filesystem.files.SegmentedCipher.TAG_SIZE;
+import static com.amaze.filemanager.filesystem.files.SegmentedCipher.WRAPPED_KEY_SIZE;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+import java.util.Random;
+
+import javax.crypto.AEADBadTagException;
+import javax.crypto.Cipher;
+import javax.crypto.KeyGenerator;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.annotation.Config;
+
+import com.amaze.filemanager.shadows.ShadowMultiDex;
+import com.amaze.filemanager.utils.ProgressHandler;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+@RunWith(AndroidJUnit4.class)
+@Config(
+    shadows = {ShadowMultiDex.class},
+    sdk = {KITKAT, P})
+public class SegmentedCipherTest {
+
+  private static final int[] SIZES = {0, 1, SEGMENT_SIZE - 1, SEGMENT_SIZE, 5 * SEGMENT_SIZE + 7};
+
+  private SecretKey key;
+  private SegmentedCipher cipher;
+
+  @Before
+  public void setUp() throws GeneralSecurityException {
+    KeyGenerator keyGenerator = KeyGenerator.getInstance("AES");
+    keyGenerator.init(128);
+    key = keyGenerator.generateKey();
+    cipher = new SegmentedCipher(key, 3);
+  }
+
+  @Test
+  public void testEncryptDecrypt() throws GeneralSecurityException, IOException {
+    for (int size : SIZES) {
+      byte[] plaintext = randomBytes(size);
+      ProgressHandler progressHandler = new ProgressHandler();
+      byte[] encrypted = encrypt(plaintext, progressHandler);
+      assertEquals(size, progressHandler.getPosition());
+      assertEquals(HEADER_SIZE + getSegmentCount(size) * TAG_SIZE + size, encrypted.length);
+
+      progressHandler = new ProgressHandler();
+      assertArrayEquals(plaintext, decrypt(encrypted, progressHandler));
+      assertEquals(size, progressHandler.getPosition());
+    }
+  }
+
+  @Test
+  public void testIsSegmented() throws GeneralSecurityException, IOException {
+    byte[] plaintext = randomBytes(1000);
+    BufferedInputStream segmented =
+        new BufferedInputStream(new ByteArrayInputStream(encrypt(plaintext, null)));
+    assertTrue(SegmentedCipher.isSegmented(segmented));
+    // the stream is left where it was
+    assertEquals(SegmentedCipher.MAGIC[0], segmented.read());
+
+    Cipher legacy = Cipher.getInstance("AES/GCM/NoPadding");
+    legacy.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(128, "LxbHiJhhUXcj".getBytes()));
+    assertFalse(
+        SegmentedCipher.isSegmented(
+            new BufferedInputStream(new ByteArrayInputStream(legacy.doFinal(plaintext)))));
+    // shorter than the magic
+    assertFalse(
+        SegmentedCipher.isSegmented(
+            new BufferedInputStream(new ByteArrayInputStream(new byte[3]))));
+  }
+
+  @Test
+  public void testTamperedSegmentIsNotWritten() throws GeneralSecurityException, IOException {
+    byte[] plaintext = randomBytes(5 * SEGMENT_SIZE + 7);
+    byte[] encrypted = encrypt(plaintext, null);
+    // flip a bit in the fourth segment
+    encrypted[HEADER_SIZE + 3 * (SEGMENT_SIZE + TAG_SIZE) + 10] ^= 1;
+
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    try {
+      cipher.decrypt(new ByteArrayInputStream(encrypted), outputStream, null);
+      fail("Tampered segment was accepted");
+    } catch (AEADBadTagException expected) {
+      // only the segments before it were written
+      assertArrayEquals(Arrays.copyOf(plaintext, 3 * SEGMENT_SIZE), outputStream.toByteArray());
+    }
+  }
+
+  @Test
+  public void testTruncatedFileIsRejected() throws GeneralSecurityException, IOException {
+    byte[] encrypted = encrypt(randomBytes(3 * SEGMENT_SIZE + 7), null);
+    // drop the last segment entirely, the one before it was not sealed as the last one
+    byte[] truncated = Arrays.copyOf(encrypted, HEADER_SIZE + 3 * (SEGMENT_SIZE + TAG_SIZE));
+
+    try {
+      decrypt(truncated, null);
+      fail("Truncated file was accepted");
+    } catch (AEADBadTagException expected) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testOtherKeyIsRejected() throws GeneralSecurityException, IOException {
+    byte[] encrypted = encrypt(randomBytes(100), null);
+    KeyGenerator keyGenerator = KeyGenerator.getInstance("AES");
+    keyGenerator.init(128);
+
+    try {
+      new SegmentedCipher(keyGenerator.generateKey())
+          .decrypt(new ByteArrayInputStream(encrypted), new ByteArrayOutputStream(), null);
+      fail("Other key was accepted");
+    } catch (AEADBadTagException expected) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testEachFileHasItsOwnKey() throws GeneralSecurityException, IOException {
+    byte[] plaintext = randomBytes(SEGMENT_SIZE + 7);
+    byte[] first = encrypt(plaintext, null);
+    byte[] second = encrypt(plaintext, null);
+
+    assertFalse(
+        Arrays.equals(
+            Arrays.copyOfRange(first, HEADER_SIZE - WRAPPED_KEY_SIZE, HEADER_SIZE),
+            Arrays.copyOfRange(second, HEADER_SIZE - WRAPPED_KEY_SIZE, HEADER_SIZE)));
+    assertFalse(
+        Arrays.equals(
+            Arrays.copyOfRange(first, HEADER_SIZE, first.length),
+            Arrays.copyOfRange(second, HEADER_SIZE, second.length)));
+    assertArrayEquals(plaintext, decrypt(first, null));
+    assertArrayEquals(plaintext, decrypt(second, null));
+  }
+
+  @Test
+  public void testCancel() throws GeneralSecurityException, IOException {
+    ProgressHandler progressHandler = new ProgressHandler();
+    progressHandler.setCancelled(true);
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    cipher.encrypt(
+        new ByteArrayInputStream(randomBytes(3 * SEGMENT_SIZE)), outputStream, progressHandler);
+
+    assertEquals(HEADER_SIZE, outputStream.size());
+    assertEquals(0, progressHandler.getPosition());
+  }
+
+  @Test
+  public void testRandomAccess() throws GeneralSecurityException, IOException {
+    for (int size : SIZES) {
+      byte[] plaintext = randomBytes(size);
+      File file = File.createTempFile("test", "aze");
+      file.deleteOnExit();
+      try (FileOutputStream outputStream = new FileOutputStream(file)) {
+        outputStream.write(encrypt(plaintext, null));
+      }
+
+      try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r")) {
+        SegmentedCipher.Reader reader = cipher.open(randomAccessFile);
+        assertEquals(size, reader.length());
+
+        byte[] buffer = new byte[SEGMENT_SIZE + 100];
+        assertEquals(-1, reader.read(size, buffer, 0, buffer.length));
+        if (size == 0) {
+          continue;
+        }
+
+        // a range across two segments, read backwards in uneven parts
+        int start = Math.max(0, size - SEGMENT_SIZE - 50);
+        int end = size;
+        for (int position = end; position > start; ) {
+          int count = Math.min(position - start, 4093);
+          position -= count;
+          assertEquals(count, reader.read(position, buffer, position - start, count));
+        }
+        assertArrayEquals(
+            Arrays.copyOfRange(plaintext, start, end), Arrays.copyOf(buffer, end - start));
+
+        // reads stop at the end of the plaintext
+        assertEquals(1, reader.read(size - 1, buffer, 0, buffer.length));
+        assertEquals(plaintext[size - 1], buffer[0]);
+      }
+    }
+  }
+
+  private byte[] encrypt(byte[] plaintext, ProgressHandler progressHandler)
+      throws GeneralSecurityException, IOException {
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    cipher.encrypt(new ByteArrayInputStream(plaintext), outputStream, progressHandler);
+    return outputStream.toByteArray();
+  }
+
+  private byte[] decrypt(byte[] encrypted, ProgressHandler progressHandler)
+      throws GeneralSecurityException, IOException {
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    cipher.decrypt(new ByteArrayInputStream(encrypted), outputStream, progressHandler);
+    return outputStream.toByteArray();
+  }
+
+  private static int getSegmentCount(int size) {
+    return size == 0 ? 1 : (size + SEGMENT_SIZE - 1) / SEGMENT_SIZE;
+  }
+
+  private static byte[] randomBytes(int size) {
+    byte[] bytes = new byte[size];
+    new Random(size).nextBytes(bytes);
+    return bytes;
+  }
+}
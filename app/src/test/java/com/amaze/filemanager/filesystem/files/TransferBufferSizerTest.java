@@ -0,0 +1,104 @@
+/*
+ * Copyright (C) 2014-2020 Arpit Khurana <arpitkh96@gmail.com>, Vishal Nehra <vishalmeham2@gmail.com>,
+ * Emmanuel Messulam<emmanuelbendavid@gmail.com>, Raymond Lai <airwave209gt at gmail.com> and Contributors.
+ *
+ * This file is part of Amaze File Manager.
+ *
+ * Amaze File Manager is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.amaze.filemanager.filesystem.files;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.amaze.filemanager.filesystem.files.TransferBufferSizer.Backend;
+
+public class TransferBufferSizerTest {
+
+  private static final long MB = 1024 * 1024;
+
+  @Before
+  public void setUp() {
+    TransferBufferSizer.reset();
+  }
+
+  @Test
+  public void testInitialSize() {
+    assertEquals(DirectBufferPool.MIN_SIZE, TransferBufferSizer.getBufferSize(Backend.LOCAL));
+    assertEquals(256 * 1024, TransferBufferSizer.getBufferSize(Backend.SMB));
+  }
+
+  @Test
+  public void testGrowsWhileFaster() {
+    int size = TransferBufferSizer.getBufferSize(Backend.LOCAL);
+    TransferBufferSizer.report(Backend.LOCAL, size, 100 * MB, 1_000_000_000L);
+    assertEquals(size * 2, TransferBufferSizer.getBufferSize(Backend.LOCAL));
+
+    TransferBufferSizer.report(Backend.LOCAL, size * 2, 200 * MB, 1_000_000_000L);
+    assertEquals(size * 4, TransferBufferSizer.getBufferSize(Backend.LOCAL));
+  }
+
+  @Test
+  public void testStepsBackWhenSlower() {
+    int size = TransferBufferSizer.getBufferSize(Backend.LOCAL);
+    TransferBufferSizer.report(Backend.LOCAL, size, 100 * MB, 1_000_000_000L);
+    TransferBufferSizer.report(Backend.LOCAL, size * 2, 50 * MB, 1_000_000_000L);
+    assertEquals(size, TransferBufferSizer.getBufferSize(Backend.LOCAL));
+
+    // same throughput as the best one, stay there
+    TransferBufferSizer.report(Backend.LOCAL, size, 100 * MB, 1_000_000_000L);
+    assertEquals(size, TransferBufferSizer.getBufferSize(Backend.LOCAL));
+  }
+
+  @Test
+  public void testIgnoresShortTransfers() {
+    int size = TransferBufferSizer.getBufferSize(Backend.SFTP);
+    TransferBufferSizer.report(Backend.SFTP, size, size, 1_000L);
+    assertEquals(size, TransferBufferSizer.getBufferSize(Backend.SFTP));
+  }
+
+  @Test
+  public void testStaysWithinPoolSizes() {
+    for (int i = 0; i < 10; i++) {
+      int size = TransferBufferSizer.getBufferSize(Backend.CLOUD);
+      TransferBufferSizer.report(Backend.CLOUD, size, (i + 1) * 100 * MB, 1_000_000_000L);
+      assertTrue(TransferBufferSizer.getBufferSize(Backend.CLOUD) <= DirectBufferPool.MAX_SIZE);
+    }
+  }
+
+  @Test
+  public void testBufferPool() {
+    assertEquals(0, DirectBufferPool.getSizeClass(1));
+    assertEquals(0, DirectBufferPool.getSizeClass(DirectBufferPool.MIN_SIZE));
+    assertEquals(1, DirectBufferPool.getSizeClass(DirectBufferPool.MIN_SIZE + 1));
+    assertEquals(4, DirectBufferPool.getSizeClass(DirectBufferPool.MAX_SIZE));
+
+    ByteBuffer buffer = DirectBufferPool.acquire(100 * 1024);
+    assertEquals(128 * 1024, buffer.capacity());
+    assertTrue(buffer.isDirect());
+    buffer.put((byte) 1);
+    DirectBufferPool.release(buffer);
+
+    ByteBuffer reused = DirectBufferPool.acquire(128 * 1024);
+    assertSame(buffer, reused);
+    assertEquals(0, reused.position());
+  }
+}
@@ -61,7 +61,7 @@ public class StreamSourceTest {
   @Before
   public void setUp() throws IOException {
     StringBuilder textInFile = new StringBuilder();
-    for (int i = 0; i < 20; i++) textInFile.append("a");
+    for (int i = 0; i < 20; i++) textInFile.append((char) ('a' + i));
 
     text = textInFile.toString().getBytes();
     file = createFile();
@@ -214,6 +214,39 @@ public class StreamSourceTest {
     assertEquals(buff.length, n);
   }
 
+  /**
+   * Purpose: Read content of the file again after moving back Input: read(buff), moveTo(position),
+   * read(buff) Expected: buff = text[position]
+   */
+  @Test
+  public void moveBackAfterRead() throws IOException {
+    ss.open();
+    byte[] buff = new byte[text.length];
+    assertEquals(text.length, ss.read(buff));
+
+    ss.moveTo(3);
+    assertEquals(2, ss.read(buff, 0, 2));
+    assertEquals(text[3], buff[0]);
+    assertEquals(text[4], buff[1]);
+  }
+
+  /**
+   * Purpose: Stop reading at the limit of a range Input: moveTo(start), setLimit(end), read(buff)
+   * Expected: buff = text[start..end] and end of stream afterwards
+   */
+  @Test
+  public void readWithLimit() throws IOException {
+    ss.moveTo(5);
+    ss.setLimit(10);
+    ss.open();
+
+    byte[] buff = new byte[100];
+    int n = ss.read(buff);
+    assertEquals(5, n);
+    assertArrayEquals(Arrays.copyOfRange(text, 5, 10), Arrays.copyOfRange(buff, 0, n));
+    assertEquals(-1, ss.read(buff));
+  }
+
   /**
    * Purpose: Throw an exception when a reading position in the file is incorrect Input:
    * moveTo(wrongPosition) Expected: IllegalArgumentException is thrown
@@ -0,0 +1,209 @@
+/*
+ * Copyright (C) 2014-2020 Arpit Khurana <arpitkh96@gmail.com>, Vishal Nehra <vishalmeham2@gmail.com>,
+ * Emmanuel Messulam<emmanuelbendavid@gmail.com>, Raymond Lai <airwave209gt at gmail.com> and Contributors.
+ *
+ * This file is part of Amaze File Manager.
+ *
+ * Amaze File Manager is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.amaze.filemanager.filesystem.smbstreamer;
+
+import static android.os.Build.VERSION_CODES.JELLY_BEAN;
+import static android.os.Build.VERSION_CODES.KITKAT;
+import static android.os.Build.VERSION_CODES.P;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadow.api.Shadow;
+
+import com.amaze.filemanager.shadows.ShadowMultiDex;
+import com.amaze.filemanager.shadows.jcifs.smb.ShadowSmbFile;
+
+import android.os.Environment;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import jcifs.smb.SmbFile;
+
+/**
+ * Replays parallel range requests, as sent by a player seeking around, against {@link Streamer}
+ * serving a local file, and checks every answered byte.
+ */
+@RunWith(AndroidJUnit4.class)
+@Config(
+    shadows = {ShadowMultiDex.class, ShadowSmbFile.class},
+    sdk = {JELLY_BEAN, KITKAT, P})
+public class StreamerLoadTest {
+
+  private static final String NAME = "Load.bin";
+  private static final int CLIENTS = 12;
+  private static final int REQUESTS_PER_CLIENT = 8;
+
+  private byte[] content;
+  private Streamer streamer;
+
+  @Before
+  public void setUp() throws IOException {
+    // Spans a few blocks of StreamSource, so ranges cross block boundaries
+    content = new byte[3 * StreamSource.BLOCK_SIZE + 1234];
+    new Random(42).nextBytes(content);
+
+    File testFile = new File(Environment.getExternalStorageDirectory(), NAME);
+    OutputStream os = new FileOutputStream(testFile);
+    os.write(content);
+    os.close();
+
+    SmbFile file = new SmbFile("smb://127.0.0.1/" + NAME);
+    ShadowSmbFile shadowSmbFile = Shadow.extract(file);
+    shadowSmbFile.setFile(testFile);
+
+    streamer = new Streamer(Streamer.PORT);
+    streamer.setStreamSrc(file, content.length);
+  }
+
+  @After
+  public void tearDown() {
+    if (streamer != null) streamer.stop();
+  }
+
+  @Test
+  public void testParallelRangeRequests() throws Exception {
+    ExecutorService clients = Executors.newFixedThreadPool(CLIENTS);
+    List<Future<Integer>> results = new ArrayList<>();
+    for (int i = 0; i < CLIENTS; i++) {
+      final Random random = new Random(i);
+      results.add(clients.submit(rangeRequests(random)));
+    }
+    clients.shutdown();
+
+    int answered = 0;
+    for (Future<Integer> result : results) {
+      answered += result.get(60, TimeUnit.SECONDS);
+    }
+    assertEquals(CLIENTS * REQUESTS_PER_CLIENT, answered);
+  }
+
+  @Test
+  public void testKeepAliveAndFallbacks() throws IOException {
+    Socket socket = new Socket("127.0.0.1", Streamer.PORT);
+    try {
+      Response first = request(socket, "bytes=-100");
+      assertEquals(206, first.status);
+      assertEquals("keep-alive", first.headers.get("connection"));
+      assertArrayEquals(
+          Arrays.copyOfRange(content, content.length - 100, content.length), first.body);
+
+      // Several ranges at once are answered with the whole file on the same connection
+      Response second = request(socket, "bytes=0-9,20-29");
+      assertEquals(200, second.status);
+      assertArrayEquals(content, second.body);
+
+      Response third = request(socket, "bytes=" + content.length + "-");
+      assertEquals(416, third.status);
+      assertEquals("bytes */" + content.length, third.headers.get("content-range"));
+    } finally {
+      socket.close();
+    }
+  }
+
+  private Callable<Integer> rangeRequests(final Random random) {
+    return () -> {
+      Socket socket = new Socket("127.0.0.1", Streamer.PORT);
+      try {
+        for (int i = 0; i < REQUESTS_PER_CLIENT; i++) {
+          int start = random.nextInt(content.length);
+          int end = Math.min(content.length - 1, start + random.nextInt(256 * 1024));
+
+          Response response = request(socket, "bytes=" + start + "-" + end);
+          assertEquals(206, response.status);
+          assertEquals(
+              "bytes " + start + "-" + end + "/" + content.length,
+              response.headers.get("content-range"));
+          assertArrayEquals(Arrays.copyOfRange(content, start, end + 1), response.body);
+        }
+      } finally {
+        socket.close();
+      }
+      return REQUESTS_PER_CLIENT;
+    };
+  }
+
+  private static Response request(Socket socket, String range) throws IOException {
+    OutputStream out = socket.getOutputStream();
+    out.write(
+        ("GET /" + NAME + " HTTP/1.1\r\nHost: 127.0.0.1\r\nRange: " + range + "\r\n\r\n")
+            .getBytes("US-ASCII"));
+    out.flush();
+
+    InputStream in = socket.getInputStream();
+    Response response = new Response();
+    response.status = Integer.parseInt(readLine(in).split(" ")[1]);
+    for (String line = readLine(in); !line.isEmpty(); line = readLine(in)) {
+      int colon = line.indexOf(':');
+      response.headers.put(
+          line.substring(0, colon).trim().toLowerCase(), line.substring(colon + 1).trim());
+    }
+
+    int length = Integer.parseInt(response.headers.get("content-length"));
+    response.body = new byte[length];
+    int total = 0;
+    while (total < length) {
+      int read = in.read(response.body, total, length - total);
+      if (read < 0) throw new IOException("Connection closed after " + total + " bytes");
+      total += read;
+    }
+    return response;
+  }
+
+  private static String readLine(InputStream in) throws IOException {
+    ByteArrayOutputStream line = new ByteArrayOutputStream();
+    int c;
+    while ((c = in.read()) != '\n') {
+      if (c < 0) throw new IOException("Connection closed");
+      if (c != '\r') line.write(c);
+    }
+    return line.toString("US-ASCII");
+  }
+
+  private static class Response {
+    int status;
+    Map<String, String> headers = new HashMap<>();
+    byte[] body;
+  }
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright (C) 2014-2020 Arpit Khurana <arpitkh96@gmail.com>, Vishal Nehra <vishalmeham2@gmail.com>,
+ * Emmanuel Messulam<emmanuelbendavid@gmail.com>, Raymond Lai <airwave209gt at gmail.com> and Contributors.
+ *
+ * This file is part of Amaze File Manager.
+ *
+ * Amaze File Manager is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.amaze.filemanager.filesystem.ssh;
+
+import static android.os.Build.VERSION_CODES.JELLY_BEAN;
+import static android.os.Build.VERSION_CODES.KITKAT;
+import static android.os.Build.VERSION_CODES.P;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.annotation.Config;
+
+import com.amaze.filemanager.shadows.ShadowMultiDex;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import net.schmizz.sshj.SSHClient;
+import net.schmizz.sshj.sftp.SFTPClient;
+
+@RunWith(AndroidJUnit4.class)
+@Config(
+    shadows = {ShadowMultiDex.class},
+    sdk = {JELLY_BEAN, KITKAT, P})
+public class SftpChannelPoolTest {
+
+  private SftpChannelPool pool;
+
+  private SSHClient ssh;
+
+  @Before
+  public void setUp() throws IOException {
+    pool = new SftpChannelPool();
+    ssh = mock(SSHClient.class);
+    when(ssh.isConnected()).thenReturn(true);
+    when(ssh.isAuthenticated()).thenReturn(true);
+    when(ssh.newSFTPClient()).thenAnswer(invocation -> createChannel(true));
+  }
+
+  @Test
+  public void testReleasedChannelIsLeasedAgain() throws IOException {
+    SFTPClient first = pool.lease(ssh);
+    pool.release(first);
+    assertEquals(1, pool.getIdleCount(ssh));
+
+    assertSame(first, pool.lease(ssh));
+    assertEquals(0, pool.getIdleCount(ssh));
+    verify(ssh, times(1)).newSFTPClient();
+    verify(first, never()).close();
+  }
+
+  @Test
+  public void testConcurrentLeasesGetOwnChannels() throws IOException {
+    SFTPClient first = pool.lease(ssh);
+    SFTPClient second = pool.lease(ssh);
+    assertNotSame(first, second);
+    verify(ssh, times(2)).newSFTPClient();
+  }
+
+  @Test
+  public void testClosedChannelIsNotLeasedAgain() throws IOException {
+    SFTPClient first = pool.lease(ssh);
+    pool.release(first);
+    when(first.getSFTPEngine().getSubsystem().isOpen()).thenReturn(false);
+
+    SFTPClient second = pool.lease(ssh);
+    assertNotSame(first, second);
+    verify(first).close();
+  }
+
+  @Test
+  public void testChannelsOfDisconnectedClientAreClosed() throws IOException {
+    SFTPClient first = pool.lease(ssh);
+    when(ssh.isConnected()).thenReturn(false);
+    pool.release(first);
+
+    assertEquals(0, pool.getIdleCount(ssh));
+    verify(first).close();
+  }
+
+  @Test
+  public void testIdleChannelsAreCapped() throws IOException {
+    SFTPClient[] channels = new SFTPClient[SftpChannelPool.MAX_IDLE_CHANNELS + 1];
+    for (int i = 0; i < channels.length; i++) {
+      channels[i] = pool.lease(ssh);
+    }
+    for (SFTPClient channel : channels) {
+      pool.release(channel);
+    }
+
+    assertEquals(SftpChannelPool.MAX_IDLE_CHANNELS, pool.getIdleCount(ssh));
+    verify(channels[channels.length - 1]).close();
+  }
+
+  @Test
+  public void testInvalidatedChannelIsClosed() throws IOException {
+    SFTPClient first = pool.lease(ssh);
+    pool.invalidate(first);
+    pool.release(first);
+
+    assertEquals(0, pool.getIdleCount(ssh));
+    verify(first).close();
+  }
+
+  @Test
+  public void testEvictIdle() throws IOException {
+    SFTPClient first = pool.lease(ssh);
+    pool.release(first);
+
+    pool.evictIdle(SftpChannelPool.IDLE_TIMEOUT);
+    assertEquals(1, pool.getIdleCount(ssh));
+    verify(first, never()).close();
+
+    pool.evictIdle(0);
+    assertEquals(0, pool.getIdleCount(ssh));
+    verify(first).close();
+  }
+
+  @Test
+  public void testCloseAll() throws IOException {
+    SFTPClient first = pool.lease(ssh);
+    SFTPClient second = pool.lease(ssh);
+    pool.release(first);
+    pool.release(second);
+
+    pool.closeAll(ssh);
+    assertEquals(0, pool.getIdleCount(ssh));
+    verify(first).close();
+    verify(second).close();
+  }
+
+  private static SFTPClient createChannel(boolean open) {
+    SFTPClient client = mock(SFTPClient.class, RETURNS_DEEP_STUBS);
+    when(client.getSFTPEngine().getSubsystem().isOpen()).thenReturn(open);
+    return client;
+  }
+}
@@ -20,21 +20,33 @@
 
 package com.amaze.filemanager.filesystem.ssh;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
-import static org.junit.Assert.assertFalse;
-import static org.junit.Assert.assertThrows;
-import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
 
 import org.junit.Test;
 
+import net.schmizz.concurrent.Promise;
 import net.schmizz.sshj.sftp.FileAttributes;
 import net.schmizz.sshj.sftp.FileMode;
+import net.schmizz.sshj.sftp.PacketType;
 import net.schmizz.sshj.sftp.RemoteResourceInfo;
+import net.schmizz.sshj.sftp.Request;
+import net.schmizz.sshj.sftp.Response;
 import net.schmizz.sshj.sftp.SFTPClient;
+import net.schmizz.sshj.sftp.SFTPEngine;
+import net.schmizz.sshj.sftp.SFTPException;
 
 public class SshClientUtilsTest {
 
@@ -49,72 +61,54 @@ public class SshClientUtilsTest {
   }
 
   @Test
-  public void testIsDirectoryNormal() throws IOException {
-    RemoteResourceInfo mock = mock(RemoteResourceInfo.class);
-    when(mock.isDirectory()).thenReturn(true);
-    FileAttributes mockAttributes =
-        new FileAttributes.Builder().withType(FileMode.Type.DIRECTORY).build();
-    when(mock.getAttributes()).thenReturn(mockAttributes);
-    SFTPClient mockClient = mock(SFTPClient.class);
-    assertTrue(SshClientUtils.isDirectory(mockClient, mock));
+  public void testResolveDirectories() throws IOException {
+    RemoteResourceInfo directory = mockInfo("/sysroot/usr", FileMode.Type.DIRECTORY, true);
+    RemoteResourceInfo file = mockInfo("/sysroot/README", FileMode.Type.REGULAR, false);
+    RemoteResourceInfo linkToDirectory = mockInfo("/sysroot/etc", FileMode.Type.SYMLINK, false);
+    RemoteResourceInfo brokenLink = mockInfo("/sysroot/lib", FileMode.Type.SYMLINK, false);
+    RemoteResourceInfo linkToFile = mockInfo("/sysroot/vmlinuz", FileMode.Type.SYMLINK, false);
+
+    SFTPEngine engine = mock(SFTPEngine.class);
+    when(engine.newRequest(PacketType.STAT))
+        .thenAnswer(invocation -> new Request(PacketType.STAT, 1));
+    Promise<Response, SFTPException> dirStat = mockStat(FileMode.Type.DIRECTORY);
+    Promise<Response, SFTPException> brokenStat = mockStat(null);
+    Promise<Response, SFTPException> fileStat = mockStat(FileMode.Type.REGULAR);
+    when(engine.request(any(Request.class))).thenReturn(dirStat, brokenStat, fileStat);
+    SFTPClient client = mock(SFTPClient.class);
+    when(client.getSFTPEngine()).thenReturn(engine);
+
+    Boolean[] directories =
+        SshClientUtils.resolveDirectories(
+            client, Arrays.asList(directory, file, linkToDirectory, brokenLink, linkToFile));
+
+    assertArrayEquals(new Boolean[] {true, false, true, null, false}, directories);
+    // only the links need a stat
+    verify(engine, times(3)).request(any(Request.class));
+    verify(client, never()).stat(anyString());
   }
 
-  @Test
-  public void testIsDirectoryWithFile() throws IOException {
-    RemoteResourceInfo mock = mock(RemoteResourceInfo.class);
-    when(mock.isDirectory()).thenReturn(false);
-    FileAttributes mockAttributes =
-        new FileAttributes.Builder().withType(FileMode.Type.REGULAR).build();
-    when(mock.getAttributes()).thenReturn(mockAttributes);
-    SFTPClient mockClient = mock(SFTPClient.class);
-    assertFalse(SshClientUtils.isDirectory(mockClient, mock));
-  }
-
-  @Test
-  public void testIsDirectorySymlinkNormal() throws IOException {
-    RemoteResourceInfo mock = mock(RemoteResourceInfo.class);
-    when(mock.getPath()).thenReturn("/sysroot/etc");
-    when(mock.isDirectory()).thenReturn(true);
-    FileAttributes mockAttributes =
-        new FileAttributes.Builder().withType(FileMode.Type.SYMLINK).build();
-    when(mock.getAttributes()).thenReturn(mockAttributes);
-
-    SFTPClient mockClient = mock(SFTPClient.class);
-    mockAttributes = new FileAttributes.Builder().withType(FileMode.Type.DIRECTORY).build();
-    when(mockClient.stat("/sysroot/etc")).thenReturn(mockAttributes);
-
-    assertTrue(SshClientUtils.isDirectory(mockClient, mock));
-  }
-
-  @Test
-  public void testIsDirectorySymlinkBrokenDirectory() throws IOException {
-    RemoteResourceInfo mock = mock(RemoteResourceInfo.class);
-    when(mock.getPath()).thenReturn("/sysroot/etc");
-    when(mock.isDirectory()).thenReturn(true);
-    FileAttributes mockAttributes =
-        new FileAttributes.Builder().withType(FileMode.Type.SYMLINK).build();
-    when(mock.getAttributes()).thenReturn(mockAttributes);
-
-    SFTPClient mockClient = mock(SFTPClient.class);
-    mockAttributes = new FileAttributes.Builder().withType(FileMode.Type.DIRECTORY).build();
-    when(mockClient.stat("/sysroot/etc")).thenThrow(new IOException());
-
-    assertThrows(IOException.class, () -> SshClientUtils.isDirectory(mockClient, mock));
+  private static RemoteResourceInfo mockInfo(String path, FileMode.Type type, boolean directory) {
+    RemoteResourceInfo info = mock(RemoteResourceInfo.class);
+    when(info.getPath()).thenReturn(path);
+    when(info.isDirectory()).thenReturn(directory);
+    when(info.getAttributes()).thenReturn(new FileAttributes.Builder().withType(type).build());
+    return info;
   }
 
-  @Test
-  public void testIsDirectorySymlinkBrokenFile() throws IOException {
-    RemoteResourceInfo mock = mock(RemoteResourceInfo.class);
-    when(mock.getPath()).thenReturn("/sysroot/etc");
-    when(mock.isDirectory()).thenReturn(false);
-    FileAttributes mockAttributes =
-        new FileAttributes.Builder().withType(FileMode.Type.SYMLINK).build();
-    when(mock.getAttributes()).thenReturn(mockAttributes);
-
-    SFTPClient mockClient = mock(SFTPClient.class);
-    mockAttributes = new FileAttributes.Builder().withType(FileMode.Type.DIRECTORY).build();
-    when(mockClient.stat("/sysroot/etc")).thenThrow(new IOException());
-
-    assertThrows(IOException.class, () -> SshClientUtils.isDirectory(mockClient, mock));
+  @SuppressWarnings("unchecked")
+  private static Promise<Response, SFTPException> mockStat(FileMode.Type type)
+      throws SFTPException {
+    Response response = mock(Response.class);
+    if (type == null) {
+      when(response.ensurePacketTypeIs(PacketType.ATTRS))
+          .thenThrow(new SFTPException("No such file"));
+    } else {
+      when(response.readFileAttributes())
+          .thenReturn(new FileAttributes.Builder().withType(type).build());
+    }
+    Promise<Response, SFTPException> promise = mock(Promise.class);
+    when(promise.retrieve(anyLong(), any(TimeUnit.class))).thenReturn(response);
+    return promise;
   }
 }
@@ -24,6 +24,8 @@ import static android.os.Build.VERSION_CODES.JELLY_BEAN;
 import static android.os.Build.VERSION_CODES.KITKAT;
 import static android.os.Build.VERSION_CODES.P;
 import static com.amaze.filemanager.filesystem.ssh.test.TestUtils.saveSshConnectionSettings;
+import static com.amaze.filemanager.ui.fragments.preference_fragments.PreferencesConstants.PREFERENCE_SSH_CONNECTIONS_PER_HOST;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.mockito.AdditionalMatchers.not;
@@ -35,6 +37,7 @@ import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 import java.io.IOException;
 import java.security.KeyPair;
@@ -52,8 +55,12 @@ import com.amaze.filemanager.shadows.ShadowMultiDex;
 import com.amaze.filemanager.test.ShadowCryptUtil;
 import com.amaze.filemanager.utils.Utils;
 
+import android.content.SharedPreferences;
+import android.preference.PreferenceManager;
+
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
+import androidx.test.core.app.ApplicationProvider;
 import androidx.test.ext.junit.runners.AndroidJUnit4;
 
 import io.reactivex.plugins.RxJavaPlugins;
@@ -117,9 +124,82 @@ public class SshConnectionPoolTest {
 
   @After
   public void tearDown() {
+    getPreferences().edit().remove(PREFERENCE_SSH_CONNECTIONS_PER_HOST).commit();
     SshConnectionPool.getInstance().shutdown();
   }
 
+  @Test
+  public void testGetConnectionReusesOpenConnection() throws IOException {
+    SSHClient mock = createSshServer("testuser", "testpassword");
+    when(mock.isConnected()).thenReturn(true);
+    when(mock.isAuthenticated()).thenReturn(true);
+    SshConnectionPool.Metrics metrics = SshConnectionPool.getInstance().getMetrics();
+    long creates = metrics.getCreates();
+    long hits = metrics.getHits();
+
+    for (int i = 0; i < 3; i++) {
+      assertNotNull(
+          SshConnectionPool.getInstance()
+              .getConnection(
+                  "127.0.0.1",
+                  22222,
+                  SecurityUtils.getFingerprint(hostKeyPair.getPublic()),
+                  "testuser",
+                  "testpassword",
+                  null));
+    }
+
+    verify(mock, times(1)).connect("127.0.0.1", 22222);
+    assertEquals(creates + 1, metrics.getCreates());
+    assertEquals(hits + 2, metrics.getHits());
+  }
+
+  @Test
+  public void testGetConnectionReconnectsBrokenConnection() throws IOException {
+    SSHClient mock = createSshServer("testuser", "testpassword");
+    SshConnectionPool.Metrics metrics = SshConnectionPool.getInstance().getMetrics();
+    long reconnects = metrics.getReconnects();
+
+    for (int i = 0; i < 2; i++) {
+      // the mock never reports being connected, so the second call must reconnect
+      assertNotNull(
+          SshConnectionPool.getInstance()
+              .getConnection(
+                  "127.0.0.1",
+                  22222,
+                  SecurityUtils.getFingerprint(hostKeyPair.getPublic()),
+                  "testuser",
+                  "testpassword",
+                  null));
+    }
+
+    verify(mock, times(2)).connect("127.0.0.1", 22222);
+    assertEquals(reconnects + 1, metrics.getReconnects());
+  }
+
+  @Test
+  public void testGetConnectionOpensUpToMaxConnectionsPerHost() throws IOException {
+    SSHClient mock = createSshServer("testuser", "testpassword");
+    when(mock.isConnected()).thenReturn(true);
+    when(mock.isAuthenticated()).thenReturn(true);
+    getPreferences().edit().putString(PREFERENCE_SSH_CONNECTIONS_PER_HOST, "2").commit();
+    assertEquals(2, SshConnectionPool.getInstance().getMaxConnectionsPerHost());
+
+    for (int i = 0; i < 4; i++) {
+      assertNotNull(
+          SshConnectionPool.getInstance()
+              .getConnection(
+                  "127.0.0.1",
+                  22222,
+                  SecurityUtils.getFingerprint(hostKeyPair.getPublic()),
+                  "testuser",
+                  "testpassword",
+                  null));
+    }
+
+    verify(mock, times(2)).connect("127.0.0.1", 22222);
+  }
+
   @Test
   public void testGetConnectionWithUsernameAndPassword() throws IOException {
     SSHClient mock = createSshServer("testuser", "testpassword");
@@ -467,4 +547,9 @@ public class SshConnectionPoolTest {
     SshConnectionPool.setSSHClientFactory(config -> mock);
     return mock;
   }
+
+  private static SharedPreferences getPreferences() {
+    return PreferenceManager.getDefaultSharedPreferences(
+        ApplicationProvider.getApplicationContext());
+  }
 }
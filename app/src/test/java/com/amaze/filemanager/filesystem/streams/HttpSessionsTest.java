@@ -0,0 +1,158 @@
+/*
+ * Copyright (C) 2014-2020 Arpit Khurana <arpitkh96@gmail.com>, Vishal Nehra <vishalmeham2@gmail.com>,
+ * Emmanuel Messulam<emmanuelbendavid@gmail.com>, Raymond Lai <airwave209gt at gmail.com> and Contributors.
+ *
+ * This file is part of Amaze File Manager.
+ *
+ * Amaze File Manager is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.amaze.filemanager.filesystem.streams;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import org.junit.Test;
+
+public class HttpSessionsTest {
+
+  @Test
+  public void testParseRange() {
+    assertArrayEquals(new long[] {0, 99}, HttpSessions.parseRange("bytes=0-", 100));
+    assertArrayEquals(new long[] {10, 19}, HttpSessions.parseRange("bytes=10-19", 100));
+    assertArrayEquals(new long[] {10, 99}, HttpSessions.parseRange("bytes=10-1000", 100));
+    assertArrayEquals(new long[] {90, 99}, HttpSessions.parseRange("bytes=-10", 100));
+    assertArrayEquals(new long[] {0, 99}, HttpSessions.parseRange("bytes=-1000", 100));
+  }
+
+  @Test
+  public void testParseRangeUnsatisfiable() {
+    assertTrue(HttpSessions.parseRange("bytes=100-", 100)[0] >= 100);
+    assertTrue(HttpSessions.parseRange("bytes=-0", 100)[0] >= 100);
+  }
+
+  @Test
+  public void testParseRangeIgnored() {
+    assertNull(HttpSessions.parseRange(null, 100));
+    assertNull(HttpSessions.parseRange("items=0-10", 100));
+    assertNull(HttpSessions.parseRange("bytes=0-10,20-30", 100));
+    assertNull(HttpSessions.parseRange("bytes=20-10", 100));
+    assertNull(HttpSessions.parseRange("bytes=a-b", 100));
+    assertNull(HttpSessions.parseRange("bytes=-", 100));
+  }
+
+  @Test
+  public void testIsKeepAlive() {
+    Properties header = new Properties();
+    assertTrue(HttpSessions.isKeepAlive("HTTP/1.1", header));
+    assertFalse(HttpSessions.isKeepAlive("HTTP/1.0", header));
+    assertFalse(HttpSessions.isKeepAlive(null, header));
+
+    header.put("connection", "close");
+    assertFalse(HttpSessions.isKeepAlive("HTTP/1.1", header));
+    header.put("connection", "Keep-Alive");
+    assertTrue(HttpSessions.isKeepAlive("HTTP/1.0", header));
+  }
+
+  @Test
+  public void testGetContentLength() {
+    Properties header = new Properties();
+    assertEquals(-1, HttpSessions.getContentLength(null));
+    assertEquals(-1, HttpSessions.getContentLength(header));
+
+    header.put("Content-length", "42");
+    assertEquals(42, HttpSessions.getContentLength(header));
+    header.put("Content-length", "lots");
+    assertEquals(-1, HttpSessions.getContentLength(header));
+  }
+
+  @Test
+  public void testIdleConnectionsDontHoldWorkers() throws IOException {
+    final ServerSocket server = new ServerSocket(0, 0, InetAddress.getLoopbackAddress());
+    Thread acceptor =
+        new Thread(
+            () -> {
+              try {
+                while (true) {
+                  final Socket socket = server.accept();
+                  HttpSessions.execute(socket, () -> serve(socket));
+                }
+              } catch (IOException e) {
+                // server closed
+              }
+            });
+    acceptor.setDaemon(true);
+    acceptor.start();
+
+    List<Socket> idleClients = new ArrayList<>();
+    try {
+      // every worker ends up waiting for the next request of a kept-alive connection
+      for (int i = 0; i < HttpSessions.MAX_SESSIONS; i++) {
+        Socket client = new Socket(server.getInetAddress(), server.getLocalPort());
+        idleClients.add(client);
+        assertEquals("ok", request(client));
+      }
+
+      long start = System.currentTimeMillis();
+      try (Socket client = new Socket(server.getInetAddress(), server.getLocalPort())) {
+        assertEquals("ok", request(client));
+      }
+      assertTrue(System.currentTimeMillis() - start < HttpSessions.KEEP_ALIVE_TIMEOUT / 3);
+    } finally {
+      for (Socket client : idleClients) client.close();
+      server.close();
+    }
+  }
+
+  /** Answers "ok" to every line sent, like a stream server does to every request */
+  private static void serve(Socket socket) {
+    try {
+      InputStream is = socket.getInputStream();
+      OutputStream os = socket.getOutputStream();
+      byte[] buf = new byte[64];
+      while (HttpSessions.readRequest(socket, is, buf) > 0) {
+        os.write("ok\n".getBytes());
+        os.flush();
+      }
+    } catch (IOException e) {
+      // client gone
+    } finally {
+      try {
+        socket.close();
+      } catch (IOException ignored) {
+      }
+    }
+  }
+
+  private static String request(Socket client) throws IOException {
+    client.setSoTimeout(HttpSessions.KEEP_ALIVE_TIMEOUT * 2);
+    client.getOutputStream().write("GET\n".getBytes());
+    return new BufferedReader(new InputStreamReader(client.getInputStream())).readLine();
+  }
+}
@@ -20,10 +20,18 @@
 
 package com.amaze.filemanager.shadows.jcifs.smb;
 
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.RandomAccessFile;
 import java.net.URL;
 
 import org.robolectric.annotation.Implementation;
@@ -32,6 +40,7 @@ import org.robolectric.annotation.Implements;
 import jcifs.smb.NtlmPasswordAuthentication;
 import jcifs.smb.SmbException;
 import jcifs.smb.SmbFile;
+import jcifs.smb.SmbRandomAccessFile;
 
 @Implements(SmbFile.class)
 public class ShadowSmbFile {
@@ -52,6 +61,34 @@ public class ShadowSmbFile {
     return new FileInputStream(file);
   }
 
+  @Implementation
+  public SmbRandomAccessFile openRandomAccess(String mode) throws IOException {
+    RandomAccessFile raf = new RandomAccessFile(file, mode);
+    SmbRandomAccessFile retval = mock(SmbRandomAccessFile.class);
+    when(retval.read(any(byte[].class), anyInt(), anyInt()))
+        .thenAnswer(
+            invocation ->
+                raf.read(
+                    invocation.getArgument(0),
+                    invocation.getArgument(1),
+                    invocation.getArgument(2)));
+    doAnswer(
+            invocation -> {
+              raf.seek(invocation.getArgument(0));
+              return null;
+            })
+        .when(retval)
+        .seek(anyLong());
+    doAnswer(
+            invocation -> {
+              raf.close();
+              return null;
+            })
+        .when(retval)
+        .close();
+    return retval;
+  }
+
   @Implementation
   public long length() throws SmbException {
     return file.length();
@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) 2014-2020 Arpit Khurana <arpitkh96@gmail.com>, Vishal Nehra <vishalmeham2@gmail.com>,
+ * Emmanuel Messulam<emmanuelbendavid@gmail.com>, Raymond Lai <airwave209gt at gmail.com> and Contributors.
+ *
+ * This file is part of Amaze File Manager.
+ *
+ * Amaze File Manager is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.amaze.filemanager.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+public class ProgressHandlerTest {
+
+  @Test
+  public void testPositionFromSeveralThreads() throws InterruptedException {
+    ProgressHandler progressHandler = new ProgressHandler();
+    List<Thread> threads = new ArrayList<>();
+    for (int i = 0; i < 8; i++) {
+      Thread thread =
+          new Thread(
+              () -> {
+                for (int j = 0; j < 10000; j++) {
+                  progressHandler.addToPosition(3);
+                }
+              });
+      threads.add(thread);
+      thread.start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    assertEquals(8 * 10000 * 3, progressHandler.getPosition());
+  }
+
+  @Test
+  public void testHandlersAreIndependent() {
+    ProgressHandler first = new ProgressHandler(), second = new ProgressHandler();
+    first.addToPosition(100);
+    second.addToPosition(5);
+
+    assertEquals(100, first.getPosition());
+    assertEquals(5, second.getPosition());
+  }
+
+  @Test
+  public void testAddWrittenLength() {
+    ProgressHandler progressHandler = new ProgressHandler();
+    List<Long> speeds = new ArrayList<>();
+    progressHandler.setProgressListener(speeds::add);
+    progressHandler.setTotalSize(1000);
+
+    progressHandler.addWrittenLength(250);
+    progressHandler.addWrittenLength(500);
+
+    assertEquals(500, progressHandler.getWrittenSize());
+    assertEquals(50f, progressHandler.getPercentProgress(), 0.001f);
+    assertEquals(2, speeds.size());
+    for (long speed : speeds) {
+      assertTrue(speed >= 0);
+    }
+  }
+}